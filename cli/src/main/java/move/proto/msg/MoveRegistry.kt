@@ -10,13 +10,17 @@ import io.grpc.stub.ServerCalls
 import io.grpc.stub.StreamObserver
 import io.movemedical.server.essentials.verticle.*
 import kotlinx.coroutines.experimental.*
+import run.mojo.wire.type.ClassScanner
 import run.mojo.wire.type.ReflectionSchema
 import run.mojo.wire.type.ReflectionSchema.RpcEntry
 import run.mojo.wire.type.RpcInfo
+import run.mojo.wire.type.SchemaSnapshot
 import java.io.ByteArrayInputStream
 import java.io.IOException
 import java.io.InputStream
 import java.lang.reflect.ParameterizedType
+import java.nio.file.Path
+import java.nio.file.Paths
 import java.util.function.Function
 
 /**
@@ -59,36 +63,57 @@ object MoveRegistry {
 //        }
 //        reader.endMessage(token)
 
-        return ReflectionSchema.create(
-            // Filter candidates.
-            ReflectionSchema.all().allClasses.stream().filter {
-                it.name.startsWith("com.movemedical")
-                        || it.name.startsWith("io.movemedical")
-            },
-            Adapter(),
-            // Whitelist.
-            Function { cls: Class<*> -> true },
-            // Blacklist.
-            Function { cls -> false },
-            // RPC adapter.
-            Function { cls ->
-                try {
-                    val a = cls.getAnnotation(Rest::class.java)
-                    if (a == null || a !is Rest) {
-                        return@Function null
-                    }
-                    val info = RpcInfo()
-                    info.paths = a.paths
-                    info.secured = a.secured
-                } catch (e: Throwable) {
-                    // Ignore.
+        val loader = Thread.currentThread().contextClassLoader
+        val scanner = ClassScanner.of(loader).packages("com.movemedical", "io.movemedical")
+        // Whitelist.
+        val whitelist = Function { cls: Class<*> -> true }
+        // Blacklist.
+        val blacklist = Function { cls: Class<*> -> false }
+        // RPC adapter.
+        val rpc = Function { cls: Class<*> ->
+            try {
+                val a = cls.getAnnotation(Rest::class.java)
+                if (a == null || a !is Rest) {
+                    return@Function null
                 }
-
-                null
+                val info = RpcInfo()
+                info.paths = a.paths
+                info.secured = a.secured
+            } catch (e: Throwable) {
+                // Ignore.
             }
+
+            null
+        }
+
+        // Warm start: the entries found last time, registered as they're looked up.
+        val fingerprint = scanner.fingerprint()
+        val snapshot = SchemaSnapshot.read(SNAPSHOT, fingerprint, loader)
+        if (snapshot != null) {
+            return snapshot.schema(whitelist, blacklist, rpc)
+        }
+
+        val schema = ReflectionSchema.create(
+            // Filter candidates from their class files; only those the adapter takes get loaded.
+            scanner.scan { Adapter.isCandidate(it) }.stream(),
+            Adapter(),
+            whitelist,
+            blacklist,
+            rpc
         )
+        try {
+            SchemaSnapshot.write(schema, fingerprint, SNAPSHOT)
+        } catch (e: IOException) {
+            // Next start just scans again.
+        }
+        return schema
     }
 
+    /** Where [create] keeps the schema snapshot, overridden by the "move.schema.snapshot" property. */
+    private val SNAPSHOT: Path = Paths.get(
+        System.getProperty("move.schema.snapshot", System.getProperty("java.io.tmpdir") + "/move-schema.bin")
+    )
+
     fun classpath(): ClassPath {
         try {
             return ClassPath.from(Thread.currentThread().contextClassLoader)
@@ -195,32 +220,14 @@ object MoveRegistry {
 
     }
 
-    class Adapter : Function<ClassPath.ClassInfo, ReflectionSchema.Entry?> {
-
-        override fun apply(ci: ClassPath.ClassInfo): ReflectionSchema.Entry? {
-            val pkg = ci.packageName
+    class Adapter : Function<ClassScanner.ClassHeader, ReflectionSchema.Entry?> {
 
-            if (CLS_BLACK_LIST.contains(ci.simpleName) ||
-                ci.simpleName.isEmpty() ||
-                !pkg.startsWith("com.movemedical")
-            ) {
-                return null
+        override fun apply(ci: ClassScanner.ClassHeader): ReflectionSchema.Entry? {
+            return when (kindOf(ci)) {
+                Kind.TYPE -> ReflectionSchema.TypeEntry.create(ci.load())
+                Kind.ACTION -> actionFor(ci.load())
+                null -> null
             }
-
-            if (pkg.startsWith("com.movemedical.server.sql.datatype") &&
-                !ci.simpleName.endsWith("Converter") &&
-                !ci.name.contains("$")
-            ) {
-                return ReflectionSchema.TypeEntry.create(ci.load())
-            } else if (pkg.startsWith("com.movemedical.server.app.typeDescriptor.api")) {
-                return ReflectionSchema.TypeEntry.create(ci.load())
-            } else if (pkg.startsWith("com.movemedical.server.app.action") && ci.simpleName.endsWith("Verticle")) {
-                return actionFor(ci.load())
-            } else if (pkg.startsWith("com.movemedical.server.app.docreport") && ci.simpleName.endsWith("Verticle")) {
-                return actionFor(ci.load())
-            }
-
-            return null
         }
 
         fun actionFor(klass: Class<*>): RpcEntry? {
@@ -262,12 +269,44 @@ object MoveRegistry {
             }
         }
 
+        enum class Kind { TYPE, ACTION }
+
         companion object {
             private val CLS_BLACK_LIST = Sets.newHashSet(
                 "PaginatedListResponse",
                 "BaseResponse",
                 "OrderByParams"
             )
+
+            /** Whether [apply] would take the class, decided from its class file alone. */
+            fun isCandidate(ci: ClassScanner.ClassHeader): Boolean = kindOf(ci) != null
+
+            fun kindOf(ci: ClassScanner.ClassHeader): Kind? {
+                val pkg = ci.packageName()
+                val simpleName = ci.simpleName()
+
+                if (CLS_BLACK_LIST.contains(simpleName) ||
+                    simpleName.isEmpty() ||
+                    !pkg.startsWith("com.movemedical")
+                ) {
+                    return null
+                }
+
+                if (pkg.startsWith("com.movemedical.server.sql.datatype") &&
+                    !simpleName.endsWith("Converter") &&
+                    !ci.name.contains("$")
+                ) {
+                    return Kind.TYPE
+                } else if (pkg.startsWith("com.movemedical.server.app.typeDescriptor.api")) {
+                    return Kind.TYPE
+                } else if (pkg.startsWith("com.movemedical.server.app.action") && simpleName.endsWith("Verticle")) {
+                    return Kind.ACTION
+                } else if (pkg.startsWith("com.movemedical.server.app.docreport") && simpleName.endsWith("Verticle")) {
+                    return Kind.ACTION
+                }
+
+                return null
+            }
         }
     }
 }
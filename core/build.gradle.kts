@@ -1,9 +1,11 @@
 plugins {
     kotlin("jvm")
+    id("me.champeau.gradle.jmh") version "0.4.7"
 }
 
 dependencies {
     compile(kotlin("stdlib"))
+    compile(kotlin("reflect"))
 
     compile(group = "javax.inject", name = "javax.inject", version = "1")
     compile(group = "com.google.code.findbugs", name = "annotations", version = "3.0.1")
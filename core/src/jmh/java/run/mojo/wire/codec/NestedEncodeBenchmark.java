@@ -0,0 +1,219 @@
+package run.mojo.wire.codec;
+
+import com.squareup.wire.FieldEncoding;
+import com.squareup.wire.ProtoAdapter;
+import com.squareup.wire.ProtoReader;
+import com.squareup.wire.ProtoWriter;
+import org.openjdk.jmh.annotations.*;
+import run.mojo.wire.WireProtoAdapter;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares encoding a deep message tree the way generated adapters used to (every nested
+ * encodeWithTag re-measuring its subtree) with the single-pass {@link SizeStack} encode, through
+ * Okio and straight into an array.
+ *
+ * <p>Both adapters mirror the code {@code Assembler} emits for {@link Node}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class NestedEncodeBenchmark {
+
+  @Param({"4", "16", "64"})
+  public int depth;
+
+  private Node root;
+
+  @Setup
+  public void setup() {
+    root = tree(depth);
+    final byte[] expected = Legacy.PROTO.encode(root);
+    if (!Arrays.equals(expected, SinglePass.PROTO.encode(root))) {
+      throw new IllegalStateException("single-pass encode is not byte-identical");
+    }
+    if (!Arrays.equals(expected, SinglePass.PROTO.encodeToArray(root))) {
+      throw new IllegalStateException("array encode is not byte-identical");
+    }
+  }
+
+  @Benchmark
+  public byte[] legacy() {
+    return Legacy.PROTO.encode(root);
+  }
+
+  @Benchmark
+  public byte[] singlePass() {
+    return SinglePass.PROTO.encode(root);
+  }
+
+  @Benchmark
+  public byte[] singlePassArray() {
+    return SinglePass.PROTO.encodeToArray(root);
+  }
+
+  /** A paginated-response shaped chain: each level carries a few siblings and one deeper page. */
+  static Node tree(int depth) {
+    Node node = null;
+    for (int i = depth; i > 0; i--) {
+      final Node parent = new Node();
+      parent.id = i;
+      parent.name = "node-" + i;
+      parent.child = node;
+      parent.children = new ArrayList<>();
+      for (int j = 0; j < 3; j++) {
+        final Node leaf = new Node();
+        leaf.id = i * 100 + j;
+        leaf.name = "leaf-" + j;
+        parent.children.add(leaf);
+      }
+      node = parent;
+    }
+    return node;
+  }
+
+  public static class Node {
+    public int id;
+    public String name;
+    public Node child;
+    public List<Node> children;
+  }
+
+  /** Previous generated shape. */
+  public static final class Legacy extends ProtoAdapter<Node> {
+    public static final Legacy PROTO = new Legacy();
+    public static final ProtoAdapter<List<Node>> children = PROTO.asRepeated();
+
+    Legacy() {
+      super(FieldEncoding.LENGTH_DELIMITED, Node.class);
+    }
+
+    @Override
+    public int encodedSize(Node value) {
+      int size = 0;
+      size += ProtoAdapter.INT32.encodedSizeWithTag(1, value.id);
+      if (value.name != null) {
+        size += ProtoAdapter.STRING.encodedSizeWithTag(2, value.name);
+      }
+      if (value.child != null) {
+        size += Legacy.PROTO.encodedSizeWithTag(3, value.child);
+      }
+      if (value.children != null) {
+        size += Legacy.children.encodedSizeWithTag(4, value.children);
+      }
+      return size;
+    }
+
+    @Override
+    public void encode(ProtoWriter writer, Node value) throws IOException {
+      ProtoAdapter.INT32.encodeWithTag(writer, 1, value.id);
+      if (value.name != null) {
+        ProtoAdapter.STRING.encodeWithTag(writer, 2, value.name);
+      }
+      if (value.child != null) {
+        Legacy.PROTO.encodeWithTag(writer, 3, value.child);
+      }
+      if (value.children != null) {
+        Legacy.children.encodeWithTag(writer, 4, value.children);
+      }
+    }
+
+    @Override
+    public Node decode(ProtoReader reader) {
+      throw new UnsupportedOperationException();
+    }
+  }
+
+  /** Current generated shape. */
+  public static final class SinglePass extends WireProtoAdapter<Node> {
+    public static final SinglePass PROTO = new SinglePass();
+
+    SinglePass() {
+      super(FieldEncoding.LENGTH_DELIMITED, Node.class);
+    }
+
+    @Override
+    public int measure(Node value, SizeStack sizes) {
+      int size = 0;
+      size += ProtoAdapter.INT32.encodedSizeWithTag(1, value.id);
+      if (value.name != null) {
+        size += ProtoAdapter.STRING.encodedSizeWithTag(2, value.name);
+      }
+      if (value.child != null) {
+        int slot3 = sizes.reserve();
+        int length3 = SinglePass.PROTO.measure(value.child, sizes);
+        sizes.set(slot3, length3);
+        size += 1 + Scalars.varint32Size(length3) + length3;
+      }
+      if (value.children != null) {
+        for (Node element : value.children) {
+          int slot4 = sizes.reserve();
+          int length4 = SinglePass.PROTO.measure(element, sizes);
+          sizes.set(slot4, length4);
+          size += 1 + Scalars.varint32Size(length4) + length4;
+        }
+      }
+      return size;
+    }
+
+    @Override
+    public void encode(ProtoWriter writer, Node value, SizeStack sizes) throws IOException {
+      ProtoAdapter.INT32.encodeWithTag(writer, 1, value.id);
+      if (value.name != null) {
+        ProtoAdapter.STRING.encodeWithTag(writer, 2, value.name);
+      }
+      if (value.child != null) {
+        writer.writeTag(3, FieldEncoding.LENGTH_DELIMITED);
+        writer.writeVarint32(sizes.next());
+        SinglePass.PROTO.encode(writer, value.child, sizes);
+      }
+      if (value.children != null) {
+        for (Node element : value.children) {
+          writer.writeTag(4, FieldEncoding.LENGTH_DELIMITED);
+          writer.writeVarint32(sizes.next());
+          SinglePass.PROTO.encode(writer, element, sizes);
+        }
+      }
+    }
+
+    @Override
+    public void encode(WireWriter writer, Node value, SizeStack sizes) throws IOException {
+      writer.writeTag(1, FieldEncoding.VARINT);
+      writer.writeInt32(value.id);
+      if (value.name != null) {
+        writer.writeTag(2, FieldEncoding.LENGTH_DELIMITED);
+        writer.writeString(value.name);
+      }
+      if (value.child != null) {
+        writer.writeTag(3, FieldEncoding.LENGTH_DELIMITED);
+        writer.writeVarint32(sizes.next());
+        SinglePass.PROTO.encode(writer, value.child, sizes);
+      }
+      if (value.children != null) {
+        for (Node element : value.children) {
+          writer.writeTag(4, FieldEncoding.LENGTH_DELIMITED);
+          writer.writeVarint32(sizes.next());
+          SinglePass.PROTO.encode(writer, element, sizes);
+        }
+      }
+    }
+
+    @Override
+    public Node decode(ProtoReader reader) {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public Node decode(WireReader reader) {
+      throw new UnsupportedOperationException();
+    }
+  }
+}
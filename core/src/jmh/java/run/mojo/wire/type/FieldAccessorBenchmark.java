@@ -0,0 +1,56 @@
+package run.mojo.wire.type;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/** Reading and writing a bean property through {@link FieldAccessor} versus reflection. */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FieldAccessorBenchmark {
+
+  private final Bean bean = new Bean();
+  private FieldDesc count;
+  private FieldAccessor accessor;
+  private int next;
+
+  @Setup
+  public void setup() {
+    final ReflectionSchema schema = ReflectionSchema.create(Stream.empty(), null, null, null, null);
+    final MessageDesc desc = (MessageDesc) schema.registerType(Bean.class);
+    count = desc.props.get("count");
+    accessor = count.accessor();
+  }
+
+  @Benchmark
+  public int reflectGetSet() throws Exception {
+    final Method getter = count.getter;
+    final Method setter = count.setter;
+    setter.invoke(bean, next++);
+    return (Integer) getter.invoke(bean);
+  }
+
+  @Benchmark
+  public int accessorGetSet() {
+    accessor.setInt(bean, next++);
+    return accessor.getInt(bean);
+  }
+
+  public static class Bean {
+    private int count;
+
+    public int getCount() {
+      return count;
+    }
+
+    public void setCount(int count) {
+      this.count = count;
+    }
+  }
+}
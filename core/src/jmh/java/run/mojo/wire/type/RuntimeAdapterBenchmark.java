@@ -0,0 +1,322 @@
+package run.mojo.wire.type;
+
+import com.squareup.wire.FieldEncoding;
+import com.squareup.wire.ProtoReader;
+import com.squareup.wire.ProtoWriter;
+import org.openjdk.jmh.annotations.*;
+import run.mojo.wire.WireProtoAdapter;
+import run.mojo.wire.codec.Scalars;
+import run.mojo.wire.codec.SizeStack;
+import run.mojo.wire.codec.WireReader;
+import run.mojo.wire.codec.WireWriter;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Compares the offset based {@link RuntimeAdapter} with the adapter {@code Assembler} generates
+ * for the same class, encoding to and decoding from an array. The runtime adapter is meant to stay
+ * within 2x of generated code.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RuntimeAdapterBenchmark {
+
+  @Param({"1", "8"})
+  public int legs;
+
+  private RuntimeAdapter<Trade> runtime;
+  private Trade trade;
+  private byte[] bytes;
+
+  @Setup
+  public void setup() {
+    final ReflectionSchema schema = ReflectionSchema.create(Stream.empty(), null, null, null, null);
+    runtime = RuntimeAdapter.of((MessageDesc) schema.registerType(Trade.class));
+    trade = trade(legs);
+    bytes = Generated.TRADE.encodeToArray(trade);
+    if (!Arrays.equals(bytes, runtime.encodeToArray(trade))) {
+      throw new IllegalStateException("runtime encode is not byte-identical");
+    }
+  }
+
+  @Benchmark
+  public byte[] generatedEncode() {
+    return Generated.TRADE.encodeToArray(trade);
+  }
+
+  @Benchmark
+  public byte[] runtimeEncode() {
+    return runtime.encodeToArray(trade);
+  }
+
+  @Benchmark
+  public Trade generatedDecode() throws IOException {
+    return Generated.TRADE.decode(bytes, 0, bytes.length);
+  }
+
+  @Benchmark
+  public Trade runtimeDecode() throws IOException {
+    return runtime.decode(bytes, 0, bytes.length);
+  }
+
+  static Trade trade(int legs) {
+    final Trade trade = new Trade();
+    trade.id = 9_000_000_001L;
+    trade.quantity = 250;
+    trade.price = 101.25;
+    trade.open = true;
+    trade.symbol = "ACME";
+    trade.legs = new ArrayList<>();
+    for (int i = 0; i < legs; i++) {
+      final Leg leg = new Leg();
+      leg.id = i;
+      leg.venue = "venue-" + i;
+      leg.timestamp = 1_540_000_000_000L + i;
+      trade.legs.add(leg);
+    }
+    return trade;
+  }
+
+  public static class Trade {
+    public long id;
+    public int quantity;
+    public double price;
+    public boolean open;
+    public String symbol;
+    public List<Leg> legs;
+  }
+
+  public static class Leg {
+    public int id;
+    public String venue;
+    public long timestamp;
+  }
+
+  /** What Assembler emits for {@link Trade} and {@link Leg}, trimmed to the array paths. */
+  static final class Generated {
+    static final TradeAdapter TRADE = new TradeAdapter();
+    static final LegAdapter LEG = new LegAdapter();
+
+    static final class TradeAdapter extends WireProtoAdapter<Trade> {
+      TradeAdapter() {
+        super(FieldEncoding.LENGTH_DELIMITED, Trade.class);
+      }
+
+      @Override
+      public int measure(Trade value, SizeStack sizes) {
+        int size = 0;
+        size += 1 + Scalars.varint64Size(value.id);
+        size += 1 + Scalars.int32Size(value.quantity);
+        size += 1 + 8;
+        size += 1 + 1;
+        if (value.symbol != null) {
+          int length5 = Scalars.utf8Size(value.symbol);
+          sizes.set(sizes.reserve(), length5);
+          size += 1 + Scalars.varint32Size(length5) + length5;
+        }
+        if (value.legs != null) {
+          for (Leg element : value.legs) {
+            int slot6 = sizes.reserve();
+            int length6 = LEG.measure(element, sizes);
+            sizes.set(slot6, length6);
+            size += 1 + Scalars.varint32Size(length6) + length6;
+          }
+        }
+        return size;
+      }
+
+      @Override
+      public void encode(WireWriter writer, Trade value, SizeStack sizes) throws IOException {
+        writer.writeTag(1, FieldEncoding.VARINT);
+        writer.writeVarint64(value.id);
+        writer.writeTag(2, FieldEncoding.VARINT);
+        writer.writeInt32(value.quantity);
+        writer.writeTag(3, FieldEncoding.FIXED64);
+        writer.writeFixed64(Double.doubleToLongBits(value.price));
+        writer.writeTag(4, FieldEncoding.VARINT);
+        writer.writeVarint32(value.open ? 1 : 0);
+        if (value.symbol != null) {
+          writer.writeTag(5, FieldEncoding.LENGTH_DELIMITED);
+          writer.writeString(value.symbol, sizes.next());
+        }
+        if (value.legs != null) {
+          for (Leg element : value.legs) {
+            writer.writeTag(6, FieldEncoding.LENGTH_DELIMITED);
+            writer.writeVarint32(sizes.next());
+            LEG.encode(writer, element, sizes);
+          }
+        }
+      }
+
+      @Override
+      public Trade decode(WireReader reader) throws IOException {
+        long id = 0;
+        int quantity = 0;
+        double price = 0;
+        boolean open = false;
+        String symbol = null;
+        List<Leg> legs = null;
+        long token = reader.beginMessage();
+        // Keys are (tag << 3) | wire type.
+        if (reader.expectTag(8)) {
+          id = reader.readVarint64();
+        }
+        if (reader.expectTag(16)) {
+          quantity = reader.readVarint32();
+        }
+        if (reader.expectTag(25)) {
+          price = Double.longBitsToDouble(reader.readFixed64());
+        }
+        if (reader.expectTag(32)) {
+          open = reader.readVarint32() != 0;
+        }
+        if (reader.expectTag(42)) {
+          symbol = reader.readString();
+        }
+        while (reader.expectTag(50)) {
+          if (legs == null) {
+            legs = new ArrayList<>();
+          }
+          legs.add(LEG.decode(reader));
+        }
+        for (int tag; (tag = reader.nextTag()) != -1; ) {
+          switch (tag) {
+            case 1:
+              id = reader.readVarint64();
+              break;
+            case 2:
+              quantity = reader.readVarint32();
+              break;
+            case 3:
+              price = Double.longBitsToDouble(reader.readFixed64());
+              break;
+            case 4:
+              open = reader.readVarint32() != 0;
+              break;
+            case 5:
+              symbol = reader.readString();
+              break;
+            case 6:
+              if (legs == null) {
+                legs = new ArrayList<>();
+              }
+              legs.add(LEG.decode(reader));
+              break;
+            default:
+              reader.skip();
+              break;
+          }
+        }
+        reader.endMessage(token);
+        Trade result = new Trade();
+        result.id = id;
+        result.quantity = quantity;
+        result.price = price;
+        result.open = open;
+        result.symbol = symbol;
+        result.legs = legs;
+        return result;
+      }
+
+      @Override
+      public void encode(ProtoWriter writer, Trade value, SizeStack sizes) {
+        throw new UnsupportedOperationException();
+      }
+
+      @Override
+      public Trade decode(ProtoReader reader) {
+        throw new UnsupportedOperationException();
+      }
+    }
+
+    static final class LegAdapter extends WireProtoAdapter<Leg> {
+      LegAdapter() {
+        super(FieldEncoding.LENGTH_DELIMITED, Leg.class);
+      }
+
+      @Override
+      public int measure(Leg value, SizeStack sizes) {
+        int size = 0;
+        size += 1 + Scalars.int32Size(value.id);
+        if (value.venue != null) {
+          int length2 = Scalars.utf8Size(value.venue);
+          sizes.set(sizes.reserve(), length2);
+          size += 1 + Scalars.varint32Size(length2) + length2;
+        }
+        size += 1 + Scalars.varint64Size(value.timestamp);
+        return size;
+      }
+
+      @Override
+      public void encode(WireWriter writer, Leg value, SizeStack sizes) {
+        writer.writeTag(1, FieldEncoding.VARINT);
+        writer.writeInt32(value.id);
+        if (value.venue != null) {
+          writer.writeTag(2, FieldEncoding.LENGTH_DELIMITED);
+          writer.writeString(value.venue, sizes.next());
+        }
+        writer.writeTag(3, FieldEncoding.VARINT);
+        writer.writeVarint64(value.timestamp);
+      }
+
+      @Override
+      public Leg decode(WireReader reader) throws IOException {
+        int id = 0;
+        String venue = null;
+        long timestamp = 0;
+        long token = reader.beginMessage();
+        // Keys are (tag << 3) | wire type.
+        if (reader.expectTag(8)) {
+          id = reader.readVarint32();
+        }
+        if (reader.expectTag(18)) {
+          venue = reader.readString();
+        }
+        if (reader.expectTag(24)) {
+          timestamp = reader.readVarint64();
+        }
+        for (int tag; (tag = reader.nextTag()) != -1; ) {
+          switch (tag) {
+            case 1:
+              id = reader.readVarint32();
+              break;
+            case 2:
+              venue = reader.readString();
+              break;
+            case 3:
+              timestamp = reader.readVarint64();
+              break;
+            default:
+              reader.skip();
+              break;
+          }
+        }
+        reader.endMessage(token);
+        Leg result = new Leg();
+        result.id = id;
+        result.venue = venue;
+        result.timestamp = timestamp;
+        return result;
+      }
+
+      @Override
+      public void encode(ProtoWriter writer, Leg value, SizeStack sizes) {
+        throw new UnsupportedOperationException();
+      }
+
+      @Override
+      public Leg decode(ProtoReader reader) {
+        throw new UnsupportedOperationException();
+      }
+    }
+  }
+}
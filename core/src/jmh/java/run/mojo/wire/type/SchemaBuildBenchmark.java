@@ -0,0 +1,151 @@
+package run.mojo.wire.type;
+
+import org.openjdk.jmh.annotations.*;
+
+import javax.tools.JavaCompiler;
+import javax.tools.StandardJavaFileManager;
+import javax.tools.ToolProvider;
+import java.io.File;
+import java.io.IOException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Builds a {@link ReflectionSchema} over a synthetic model of 10k classes in 100 packages, each
+ * with bean, boolean and fluent accessors, collections, references to other model classes and a
+ * superclass shared by its package.
+ *
+ * <p>The model is compiled once; every iteration loads it through a new class loader so no member
+ * table survives from the one before.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 10)
+@Fork(1)
+public class SchemaBuildBenchmark {
+  private static final int PACKAGES = 100;
+  private static final int CLASSES_PER_PACKAGE = 100;
+
+  private Path classes;
+  private List<ReflectionSchema.Entry> entries;
+
+  @Setup(Level.Trial)
+  public void compile() throws IOException {
+    final Path sources = Files.createTempDirectory("schema-model-src");
+    classes = Files.createTempDirectory("schema-model");
+    final List<File> files = new ArrayList<>();
+    for (int p = 0; p < PACKAGES; p++) {
+      final Path dir = Files.createDirectories(sources.resolve("model/p" + p));
+      final Path base = dir.resolve("Base.java");
+      Files.write(base, base(p).getBytes(StandardCharsets.UTF_8));
+      files.add(base.toFile());
+      for (int c = 0; c < CLASSES_PER_PACKAGE; c++) {
+        final Path file = dir.resolve("M" + c + ".java");
+        Files.write(file, source(p, c).getBytes(StandardCharsets.UTF_8));
+        files.add(file.toFile());
+      }
+    }
+    final JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+    try (StandardJavaFileManager manager = compiler.getStandardFileManager(null, null, null)) {
+      final boolean ok =
+          compiler
+              .getTask(
+                  null,
+                  manager,
+                  null,
+                  Arrays.asList("-d", classes.toString(), "-nowarn"),
+                  null,
+                  manager.getJavaFileObjectsFromFiles(files))
+              .call();
+      if (!ok) {
+        throw new IllegalStateException("model didn't compile");
+      }
+    }
+  }
+
+  @Setup(Level.Iteration)
+  public void load() throws Exception {
+    final URLClassLoader loader =
+        new URLClassLoader(new URL[] {classes.toUri().toURL()}, getClass().getClassLoader());
+    entries = new ArrayList<>(PACKAGES * CLASSES_PER_PACKAGE);
+    for (int p = 0; p < PACKAGES; p++) {
+      for (int c = 0; c < CLASSES_PER_PACKAGE; c++) {
+        final Class<?> cls = Class.forName("model.p" + p + ".M" + c, false, loader);
+        entries.add(ReflectionSchema.TypeEntry.create(cls));
+      }
+    }
+  }
+
+  @Benchmark
+  public ReflectionSchema build() {
+    return ReflectionSchema.create(entries.stream(), entry -> entry, null, null, null);
+  }
+
+  /** Superclass of every class in package {@code p}, as model classes often share one. */
+  private static String base(int p) {
+    final StringBuilder b = new StringBuilder();
+    b.append("package model.p").append(p).append(";\n");
+    b.append("public abstract class Base {\n");
+    b.append("  private long id;\n");
+    b.append("  private String createdBy;\n");
+    b.append("  private java.time.LocalDateTime created;\n");
+    b.append("  private int version;\n");
+    b.append("  public long getId() { return id; }\n");
+    b.append("  public void setId(long id) { this.id = id; }\n");
+    b.append("  public String getCreatedBy() { return createdBy; }\n");
+    b.append("  public void setCreatedBy(String createdBy) { this.createdBy = createdBy; }\n");
+    b.append("  public java.time.LocalDateTime getCreated() { return created; }\n");
+    b.append("  public int getVersion() { return version; }\n");
+    b.append("}\n");
+    return b.toString();
+  }
+
+  /**
+   * Class {@code c} of package {@code p}. It refers back to the previous class of its package and
+   * to the same class of the previous package, so registering in order never recurses far.
+   */
+  private static String source(int p, int c) {
+    final StringBuilder b = new StringBuilder();
+    b.append("package model.p").append(p).append(";\n");
+    b.append("public class M").append(c).append(" extends Base {\n");
+    b.append("  private int count;\n");
+    b.append("  private long stamp;\n");
+    b.append("  private String name;\n");
+    b.append("  private boolean active;\n");
+    b.append("  private double score;\n");
+    b.append("  private java.util.List<String> tags;\n");
+    b.append("  private java.util.Map<String, Long> totals;\n");
+    if (c > 0) {
+      b.append("  private M").append(c - 1).append(" previous;\n");
+    }
+    if (p > 0) {
+      b.append("  private model.p").append(p - 1).append(".M").append(c).append(" parent;\n");
+    }
+    b.append("  public int getCount() { return count; }\n");
+    b.append("  public void setCount(int count) { this.count = count; }\n");
+    b.append("  public long getStamp() { return stamp; }\n");
+    b.append("  public void setStamp(long stamp) { this.stamp = stamp; }\n");
+    b.append("  public String name() { return name; }\n");
+    b.append("  public M").append(c);
+    b.append(" name(String name) { this.name = name; return this; }\n");
+    b.append("  public boolean isActive() { return active; }\n");
+    b.append("  public void setActive(boolean active) { this.active = active; }\n");
+    b.append("  public double getScore() { return score; }\n");
+    b.append("  public java.util.List<String> getTags() { return tags; }\n");
+    b.append("  public void setTags(java.util.List<String> tags) { this.tags = tags; }\n");
+    b.append("  public java.util.Map<String, Long> getTotals() { return totals; }\n");
+    b.append("  @Override public String toString() { return name; }\n");
+    b.append("  @Override public int hashCode() { return count; }\n");
+    b.append("}\n");
+    return b.toString();
+  }
+}
@@ -67,6 +67,12 @@ public @interface Wire {
   /** @return */
   String implName() default "";
 
+  /**
+   * Decode a string field through a small per-field cache so repeated values share one instance.
+   * Meant for fields with a few hundred distinct values at most, e.g. status codes.
+   */
+  boolean intern() default false;
+
   enum Pack {
     UNSIGNED,
     SIGNED,
@@ -8,9 +8,17 @@ import okio.ByteString;
 
 import java.io.IOException;
 
-/** Superclass for protocol buffer message builders. */
+/**
+ * Superclass for protocol buffer message builders.
+ *
+ * <p>Builders are resettable so a thread can keep one around and reuse it; {@link #build()} copies
+ * what was set into a new message, after which {@link #reset()} leaves that message untouched.
+ */
 public abstract class MessageBuilder<T, B extends MessageBuilder<T, B>> {
-  // Lazily-instantiated buffer and writer of this message's unknown fields.
+  // Unknown fields while there is a single chunk of them, which is kept as is.
+  ByteString unknownFields;
+  // Lazily-instantiated buffer and writer once more than one chunk was added. Both are kept across
+  // resets.
   Buffer unknownFieldsBuffer;
   ProtoWriter unknownFieldsWriter;
 
@@ -18,12 +26,12 @@ public abstract class MessageBuilder<T, B extends MessageBuilder<T, B>> {
 
   public final MessageBuilder<T, B> addUnknownFields(ByteString unknownFields) {
     if (unknownFields.size() > 0) {
-      if (unknownFieldsWriter == null) {
-        unknownFieldsBuffer = new Buffer();
-        unknownFieldsWriter = new ProtoWriter(unknownFieldsBuffer);
+      if (this.unknownFields == null && isUnknownFieldsBufferEmpty()) {
+        this.unknownFields = unknownFields;
+        return this;
       }
       try {
-        unknownFieldsWriter.writeBytes(unknownFields);
+        unknownFieldsWriter().writeBytes(unknownFields);
       } catch (IOException e) {
         throw new AssertionError();
       }
@@ -33,13 +41,10 @@ public abstract class MessageBuilder<T, B extends MessageBuilder<T, B>> {
 
   public final MessageBuilder<T, B> addUnknownField(
       int tag, FieldEncoding fieldEncoding, Object value) {
-    if (unknownFieldsWriter == null) {
-      unknownFieldsBuffer = new Buffer();
-      unknownFieldsWriter = new ProtoWriter(unknownFieldsBuffer);
-    }
     try {
+      ProtoWriter writer = unknownFieldsWriter();
       ProtoAdapter<Object> protoAdapter = (ProtoAdapter<Object>) fieldEncoding.rawProtoAdapter();
-      protoAdapter.encodeWithTag(unknownFieldsWriter, tag, value);
+      protoAdapter.encodeWithTag(writer, tag, value);
     } catch (IOException e) {
       throw new AssertionError();
     }
@@ -47,8 +52,10 @@ public abstract class MessageBuilder<T, B extends MessageBuilder<T, B>> {
   }
 
   public final MessageBuilder<T, B> clearUnknownFields() {
-    unknownFieldsWriter = null;
-    unknownFieldsBuffer = null;
+    unknownFields = null;
+    if (unknownFieldsBuffer != null) {
+      unknownFieldsBuffer.clear();
+    }
     return this;
   }
 
@@ -57,11 +64,40 @@ public abstract class MessageBuilder<T, B extends MessageBuilder<T, B>> {
    * message has no unknown fields.
    */
   public final ByteString buildUnknownFields() {
-    return unknownFieldsBuffer != null
-        ? unknownFieldsBuffer.clone().readByteString()
-        : ByteString.EMPTY;
+    if (isUnknownFieldsBufferEmpty()) {
+      return unknownFields != null ? unknownFields : ByteString.EMPTY;
+    }
+    return unknownFieldsBuffer.clone().readByteString();
+  }
+
+  /** Clears every field and the unknown fields so this builder can be used again. */
+  @SuppressWarnings("unchecked")
+  public final B reset() {
+    clearUnknownFields();
+    clearFields();
+    return (B) this;
   }
 
+  /** Sets every field back to its default. */
+  protected abstract void clearFields();
+
   /** Returns a Message based on the fields that set in this builder. */
   public abstract T build();
+
+  private boolean isUnknownFieldsBufferEmpty() {
+    return unknownFieldsBuffer == null || unknownFieldsBuffer.size() == 0;
+  }
+
+  // Moves the pending single chunk, if any, into the buffer and returns its writer.
+  private ProtoWriter unknownFieldsWriter() throws IOException {
+    if (unknownFieldsWriter == null) {
+      unknownFieldsBuffer = new Buffer();
+      unknownFieldsWriter = new ProtoWriter(unknownFieldsBuffer);
+    }
+    if (unknownFields != null) {
+      unknownFieldsWriter.writeBytes(unknownFields);
+      unknownFields = null;
+    }
+    return unknownFieldsWriter;
+  }
 }
@@ -21,6 +21,8 @@ import java.util.stream.Collectors;
 /** Generates a protocol buffer schema ".proto" from a model schema. */
 @SuppressWarnings("all")
 public class SchemaExporter {
+  /** Java package of the messages BigDecimal, Duration and date fields are written as. */
+  static final String WIRE_TYPES_PACKAGE = "run.mojo.wire";
 
   private File outputDir;
   private Output output;
@@ -45,7 +47,7 @@ public class SchemaExporter {
   public static SchemaExporter create(File outputDir, ReflectionSchema registry, Output output) {
     SchemaExporter schema = new SchemaExporter();
     schema.outputDir = outputDir;
-    schema.registry = registry;
+    schema.registry = registry.resolveAll();
     schema.output = output;
     return schema;
   }
@@ -142,8 +144,9 @@ public class SchemaExporter {
           return ProtoType.get("UNKNOWN");
       }
     } else if (descriptor instanceof BigDecimalDesc) {
-      BigDecimalDesc d = (BigDecimalDesc) descriptor;
-      return ProtoType.STRING;
+      // See run.mojo.wire.codec.Decimals.
+      file.usesWireTypes = true;
+      return ProtoType.get(protoNameOf(WIRE_TYPES_PACKAGE) + ".Decimal");
     } else if (descriptor instanceof ListDesc) {
       ListDesc d = (ListDesc) descriptor;
       return of(file, d.component);
@@ -166,11 +169,22 @@ public class SchemaExporter {
       BytesDesc d = (BytesDesc) descriptor;
       return ProtoType.BYTES;
     } else if (descriptor instanceof DurationDesc) {
-      DurationDesc d = (DurationDesc) descriptor;
-      return ProtoType.STRING;
+      // See run.mojo.wire.codec.Durations.
+      file.usesWireTypes = true;
+      return ProtoType.get(protoNameOf(WIRE_TYPES_PACKAGE) + ".Duration");
     } else if (descriptor instanceof DateDesc) {
-      DateDesc d = (DateDesc) descriptor;
-      return ProtoType.STRING;
+      // See run.mojo.wire.codec.Dates and its siblings.
+      switch (descriptor.javaType) {
+        case LOCAL_DATE_TIME:
+          file.usesWireTypes = true;
+          return ProtoType.get(protoNameOf(WIRE_TYPES_PACKAGE) + ".Timestamp");
+        case ZONED_DATE:
+          file.usesWireTypes = true;
+          return ProtoType.get(protoNameOf(WIRE_TYPES_PACKAGE) + ".ZonedTimestamp");
+        default:
+          // Epoch millis of a Date, epoch day of a LocalDate.
+          return ProtoType.SINT64;
+      }
     } else {
       return ProtoType.get("UNKNOWN");
     }
@@ -199,6 +213,10 @@ public class SchemaExporter {
         });
 
     files.values().forEach(PbFile::resolve);
+    final boolean wireTypes = files.values().stream().anyMatch(f -> f.usesWireTypes);
+    if (wireTypes) {
+      writeWireTypes();
+    }
 
     output.includeSelfImport = true;
     final Writer writer = new Writer(output, this);
@@ -233,6 +251,9 @@ public class SchemaExporter {
       //            typeArgs.add("--compact");
 
       files.values().forEach(f -> args.add(f.protoPath.toAbsolutePath().toString()));
+      if (wireTypes) {
+        args.add(wireTypesPath().toAbsolutePath().toString());
+      }
 
       try {
         WireCompiler.main(args.toArray(new String[0]));
@@ -244,6 +265,58 @@ public class SchemaExporter {
     System.out.println("done");
   }
 
+  private Path wireTypesPath() {
+    return Paths.get(outputDir.getAbsolutePath(), originalPkgToProtoFile(WIRE_TYPES_PACKAGE));
+  }
+
+  /** Writes the messages BigDecimal, Duration and date fields refer to. */
+  private void writeWireTypes() {
+    final String schema =
+        "syntax = \"proto2\";\n"
+            + "\n"
+            + "package "
+            + protoNameOf(WIRE_TYPES_PACKAGE)
+            + ";\n"
+            + "\n"
+            + "// unscaled * 10^-scale. The unscaled value is in unscaled_bytes, big-endian two's\n"
+            + "// complement, when it doesn't fit in 18 digits.\n"
+            + "message Decimal {\n"
+            + "    optional sint32 scale = 1;\n"
+            + "    optional sint64 unscaled = 2;\n"
+            + "    optional bytes unscaled_bytes = 3;\n"
+            + "}\n"
+            + "\n"
+            + "// Same as google.protobuf.Duration.\n"
+            + "message Duration {\n"
+            + "    optional int64 seconds = 1;\n"
+            + "    optional int32 nanos = 2;\n"
+            + "}\n"
+            + "\n"
+            + "// A LocalDateTime at UTC. Same as google.protobuf.Timestamp.\n"
+            + "message Timestamp {\n"
+            + "    optional int64 seconds = 1;\n"
+            + "    optional int32 nanos = 2;\n"
+            + "}\n"
+            + "\n"
+            + "// Within a message, only the first value in each zone has its id. Later ones refer\n"
+            + "// back to it with zone_ref, its index among the zones the message introduced.\n"
+            + "message ZonedTimestamp {\n"
+            + "    optional int64 seconds = 1;\n"
+            + "    optional int32 nanos = 2;\n"
+            + "    optional string zone = 3;\n"
+            + "    optional uint32 zone_ref = 4;\n"
+            + "}\n";
+    try {
+      Files.write(
+          wireTypesPath(),
+          schema.getBytes(Charsets.UTF_8),
+          StandardOpenOption.CREATE,
+          StandardOpenOption.TRUNCATE_EXISTING);
+    } catch (IOException e) {
+      e.printStackTrace();
+    }
+  }
+
   /**
    * @param pkgDesc
    * @return
@@ -332,6 +405,8 @@ public class SchemaExporter {
     PbMessage rootType;
     Path protoPath;
     PackageDesc pkg;
+    // Whether a field is written as one of the wire types, which then need to be imported.
+    boolean usesWireTypes;
 
     ArrayList<PbEnum> enums = new ArrayList<>();
     ArrayList<PbMessage> messages = new ArrayList<>();
@@ -496,14 +571,8 @@ public class SchemaExporter {
               break;
 
             case BIG_DECIMAL:
-              break;
-
             case DURATION:
-              {
-                //                            field.protoType = ProtoType.STRING;
-                //                            field.protoType =
-                // ProtoType.get(field.descriptor.dataClass.getCanonicalName());
-              }
+              // Already resolved to a wire type by of().
               break;
             case BYTES:
               field.protoType = ProtoType.BYTES;
@@ -762,19 +831,19 @@ public class SchemaExporter {
 
     void writeImports(PbFile file, Writer writer) {
       // Write imports.
-      file.pkg
-          .dependsOn(includeSelfImport)
-          .filter(s -> file.schema.isGenerated(s))
-          .map(
-              s ->
-                  writer
-                      .write("import \"")
-                      .write(file.schema.originalPkgToProtoFile(s))
-                      .writeEndLine("\";"))
-          .collect(Collectors.toList())
-          .stream()
-          .findAny()
-          .ifPresent(s -> writer.line());
+      final List<String> imports =
+          file.pkg
+              .dependsOn(includeSelfImport)
+              .filter(s -> file.schema.isGenerated(s))
+              .map(s -> file.schema.originalPkgToProtoFile(s))
+              .collect(Collectors.toList());
+      if (file.usesWireTypes) {
+        imports.add(file.schema.originalPkgToProtoFile(WIRE_TYPES_PACKAGE));
+      }
+      imports.forEach(s -> writer.write("import \"").write(s).writeEndLine("\";"));
+      if (!imports.isEmpty()) {
+        writer.line();
+      }
     }
 
     void writeEnum(PbEnum e, Writer writer) {
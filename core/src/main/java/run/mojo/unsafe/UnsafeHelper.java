@@ -3,25 +3,56 @@ package run.mojo.unsafe;
 import sun.misc.Unsafe;
 
 import java.lang.reflect.Field;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
 
 /** */
 public class UnsafeHelper {
   public static final Unsafe UNSAFE;
+  public static final long BYTE_ARRAY_BASE_OFFSET;
+  public static final long INT_ARRAY_BASE_OFFSET;
+  public static final long LONG_ARRAY_BASE_OFFSET;
+  public static final long FLOAT_ARRAY_BASE_OFFSET;
+  public static final long DOUBLE_ARRAY_BASE_OFFSET;
+  public static final boolean BIG_ENDIAN = ByteOrder.nativeOrder() == ByteOrder.BIG_ENDIAN;
+  private static final long BUFFER_ADDRESS_OFFSET;
 
   static {
     try {
       Field f = Unsafe.class.getDeclaredField("theUnsafe");
       f.setAccessible(true);
       UNSAFE = (Unsafe) f.get(null);
+      BYTE_ARRAY_BASE_OFFSET = UNSAFE.arrayBaseOffset(byte[].class);
+      INT_ARRAY_BASE_OFFSET = UNSAFE.arrayBaseOffset(int[].class);
+      LONG_ARRAY_BASE_OFFSET = UNSAFE.arrayBaseOffset(long[].class);
+      FLOAT_ARRAY_BASE_OFFSET = UNSAFE.arrayBaseOffset(float[].class);
+      DOUBLE_ARRAY_BASE_OFFSET = UNSAFE.arrayBaseOffset(double[].class);
+      BUFFER_ADDRESS_OFFSET = UNSAFE.objectFieldOffset(Buffer.class.getDeclaredField("address"));
     } catch (Throwable e) {
       throw new RuntimeException(e);
     }
   }
 
+  /** Native address of the first byte of a direct buffer, ignoring its position. */
+  public static long directBufferAddress(ByteBuffer buffer) {
+    return UNSAFE.getLong(buffer, BUFFER_ADDRESS_OFFSET);
+  }
+
   public static long objectFieldOffset(Field field) {
     return UNSAFE.objectFieldOffset(field);
   }
 
+  /** New instance of {@code cls} with every field zeroed and no constructor run. */
+  @SuppressWarnings("unchecked")
+  public static <T> T allocateInstance(Class<T> cls) {
+    try {
+      return (T) UNSAFE.allocateInstance(cls);
+    } catch (InstantiationException e) {
+      throw new IllegalArgumentException(cls.getName() + " can't be instantiated", e);
+    }
+  }
+
   public static boolean getBoolean(Object obj, long offset) {
     return UNSAFE.getBoolean(obj, offset);
   }
@@ -0,0 +1,16 @@
+package run.mojo.wire;
+
+import com.squareup.wire.ProtoAdapter;
+
+/**
+ * The generated adapters of one compilation. The annotation processor writes an implementation
+ * for each compilation and lists it in {@code META-INF/services/run.mojo.wire.AdapterIndex}.
+ *
+ * <p>A generated index switches on the class name and returns the {@code PROTO} of the matching
+ * {@code Wire_} class as a direct static reference. Only that {@code Wire_} class is loaded, and
+ * no reflection is used.
+ */
+public interface AdapterIndex {
+  /** Adapter generated for {@code cls}, or null if this index doesn't hold one. */
+  ProtoAdapter<?> proto(Class<?> cls);
+}
@@ -0,0 +1,69 @@
+package run.mojo.wire;
+
+import java.util.Arrays;
+
+/**
+ * Set of field tags to decode. Passed to {@link WireProtoAdapter#decode(run.mojo.wire.codec.WireReader,
+ * FieldMask)} so that every other field is skipped by its length instead of being read.
+ *
+ * <p>Tags below 64, which is nearly all of them, are tested against a single bit set.
+ */
+public final class FieldMask {
+  /** Mask that keeps every field. */
+  public static final FieldMask ALL = new FieldMask(-1L, null);
+
+  private final long low;
+  // Sorted tags of 64 and above, null for ALL.
+  private final int[] high;
+
+  private FieldMask(long low, int[] high) {
+    this.low = low;
+    this.high = high;
+  }
+
+  public static FieldMask of(int... tags) {
+    long low = 0;
+    int[] high = new int[tags.length];
+    int highCount = 0;
+    for (int tag : tags) {
+      if (tag <= 0) {
+        throw new IllegalArgumentException("tag " + tag + " is not a valid field tag");
+      }
+      if (tag < 64) {
+        low |= 1L << tag;
+      } else {
+        high[highCount++] = tag;
+      }
+    }
+    high = Arrays.copyOf(high, highCount);
+    Arrays.sort(high);
+    return new FieldMask(low, high);
+  }
+
+  public boolean contains(int tag) {
+    if (tag < 64) {
+      return tag >= 0 && (low & (1L << tag)) != 0;
+    }
+    return high == null || Arrays.binarySearch(high, tag) >= 0;
+  }
+
+  @Override
+  public String toString() {
+    if (high == null) {
+      return "FieldMask[ALL]";
+    }
+    final StringBuilder sb = new StringBuilder("FieldMask[");
+    for (int tag = 1; tag < 64; tag++) {
+      if ((low & (1L << tag)) != 0) {
+        sb.append(tag).append(',');
+      }
+    }
+    for (int tag : high) {
+      sb.append(tag).append(',');
+    }
+    if (sb.charAt(sb.length() - 1) == ',') {
+      sb.setLength(sb.length() - 1);
+    }
+    return sb.append(']').toString();
+  }
+}
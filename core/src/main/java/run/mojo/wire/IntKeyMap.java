@@ -0,0 +1,258 @@
+package run.mojo.wire;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * Map with int keys held unboxed in an open-addressed table. Generated codecs decode map fields
+ * keyed by int32, sint32 and the like into one, and read and write it through {@link #put(int,
+ * Object)} and the slot cursor, none of which allocate per entry. It is still a {@link Map}, so
+ * it can be assigned to a {@code Map<Integer, V>} field.
+ *
+ * <p>Values can't be null, which is what an empty slot holds. Iteration follows the table rather
+ * than insertion order, and iterators don't support remove.
+ */
+@SuppressWarnings("unchecked")
+public final class IntKeyMap<V> extends AbstractMap<Integer, V> {
+  private static final int MIN_CAPACITY = 8;
+
+  private int[] keys;
+  private Object[] values;
+  private int mask;
+  private int size;
+
+  public IntKeyMap() {
+    this(0);
+  }
+
+  /** @param expected number of entries to make room for */
+  public IntKeyMap(int expected) {
+    allocate(capacityFor(expected));
+  }
+
+  /** Puts into {@code map}, without boxing {@code key} when it is an IntKeyMap. */
+  public static <V> void putUnboxed(Map<Integer, V> map, int key, V value) {
+    if (map instanceof IntKeyMap) {
+      ((IntKeyMap<V>) map).put(key, value);
+    } else {
+      map.put(key, value);
+    }
+  }
+
+  public V get(int key) {
+    final int slot = find(key);
+    return slot >= 0 ? valueAt(slot) : null;
+  }
+
+  public boolean containsKey(int key) {
+    return find(key) >= 0;
+  }
+
+  public V put(int key, V value) {
+    if (value == null) {
+      throw new NullPointerException("value == null");
+    }
+    int slot = hash(key) & mask;
+    Object existing;
+    while ((existing = values[slot]) != null) {
+      if (keys[slot] == key) {
+        values[slot] = value;
+        return (V) existing;
+      }
+      slot = (slot + 1) & mask;
+    }
+    keys[slot] = key;
+    values[slot] = value;
+    if (++size > maxSize(values.length)) {
+      rehash(values.length << 1);
+    }
+    return null;
+  }
+
+  public V remove(int key) {
+    int slot = find(key);
+    if (slot < 0) {
+      return null;
+    }
+    final V removed = valueAt(slot);
+    size--;
+    // Shift later entries of the probe sequence back, so lookups never stop at the gap.
+    int next = slot;
+    while (true) {
+      next = (next + 1) & mask;
+      if (values[next] == null) {
+        break;
+      }
+      final int home = hash(keys[next]) & mask;
+      if (((next - home) & mask) >= ((next - slot) & mask)) {
+        keys[slot] = keys[next];
+        values[slot] = values[next];
+        slot = next;
+      }
+    }
+    values[slot] = null;
+    return removed;
+  }
+
+  /**
+   * Slot of the entry after {@code slot}, or -1 when there are no more. Pass -1 to get the first.
+   *
+   * <pre>
+   * for (int i = map.nextSlot(-1); i >= 0; i = map.nextSlot(i)) {
+   *   use(map.keyAt(i), map.valueAt(i));
+   * }
+   * </pre>
+   */
+  public int nextSlot(int slot) {
+    for (int i = slot + 1; i < values.length; i++) {
+      if (values[i] != null) {
+        return i;
+      }
+    }
+    return -1;
+  }
+
+  public int keyAt(int slot) {
+    return keys[slot];
+  }
+
+  public V valueAt(int slot) {
+    return (V) values[slot];
+  }
+
+  @Override
+  public int size() {
+    return size;
+  }
+
+  @Override
+  public void clear() {
+    if (size > 0) {
+      Arrays.fill(values, null);
+      size = 0;
+    }
+  }
+
+  @Override
+  public V get(Object key) {
+    return key instanceof Integer ? get(((Integer) key).intValue()) : null;
+  }
+
+  @Override
+  public boolean containsKey(Object key) {
+    return key instanceof Integer && containsKey(((Integer) key).intValue());
+  }
+
+  @Override
+  public V put(Integer key, V value) {
+    return put(key.intValue(), value);
+  }
+
+  @Override
+  public V remove(Object key) {
+    return key instanceof Integer ? remove(((Integer) key).intValue()) : null;
+  }
+
+  @Override
+  public Set<Entry<Integer, V>> entrySet() {
+    return new AbstractSet<Entry<Integer, V>>() {
+      @Override
+      public Iterator<Entry<Integer, V>> iterator() {
+        return new Iterator<Entry<Integer, V>>() {
+          private int next = nextSlot(-1);
+
+          @Override
+          public boolean hasNext() {
+            return next >= 0;
+          }
+
+          @Override
+          public Entry<Integer, V> next() {
+            if (next < 0) {
+              throw new NoSuchElementException();
+            }
+            final Entry<Integer, V> entry = new SlotEntry(next);
+            next = nextSlot(next);
+            return entry;
+          }
+        };
+      }
+
+      @Override
+      public int size() {
+        return size;
+      }
+    };
+  }
+
+  private int find(int key) {
+    int slot = hash(key) & mask;
+    while (values[slot] != null) {
+      if (keys[slot] == key) {
+        return slot;
+      }
+      slot = (slot + 1) & mask;
+    }
+    return -1;
+  }
+
+  private void rehash(int capacity) {
+    final int[] oldKeys = keys;
+    final Object[] oldValues = values;
+    allocate(capacity);
+    for (int i = 0; i < oldValues.length; i++) {
+      if (oldValues[i] != null) {
+        int slot = hash(oldKeys[i]) & mask;
+        while (values[slot] != null) {
+          slot = (slot + 1) & mask;
+        }
+        keys[slot] = oldKeys[i];
+        values[slot] = oldValues[i];
+      }
+    }
+  }
+
+  private void allocate(int capacity) {
+    keys = new int[capacity];
+    values = new Object[capacity];
+    mask = capacity - 1;
+  }
+
+  // Tables are kept at most three quarters full.
+  private static int maxSize(int capacity) {
+    return capacity - (capacity >>> 2);
+  }
+
+  private static int capacityFor(int expected) {
+    int capacity = MIN_CAPACITY;
+    while (maxSize(capacity) < expected) {
+      capacity <<= 1;
+    }
+    return capacity;
+  }
+
+  // Sequential keys would otherwise fill runs of adjacent slots.
+  private static int hash(int key) {
+    final int h = key * 0x9E3779B9;
+    return h ^ (h >>> 16);
+  }
+
+  // Bound to its map, so never serialized on its own.
+  @SuppressWarnings("serial")
+  private final class SlotEntry extends SimpleEntry<Integer, V> {
+    SlotEntry(int slot) {
+      super(keys[slot], valueAt(slot));
+    }
+
+    @Override
+    public V setValue(V value) {
+      put(getKey().intValue(), value);
+      return super.setValue(value);
+    }
+  }
+}
@@ -32,9 +32,10 @@ public enum JavaKind {
   BIG_DECIMAL,
   DURATION,
 
-  /** */
+  /** {@link Date}. */
   DATE,
   LOCAL_DATE,
+  LOCAL_DATE_TIME,
   ZONED_DATE,
 
   BYTES,
@@ -43,6 +44,8 @@ public enum JavaKind {
   SET,
   QUEUE,
   MAP,
+  /** {@link Lazy} nested message. */
+  LAZY,
   ENUM,
   STRING,
   OBJECT,
@@ -113,17 +116,17 @@ public enum JavaKind {
     if (cls.equals(Duration.class)) {
       return JavaKind.DURATION;
     }
-    if (cls.equals(LocalDate.class)) {
+    if (cls.equals(Date.class)) {
       return JavaKind.DATE;
     }
+    if (cls.equals(LocalDate.class)) {
+      return JavaKind.LOCAL_DATE;
+    }
     if (cls.equals(LocalDateTime.class)) {
-      return JavaKind.DATE;
+      return JavaKind.LOCAL_DATE_TIME;
     }
-    //        if (klass.equals(ZonedDate.class)) {
-    //            return JavaType.DATE;
-    //        }
     if (cls.equals(ZonedDateTime.class)) {
-      return JavaKind.DATE;
+      return JavaKind.ZONED_DATE;
     }
     if (cls.isEnum()) {
       return JavaKind.ENUM;
@@ -151,6 +154,9 @@ public enum JavaKind {
     if (List.class.isAssignableFrom(cls) || Collection.class.isAssignableFrom(cls)) {
       return JavaKind.LIST;
     }
+    if (Lazy.class.equals(cls)) {
+      return JavaKind.LAZY;
+    }
 
     return JavaKind.OBJECT;
   }
@@ -197,6 +203,8 @@ public enum JavaKind {
         return Date.class;
       case LOCAL_DATE:
         return LocalDate.class;
+      case LOCAL_DATE_TIME:
+        return LocalDateTime.class;
       case ZONED_DATE:
         return ZonedDateTime.class;
       case BYTES:
@@ -211,6 +219,8 @@ public enum JavaKind {
         return Queue.class;
       case MAP:
         return Map.class;
+      case LAZY:
+        return Lazy.class;
       case ENUM:
         return Enum.class;
       case STRING:
@@ -276,6 +286,7 @@ public enum JavaKind {
       case LIST:
       case SET:
       case MAP:
+      case LAZY:
       case OBJECT:
         return true;
 
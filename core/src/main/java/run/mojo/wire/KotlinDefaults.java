@@ -0,0 +1,75 @@
+package run.mojo.wire;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.InvocationTargetException;
+import java.util.Arrays;
+
+/**
+ * The synthetic constructor Kotlin adds next to one with default arguments, which generated Java
+ * can't call directly. Each set bit of the masks passed to {@link #newInstance} makes that
+ * parameter take its default; parameters without one take the value passed for them.
+ */
+public final class KotlinDefaults<T> {
+  private static final String MARKER = "kotlin.jvm.internal.DefaultConstructorMarker";
+
+  private final Class<T> type;
+  // Null when no parameter has a default.
+  private final Constructor<T> constructor;
+  private final int parameterCount;
+
+  private KotlinDefaults(Class<T> type, Constructor<T> constructor, int parameterCount) {
+    this.type = type;
+    this.constructor = constructor;
+    this.parameterCount = parameterCount;
+  }
+
+  /** Looks up the defaults constructor of the constructor of {@code type} taking {@code types}. */
+  public static <T> KotlinDefaults<T> of(Class<T> type, Class<?>... types) {
+    final int masks = (types.length + 31) / 32;
+    final Class<?>[] parameters = Arrays.copyOf(types, types.length + masks + 1);
+    Arrays.fill(parameters, types.length, types.length + masks, int.class);
+    Constructor<T> constructor;
+    try {
+      parameters[parameters.length - 1] = Class.forName(MARKER, false, type.getClassLoader());
+      constructor = type.getDeclaredConstructor(parameters);
+      constructor.setAccessible(true);
+    } catch (ClassNotFoundException | NoSuchMethodException e) {
+      constructor = null;
+    }
+    return new KotlinDefaults<>(type, constructor, types.length);
+  }
+
+  /** Whether any parameter has a default, without which masks make no difference. */
+  public boolean exists() {
+    return constructor != null;
+  }
+
+  /**
+   * Calls the constructor with {@code args}, one per parameter. Bit {@code i % 32} of {@code
+   * masks[i / 32]} stands for parameter {@code i}.
+   */
+  public T newInstance(Object[] args, int... masks) {
+    if (constructor == null) {
+      throw new IllegalStateException(type.getName() + " has no default arguments");
+    }
+    final Object[] all = Arrays.copyOf(args, parameterCount + masks.length + 1);
+    for (int i = 0; i < masks.length; i++) {
+      all[parameterCount + i] = masks[i];
+    }
+    try {
+      return constructor.newInstance(all);
+    } catch (InvocationTargetException e) {
+      // E.g. Kotlin's own null checks.
+      final Throwable cause = e.getCause();
+      if (cause instanceof RuntimeException) {
+        throw (RuntimeException) cause;
+      }
+      if (cause instanceof Error) {
+        throw (Error) cause;
+      }
+      throw new IllegalStateException("Could not create " + type.getName(), cause);
+    } catch (ReflectiveOperationException e) {
+      throw new IllegalStateException("Could not create " + type.getName(), e);
+    }
+  }
+}
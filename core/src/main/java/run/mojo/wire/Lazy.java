@@ -0,0 +1,95 @@
+package run.mojo.wire;
+
+import com.squareup.wire.ProtoWriter;
+import run.mojo.wire.codec.ByteSlice;
+import run.mojo.wire.codec.SizeStack;
+import run.mojo.wire.codec.WireWriter;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Objects;
+
+/**
+ * A nested message that is decoded the first time it is read.
+ *
+ * <p>Declaring a message field as {@code Lazy<T>} opts it in: the generated adapter keeps the
+ * field's encoded bytes rather than decoding them, and {@link #get()} decodes on first call. Until
+ * then encoding the enclosing message writes the original bytes back out untouched.
+ *
+ * <p>Not thread safe, the same as the messages holding it.
+ */
+public final class Lazy<T> {
+  // Both null once decoded.
+  private WireProtoAdapter<T> adapter;
+  private ByteSlice bytes;
+  private T value;
+
+  private Lazy(WireProtoAdapter<T> adapter, ByteSlice bytes, T value) {
+    this.adapter = adapter;
+    this.bytes = bytes;
+    this.value = value;
+  }
+
+  /** Holds an already decoded message. */
+  public static <T> Lazy<T> of(T value) {
+    return new Lazy<>(null, null, Objects.requireNonNull(value, "value"));
+  }
+
+  /** Holds the encoded bytes of a message for {@code adapter} to decode on first access. */
+  public static <T> Lazy<T> wrap(WireProtoAdapter<T> adapter, ByteSlice bytes) {
+    return new Lazy<>(adapter, bytes, null);
+  }
+
+  /**
+   * Returns the message, decoding it first if needed.
+   *
+   * @throws UncheckedIOException if the held bytes are not a valid message
+   */
+  public T get() {
+    if (bytes != null) {
+      try {
+        value = adapter.decode(bytes.reader());
+      } catch (IOException e) {
+        throw new UncheckedIOException(e);
+      }
+      adapter = null;
+      bytes = null;
+    }
+    return value;
+  }
+
+  /** Whether {@link #get()} has been called, after which the held bytes are dropped. */
+  public boolean isDecoded() {
+    return bytes == null;
+  }
+
+  /** Same as {@link WireProtoAdapter#measure}, using the held bytes if the message is untouched. */
+  public int measure(WireProtoAdapter<T> adapter, SizeStack sizes) {
+    return bytes != null ? bytes.size() : adapter.measure(value, sizes);
+  }
+
+  /** Writes the held bytes, or encodes the message if it has been decoded. */
+  public void encode(WireWriter writer, WireProtoAdapter<T> adapter, SizeStack sizes)
+      throws IOException {
+    if (bytes != null) {
+      bytes.writeTo(writer);
+    } else {
+      adapter.encode(writer, value, sizes);
+    }
+  }
+
+  /** Writes the held bytes, or encodes the message if it has been decoded. */
+  public void encode(ProtoWriter writer, WireProtoAdapter<T> adapter, SizeStack sizes)
+      throws IOException {
+    if (bytes != null) {
+      bytes.writeTo(writer);
+    } else {
+      adapter.encode(writer, value, sizes);
+    }
+  }
+
+  @Override
+  public String toString() {
+    return bytes != null ? "Lazy" + bytes : "Lazy[" + value + "]";
+  }
+}
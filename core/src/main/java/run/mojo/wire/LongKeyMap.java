@@ -0,0 +1,258 @@
+package run.mojo.wire;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * Map with long keys held unboxed in an open-addressed table. Generated codecs decode map fields
+ * keyed by int64, sint64 and the like into one, and read and write it through {@link #put(long,
+ * Object)} and the slot cursor, none of which allocate per entry. It is still a {@link Map}, so
+ * it can be assigned to a {@code Map<Long, V>} field.
+ *
+ * <p>Values can't be null, which is what an empty slot holds. Iteration follows the table rather
+ * than insertion order, and iterators don't support remove.
+ */
+@SuppressWarnings("unchecked")
+public final class LongKeyMap<V> extends AbstractMap<Long, V> {
+  private static final int MIN_CAPACITY = 8;
+
+  private long[] keys;
+  private Object[] values;
+  private int mask;
+  private int size;
+
+  public LongKeyMap() {
+    this(0);
+  }
+
+  /** @param expected number of entries to make room for */
+  public LongKeyMap(int expected) {
+    allocate(capacityFor(expected));
+  }
+
+  /** Puts into {@code map}, without boxing {@code key} when it is a LongKeyMap. */
+  public static <V> void putUnboxed(Map<Long, V> map, long key, V value) {
+    if (map instanceof LongKeyMap) {
+      ((LongKeyMap<V>) map).put(key, value);
+    } else {
+      map.put(key, value);
+    }
+  }
+
+  public V get(long key) {
+    final int slot = find(key);
+    return slot >= 0 ? valueAt(slot) : null;
+  }
+
+  public boolean containsKey(long key) {
+    return find(key) >= 0;
+  }
+
+  public V put(long key, V value) {
+    if (value == null) {
+      throw new NullPointerException("value == null");
+    }
+    int slot = hash(key) & mask;
+    Object existing;
+    while ((existing = values[slot]) != null) {
+      if (keys[slot] == key) {
+        values[slot] = value;
+        return (V) existing;
+      }
+      slot = (slot + 1) & mask;
+    }
+    keys[slot] = key;
+    values[slot] = value;
+    if (++size > maxSize(values.length)) {
+      rehash(values.length << 1);
+    }
+    return null;
+  }
+
+  public V remove(long key) {
+    int slot = find(key);
+    if (slot < 0) {
+      return null;
+    }
+    final V removed = valueAt(slot);
+    size--;
+    // Shift later entries of the probe sequence back, so lookups never stop at the gap.
+    int next = slot;
+    while (true) {
+      next = (next + 1) & mask;
+      if (values[next] == null) {
+        break;
+      }
+      final int home = hash(keys[next]) & mask;
+      if (((next - home) & mask) >= ((next - slot) & mask)) {
+        keys[slot] = keys[next];
+        values[slot] = values[next];
+        slot = next;
+      }
+    }
+    values[slot] = null;
+    return removed;
+  }
+
+  /**
+   * Slot of the entry after {@code slot}, or -1 when there are no more. Pass -1 to get the first.
+   *
+   * <pre>
+   * for (int i = map.nextSlot(-1); i >= 0; i = map.nextSlot(i)) {
+   *   use(map.keyAt(i), map.valueAt(i));
+   * }
+   * </pre>
+   */
+  public int nextSlot(int slot) {
+    for (int i = slot + 1; i < values.length; i++) {
+      if (values[i] != null) {
+        return i;
+      }
+    }
+    return -1;
+  }
+
+  public long keyAt(int slot) {
+    return keys[slot];
+  }
+
+  public V valueAt(int slot) {
+    return (V) values[slot];
+  }
+
+  @Override
+  public int size() {
+    return size;
+  }
+
+  @Override
+  public void clear() {
+    if (size > 0) {
+      Arrays.fill(values, null);
+      size = 0;
+    }
+  }
+
+  @Override
+  public V get(Object key) {
+    return key instanceof Long ? get(((Long) key).longValue()) : null;
+  }
+
+  @Override
+  public boolean containsKey(Object key) {
+    return key instanceof Long && containsKey(((Long) key).longValue());
+  }
+
+  @Override
+  public V put(Long key, V value) {
+    return put(key.longValue(), value);
+  }
+
+  @Override
+  public V remove(Object key) {
+    return key instanceof Long ? remove(((Long) key).longValue()) : null;
+  }
+
+  @Override
+  public Set<Entry<Long, V>> entrySet() {
+    return new AbstractSet<Entry<Long, V>>() {
+      @Override
+      public Iterator<Entry<Long, V>> iterator() {
+        return new Iterator<Entry<Long, V>>() {
+          private int next = nextSlot(-1);
+
+          @Override
+          public boolean hasNext() {
+            return next >= 0;
+          }
+
+          @Override
+          public Entry<Long, V> next() {
+            if (next < 0) {
+              throw new NoSuchElementException();
+            }
+            final Entry<Long, V> entry = new SlotEntry(next);
+            next = nextSlot(next);
+            return entry;
+          }
+        };
+      }
+
+      @Override
+      public int size() {
+        return size;
+      }
+    };
+  }
+
+  private int find(long key) {
+    int slot = hash(key) & mask;
+    while (values[slot] != null) {
+      if (keys[slot] == key) {
+        return slot;
+      }
+      slot = (slot + 1) & mask;
+    }
+    return -1;
+  }
+
+  private void rehash(int capacity) {
+    final long[] oldKeys = keys;
+    final Object[] oldValues = values;
+    allocate(capacity);
+    for (int i = 0; i < oldValues.length; i++) {
+      if (oldValues[i] != null) {
+        int slot = hash(oldKeys[i]) & mask;
+        while (values[slot] != null) {
+          slot = (slot + 1) & mask;
+        }
+        keys[slot] = oldKeys[i];
+        values[slot] = oldValues[i];
+      }
+    }
+  }
+
+  private void allocate(int capacity) {
+    keys = new long[capacity];
+    values = new Object[capacity];
+    mask = capacity - 1;
+  }
+
+  // Tables are kept at most three quarters full.
+  private static int maxSize(int capacity) {
+    return capacity - (capacity >>> 2);
+  }
+
+  private static int capacityFor(int expected) {
+    int capacity = MIN_CAPACITY;
+    while (maxSize(capacity) < expected) {
+      capacity <<= 1;
+    }
+    return capacity;
+  }
+
+  // Sequential keys would otherwise fill runs of adjacent slots.
+  private static int hash(long key) {
+    final long h = key * 0x9E3779B97F4A7C15L;
+    return (int) (h ^ (h >>> 32));
+  }
+
+  // Bound to its map, so never serialized on its own.
+  @SuppressWarnings("serial")
+  private final class SlotEntry extends SimpleEntry<Long, V> {
+    SlotEntry(int slot) {
+      super(keys[slot], valueAt(slot));
+    }
+
+    @Override
+    public V setValue(V value) {
+      put(getKey().longValue(), value);
+      return super.setValue(value);
+    }
+  }
+}
@@ -0,0 +1,48 @@
+package run.mojo.wire;
+
+import java.util.ArrayDeque;
+import java.util.function.Supplier;
+
+/**
+ * Small per-thread pool of messages to decode into with {@link WireProtoAdapter#decodeInto}.
+ *
+ * <pre>{@code
+ * MessagePool<Order> pool = new MessagePool<>(Wire_Order.PROTO::newInstance, 4);
+ * Order order = Wire_Order.PROTO.decodeInto(bytes, pool.acquire());
+ * ...
+ * pool.release(order);
+ * }</pre>
+ *
+ * <p>Messages are only handed back to the thread that released them, so no locking is involved.
+ */
+public final class MessagePool<T> {
+  private final Supplier<T> factory;
+  private final int capacity;
+  private final ThreadLocal<ArrayDeque<T>> free = ThreadLocal.withInitial(ArrayDeque::new);
+
+  /**
+   * @param factory creates a message when the calling thread has none free
+   * @param capacity most messages kept per thread, beyond which released messages are dropped
+   */
+  public MessagePool(Supplier<T> factory, int capacity) {
+    if (capacity < 0) {
+      throw new IllegalArgumentException("capacity < 0: " + capacity);
+    }
+    this.factory = factory;
+    this.capacity = capacity;
+  }
+
+  /** Returns a free message, or a new one. */
+  public T acquire() {
+    final T value = free.get().pollFirst();
+    return value != null ? value : factory.get();
+  }
+
+  /** Hands {@code value} back for reuse. It must not be used again by the caller. */
+  public void release(T value) {
+    final ArrayDeque<T> messages = free.get();
+    if (messages.size() < capacity) {
+      messages.addFirst(value);
+    }
+  }
+}
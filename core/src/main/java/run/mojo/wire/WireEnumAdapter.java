@@ -0,0 +1,175 @@
+package run.mojo.wire;
+
+import com.squareup.wire.FieldEncoding;
+import com.squareup.wire.ProtoAdapter;
+import com.squareup.wire.ProtoReader;
+import com.squareup.wire.ProtoWriter;
+import run.mojo.Wire;
+import run.mojo.wire.codec.Scalars;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * Adapter of an enum whose constants are written as explicit tags rather than ordinals, so that
+ * constants can be reordered without changing the wire format.
+ *
+ * <p>Encoding looks the tag up by ordinal. Decoding looks the constant up by tag in a table
+ * indexed by the tag itself when tags are dense, and in an open-addressed hash table otherwise.
+ * Either way it is a single array load in the common case.
+ */
+public class WireEnumAdapter<E extends Enum<E>> extends ProtoAdapter<E> {
+  // Tables indexed directly by tag are used while they'd be no more than this many times larger
+  // than the number of constants.
+  private static final int DENSE_FACTOR = 4;
+  private static final int DENSE_SLACK = 16;
+
+  private final Class<E> type;
+  // Tag of each constant, by ordinal.
+  private final int[] tags;
+  // Constants by tag when dense, otherwise null.
+  private final E[] byTag;
+  // Open-addressed table of tags and their constants when sparse. Empty slots hold null.
+  private final int[] keys;
+  private final E[] values;
+  private final int mask;
+
+  /** @param tags tag of each constant in declaration order */
+  public WireEnumAdapter(Class<E> type, int... tags) {
+    super(FieldEncoding.VARINT, type);
+    final E[] constants = type.getEnumConstants();
+    if (tags.length != constants.length) {
+      throw new IllegalArgumentException(
+          type.getName() + " has " + constants.length + " constants but " + tags.length + " tags");
+    }
+    this.type = type;
+    this.tags = tags.clone();
+
+    int max = -1;
+    boolean negative = false;
+    for (int tag : tags) {
+      negative |= tag < 0;
+      max = Math.max(max, tag);
+    }
+
+    if (!negative && max < constants.length * DENSE_FACTOR + DENSE_SLACK) {
+      byTag = Arrays.copyOf(constants, max + 1);
+      Arrays.fill(byTag, null);
+      for (int i = 0; i < constants.length; i++) {
+        if (byTag[tags[i]] != null) {
+          throw duplicate(tags[i]);
+        }
+        byTag[tags[i]] = constants[i];
+      }
+      keys = null;
+      values = null;
+      mask = 0;
+    } else {
+      byTag = null;
+      // At most half full, so probe sequences stay short.
+      final int size = Integer.highestOneBit(Math.max(constants.length, 1) * 2 - 1) << 1;
+      keys = new int[size];
+      values = Arrays.copyOf(constants, size);
+      Arrays.fill(values, null);
+      mask = size - 1;
+      for (int i = 0; i < constants.length; i++) {
+        int slot = hash(tags[i]) & mask;
+        while (values[slot] != null) {
+          if (keys[slot] == tags[i]) {
+            throw duplicate(tags[i]);
+          }
+          slot = (slot + 1) & mask;
+        }
+        keys[slot] = tags[i];
+        values[slot] = constants[i];
+      }
+    }
+  }
+
+  /**
+   * Tag of an enum constant: its explicit {@link Wire#tag()}, otherwise one more than the tag of
+   * the constant before it, {@code previous}, which is 0 for the first. The modeler, the annotation
+   * processor and {@link run.mojo.wire.type.ReflectionSchema} all number constants with this.
+   */
+  public static int tagOf(Wire wire, int previous) {
+    return wire != null && wire.tag() > 0 ? wire.tag() : previous + 1;
+  }
+
+  /** Tags of the constants of {@code type} in declaration order, numbered by {@link #tagOf}. */
+  public static int[] tagsOf(Class<?> type) {
+    final Object[] constants = type.getEnumConstants();
+    final int[] tags = new int[constants.length];
+    int previous = 0;
+    for (int i = 0; i < tags.length; i++) {
+      try {
+        final String name = ((Enum<?>) constants[i]).name();
+        previous = tagOf(type.getField(name).getAnnotation(Wire.class), previous);
+      } catch (NoSuchFieldException e) {
+        throw new IllegalStateException(e);
+      }
+      tags[i] = previous;
+    }
+    return tags;
+  }
+
+  /** Tag {@code value} is written as. */
+  public final int tag(E value) {
+    return tags[value.ordinal()];
+  }
+
+  /** Constant written as {@code tag}, or null if there is none. */
+  public final E fromTag(int tag) {
+    if (byTag != null) {
+      return tag >= 0 && tag < byTag.length ? byTag[tag] : null;
+    }
+    int slot = hash(tag) & mask;
+    E value;
+    while ((value = values[slot]) != null) {
+      if (keys[slot] == tag) {
+        return value;
+      }
+      slot = (slot + 1) & mask;
+    }
+    return null;
+  }
+
+  /** Same as {@link #fromTag(int)}, but throws if there is no constant for {@code tag}. */
+  public final E decodeTag(int tag) {
+    final E value = fromTag(tag);
+    if (value == null) {
+      throw new IllegalArgumentException("unknown enum tag " + tag + " for " + type.getName());
+    }
+    return value;
+  }
+
+  @Override
+  public int encodedSize(E value) {
+    final int tag = tag(value);
+    // Negative values are sign extended to ten bytes, same as int32.
+    return tag >= 0 ? Scalars.varint32Size(tag) : 10;
+  }
+
+  @Override
+  public void encode(ProtoWriter writer, E value) throws IOException {
+    final int tag = tag(value);
+    if (tag >= 0) {
+      writer.writeVarint32(tag);
+    } else {
+      writer.writeVarint64(tag);
+    }
+  }
+
+  @Override
+  public E decode(ProtoReader reader) throws IOException {
+    return decodeTag(reader.readVarint32());
+  }
+
+  private IllegalArgumentException duplicate(int tag) {
+    return new IllegalArgumentException(
+        type.getName() + " has more than one constant tagged " + tag);
+  }
+
+  private static int hash(int tag) {
+    return tag * 0x9E3779B9 >>> 16;
+  }
+}
@@ -0,0 +1,66 @@
+package run.mojo.wire;
+
+import com.squareup.moshi.JsonAdapter;
+import com.squareup.moshi.JsonDataException;
+import com.squareup.moshi.JsonReader;
+import okio.Buffer;
+import okio.BufferedSink;
+import okio.ByteString;
+import run.mojo.wire.codec.JsonSink;
+
+import java.io.IOException;
+
+/**
+ * Base class of generated JSON adapters.
+ *
+ * <p>Generated adapters read through {@link JsonReader.Options} and write through either Moshi's
+ * {@link com.squareup.moshi.JsonWriter}, so they compose with any other Moshi adapter, or a {@link
+ * JsonSink} with every field name encoded ahead of time, which is what {@link #write} uses. Moshi's
+ * writer has no way to take an encoded name, so only the {@link JsonSink} path skips escaping and
+ * encoding the names on every write.
+ */
+public abstract class WireJsonAdapter<T> extends JsonAdapter<T> {
+
+  /** Same as {@link #toJson(com.squareup.moshi.JsonWriter, Object)}, writing a {@link JsonSink}. */
+  public abstract void toJson(JsonSink writer, T value) throws IOException;
+
+  /** Writes {@code value} as compact JSON. */
+  public void write(BufferedSink sink, T value) throws IOException {
+    toJson(JsonSink.of(sink), value);
+  }
+
+  /** Returns {@code value} as compact UTF-8 JSON. */
+  public ByteString toJsonUtf8(T value) {
+    final Buffer buffer = new Buffer();
+    try {
+      write(buffer, value);
+    } catch (IOException e) {
+      throw new AssertionError(e);
+    }
+    return buffer.readByteString();
+  }
+
+  /** Reads a base64 string. */
+  protected static ByteString nextBase64(JsonReader reader) throws IOException {
+    final String value = reader.nextString();
+    final ByteString result = ByteString.decodeBase64(value);
+    if (result == null) {
+      throw new JsonDataException(
+          "Expected base64 but was " + value + " at path " + reader.getPath());
+    }
+    return result;
+  }
+
+  /** Reads an enum constant by name. */
+  protected static <E extends Enum<E>> E nextEnum(JsonReader reader, Class<E> type)
+      throws IOException {
+    final String value = reader.nextString();
+    try {
+      return Enum.valueOf(type, value);
+    } catch (IllegalArgumentException e) {
+      throw new JsonDataException(
+          "Expected one of " + type.getSimpleName() + " but was " + value + " at path "
+              + reader.getPath());
+    }
+  }
+}
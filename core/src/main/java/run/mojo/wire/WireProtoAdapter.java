@@ -2,11 +2,178 @@ package run.mojo.wire;
 
 import com.squareup.wire.FieldEncoding;
 import com.squareup.wire.ProtoAdapter;
+import com.squareup.wire.ProtoWriter;
+import run.mojo.wire.codec.SizeStack;
+import run.mojo.wire.codec.WireReader;
+import run.mojo.wire.codec.WireWriter;
 
-/** */
+import java.io.IOException;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+
+/**
+ * Base class of generated message adapters.
+ *
+ * <p>Encoding is done in two passes over the message tree. {@link #measure} sizes every nested
+ * message exactly once and records the lengths on a {@link SizeStack}, then {@link
+ * #encode(ProtoWriter, Object, SizeStack)} writes the bytes reading those lengths back. The output
+ * is identical to what {@link ProtoAdapter#encodeWithTag} produces for each nested message.
+ *
+ * <p>Every generated adapter can also read and write {@code byte[]} and {@link ByteBuffer} through
+ * {@link WireReader} and {@link WireWriter} without touching Okio.
+ *
+ * <p>{@link Lazy} fields decoded from a {@code byte[]} or heap {@link ByteBuffer} keep referencing
+ * that array, so it must not be reused while the decoded message is.
+ */
 public abstract class WireProtoAdapter<T> extends ProtoAdapter<T> {
+  private static final byte[] EMPTY = new byte[0];
+
 
   public WireProtoAdapter(FieldEncoding fieldEncoding, Class<T> javaType) {
     super(fieldEncoding, javaType);
   }
+
+  /**
+   * Returns the encoded size of {@code value}. The length of each nested message is recorded on
+   * {@code sizes} in the order {@link #encode(ProtoWriter, Object, SizeStack)} will need them.
+   */
+  public abstract int measure(T value, SizeStack sizes);
+
+  /** Writes {@code value} using the lengths a prior {@link #measure} recorded on {@code sizes}. */
+  public abstract void encode(ProtoWriter writer, T value, SizeStack sizes) throws IOException;
+
+  /** Same as {@link #encode(ProtoWriter, Object, SizeStack)}, writing to a {@link WireWriter}. */
+  public abstract void encode(WireWriter writer, T value, SizeStack sizes) throws IOException;
+
+  /** Reads a message from a {@link WireReader}. */
+  public abstract T decode(WireReader reader) throws IOException;
+
+  /**
+   * Reads a message into {@code target} instead of a new instance and returns it. Every decoded
+   * field is overwritten and fields missing from the input are reset to what {@link
+   * #decode(WireReader)} leaves them holding. The target's lists, sets, maps, primitive arrays and
+   * nested messages, including the messages in its lists, are cleared and refilled rather than
+   * replaced, missing ones too, so a consumer that reuses its messages, e.g. through a {@link
+   * MessagePool}, barely allocates once it reaches a steady state.
+   *
+   * <p>Collections held by {@code target} must be mutable, and nothing else should be holding on
+   * to them or to its nested messages.
+   *
+   * <p>Adapters that can't refill a message, e.g. one only its constructor can build, return a
+   * new one and leave {@code target} alone.
+   */
+  public T decodeInto(WireReader reader, T target) throws IOException {
+    return decode(reader);
+  }
+
+  /** Returns a new, empty message to decode into, the one decoding no bytes at all gives. */
+  public T newInstance() {
+    try {
+      return decode(WireReader.of(EMPTY));
+    } catch (IOException e) {
+      throw new AssertionError(e);
+    }
+  }
+
+  /**
+   * Reads only the fields in {@code mask}. Every other field is skipped over without being read
+   * and is left unset on the result. The mask applies to this message's own fields; nested
+   * messages that are kept are decoded whole.
+   *
+   * <p>Adapters that can't project decode every field.
+   */
+  public T decode(WireReader reader, FieldMask mask) throws IOException {
+    return decode(reader);
+  }
+
+  @Override
+  public int encodedSize(T value) {
+    final SizeStack sizes = SizeStack.get();
+    final long token = sizes.begin();
+    try {
+      return measure(value, sizes);
+    } finally {
+      sizes.end(token);
+    }
+  }
+
+  @Override
+  public void encode(ProtoWriter writer, T value) throws IOException {
+    final SizeStack sizes = SizeStack.get();
+    final long token = sizes.begin();
+    try {
+      measure(value, sizes);
+      encode(writer, value, sizes);
+    } finally {
+      sizes.end(token);
+    }
+  }
+
+  /** Encodes {@code value} into an array of exactly its encoded size. */
+  public byte[] encodeToArray(T value) {
+    final SizeStack sizes = SizeStack.get();
+    final long token = sizes.begin();
+    try {
+      final byte[] bytes = new byte[measure(value, sizes)];
+      encode(WireWriter.of(bytes), value, sizes);
+      return bytes;
+    } catch (IOException e) {
+      throw new AssertionError(e);
+    } finally {
+      sizes.end(token);
+    }
+  }
+
+  /**
+   * Encodes {@code value} at the buffer's position and advances it past the message. Nothing is
+   * written if the message does not fit in the buffer's remaining space.
+   *
+   * @return the number of bytes written
+   * @throws BufferOverflowException if the message does not fit
+   */
+  public int encode(ByteBuffer buffer, T value) {
+    final SizeStack sizes = SizeStack.get();
+    final long token = sizes.begin();
+    try {
+      final int size = measure(value, sizes);
+      if (size > buffer.remaining()) {
+        throw new BufferOverflowException();
+      }
+      encode(WireWriter.of(buffer), value, sizes);
+      buffer.position(buffer.position() + size);
+      return size;
+    } catch (IOException e) {
+      throw new AssertionError(e);
+    } finally {
+      sizes.end(token);
+    }
+  }
+
+  public T decode(byte[] bytes, int offset, int length) throws IOException {
+    return decode(WireReader.of(bytes, offset, length));
+  }
+
+  /** Decodes the bytes between the buffer's position and limit, then advances it to the limit. */
+  public T decode(ByteBuffer buffer) throws IOException {
+    final T value = decode(WireReader.of(buffer));
+    buffer.position(buffer.limit());
+    return value;
+  }
+
+  /** Same as {@link #decodeInto(WireReader, Object)}. */
+  public T decodeInto(byte[] bytes, T target) throws IOException {
+    return decodeInto(WireReader.of(bytes), target);
+  }
+
+  /** Same as {@link #decode(WireReader, FieldMask)}. */
+  public T decode(byte[] bytes, FieldMask mask) throws IOException {
+    return decode(WireReader.of(bytes), mask);
+  }
+
+  /** Same as {@link #decode(WireReader, FieldMask)}, advancing the buffer to its limit. */
+  public T decode(ByteBuffer buffer, FieldMask mask) throws IOException {
+    final T value = decode(WireReader.of(buffer), mask);
+    buffer.position(buffer.limit());
+    return value;
+  }
 }
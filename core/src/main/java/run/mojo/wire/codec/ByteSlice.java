@@ -0,0 +1,99 @@
+package run.mojo.wire.codec;
+
+import com.squareup.wire.ProtoWriter;
+import okio.ByteString;
+
+import java.io.IOException;
+
+/**
+ * A run of encoded bytes held without copying them out of the array they were read from.
+ *
+ * <p>The array is shared, not owned. A slice stays valid as long as whoever supplied the array
+ * leaves it alone.
+ */
+public final class ByteSlice {
+  private final byte[] array;
+  private final int offset;
+  private final int length;
+
+  private ByteSlice(byte[] array, int offset, int length) {
+    this.array = array;
+    this.offset = offset;
+    this.length = length;
+  }
+
+  public static ByteSlice of(byte[] array) {
+    return new ByteSlice(array, 0, array.length);
+  }
+
+  public static ByteSlice of(byte[] array, int offset, int length) {
+    if ((offset | length) < 0 || offset > array.length - length) {
+      throw new IndexOutOfBoundsException(
+          "offset " + offset + ", length " + length + ", size " + array.length);
+    }
+    return new ByteSlice(array, offset, length);
+  }
+
+  public int size() {
+    return length;
+  }
+
+  /** Returns a reader over the slice. */
+  public WireReader reader() {
+    return WireReader.of(array, offset, length);
+  }
+
+  public byte[] toByteArray() {
+    final byte[] copy = new byte[length];
+    System.arraycopy(array, offset, copy, 0, length);
+    return copy;
+  }
+
+  public ByteString toByteString() {
+    return ByteString.of(array, offset, length);
+  }
+
+  /** Writes the bytes as they are, without a tag or length prefix. */
+  public void writeTo(WireWriter writer) {
+    writer.writeRaw(array, offset, length);
+  }
+
+  /** Writes the bytes as they are, without a tag or length prefix. */
+  public void writeTo(ProtoWriter writer) throws IOException {
+    writer.writeBytes(toByteString());
+  }
+
+  @Override
+  public boolean equals(Object o) {
+    if (this == o) {
+      return true;
+    }
+    if (!(o instanceof ByteSlice)) {
+      return false;
+    }
+    final ByteSlice other = (ByteSlice) o;
+    if (length != other.length) {
+      return false;
+    }
+    for (int i = 0; i < length; i++) {
+      if (array[offset + i] != other.array[other.offset + i]) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  @Override
+  public int hashCode() {
+    int result = 1;
+    for (int i = offset, end = offset + length; i < end; i++) {
+      result = 31 * result + array[i];
+    }
+    return result;
+  }
+
+  @Override
+  public String toString() {
+    return "[size=" + length + "]";
+  }
+}
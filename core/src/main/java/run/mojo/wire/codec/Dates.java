@@ -0,0 +1,46 @@
+package run.mojo.wire.codec;
+
+import com.squareup.wire.FieldEncoding;
+import com.squareup.wire.ProtoAdapter;
+import com.squareup.wire.ProtoReader;
+import com.squareup.wire.ProtoWriter;
+
+import java.io.IOException;
+import java.util.Date;
+
+/** {@link Date} codec. A value is written as its epoch millis, a {@code sint64}. */
+public final class Dates {
+  public static final ProtoAdapter<Date> ADAPTER = new Adapter();
+
+  private Dates() {}
+
+  /** Writes {@code value}, without a tag. */
+  public static void write(WireWriter writer, Date value) {
+    writer.writeVarint64(Scalars.encodeZigZag64(value.getTime()));
+  }
+
+  public static Date read(WireReader reader) throws IOException {
+    return new Date(Scalars.decodeZigZag64(reader.readVarint64()));
+  }
+
+  private static final class Adapter extends ProtoAdapter<Date> {
+    Adapter() {
+      super(FieldEncoding.VARINT, Date.class);
+    }
+
+    @Override
+    public int encodedSize(Date value) {
+      return Scalars.varint64Size(Scalars.encodeZigZag64(value.getTime()));
+    }
+
+    @Override
+    public void encode(ProtoWriter writer, Date value) throws IOException {
+      writer.writeVarint64(Scalars.encodeZigZag64(value.getTime()));
+    }
+
+    @Override
+    public Date decode(ProtoReader reader) throws IOException {
+      return new Date(Scalars.decodeZigZag64(reader.readVarint64()));
+    }
+  }
+}
@@ -0,0 +1,175 @@
+package run.mojo.wire.codec;
+
+import com.squareup.wire.FieldEncoding;
+import com.squareup.wire.ProtoAdapter;
+import com.squareup.wire.ProtoReader;
+import com.squareup.wire.ProtoWriter;
+import okio.ByteString;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+
+/**
+ * {@link BigDecimal} codec. A value is written as a small message, {@code run.mojo.wire.Decimal}:
+ *
+ * <pre>
+ * message Decimal {
+ *   optional sint32 scale = 1;
+ *   optional sint64 unscaled = 2;
+ *   optional bytes unscaled_bytes = 3;
+ * }
+ * </pre>
+ *
+ * <p>The unscaled value is a zigzag varint when it has at most 18 digits, which covers amounts and
+ * prices, and its big-endian two's complement bytes otherwise. Neither path goes through a string,
+ * and the varint one never builds a {@link BigInteger}.
+ */
+public final class Decimals {
+  public static final ProtoAdapter<BigDecimal> ADAPTER = new Adapter();
+
+  // Keys are (tag << 3) | wire type.
+  private static final int SCALE_KEY = (1 << 3);
+  private static final int UNSCALED_KEY = (2 << 3);
+  private static final int UNSCALED_BYTES_KEY = (3 << 3) | 2;
+
+  // Unscaled values with up to this many digits always fit in a long.
+  private static final int MAX_COMPACT_PRECISION = 18;
+
+  private Decimals() {}
+
+  /** Size of {@code value}'s fields, not counting the length prefix. */
+  public static int size(BigDecimal value) {
+    final int scale = value.scale();
+    int size = scale != 0 ? 1 + Scalars.varint32Size(Scalars.encodeZigZag32(scale)) : 0;
+    if (isCompact(value)) {
+      final long unscaled = unscaled(value);
+      if (unscaled != 0) {
+        size += 1 + Scalars.varint64Size(Scalars.encodeZigZag64(unscaled));
+      }
+    } else {
+      final int length = value.unscaledValue().bitLength() / 8 + 1;
+      size += 1 + Scalars.varint32Size(length) + length;
+    }
+    return size;
+  }
+
+  /** Writes the length prefix and fields of {@code value}. */
+  public static void write(WireWriter writer, BigDecimal value) {
+    writer.writeVarint32(size(value));
+    final int scale = value.scale();
+    if (scale != 0) {
+      writer.writeVarint32(SCALE_KEY);
+      writer.writeVarint32(Scalars.encodeZigZag32(scale));
+    }
+    if (isCompact(value)) {
+      final long unscaled = unscaled(value);
+      if (unscaled != 0) {
+        writer.writeVarint32(UNSCALED_KEY);
+        writer.writeVarint64(Scalars.encodeZigZag64(unscaled));
+      }
+    } else {
+      writer.writeVarint32(UNSCALED_BYTES_KEY);
+      writer.writeBytes(value.unscaledValue().toByteArray());
+    }
+  }
+
+  /** Reads a value written by {@link #write}, positioned after its tag. */
+  public static BigDecimal read(WireReader reader) throws IOException {
+    final long token = reader.beginMessage();
+    int scale = 0;
+    long unscaled = 0;
+    byte[] bytes = null;
+    for (int tag; (tag = reader.nextTag()) != -1; ) {
+      switch (tag) {
+        case 1:
+          scale = Scalars.decodeZigZag32(reader.readVarint32());
+          break;
+        case 2:
+          unscaled = Scalars.decodeZigZag64(reader.readVarint64());
+          break;
+        case 3:
+          bytes = reader.readByteArray();
+          break;
+        default:
+          reader.skip();
+          break;
+      }
+    }
+    reader.endMessage(token);
+    return bytes != null
+        ? new BigDecimal(new BigInteger(bytes), scale)
+        : BigDecimal.valueOf(unscaled, scale);
+  }
+
+  private static boolean isCompact(BigDecimal value) {
+    return value.precision() <= MAX_COMPACT_PRECISION;
+  }
+
+  // Unscaled value of a compact decimal. Moving the point keeps the value compact, so unlike
+  // unscaledValue() this doesn't allocate a BigInteger.
+  private static long unscaled(BigDecimal value) {
+    final int scale = value.scale();
+    return scale == 0 ? value.longValue() : value.movePointRight(scale).longValue();
+  }
+
+  private static final class Adapter extends ProtoAdapter<BigDecimal> {
+    Adapter() {
+      super(FieldEncoding.LENGTH_DELIMITED, BigDecimal.class);
+    }
+
+    @Override
+    public int encodedSize(BigDecimal value) {
+      return size(value);
+    }
+
+    @Override
+    public void encode(ProtoWriter writer, BigDecimal value) throws IOException {
+      final int scale = value.scale();
+      if (scale != 0) {
+        writer.writeVarint32(SCALE_KEY);
+        writer.writeVarint32(Scalars.encodeZigZag32(scale));
+      }
+      if (isCompact(value)) {
+        final long unscaled = unscaled(value);
+        if (unscaled != 0) {
+          writer.writeVarint32(UNSCALED_KEY);
+          writer.writeVarint64(Scalars.encodeZigZag64(unscaled));
+        }
+      } else {
+        final byte[] bytes = value.unscaledValue().toByteArray();
+        writer.writeVarint32(UNSCALED_BYTES_KEY);
+        writer.writeVarint32(bytes.length);
+        writer.writeBytes(ByteString.of(bytes));
+      }
+    }
+
+    @Override
+    public BigDecimal decode(ProtoReader reader) throws IOException {
+      final long token = reader.beginMessage();
+      int scale = 0;
+      long unscaled = 0;
+      ByteString bytes = null;
+      for (int tag; (tag = reader.nextTag()) != -1; ) {
+        switch (tag) {
+          case 1:
+            scale = Scalars.decodeZigZag32(reader.readVarint32());
+            break;
+          case 2:
+            unscaled = Scalars.decodeZigZag64(reader.readVarint64());
+            break;
+          case 3:
+            bytes = reader.readBytes();
+            break;
+          default:
+            reader.skip();
+            break;
+        }
+      }
+      reader.endMessage(token);
+      return bytes != null
+          ? new BigDecimal(new BigInteger(bytes.toByteArray()), scale)
+          : BigDecimal.valueOf(unscaled, scale);
+    }
+  }
+}
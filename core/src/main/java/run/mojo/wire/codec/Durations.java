@@ -0,0 +1,191 @@
+package run.mojo.wire.codec;
+
+import com.squareup.wire.FieldEncoding;
+import com.squareup.wire.ProtoAdapter;
+import com.squareup.wire.ProtoReader;
+import com.squareup.wire.ProtoWriter;
+
+import java.io.IOException;
+import java.time.Duration;
+
+/**
+ * {@link Duration} codec. A value is written as a small message, {@code run.mojo.wire.Duration},
+ * which has the same layout as {@code google.protobuf.Duration}:
+ *
+ * <pre>
+ * message Duration {
+ *   optional int64 seconds = 1;
+ *   optional int32 nanos = 2;
+ * }
+ * </pre>
+ *
+ * <p>As in the well-known type, the nanos of a negative duration are negative too, whereas {@link
+ * Duration} always keeps them positive.
+ */
+public final class Durations {
+  public static final ProtoAdapter<Duration> ADAPTER = new Adapter();
+
+  // Keys are (tag << 3) | wire type.
+  private static final int SECONDS_KEY = (1 << 3);
+  private static final int NANOS_KEY = (2 << 3);
+
+  private static final int NANOS_PER_SECOND = 1_000_000_000;
+
+  private Durations() {}
+
+  /** Size of {@code value}'s fields, not counting the length prefix. */
+  public static int size(Duration value) {
+    final long seconds = seconds(value);
+    final int nanos = nanos(value);
+    int size = 0;
+    if (seconds != 0) {
+      size += 1 + Scalars.varint64Size(seconds);
+    }
+    if (nanos != 0) {
+      size += 1 + (nanos > 0 ? Scalars.varint32Size(nanos) : 10);
+    }
+    return size;
+  }
+
+  /** Writes the length prefix and fields of {@code value}. */
+  public static void write(WireWriter writer, Duration value) {
+    writer.writeVarint32(size(value));
+    final long seconds = seconds(value);
+    final int nanos = nanos(value);
+    if (seconds != 0) {
+      writer.writeVarint32(SECONDS_KEY);
+      writer.writeVarint64(seconds);
+    }
+    if (nanos != 0) {
+      writer.writeVarint32(NANOS_KEY);
+      writer.writeInt32(nanos);
+    }
+  }
+
+  /** Reads a value written by {@link #write}, positioned after its tag. */
+  public static Duration read(WireReader reader) throws IOException {
+    final long token = reader.beginMessage();
+    long seconds = 0;
+    int nanos = 0;
+    for (int tag; (tag = reader.nextTag()) != -1; ) {
+      switch (tag) {
+        case 1:
+          seconds = reader.readVarint64();
+          break;
+        case 2:
+          nanos = reader.readVarint32();
+          break;
+        default:
+          reader.skip();
+          break;
+      }
+    }
+    reader.endMessage(token);
+    return Duration.ofSeconds(seconds, nanos);
+  }
+
+  /**
+   * Formats {@code value} the way the protobuf JSON mapping does, e.g. "1.5s" or "-0.000001s":
+   * seconds with 0, 3, 6 or 9 fractional digits.
+   */
+  public static String toJson(Duration value) {
+    final long seconds = seconds(value);
+    final int nanos = nanos(value);
+    final StringBuilder result = new StringBuilder(24);
+    if (seconds == 0 && nanos < 0) {
+      result.append('-');
+    }
+    result.append(seconds);
+    if (nanos != 0) {
+      final int fraction = Math.abs(nanos);
+      final String digits = Integer.toString(NANOS_PER_SECOND + fraction).substring(1);
+      final int length = fraction % 1_000_000 == 0 ? 3 : fraction % 1_000 == 0 ? 6 : 9;
+      result.append('.').append(digits, 0, length);
+    }
+    return result.append('s').toString();
+  }
+
+  /** Parses the JSON form written by {@link #toJson(Duration)}. */
+  public static Duration fromJson(String json) {
+    if (!json.endsWith("s")) {
+      throw new IllegalArgumentException("Expected a duration like \"1.5s\" but was " + json);
+    }
+    final int end = json.length() - 1;
+    final int dot = json.indexOf('.');
+    if (dot == -1) {
+      return Duration.ofSeconds(Long.parseLong(json.substring(0, end)));
+    }
+    final long seconds = Long.parseLong(json.substring(0, dot));
+    final String digits = json.substring(dot + 1, end);
+    if (digits.isEmpty() || digits.length() > 9) {
+      throw new IllegalArgumentException("Expected 1 to 9 fractional digits in " + json);
+    }
+    int nanos = Integer.parseInt(digits);
+    for (int i = digits.length(); i < 9; i++) {
+      nanos *= 10;
+    }
+    return Duration.ofSeconds(seconds, json.charAt(0) == '-' ? -nanos : nanos);
+  }
+
+  // Seconds and nanos with the same sign, as in google.protobuf.Duration.
+  private static long seconds(Duration value) {
+    final long seconds = value.getSeconds();
+    return seconds < 0 && value.getNano() != 0 ? seconds + 1 : seconds;
+  }
+
+  private static int nanos(Duration value) {
+    final int nanos = value.getNano();
+    return value.getSeconds() < 0 && nanos != 0 ? nanos - NANOS_PER_SECOND : nanos;
+  }
+
+  private static final class Adapter extends ProtoAdapter<Duration> {
+    Adapter() {
+      super(FieldEncoding.LENGTH_DELIMITED, Duration.class);
+    }
+
+    @Override
+    public int encodedSize(Duration value) {
+      return size(value);
+    }
+
+    @Override
+    public void encode(ProtoWriter writer, Duration value) throws IOException {
+      final long seconds = seconds(value);
+      final int nanos = nanos(value);
+      if (seconds != 0) {
+        writer.writeVarint32(SECONDS_KEY);
+        writer.writeVarint64(seconds);
+      }
+      if (nanos != 0) {
+        writer.writeVarint32(NANOS_KEY);
+        if (nanos > 0) {
+          writer.writeVarint32(nanos);
+        } else {
+          writer.writeVarint64(nanos);
+        }
+      }
+    }
+
+    @Override
+    public Duration decode(ProtoReader reader) throws IOException {
+      final long token = reader.beginMessage();
+      long seconds = 0;
+      int nanos = 0;
+      for (int tag; (tag = reader.nextTag()) != -1; ) {
+        switch (tag) {
+          case 1:
+            seconds = reader.readVarint64();
+            break;
+          case 2:
+            nanos = reader.readVarint32();
+            break;
+          default:
+            reader.skip();
+            break;
+        }
+      }
+      reader.endMessage(token);
+      return Duration.ofSeconds(seconds, nanos);
+    }
+  }
+}
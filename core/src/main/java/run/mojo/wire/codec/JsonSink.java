@@ -0,0 +1,220 @@
+package run.mojo.wire.codec;
+
+import okio.Buffer;
+import okio.BufferedSink;
+import okio.ByteString;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * Compact UTF-8 JSON writer for generated adapters.
+ *
+ * <p>Mirrors the parts of Moshi's {@code JsonWriter} that generated code uses, with one addition:
+ * {@link #name(ByteString)} writes a name that was quoted, escaped and encoded once up front with
+ * {@link #encodeName(String)}, so writing a message's field names is a plain byte copy. Output is
+ * the same as Moshi's with no indent and nulls omitted by the caller.
+ */
+public final class JsonSink {
+  private static final ByteString NULL = ByteString.encodeUtf8("null");
+  private static final ByteString TRUE = ByteString.encodeUtf8("true");
+  private static final ByteString FALSE = ByteString.encodeUtf8("false");
+
+  private final BufferedSink sink;
+  // Whether the object or array at each depth has had anything written into it yet.
+  private boolean[] started = new boolean[32];
+  private int depth;
+  // Set between a name and its value, which takes no separator.
+  private boolean afterName;
+
+  private JsonSink(BufferedSink sink) {
+    this.sink = sink;
+  }
+
+  public static JsonSink of(BufferedSink sink) {
+    return new JsonSink(sink);
+  }
+
+  /** Returns {@code name} quoted, escaped and followed by a colon. */
+  public static ByteString encodeName(String name) {
+    final Buffer buffer = new Buffer();
+    try {
+      string(buffer, name);
+    } catch (IOException e) {
+      throw new AssertionError(e);
+    }
+    buffer.writeByte(':');
+    return buffer.readByteString();
+  }
+
+  public JsonSink beginObject() throws IOException {
+    return open('{');
+  }
+
+  public JsonSink endObject() throws IOException {
+    return close('}');
+  }
+
+  public JsonSink beginArray() throws IOException {
+    return open('[');
+  }
+
+  public JsonSink endArray() throws IOException {
+    return close(']');
+  }
+
+  /** Writes a name encoded by {@link #encodeName(String)}. */
+  public JsonSink name(ByteString encodedName) throws IOException {
+    beforeName();
+    sink.write(encodedName);
+    return this;
+  }
+
+  public JsonSink name(String name) throws IOException {
+    beforeName();
+    string(sink, name);
+    sink.writeByte(':');
+    return this;
+  }
+
+  public JsonSink nullValue() throws IOException {
+    beforeValue();
+    sink.write(NULL);
+    return this;
+  }
+
+  public JsonSink value(String value) throws IOException {
+    if (value == null) {
+      return nullValue();
+    }
+    beforeValue();
+    string(sink, value);
+    return this;
+  }
+
+  public JsonSink value(boolean value) throws IOException {
+    beforeValue();
+    sink.write(value ? TRUE : FALSE);
+    return this;
+  }
+
+  public JsonSink value(long value) throws IOException {
+    beforeValue();
+    sink.writeDecimalLong(value);
+    return this;
+  }
+
+  /** Writes {@code value} the way {@link Float#toString(float)} does, without widening it first. */
+  public JsonSink value(float value) throws IOException {
+    if (Float.isNaN(value) || Float.isInfinite(value)) {
+      throw new IllegalArgumentException("Numeric values must be finite, but was " + value);
+    }
+    beforeValue();
+    sink.writeUtf8(Float.toString(value));
+    return this;
+  }
+
+  public JsonSink value(double value) throws IOException {
+    if (Double.isNaN(value) || Double.isInfinite(value)) {
+      throw new IllegalArgumentException("Numeric values must be finite, but was " + value);
+    }
+    beforeValue();
+    sink.writeUtf8(Double.toString(value));
+    return this;
+  }
+
+  private JsonSink open(char c) throws IOException {
+    beforeValue();
+    if (depth == started.length) {
+      started = Arrays.copyOf(started, depth << 1);
+    }
+    started[depth++] = false;
+    sink.writeByte(c);
+    return this;
+  }
+
+  private JsonSink close(char c) throws IOException {
+    if (depth == 0 || afterName) {
+      throw new IllegalStateException("Nesting problem.");
+    }
+    depth--;
+    sink.writeByte(c);
+    return this;
+  }
+
+  private void beforeName() throws IOException {
+    if (depth == 0 || afterName) {
+      throw new IllegalStateException("Nesting problem.");
+    }
+    separate();
+    afterName = true;
+  }
+
+  private void beforeValue() throws IOException {
+    if (afterName) {
+      afterName = false;
+    } else if (depth > 0) {
+      separate();
+    }
+  }
+
+  private void separate() throws IOException {
+    if (started[depth - 1]) {
+      sink.writeByte(',');
+    } else {
+      started[depth - 1] = true;
+    }
+  }
+
+  /** Writes a quoted string, escaping the same characters Moshi does. */
+  private static void string(BufferedSink sink, String value) throws IOException {
+    sink.writeByte('"');
+    int last = 0;
+    final int length = value.length();
+    for (int i = 0; i < length; i++) {
+      final char c = value.charAt(i);
+      final String replacement;
+      if (c < 0x20) {
+        switch (c) {
+          case '\b':
+            replacement = "\\b";
+            break;
+          case '\t':
+            replacement = "\\t";
+            break;
+          case '\n':
+            replacement = "\\n";
+            break;
+          case '\f':
+            replacement = "\\f";
+            break;
+          case '\r':
+            replacement = "\\r";
+            break;
+          default:
+            replacement = String.format("\\u%04x", (int) c);
+            break;
+        }
+      } else if (c == '"') {
+        replacement = "\\\"";
+      } else if (c == '\\') {
+        replacement = "\\\\";
+      } else if (c == '\u2028') {
+        replacement = "\\u2028";
+      } else if (c == '\u2029') {
+        replacement = "\\u2029";
+      } else {
+        continue;
+      }
+      if (last < i) {
+        sink.writeUtf8(value, last, i);
+      }
+      sink.writeUtf8(replacement);
+      last = i + 1;
+    }
+    if (last < length) {
+      sink.writeUtf8(value, last, length);
+    }
+    sink.writeByte('"');
+  }
+}
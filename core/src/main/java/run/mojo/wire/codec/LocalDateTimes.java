@@ -0,0 +1,130 @@
+package run.mojo.wire.codec;
+
+import com.squareup.wire.FieldEncoding;
+import com.squareup.wire.ProtoAdapter;
+import com.squareup.wire.ProtoReader;
+import com.squareup.wire.ProtoWriter;
+
+import java.io.IOException;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+
+/**
+ * {@link LocalDateTime} codec. A value is written as the instant it would be at UTC, in a small
+ * message, {@code run.mojo.wire.Timestamp}, which has the same layout as {@code
+ * google.protobuf.Timestamp}:
+ *
+ * <pre>
+ * message Timestamp {
+ *   optional int64 seconds = 1;
+ *   optional int32 nanos = 2;
+ * }
+ * </pre>
+ */
+public final class LocalDateTimes {
+  public static final ProtoAdapter<LocalDateTime> ADAPTER = new Adapter();
+
+  // Keys are (tag << 3) | wire type.
+  private static final int SECONDS_KEY = (1 << 3);
+  private static final int NANOS_KEY = (2 << 3);
+
+  private LocalDateTimes() {}
+
+  /** Size of {@code value}'s fields, not counting the length prefix. */
+  public static int size(LocalDateTime value) {
+    final long seconds = value.toEpochSecond(ZoneOffset.UTC);
+    final int nanos = value.getNano();
+    int size = 0;
+    if (seconds != 0) {
+      size += 1 + Scalars.varint64Size(seconds);
+    }
+    if (nanos != 0) {
+      size += 1 + Scalars.varint32Size(nanos);
+    }
+    return size;
+  }
+
+  /** Writes the length prefix and fields of {@code value}. */
+  public static void write(WireWriter writer, LocalDateTime value) {
+    writer.writeVarint32(size(value));
+    final long seconds = value.toEpochSecond(ZoneOffset.UTC);
+    final int nanos = value.getNano();
+    if (seconds != 0) {
+      writer.writeVarint32(SECONDS_KEY);
+      writer.writeVarint64(seconds);
+    }
+    if (nanos != 0) {
+      writer.writeVarint32(NANOS_KEY);
+      writer.writeVarint32(nanos);
+    }
+  }
+
+  /** Reads a value written by {@link #write}, positioned after its tag. */
+  public static LocalDateTime read(WireReader reader) throws IOException {
+    final long token = reader.beginMessage();
+    long seconds = 0;
+    int nanos = 0;
+    for (int tag; (tag = reader.nextTag()) != -1; ) {
+      switch (tag) {
+        case 1:
+          seconds = reader.readVarint64();
+          break;
+        case 2:
+          nanos = reader.readVarint32();
+          break;
+        default:
+          reader.skip();
+          break;
+      }
+    }
+    reader.endMessage(token);
+    return LocalDateTime.ofEpochSecond(seconds, nanos, ZoneOffset.UTC);
+  }
+
+  private static final class Adapter extends ProtoAdapter<LocalDateTime> {
+    Adapter() {
+      super(FieldEncoding.LENGTH_DELIMITED, LocalDateTime.class);
+    }
+
+    @Override
+    public int encodedSize(LocalDateTime value) {
+      return size(value);
+    }
+
+    @Override
+    public void encode(ProtoWriter writer, LocalDateTime value) throws IOException {
+      final long seconds = value.toEpochSecond(ZoneOffset.UTC);
+      final int nanos = value.getNano();
+      if (seconds != 0) {
+        writer.writeVarint32(SECONDS_KEY);
+        writer.writeVarint64(seconds);
+      }
+      if (nanos != 0) {
+        writer.writeVarint32(NANOS_KEY);
+        writer.writeVarint32(nanos);
+      }
+    }
+
+    @Override
+    public LocalDateTime decode(ProtoReader reader) throws IOException {
+      final long token = reader.beginMessage();
+      long seconds = 0;
+      int nanos = 0;
+      for (int tag; (tag = reader.nextTag()) != -1; ) {
+        switch (tag) {
+          case 1:
+            seconds = reader.readVarint64();
+            break;
+          case 2:
+            nanos = reader.readVarint32();
+            break;
+          default:
+            reader.skip();
+            break;
+        }
+      }
+      reader.endMessage(token);
+      return LocalDateTime.ofEpochSecond(seconds, nanos, ZoneOffset.UTC);
+    }
+  }
+}
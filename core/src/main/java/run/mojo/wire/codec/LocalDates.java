@@ -0,0 +1,46 @@
+package run.mojo.wire.codec;
+
+import com.squareup.wire.FieldEncoding;
+import com.squareup.wire.ProtoAdapter;
+import com.squareup.wire.ProtoReader;
+import com.squareup.wire.ProtoWriter;
+
+import java.io.IOException;
+import java.time.LocalDate;
+
+/** {@link LocalDate} codec. A value is written as its epoch day, a {@code sint64}. */
+public final class LocalDates {
+  public static final ProtoAdapter<LocalDate> ADAPTER = new Adapter();
+
+  private LocalDates() {}
+
+  /** Writes {@code value}, without a tag. */
+  public static void write(WireWriter writer, LocalDate value) {
+    writer.writeVarint64(Scalars.encodeZigZag64(value.toEpochDay()));
+  }
+
+  public static LocalDate read(WireReader reader) throws IOException {
+    return LocalDate.ofEpochDay(Scalars.decodeZigZag64(reader.readVarint64()));
+  }
+
+  private static final class Adapter extends ProtoAdapter<LocalDate> {
+    Adapter() {
+      super(FieldEncoding.VARINT, LocalDate.class);
+    }
+
+    @Override
+    public int encodedSize(LocalDate value) {
+      return Scalars.varint64Size(Scalars.encodeZigZag64(value.toEpochDay()));
+    }
+
+    @Override
+    public void encode(ProtoWriter writer, LocalDate value) throws IOException {
+      writer.writeVarint64(Scalars.encodeZigZag64(value.toEpochDay()));
+    }
+
+    @Override
+    public LocalDate decode(ProtoReader reader) throws IOException {
+      return LocalDate.ofEpochDay(Scalars.decodeZigZag64(reader.readVarint64()));
+    }
+  }
+}
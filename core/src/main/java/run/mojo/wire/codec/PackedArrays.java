@@ -0,0 +1,131 @@
+package run.mojo.wire.codec;
+
+import com.squareup.wire.ProtoWriter;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * Packed repeated scalar fields held in primitive arrays. Generated adapters use these to measure
+ * and write {@code int[]}, {@code long[]}, {@code float[]} and {@code double[]} fields without
+ * boxing each element, and to grow the arrays they decode unpacked elements into.
+ *
+ * <p>Sizes are of the packed payload only, without the tag and length prefix.
+ */
+public final class PackedArrays {
+  private static final int MIN_CAPACITY = 8;
+
+  private PackedArrays() {}
+
+  public static int int32Size(int[] values) {
+    int size = 0;
+    for (int value : values) {
+      size += value >= 0 ? Scalars.varint32Size(value) : 10;
+    }
+    return size;
+  }
+
+  public static int sint32Size(int[] values) {
+    int size = 0;
+    for (int value : values) {
+      size += Scalars.varint32Size(Scalars.encodeZigZag32(value));
+    }
+    return size;
+  }
+
+  public static int int64Size(long[] values) {
+    int size = 0;
+    for (long value : values) {
+      size += Scalars.varint64Size(value);
+    }
+    return size;
+  }
+
+  public static int sint64Size(long[] values) {
+    int size = 0;
+    for (long value : values) {
+      size += Scalars.varint64Size(Scalars.encodeZigZag64(value));
+    }
+    return size;
+  }
+
+  public static void writeInt32(ProtoWriter writer, int[] values) throws IOException {
+    for (int value : values) {
+      if (value >= 0) {
+        writer.writeVarint32(value);
+      } else {
+        writer.writeVarint64(value);
+      }
+    }
+  }
+
+  public static void writeSInt32(ProtoWriter writer, int[] values) throws IOException {
+    for (int value : values) {
+      writer.writeVarint32(Scalars.encodeZigZag32(value));
+    }
+  }
+
+  public static void writeFixed32(ProtoWriter writer, int[] values) throws IOException {
+    for (int value : values) {
+      writer.writeFixed32(value);
+    }
+  }
+
+  public static void writeInt64(ProtoWriter writer, long[] values) throws IOException {
+    for (long value : values) {
+      writer.writeVarint64(value);
+    }
+  }
+
+  public static void writeSInt64(ProtoWriter writer, long[] values) throws IOException {
+    for (long value : values) {
+      writer.writeVarint64(Scalars.encodeZigZag64(value));
+    }
+  }
+
+  public static void writeFixed64(ProtoWriter writer, long[] values) throws IOException {
+    for (long value : values) {
+      writer.writeFixed64(value);
+    }
+  }
+
+  public static void writeFloat(ProtoWriter writer, float[] values) throws IOException {
+    for (float value : values) {
+      writer.writeFixed32(Float.floatToIntBits(value));
+    }
+  }
+
+  public static void writeDouble(ProtoWriter writer, double[] values) throws IOException {
+    for (double value : values) {
+      writer.writeFixed64(Double.doubleToLongBits(value));
+    }
+  }
+
+  /** Returns {@code values} with room for at least one more element. */
+  public static int[] grow(int[] values) {
+    return values == null
+        ? new int[MIN_CAPACITY]
+        : Arrays.copyOf(values, Math.max(MIN_CAPACITY, values.length << 1));
+  }
+
+  /** Returns {@code values} with room for at least one more element. */
+  public static long[] grow(long[] values) {
+    return values == null
+        ? new long[MIN_CAPACITY]
+        : Arrays.copyOf(values, Math.max(MIN_CAPACITY, values.length << 1));
+  }
+
+  /** Returns {@code values} with room for at least one more element. */
+  public static float[] grow(float[] values) {
+    return values == null
+        ? new float[MIN_CAPACITY]
+        : Arrays.copyOf(values, Math.max(MIN_CAPACITY, values.length << 1));
+  }
+
+  /** Returns {@code values} with room for at least one more element. */
+  public static double[] grow(double[] values) {
+    return values == null
+        ? new double[MIN_CAPACITY]
+        : Arrays.copyOf(values, Math.max(MIN_CAPACITY, values.length << 1));
+  }
+}
@@ -0,0 +1,83 @@
+package run.mojo.wire.codec;
+
+/** Scalar wire routines shared by generated adapters. */
+public final class Scalars {
+
+  private Scalars() {}
+
+  /** Number of bytes needed to encode the value as a varint. */
+  public static int varint32Size(int value) {
+    if ((value & (0xffffffff << 7)) == 0) return 1;
+    if ((value & (0xffffffff << 14)) == 0) return 2;
+    if ((value & (0xffffffff << 21)) == 0) return 3;
+    if ((value & (0xffffffff << 28)) == 0) return 4;
+    return 5;
+  }
+
+  /** Number of bytes needed to encode the value as a varint. */
+  public static int varint64Size(long value) {
+    if ((value & (0xffffffffffffffffL << 7)) == 0) return 1;
+    if ((value & (0xffffffffffffffffL << 14)) == 0) return 2;
+    if ((value & (0xffffffffffffffffL << 21)) == 0) return 3;
+    if ((value & (0xffffffffffffffffL << 28)) == 0) return 4;
+    if ((value & (0xffffffffffffffffL << 35)) == 0) return 5;
+    if ((value & (0xffffffffffffffffL << 42)) == 0) return 6;
+    if ((value & (0xffffffffffffffffL << 49)) == 0) return 7;
+    if ((value & (0xffffffffffffffffL << 56)) == 0) return 8;
+    if ((value & (0xffffffffffffffffL << 63)) == 0) return 9;
+    return 10;
+  }
+
+  /** Number of bytes needed to encode the value as an int32, which sign extends negatives. */
+  public static int int32Size(int value) {
+    return value >= 0 ? varint32Size(value) : 10;
+  }
+
+  /**
+   * Number of bytes {@code value} takes encoded as UTF-8. Unpaired surrogates count as the single
+   * '?' byte they are replaced with, the same as Okio.
+   */
+  public static int utf8Size(String value) {
+    final int length = value.length();
+    int size = length;
+    for (int i = 0; i < length; i++) {
+      final char c = value.charAt(i);
+      if (c < 0x80) {
+        continue;
+      }
+      if (c < 0x800) {
+        size += 1;
+      } else if (c < 0xd800 || c > 0xdfff) {
+        size += 2;
+      } else if (c <= 0xdbff
+          && i + 1 < length
+          && value.charAt(i + 1) >= 0xdc00
+          && value.charAt(i + 1) <= 0xdfff) {
+        // Surrogate pair: two chars, four bytes.
+        size += 2;
+        i++;
+      }
+    }
+    return size;
+  }
+
+  /** Decodes a ZigZag-encoded 32-bit value ("sint32"). */
+  public static int decodeZigZag32(int n) {
+    return (n >>> 1) ^ -(n & 1);
+  }
+
+  /** Decodes a ZigZag-encoded 64-bit value ("sint64"). */
+  public static long decodeZigZag64(long n) {
+    return (n >>> 1) ^ -(n & 1);
+  }
+
+  /** Encodes a signed 32-bit value with ZigZag so small negatives stay small. */
+  public static int encodeZigZag32(int n) {
+    return (n << 1) ^ (n >> 31);
+  }
+
+  /** Encodes a signed 64-bit value with ZigZag so small negatives stay small. */
+  public static long encodeZigZag64(long n) {
+    return (n << 1) ^ (n >> 63);
+  }
+}
@@ -0,0 +1,58 @@
+package run.mojo.wire.codec;
+
+import java.util.Arrays;
+
+/**
+ * Lengths of nested messages recorded while measuring a message tree so encoding can write every
+ * length prefix without measuring the same subtree again.
+ *
+ * <p>Measuring reserves a slot for each nested message before descending into it, so slots are
+ * laid out in pre-order. Encoding visits nested messages in the same order and reads them back
+ * with {@link #next()}. Frames opened by {@link #begin()} may nest, e.g. when a generic Wire adapter
+ * calls back into a generated one half way through an encode.
+ */
+public final class SizeStack {
+  private static final ThreadLocal<SizeStack> LOCAL = ThreadLocal.withInitial(SizeStack::new);
+
+  private int[] sizes = new int[64];
+  // Next slot to reserve.
+  private int top;
+  // Next slot to read.
+  private int cursor;
+
+  /** Returns the calling thread's stack. */
+  public static SizeStack get() {
+    return LOCAL.get();
+  }
+
+  /** Opens a frame and returns the token that {@link #end(long)} needs to close it. */
+  public long begin() {
+    final long token = ((long) top << 32) | (cursor & 0xFFFFFFFFL);
+    cursor = top;
+    return token;
+  }
+
+  /** Closes the frame opened by {@link #begin()}, releasing every slot it reserved. */
+  public void end(long token) {
+    top = (int) (token >>> 32);
+    cursor = (int) token;
+  }
+
+  /** Reserves the next slot. */
+  public int reserve() {
+    if (top == sizes.length) {
+      sizes = Arrays.copyOf(sizes, top << 1);
+    }
+    return top++;
+  }
+
+  /** Records the measured length for a reserved slot. */
+  public void set(int slot, int size) {
+    sizes[slot] = size;
+  }
+
+  /** Reads the next recorded length. */
+  public int next() {
+    return sizes[cursor++];
+  }
+}
@@ -0,0 +1,104 @@
+package run.mojo.wire.codec;
+
+import java.nio.charset.StandardCharsets;
+
+import static run.mojo.unsafe.UnsafeHelper.BYTE_ARRAY_BASE_OFFSET;
+import static run.mojo.unsafe.UnsafeHelper.UNSAFE;
+
+/**
+ * Small cache of decoded strings for fields that repeat the same few values, e.g. status codes or
+ * country names, so that decoding a repeat allocates nothing and every message shares one instance.
+ *
+ * <p>The cache is direct mapped: each string has a single slot, picked by its hash, and a miss
+ * replaces whatever was there. Slots are read and written without locking. That's safe because
+ * strings are immutable, and a lost update only costs a later miss. Memory stays bounded at the
+ * capacity given, however many distinct values come through.
+ */
+public final class StringCache {
+  /** Longer strings are decoded as usual. They are unlikely to repeat and costly to compare. */
+  public static final int MAX_LENGTH = 64;
+
+  private final String[] table;
+  private final int mask;
+
+  /** @param capacity number of slots, rounded up to a power of two */
+  public StringCache(int capacity) {
+    if (capacity <= 0) {
+      throw new IllegalArgumentException("capacity <= 0: " + capacity);
+    }
+    final int size = Integer.highestOneBit(capacity - 1) << 1;
+    this.table = new String[Math.max(size, 1)];
+    this.mask = table.length - 1;
+  }
+
+  /** Returns the cached string equal to {@code value}, caching {@code value} if there is none. */
+  public String intern(String value) {
+    if (value == null || value.length() > MAX_LENGTH) {
+      return value;
+    }
+    final int index = spread(value.hashCode()) & mask;
+    final String cached = table[index];
+    if (value.equals(cached)) {
+      return cached;
+    }
+    table[index] = value;
+    return value;
+  }
+
+  /**
+   * Returns the string held in {@code length} UTF-8 bytes at {@code address} of {@code base}.
+   * ASCII, which is what short repeated values nearly always are, is hashed and compared against
+   * the cache straight from the input.
+   */
+  String get(Object base, long address, int length) {
+    if (length > MAX_LENGTH) {
+      return decode(base, address, length);
+    }
+    // Same as String.hashCode() over the chars, as long as every byte is ASCII.
+    int hash = 0;
+    for (int i = 0; i < length; i++) {
+      final byte b = UNSAFE.getByte(base, address + i);
+      if (b < 0) {
+        return intern(decode(base, address, length));
+      }
+      hash = 31 * hash + b;
+    }
+    final int index = spread(hash) & mask;
+    final String cached = table[index];
+    if (cached != null && matches(cached, base, address, length)) {
+      return cached;
+    }
+    final byte[] bytes = copy(base, address, length);
+    // Every byte is ASCII, which Latin-1 decodes without any checks.
+    final String value = new String(bytes, StandardCharsets.ISO_8859_1);
+    table[index] = value;
+    return value;
+  }
+
+  private static boolean matches(String cached, Object base, long address, int length) {
+    if (cached.length() != length) {
+      return false;
+    }
+    for (int i = 0; i < length; i++) {
+      if (cached.charAt(i) != UNSAFE.getByte(base, address + i)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private static String decode(Object base, long address, int length) {
+    return new String(copy(base, address, length), StandardCharsets.UTF_8);
+  }
+
+  private static byte[] copy(Object base, long address, int length) {
+    final byte[] result = new byte[length];
+    UNSAFE.copyMemory(base, address, result, BYTE_ARRAY_BASE_OFFSET, length);
+    return result;
+  }
+
+  // Mixes the high bits in, since the low ones of short string hashes cluster.
+  private static int spread(int hash) {
+    return hash ^ (hash >>> 16);
+  }
+}
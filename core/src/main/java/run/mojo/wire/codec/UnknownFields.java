@@ -0,0 +1,126 @@
+package run.mojo.wire.codec;
+
+import com.squareup.wire.FieldEncoding;
+import com.squareup.wire.ProtoAdapter;
+import com.squareup.wire.ProtoWriter;
+import okio.Buffer;
+import okio.ByteString;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * Fields a message doesn't declare, kept as the encoded bytes they were read from.
+ *
+ * <p>A message opts in by declaring a non-private {@code UnknownFields} field. Generated decoders
+ * then skip unknown fields with {@link WireReader#skip(UnknownFields)}, which records where each
+ * one starts and ends instead of decoding it, and encoders copy those ranges back out verbatim.
+ * Like {@link ByteSlice}, the ranges share the input array, which must be left alone while the
+ * message is in use.
+ */
+public final class UnknownFields {
+  private byte[] array;
+  // Offset and length pairs into array. Adjacent ranges are merged.
+  private int[] ranges;
+  private int count;
+  private int size;
+
+  /** Total encoded size, tags included. */
+  public int size() {
+    return size;
+  }
+
+  public boolean isEmpty() {
+    return size == 0;
+  }
+
+  /** Records {@code length} encoded bytes of whole fields, tags included. */
+  public void add(byte[] array, int offset, int length) {
+    if (length == 0) {
+      return;
+    }
+    if (this.array != array) {
+      if (count != 0) {
+        // Read from another input than the fields so far; take a copy of everything.
+        own(array, offset, length);
+        return;
+      }
+      this.array = array;
+    }
+    if (ranges == null) {
+      ranges = new int[8];
+    }
+    if (count != 0 && ranges[count - 2] + ranges[count - 1] == offset) {
+      ranges[count - 1] += length;
+    } else {
+      if (count == ranges.length) {
+        ranges = Arrays.copyOf(ranges, count << 1);
+      }
+      ranges[count] = offset;
+      ranges[count + 1] = length;
+      count += 2;
+    }
+    size += length;
+  }
+
+  /** Encodes a field that was decoded by a {@link com.squareup.wire.ProtoReader}. */
+  public void add(int tag, FieldEncoding fieldEncoding, Object value) throws IOException {
+    final Buffer buffer = new Buffer();
+    @SuppressWarnings("unchecked")
+    final ProtoAdapter<Object> adapter = (ProtoAdapter<Object>) fieldEncoding.rawProtoAdapter();
+    adapter.encodeWithTag(new ProtoWriter(buffer), tag, value);
+    final byte[] bytes = buffer.readByteArray();
+    add(bytes, 0, bytes.length);
+  }
+
+  /** Forgets every field. Nothing is released, so a message can be decoded into again. */
+  public void clear() {
+    array = null;
+    count = 0;
+    size = 0;
+  }
+
+  public void writeTo(WireWriter writer) {
+    for (int i = 0; i < count; i += 2) {
+      writer.writeRaw(array, ranges[i], ranges[i + 1]);
+    }
+  }
+
+  public void writeTo(ProtoWriter writer) throws IOException {
+    for (int i = 0; i < count; i += 2) {
+      writer.writeBytes(ByteString.of(array, ranges[i], ranges[i + 1]));
+    }
+  }
+
+  public ByteString toByteString() {
+    return count == 2
+        ? ByteString.of(array, ranges[0], ranges[1])
+        : ByteString.of(toByteArray());
+  }
+
+  public byte[] toByteArray() {
+    final byte[] result = new byte[size];
+    int p = 0;
+    for (int i = 0; i < count; i += 2) {
+      System.arraycopy(array, ranges[i], result, p, ranges[i + 1]);
+      p += ranges[i + 1];
+    }
+    return result;
+  }
+
+  // Replaces the ranges with a single owned copy of them followed by the new bytes.
+  private void own(byte[] other, int offset, int length) {
+    final byte[] result = Arrays.copyOf(toByteArray(), size + length);
+    System.arraycopy(other, offset, result, size, length);
+    array = result;
+    ranges[0] = 0;
+    ranges[1] = result.length;
+    count = 2;
+    size = result.length;
+  }
+
+  @Override
+  public String toString() {
+    return "[size=" + size + "]";
+  }
+}
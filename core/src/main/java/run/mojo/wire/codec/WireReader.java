@@ -0,0 +1,757 @@
+package run.mojo.wire.codec;
+
+import com.squareup.wire.FieldEncoding;
+import com.squareup.wire.ProtoAdapter;
+import okio.ByteString;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.ProtocolException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+import static run.mojo.unsafe.UnsafeHelper.BIG_ENDIAN;
+import static run.mojo.unsafe.UnsafeHelper.BYTE_ARRAY_BASE_OFFSET;
+import static run.mojo.unsafe.UnsafeHelper.DOUBLE_ARRAY_BASE_OFFSET;
+import static run.mojo.unsafe.UnsafeHelper.FLOAT_ARRAY_BASE_OFFSET;
+import static run.mojo.unsafe.UnsafeHelper.INT_ARRAY_BASE_OFFSET;
+import static run.mojo.unsafe.UnsafeHelper.LONG_ARRAY_BASE_OFFSET;
+import static run.mojo.unsafe.UnsafeHelper.UNSAFE;
+import static run.mojo.unsafe.UnsafeHelper.directBufferAddress;
+
+/**
+ * Protocol buffer reader over a {@code byte[]}, heap {@link ByteBuffer} or direct {@link
+ * ByteBuffer}.
+ *
+ * <p>Follows the same call protocol as {@link com.squareup.wire.ProtoReader} (beginMessage,
+ * nextTag, read*, endMessage) so generated adapters read from either with the same code, but reads
+ * bytes straight out of memory instead of going through Okio segments. All three sources are
+ * addressed the same way, as a base object plus an offset, so there is a single implementation of
+ * every routine.
+ */
+public final class WireReader {
+  private static final int RECURSION_LIMIT = 65;
+  private static final int MAX_VARINT_SIZE = 10;
+
+  // Read states. These are the wire types of the value that follows the current tag.
+  private static final int STATE_VARINT = 0;
+  private static final int STATE_FIXED64 = 1;
+  private static final int STATE_LENGTH_DELIMITED = 2;
+  private static final int STATE_START_GROUP = 3;
+  private static final int STATE_END_GROUP = 4;
+  private static final int STATE_FIXED32 = 5;
+  private static final int STATE_TAG = 6;
+  private static final int STATE_PACKED_TAG = 7;
+
+  // Null for direct buffers, which are addressed absolutely.
+  private final Object base;
+  private final long address;
+  // Keeps a direct buffer reachable while its memory is being read.
+  private final Object owner;
+
+  private int pos;
+  private int limit;
+  // Limit of the enclosing value while a length delimited value is being read.
+  private int pushedLimit;
+  private int recursionDepth;
+  private int state = STATE_LENGTH_DELIMITED;
+  private int tag = -1;
+  // Where the key last read by nextTag() starts.
+  private int tagPos;
+  private FieldEncoding nextFieldEncoding;
+
+  private WireReader(Object base, long address, Object owner, int length) {
+    this.base = base;
+    this.address = address;
+    this.owner = owner;
+    this.limit = length;
+    this.pushedLimit = length;
+  }
+
+  public static WireReader of(byte[] bytes) {
+    return of(bytes, 0, bytes.length);
+  }
+
+  public static WireReader of(byte[] bytes, int offset, int length) {
+    if ((offset | length) < 0 || offset > bytes.length - length) {
+      throw new IndexOutOfBoundsException(
+          "offset " + offset + ", length " + length + ", size " + bytes.length);
+    }
+    return new WireReader(bytes, BYTE_ARRAY_BASE_OFFSET + offset, null, length);
+  }
+
+  /** Reads the bytes between the buffer's position and limit. The buffer itself is not changed. */
+  public static WireReader of(ByteBuffer buffer) {
+    if (buffer.hasArray()) {
+      return of(buffer.array(), buffer.arrayOffset() + buffer.position(), buffer.remaining());
+    }
+    if (buffer.isDirect()) {
+      return new WireReader(
+          null, directBufferAddress(buffer) + buffer.position(), buffer, buffer.remaining());
+    }
+    // Read-only heap buffers hide their array.
+    final byte[] bytes = new byte[buffer.remaining()];
+    buffer.duplicate().get(bytes);
+    return of(bytes);
+  }
+
+  /** Number of bytes consumed so far. */
+  public int position() {
+    return pos;
+  }
+
+  /** Same as {@link com.squareup.wire.ProtoReader#beginMessage()}. */
+  public long beginMessage() throws IOException {
+    if (state != STATE_LENGTH_DELIMITED) {
+      throw new IllegalStateException("Unexpected call to beginMessage()");
+    }
+    if (++recursionDepth > RECURSION_LIMIT) {
+      throw new IOException("Wire recursion limit exceeded");
+    }
+    // The caller holds on to the enclosing limit and hands it back in endMessage().
+    final long token = pushedLimit;
+    pushedLimit = -1;
+    state = STATE_TAG;
+    return token;
+  }
+
+  /** Same as {@link com.squareup.wire.ProtoReader#endMessage(long)}. */
+  public void endMessage(long token) throws IOException {
+    if (state != STATE_TAG) {
+      throw new IllegalStateException("Unexpected call to endMessage()");
+    }
+    if (--recursionDepth < 0 || pushedLimit != -1) {
+      throw new IllegalStateException("No corresponding call to beginMessage()");
+    }
+    if (pos != limit) {
+      throw new IOException("Expected to end at " + limit + " but was " + pos);
+    }
+    limit = (int) token;
+  }
+
+  /** Reads the next tag, or returns -1 once the current message is exhausted. */
+  public int nextTag() throws IOException {
+    if (state == STATE_PACKED_TAG) {
+      state = STATE_LENGTH_DELIMITED;
+      return tag;
+    } else if (state != STATE_TAG) {
+      throw new IllegalStateException("Unexpected call to nextTag()");
+    }
+
+    while (pos < limit) {
+      tagPos = pos;
+      final int key = varint32();
+      if (key == 0) {
+        throw new ProtocolException("Unexpected tag 0");
+      }
+      if ((key & 0x7) == STATE_START_GROUP) {
+        skipGroup(key >>> 3);
+        continue;
+      }
+      return enter(key);
+    }
+    return -1;
+  }
+
+  /**
+   * Consumes the next key if it is exactly {@code key}, i.e. {@code (tag << 3) | wireType}, and
+   * otherwise leaves the reader untouched. On a match the reader is in the same state as after
+   * {@link #nextTag()} returned the tag.
+   *
+   * <p>Keys of the first 2047 fields are compared as raw bytes, so a decoder that knows the order
+   * fields are usually written in can read them straight through and only fall back to {@link
+   * #nextTag()} and a switch on the tag when a guess misses.
+   */
+  public boolean expectTag(int key) throws IOException {
+    if (state != STATE_TAG) {
+      return false;
+    }
+    final int p = pos;
+    if (key < 0x80) {
+      if (p == limit || byteAt(p) != key) {
+        return false;
+      }
+      pos = p + 1;
+    } else if (key < 0x4000) {
+      if (limit - p < 2
+          || byteAt(p) != (byte) (key | 0x80)
+          || byteAt(p + 1) != (byte) (key >>> 7)) {
+        return false;
+      }
+      pos = p + 2;
+    } else {
+      if (p == limit || varint32() != key) {
+        pos = p;
+        return false;
+      }
+    }
+    enter(key);
+    return true;
+  }
+
+  /** Encoding of the value that follows the tag last returned by {@link #nextTag()}. */
+  public FieldEncoding peekFieldEncoding() {
+    return nextFieldEncoding;
+  }
+
+  /** Skips the value that follows the tag last returned by {@link #nextTag()}. */
+  public void skip() throws IOException {
+    switch (state) {
+      case STATE_LENGTH_DELIMITED:
+        pos += beforeLengthDelimitedScalar();
+        break;
+      case STATE_VARINT:
+        readVarint64();
+        break;
+      case STATE_FIXED64:
+        readFixed64();
+        break;
+      case STATE_FIXED32:
+        readFixed32();
+        break;
+      default:
+        throw new IllegalStateException("Unexpected call to skip()");
+    }
+  }
+
+  /**
+   * Same as {@link #skip()} for a field returned by {@link #nextTag()}, recording the field, tag
+   * included, in {@code unknownFields}. Nothing is copied when reading from an array.
+   */
+  public void skip(UnknownFields unknownFields) throws IOException {
+    final int start = tagPos;
+    skip();
+    final int length = pos - start;
+    if (base instanceof byte[]) {
+      unknownFields.add((byte[]) base, (int) (address - BYTE_ARRAY_BASE_OFFSET) + start, length);
+    } else {
+      unknownFields.add(copy(start, length), 0, length);
+    }
+  }
+
+  public int readVarint32() throws IOException {
+    if (state != STATE_VARINT && state != STATE_LENGTH_DELIMITED) {
+      throw new ProtocolException("Expected VARINT or LENGTH_DELIMITED but was " + state);
+    }
+    final int result = varint32();
+    afterPackableScalar(STATE_VARINT);
+    return result;
+  }
+
+  public long readVarint64() throws IOException {
+    if (state != STATE_VARINT && state != STATE_LENGTH_DELIMITED) {
+      throw new ProtocolException("Expected VARINT or LENGTH_DELIMITED but was " + state);
+    }
+    final long result = varint64();
+    afterPackableScalar(STATE_VARINT);
+    return result;
+  }
+
+  public int readFixed32() throws IOException {
+    if (state != STATE_FIXED32 && state != STATE_LENGTH_DELIMITED) {
+      throw new ProtocolException("Expected FIXED32 or LENGTH_DELIMITED but was " + state);
+    }
+    require(4);
+    int result = UNSAFE.getInt(base, address + pos);
+    pos += 4;
+    if (BIG_ENDIAN) {
+      result = Integer.reverseBytes(result);
+    }
+    afterPackableScalar(STATE_FIXED32);
+    return result;
+  }
+
+  public long readFixed64() throws IOException {
+    if (state != STATE_FIXED64 && state != STATE_LENGTH_DELIMITED) {
+      throw new ProtocolException("Expected FIXED64 or LENGTH_DELIMITED but was " + state);
+    }
+    require(8);
+    long result = UNSAFE.getLong(base, address + pos);
+    pos += 8;
+    if (BIG_ENDIAN) {
+      result = Long.reverseBytes(result);
+    }
+    afterPackableScalar(STATE_FIXED64);
+    return result;
+  }
+
+  public String readString() throws IOException {
+    final int length = beforeLengthDelimitedScalar();
+    final String result;
+    if (base instanceof byte[]) {
+      result =
+          new String(
+              (byte[]) base,
+              (int) (address - BYTE_ARRAY_BASE_OFFSET) + pos,
+              length,
+              StandardCharsets.UTF_8);
+    } else {
+      result = new String(copy(pos, length), StandardCharsets.UTF_8);
+    }
+    pos += length;
+    return result;
+  }
+
+  /**
+   * Same as {@link #readString()}, but a value {@code strings} already holds is returned from
+   * there, not decoded again.
+   */
+  public String readString(StringCache strings) throws IOException {
+    final int length = beforeLengthDelimitedScalar();
+    final String result = strings.get(base, address + pos, length);
+    pos += length;
+    return result;
+  }
+
+  public ByteString readBytes() throws IOException {
+    return ByteString.of(readByteArray());
+  }
+
+  /** Same as {@link #readBytes()} without wrapping the copy in a {@link ByteString}. */
+  public byte[] readByteArray() throws IOException {
+    final int length = beforeLengthDelimitedScalar();
+    final byte[] result = copy(pos, length);
+    pos += length;
+    return result;
+  }
+
+  /**
+   * Same as {@link #readByteArray()}, but shares the input array rather than copying when reading
+   * from one. The caller must not modify that array while the slice is in use.
+   */
+  public ByteSlice readSlice() throws IOException {
+    final int length = beforeLengthDelimitedScalar();
+    final ByteSlice result =
+        base instanceof byte[]
+            ? ByteSlice.of((byte[]) base, (int) (address - BYTE_ARRAY_BASE_OFFSET) + pos, length)
+            : ByteSlice.of(copy(pos, length));
+    pos += length;
+    return result;
+  }
+
+  // Packed runs. Each reads the whole length delimited run that follows the current tag and
+  // returns the first size elements of values followed by the run, in an array of exactly that
+  // length. That is values itself when it is already the right length, so refilling a message
+  // with the same shape doesn't allocate. Fixed width runs are bulk copied.
+
+  public int[] readPackedInt32(int[] values, int size) throws IOException {
+    beforePacked();
+    final int[] result = append(values, size, varintCount());
+    for (int i = size; i < result.length; i++) {
+      result[i] = varint32();
+    }
+    afterPacked();
+    return result;
+  }
+
+  public int[] readPackedSInt32(int[] values, int size) throws IOException {
+    beforePacked();
+    final int[] result = append(values, size, varintCount());
+    for (int i = size; i < result.length; i++) {
+      result[i] = Scalars.decodeZigZag32(varint32());
+    }
+    afterPacked();
+    return result;
+  }
+
+  public long[] readPackedInt64(long[] values, int size) throws IOException {
+    beforePacked();
+    final long[] result = append(values, size, varintCount());
+    for (int i = size; i < result.length; i++) {
+      result[i] = varint64();
+    }
+    afterPacked();
+    return result;
+  }
+
+  public long[] readPackedSInt64(long[] values, int size) throws IOException {
+    beforePacked();
+    final long[] result = append(values, size, varintCount());
+    for (int i = size; i < result.length; i++) {
+      result[i] = Scalars.decodeZigZag64(varint64());
+    }
+    afterPacked();
+    return result;
+  }
+
+  public int[] readPackedFixed32(int[] values, int size) throws IOException {
+    beforePacked();
+    final int[] result = append(values, size, fixedCount(4));
+    if (BIG_ENDIAN) {
+      for (int i = size; i < result.length; i++, pos += 4) {
+        result[i] = Integer.reverseBytes(UNSAFE.getInt(base, address + pos));
+      }
+    } else {
+      copyTo(result, INT_ARRAY_BASE_OFFSET + ((long) size << 2));
+    }
+    afterPacked();
+    return result;
+  }
+
+  public long[] readPackedFixed64(long[] values, int size) throws IOException {
+    beforePacked();
+    final long[] result = append(values, size, fixedCount(8));
+    if (BIG_ENDIAN) {
+      for (int i = size; i < result.length; i++, pos += 8) {
+        result[i] = Long.reverseBytes(UNSAFE.getLong(base, address + pos));
+      }
+    } else {
+      copyTo(result, LONG_ARRAY_BASE_OFFSET + ((long) size << 3));
+    }
+    afterPacked();
+    return result;
+  }
+
+  public float[] readPackedFloat(float[] values, int size) throws IOException {
+    beforePacked();
+    final float[] result = append(values, size, fixedCount(4));
+    if (BIG_ENDIAN) {
+      for (int i = size; i < result.length; i++, pos += 4) {
+        result[i] = Float.intBitsToFloat(Integer.reverseBytes(UNSAFE.getInt(base, address + pos)));
+      }
+    } else {
+      copyTo(result, FLOAT_ARRAY_BASE_OFFSET + ((long) size << 2));
+    }
+    afterPacked();
+    return result;
+  }
+
+  public double[] readPackedDouble(double[] values, int size) throws IOException {
+    beforePacked();
+    final double[] result = append(values, size, fixedCount(8));
+    if (BIG_ENDIAN) {
+      for (int i = size; i < result.length; i++, pos += 8) {
+        result[i] = Double.longBitsToDouble(Long.reverseBytes(UNSAFE.getLong(base, address + pos)));
+      }
+    } else {
+      copyTo(result, DOUBLE_ARRAY_BASE_OFFSET + ((long) size << 3));
+    }
+    afterPacked();
+    return result;
+  }
+
+  /**
+   * Reads the value that follows the current tag with an adapter that has no {@link WireReader}
+   * support, e.g. a map or a hand written adapter. The value's bytes are copied out and decoded
+   * through Okio. {@code encoding} is the adapter's own encoding so that one element of a packed
+   * field can be told apart from a whole length delimited value.
+   */
+  public <T> T read(ProtoAdapter<T> adapter, FieldEncoding encoding) throws IOException {
+    final int start;
+    switch (encoding) {
+      case VARINT:
+        start = pos;
+        readVarint64();
+        break;
+      case FIXED32:
+        start = pos;
+        readFixed32();
+        break;
+      case FIXED64:
+        start = pos;
+        readFixed64();
+        break;
+      default:
+        final int length = beforeLengthDelimitedScalar();
+        start = pos;
+        pos += length;
+        break;
+    }
+    // Positions that were consumed are always in bounds.
+    return adapter.decode(copy(start, pos - start));
+  }
+
+  /** Moves to the value that follows {@code key} and returns its tag. */
+  private int enter(int key) throws IOException {
+    tag = key >>> 3;
+    final int wireType = key & 0x7;
+    switch (wireType) {
+      case STATE_LENGTH_DELIMITED:
+        nextFieldEncoding = FieldEncoding.LENGTH_DELIMITED;
+        state = STATE_LENGTH_DELIMITED;
+        final int length = varint32();
+        if (length < 0) {
+          throw new ProtocolException("Negative length: " + length);
+        }
+        if (pushedLimit != -1) {
+          throw new IllegalStateException();
+        }
+        if (length > limit - pos) {
+          throw new EOFException();
+        }
+        // Push the current limit, and set a new limit to the length of this value.
+        pushedLimit = limit;
+        limit = pos + length;
+        return tag;
+
+      case STATE_VARINT:
+        nextFieldEncoding = FieldEncoding.VARINT;
+        state = STATE_VARINT;
+        return tag;
+
+      case STATE_FIXED64:
+        nextFieldEncoding = FieldEncoding.FIXED64;
+        state = STATE_FIXED64;
+        return tag;
+
+      case STATE_FIXED32:
+        nextFieldEncoding = FieldEncoding.FIXED32;
+        state = STATE_FIXED32;
+        return tag;
+
+      case STATE_END_GROUP:
+        throw new ProtocolException("Unexpected end group");
+
+      default:
+        throw new ProtocolException("Unexpected field encoding: " + wireType);
+    }
+  }
+
+  private void skipGroup(int expectedTag) throws IOException {
+    while (pos < limit) {
+      final int key = varint32();
+      if (key == 0) {
+        throw new ProtocolException("Unexpected tag 0");
+      }
+      final int groupTag = key >>> 3;
+      switch (key & 0x7) {
+        case STATE_START_GROUP:
+          skipGroup(groupTag);
+          break;
+        case STATE_END_GROUP:
+          if (groupTag == expectedTag) {
+            return;
+          }
+          throw new ProtocolException("Unexpected end group");
+        case STATE_LENGTH_DELIMITED:
+          final int length = varint32();
+          if (length < 0 || length > limit - pos) {
+            throw new EOFException();
+          }
+          pos += length;
+          break;
+        case STATE_VARINT:
+          varint64();
+          break;
+        case STATE_FIXED64:
+          require(8);
+          pos += 8;
+          break;
+        case STATE_FIXED32:
+          require(4);
+          pos += 4;
+          break;
+        default:
+          throw new ProtocolException("Unexpected field encoding: " + (key & 0x7));
+      }
+    }
+    throw new EOFException();
+  }
+
+  private void afterPackableScalar(int fieldEncoding) throws IOException {
+    if (state == fieldEncoding) {
+      state = STATE_TAG;
+    } else if (pos > limit) {
+      throw new IOException("Expected to end at " + limit + " but was " + pos);
+    } else if (pos == limit) {
+      // We've completed a sequence of packed values. Pop the limit.
+      limit = pushedLimit;
+      pushedLimit = -1;
+      state = STATE_TAG;
+    } else {
+      state = STATE_PACKED_TAG;
+    }
+  }
+
+  private int beforeLengthDelimitedScalar() throws IOException {
+    if (state != STATE_LENGTH_DELIMITED) {
+      throw new ProtocolException("Expected LENGTH_DELIMITED but was " + state);
+    }
+    final int length = limit - pos;
+    state = STATE_TAG;
+    // We've completed a length-delimited scalar. Pop the limit.
+    limit = pushedLimit;
+    pushedLimit = -1;
+    return length;
+  }
+
+  private void beforePacked() throws ProtocolException {
+    if (state != STATE_LENGTH_DELIMITED) {
+      throw new ProtocolException("Expected LENGTH_DELIMITED but was " + state);
+    }
+  }
+
+  private void afterPacked() throws IOException {
+    if (pos != limit) {
+      throw new IOException("Expected to end at " + limit + " but was " + pos);
+    }
+    state = STATE_TAG;
+    // We've completed a packed run. Pop the limit.
+    limit = pushedLimit;
+    pushedLimit = -1;
+  }
+
+  /** Number of varints left in the current run. Every varint ends with exactly one byte < 0x80. */
+  private int varintCount() {
+    int count = 0;
+    for (int i = pos; i < limit; i++) {
+      if (byteAt(i) >= 0) {
+        count++;
+      }
+    }
+    return count;
+  }
+
+  private int fixedCount(int width) throws ProtocolException {
+    final int length = limit - pos;
+    if (length % width != 0) {
+      throw new ProtocolException("Packed run of " + length + " bytes is not a multiple of " + width);
+    }
+    return length / width;
+  }
+
+  private static int[] append(int[] values, int size, int count) {
+    if (values != null && values.length == size + count) {
+      return values;
+    }
+    final int[] result = new int[size + count];
+    if (size > 0) {
+      System.arraycopy(values, 0, result, 0, size);
+    }
+    return result;
+  }
+
+  private static long[] append(long[] values, int size, int count) {
+    if (values != null && values.length == size + count) {
+      return values;
+    }
+    final long[] result = new long[size + count];
+    if (size > 0) {
+      System.arraycopy(values, 0, result, 0, size);
+    }
+    return result;
+  }
+
+  private static float[] append(float[] values, int size, int count) {
+    if (values != null && values.length == size + count) {
+      return values;
+    }
+    final float[] result = new float[size + count];
+    if (size > 0) {
+      System.arraycopy(values, 0, result, 0, size);
+    }
+    return result;
+  }
+
+  private static double[] append(double[] values, int size, int count) {
+    if (values != null && values.length == size + count) {
+      return values;
+    }
+    final double[] result = new double[size + count];
+    if (size > 0) {
+      System.arraycopy(values, 0, result, 0, size);
+    }
+    return result;
+  }
+
+  /** Bulk copies the rest of the current run into a primitive array. */
+  private void copyTo(Object array, long arrayOffset) {
+    final int length = limit - pos;
+    UNSAFE.copyMemory(base, address + pos, array, arrayOffset, length);
+    pos += length;
+  }
+
+  private void require(int count) throws EOFException {
+    if (limit - pos < count) {
+      throw new EOFException();
+    }
+  }
+
+  private byte byteAt(int index) {
+    return UNSAFE.getByte(base, address + index);
+  }
+
+  private byte[] copy(int from, int length) {
+    final byte[] result = new byte[length];
+    UNSAFE.copyMemory(base, address + from, result, BYTE_ARRAY_BASE_OFFSET, length);
+    return result;
+  }
+
+  private int varint32() throws IOException {
+    int p = pos;
+    if (limit - p < MAX_VARINT_SIZE) {
+      return slowVarint32();
+    }
+
+    // Unrolled so the common one and two byte cases never loop.
+    int b = byteAt(p++);
+    if (b >= 0) {
+      pos = p;
+      return b;
+    }
+    int result = b & 0x7f;
+    if ((b = byteAt(p++)) >= 0) {
+      result |= b << 7;
+    } else {
+      result |= (b & 0x7f) << 7;
+      if ((b = byteAt(p++)) >= 0) {
+        result |= b << 14;
+      } else {
+        result |= (b & 0x7f) << 14;
+        if ((b = byteAt(p++)) >= 0) {
+          result |= b << 21;
+        } else {
+          result |= (b & 0x7f) << 21;
+          result |= (b = byteAt(p++)) << 28;
+          if (b < 0) {
+            // Negative int32s are sign extended to ten bytes. Discard the upper 32 bits.
+            for (int i = 0; i < 5; i++) {
+              if (byteAt(p++) >= 0) {
+                pos = p;
+                return result;
+              }
+            }
+            throw new ProtocolException("Malformed VARINT");
+          }
+        }
+      }
+    }
+    pos = p;
+    return result;
+  }
+
+  private int slowVarint32() throws IOException {
+    int result = 0;
+    for (int shift = 0; shift < 64; shift += 7) {
+      if (pos == limit) {
+        throw new EOFException();
+      }
+      final byte b = byteAt(pos++);
+      if (shift < 32) {
+        result |= (b & 0x7f) << shift;
+      }
+      if (b >= 0) {
+        return result;
+      }
+    }
+    throw new ProtocolException("Malformed VARINT");
+  }
+
+  private long varint64() throws IOException {
+    int p = pos;
+    final boolean checked = limit - p < MAX_VARINT_SIZE;
+    long result = 0;
+    for (int shift = 0; shift < 64; shift += 7) {
+      if (checked && p == limit) {
+        throw new EOFException();
+      }
+      final byte b = byteAt(p++);
+      result |= (long) (b & 0x7f) << shift;
+      if (b >= 0) {
+        pos = p;
+        return result;
+      }
+    }
+    throw new ProtocolException("Malformed VARINT");
+  }
+}
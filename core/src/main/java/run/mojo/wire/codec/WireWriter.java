@@ -0,0 +1,344 @@
+package run.mojo.wire.codec;
+
+import com.squareup.wire.FieldEncoding;
+import com.squareup.wire.ProtoAdapter;
+import com.squareup.wire.ProtoWriter;
+import okio.Buffer;
+import okio.ByteString;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.ReadOnlyBufferException;
+
+import static run.mojo.unsafe.UnsafeHelper.BIG_ENDIAN;
+import static run.mojo.unsafe.UnsafeHelper.BYTE_ARRAY_BASE_OFFSET;
+import static run.mojo.unsafe.UnsafeHelper.DOUBLE_ARRAY_BASE_OFFSET;
+import static run.mojo.unsafe.UnsafeHelper.FLOAT_ARRAY_BASE_OFFSET;
+import static run.mojo.unsafe.UnsafeHelper.INT_ARRAY_BASE_OFFSET;
+import static run.mojo.unsafe.UnsafeHelper.LONG_ARRAY_BASE_OFFSET;
+import static run.mojo.unsafe.UnsafeHelper.UNSAFE;
+import static run.mojo.unsafe.UnsafeHelper.directBufferAddress;
+
+/**
+ * Protocol buffer writer into a {@code byte[]}, heap {@link ByteBuffer} or direct {@link
+ * ByteBuffer}.
+ *
+ * <p>The counterpart of {@link WireReader}. Generated adapters measure a message before writing it
+ * so the destination is sized up front and never grows; every write is still bounds checked and
+ * fails with {@link BufferOverflowException} rather than running past the end.
+ */
+public final class WireWriter {
+  // Null for direct buffers, which are addressed absolutely.
+  private final Object base;
+  private final long address;
+  // Keeps a direct buffer reachable while its memory is being written.
+  private final Object owner;
+  private final int limit;
+
+  private int pos;
+  // Created on the first ByteString write.
+  private RawSink rawSink;
+
+  private WireWriter(Object base, long address, Object owner, int length) {
+    this.base = base;
+    this.address = address;
+    this.owner = owner;
+    this.limit = length;
+  }
+
+  public static WireWriter of(byte[] bytes) {
+    return of(bytes, 0, bytes.length);
+  }
+
+  public static WireWriter of(byte[] bytes, int offset, int length) {
+    if ((offset | length) < 0 || offset > bytes.length - length) {
+      throw new IndexOutOfBoundsException(
+          "offset " + offset + ", length " + length + ", size " + bytes.length);
+    }
+    return new WireWriter(bytes, BYTE_ARRAY_BASE_OFFSET + offset, null, length);
+  }
+
+  /**
+   * Writes into the bytes between the buffer's position and limit. The buffer itself is not
+   * changed; use {@link #position()} to advance it afterwards.
+   */
+  public static WireWriter of(ByteBuffer buffer) {
+    if (buffer.isReadOnly()) {
+      throw new ReadOnlyBufferException();
+    }
+    if (buffer.hasArray()) {
+      return of(buffer.array(), buffer.arrayOffset() + buffer.position(), buffer.remaining());
+    }
+    return new WireWriter(
+        null, directBufferAddress(buffer) + buffer.position(), buffer, buffer.remaining());
+  }
+
+  /** Number of bytes written so far. */
+  public int position() {
+    return pos;
+  }
+
+  /** Same as {@link ProtoWriter#writeTag(int, FieldEncoding)}. */
+  public void writeTag(int fieldNumber, FieldEncoding fieldEncoding) {
+    final int wireType;
+    switch (fieldEncoding) {
+      case VARINT:
+        wireType = 0;
+        break;
+      case FIXED64:
+        wireType = 1;
+        break;
+      case LENGTH_DELIMITED:
+        wireType = 2;
+        break;
+      default:
+        wireType = 5;
+        break;
+    }
+    writeVarint32((fieldNumber << 3) | wireType);
+  }
+
+  /** Writes an int32, sign extending negative values to ten bytes. */
+  public void writeInt32(int value) {
+    if (value >= 0) {
+      writeVarint32(value);
+    } else {
+      writeVarint64(value);
+    }
+  }
+
+  /** Writes {@code value} as an unsigned varint. */
+  public void writeVarint32(int value) {
+    int p = pos;
+    if (limit - p < 5) {
+      require(Scalars.varint32Size(value));
+    }
+    while ((value & ~0x7f) != 0) {
+      UNSAFE.putByte(base, address + p++, (byte) ((value & 0x7f) | 0x80));
+      value >>>= 7;
+    }
+    UNSAFE.putByte(base, address + p++, (byte) value);
+    pos = p;
+  }
+
+  public void writeVarint64(long value) {
+    int p = pos;
+    if (limit - p < 10) {
+      require(Scalars.varint64Size(value));
+    }
+    while ((value & ~0x7fL) != 0) {
+      UNSAFE.putByte(base, address + p++, (byte) ((value & 0x7f) | 0x80));
+      value >>>= 7;
+    }
+    UNSAFE.putByte(base, address + p++, (byte) value);
+    pos = p;
+  }
+
+  public void writeFixed32(int value) {
+    require(4);
+    UNSAFE.putInt(base, address + pos, BIG_ENDIAN ? Integer.reverseBytes(value) : value);
+    pos += 4;
+  }
+
+  public void writeFixed64(long value) {
+    require(8);
+    UNSAFE.putLong(base, address + pos, BIG_ENDIAN ? Long.reverseBytes(value) : value);
+    pos += 8;
+  }
+
+  /** Writes the length prefix and UTF-8 bytes of {@code value}. */
+  public void writeString(String value) {
+    writeString(value, Scalars.utf8Size(value));
+  }
+
+  /**
+   * Same as {@link #writeString(String)} given the value's {@link Scalars#utf8Size}, e.g. recorded
+   * while measuring, so the string is only walked once.
+   */
+  public void writeString(String value, int size) {
+    final int length = value.length();
+    writeVarint32(size);
+    require(size);
+
+    int p = pos;
+    int i = 0;
+    // Plain copy while the chars are ASCII, which is often all of them.
+    for (; i < length; i++) {
+      final char c = value.charAt(i);
+      if (c >= 0x80) {
+        break;
+      }
+      UNSAFE.putByte(base, address + p++, (byte) c);
+    }
+    for (; i < length; i++) {
+      final char c = value.charAt(i);
+      if (c < 0x80) {
+        UNSAFE.putByte(base, address + p++, (byte) c);
+      } else if (c < 0x800) {
+        UNSAFE.putByte(base, address + p++, (byte) (0xc0 | (c >> 6)));
+        UNSAFE.putByte(base, address + p++, (byte) (0x80 | (c & 0x3f)));
+      } else if (c < 0xd800 || c > 0xdfff) {
+        UNSAFE.putByte(base, address + p++, (byte) (0xe0 | (c >> 12)));
+        UNSAFE.putByte(base, address + p++, (byte) (0x80 | ((c >> 6) & 0x3f)));
+        UNSAFE.putByte(base, address + p++, (byte) (0x80 | (c & 0x3f)));
+      } else {
+        final char low = i + 1 < length ? value.charAt(i + 1) : 0;
+        if (c > 0xdbff || low < 0xdc00 || low > 0xdfff) {
+          // Unpaired surrogate, replaced the same way Okio does.
+          UNSAFE.putByte(base, address + p++, (byte) '?');
+        } else {
+          final int codePoint = 0x10000 + (((c & 0x3ff) << 10) | (low & 0x3ff));
+          UNSAFE.putByte(base, address + p++, (byte) (0xf0 | (codePoint >> 18)));
+          UNSAFE.putByte(base, address + p++, (byte) (0x80 | ((codePoint >> 12) & 0x3f)));
+          UNSAFE.putByte(base, address + p++, (byte) (0x80 | ((codePoint >> 6) & 0x3f)));
+          UNSAFE.putByte(base, address + p++, (byte) (0x80 | (codePoint & 0x3f)));
+          i++;
+        }
+      }
+    }
+    pos = p;
+  }
+
+  /**
+   * Writes the length prefix and contents of {@code value}. The contents are copied straight from
+   * the backing array, or from each segment of a segmented string, without a temporary copy.
+   */
+  public void writeBytes(ByteString value) {
+    final int size = value.size();
+    writeVarint32(size);
+    require(size);
+    if (rawSink == null) {
+      rawSink = new RawSink();
+    }
+    try {
+      value.write(rawSink);
+    } catch (IOException e) {
+      throw new AssertionError(e);
+    }
+  }
+
+  /** Writes the length prefix and contents of {@code value}. */
+  public void writeBytes(byte[] value) {
+    writeVarint32(value.length);
+    writeRaw(value, 0, value.length);
+  }
+
+  /** Copies bytes that are already encoded. */
+  public void writeRaw(byte[] bytes, int offset, int length) {
+    if ((offset | length) < 0 || offset > bytes.length - length) {
+      throw new IndexOutOfBoundsException(
+          "offset " + offset + ", length " + length + ", size " + bytes.length);
+    }
+    require(length);
+    UNSAFE.copyMemory(bytes, BYTE_ARRAY_BASE_OFFSET + offset, base, address + pos, length);
+    pos += length;
+  }
+
+  // Packed payloads. The tag and length prefix are written by the caller, see PackedArrays for
+  // the payload sizes. Fixed width values are bulk copied, which keeps NaN payloads as they are
+  // rather than collapsing them the way Float.floatToIntBits does.
+
+  public void writePackedInt32(int[] values) {
+    for (int value : values) {
+      writeInt32(value);
+    }
+  }
+
+  public void writePackedSInt32(int[] values) {
+    for (int value : values) {
+      writeVarint32(Scalars.encodeZigZag32(value));
+    }
+  }
+
+  public void writePackedInt64(long[] values) {
+    for (long value : values) {
+      writeVarint64(value);
+    }
+  }
+
+  public void writePackedSInt64(long[] values) {
+    for (long value : values) {
+      writeVarint64(Scalars.encodeZigZag64(value));
+    }
+  }
+
+  public void writePackedFixed32(int[] values) {
+    if (BIG_ENDIAN) {
+      for (int value : values) {
+        writeFixed32(value);
+      }
+      return;
+    }
+    copyFrom(values, INT_ARRAY_BASE_OFFSET, values.length << 2);
+  }
+
+  public void writePackedFixed64(long[] values) {
+    if (BIG_ENDIAN) {
+      for (long value : values) {
+        writeFixed64(value);
+      }
+      return;
+    }
+    copyFrom(values, LONG_ARRAY_BASE_OFFSET, values.length << 3);
+  }
+
+  public void writePackedFloat(float[] values) {
+    if (BIG_ENDIAN) {
+      for (float value : values) {
+        writeFixed32(Float.floatToIntBits(value));
+      }
+      return;
+    }
+    copyFrom(values, FLOAT_ARRAY_BASE_OFFSET, values.length << 2);
+  }
+
+  public void writePackedDouble(double[] values) {
+    if (BIG_ENDIAN) {
+      for (double value : values) {
+        writeFixed64(Double.doubleToLongBits(value));
+      }
+      return;
+    }
+    copyFrom(values, DOUBLE_ARRAY_BASE_OFFSET, values.length << 3);
+  }
+
+  /**
+   * Writes {@code value} with an adapter that has no {@link WireWriter} support, e.g. a map or a
+   * hand written adapter. The adapter encodes through Okio and the result is copied in.
+   */
+  public <T> void write(ProtoAdapter<T> adapter, int fieldNumber, T value) throws IOException {
+    final Buffer buffer = new Buffer();
+    adapter.encodeWithTag(new ProtoWriter(buffer), fieldNumber, value);
+    final byte[] bytes = buffer.readByteArray();
+    writeRaw(bytes, 0, bytes.length);
+  }
+
+  /** Bulk copies a little-endian primitive array. */
+  private void copyFrom(Object array, long arrayBaseOffset, int byteCount) {
+    require(byteCount);
+    UNSAFE.copyMemory(array, arrayBaseOffset, base, address + pos, byteCount);
+    pos += byteCount;
+  }
+
+  /** Hands {@link ByteString#write} the destination without going through a byte array. */
+  private final class RawSink extends OutputStream {
+    @Override
+    public void write(int b) {
+      require(1);
+      UNSAFE.putByte(base, address + pos++, (byte) b);
+    }
+
+    @Override
+    public void write(byte[] bytes, int offset, int length) {
+      writeRaw(bytes, offset, length);
+    }
+  }
+
+  private void require(int count) {
+    if (limit - pos < count) {
+      throw new BufferOverflowException();
+    }
+  }
+}
@@ -0,0 +1,44 @@
+package run.mojo.wire.codec;
+
+import java.net.ProtocolException;
+import java.time.ZoneId;
+import java.util.Arrays;
+
+/**
+ * Zones already written in, or read from, one message, so that {@link ZonedDateTimes} only writes
+ * each zone's id once per message and refers back to it by index after that. Values are written
+ * and read in the same order, so both sides build the same dictionary as they go.
+ *
+ * <p>Generated adapters create one per measure, encode and decode of a message that has {@link
+ * java.time.ZonedDateTime} fields.
+ */
+public final class ZoneDictionary {
+  private ZoneId[] zones = new ZoneId[4];
+  private int size;
+
+  /** Index of {@code zone}, or -1 if it wasn't seen before, in which case it is added. */
+  int indexOrAdd(ZoneId zone) {
+    for (int i = 0; i < size; i++) {
+      final ZoneId seen = zones[i];
+      if (seen == zone || seen.equals(zone)) {
+        return i;
+      }
+    }
+    add(zone);
+    return -1;
+  }
+
+  void add(ZoneId zone) {
+    if (size == zones.length) {
+      zones = Arrays.copyOf(zones, size << 1);
+    }
+    zones[size++] = zone;
+  }
+
+  ZoneId get(int index) throws ProtocolException {
+    if (index < 0 || index >= size) {
+      throw new ProtocolException("Zone " + index + " not defined; " + size + " zones so far");
+    }
+    return zones[index];
+  }
+}
@@ -0,0 +1,227 @@
+package run.mojo.wire.codec;
+
+import com.squareup.wire.FieldEncoding;
+import com.squareup.wire.ProtoAdapter;
+import com.squareup.wire.ProtoReader;
+import com.squareup.wire.ProtoWriter;
+
+import java.io.IOException;
+import java.net.ProtocolException;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * {@link ZonedDateTime} codec. A value is written as its instant and zone, in a small message,
+ * {@code run.mojo.wire.ZonedTimestamp}:
+ *
+ * <pre>
+ * message ZonedTimestamp {
+ *   optional int64 seconds = 1;
+ *   optional int32 nanos = 2;
+ *   optional string zone = 3;
+ *   optional uint32 zone_ref = 4;
+ * }
+ * </pre>
+ *
+ * <p>Within a message the first value in each zone carries the zone's id, and later ones just
+ * {@code zone_ref}, the index of that zone among the ones the message introduced so far. See {@link
+ * ZoneDictionary}. {@link #ADAPTER} has no dictionary and always writes the id.
+ */
+public final class ZonedDateTimes {
+  public static final ProtoAdapter<ZonedDateTime> ADAPTER = new Adapter();
+
+  // Keys are (tag << 3) | wire type.
+  private static final int SECONDS_KEY = (1 << 3);
+  private static final int NANOS_KEY = (2 << 3);
+  private static final int ZONE_KEY = (3 << 3) | 2;
+  private static final int ZONE_REF_KEY = (4 << 3);
+
+  // Zones by id, so that decoding doesn't parse the id and look up its rules every time. Ids are
+  // region names and offsets, of which there are only so many; the bound is a safety net.
+  private static final ConcurrentHashMap<String, ZoneId> ZONES = new ConcurrentHashMap<>();
+  private static final int MAX_ZONES = 4096;
+
+  private ZonedDateTimes() {}
+
+  /** Size of {@code value}'s fields tagged {@code tag}, adding its zone to {@code zones}. */
+  public static int encodedSizeWithTag(int tag, ZonedDateTime value, ZoneDictionary zones) {
+    final int size = size(value, zones.indexOrAdd(value.getZone()));
+    return Scalars.varint32Size(tag << 3) + Scalars.varint32Size(size) + size;
+  }
+
+  /** Writes the length prefix and fields of {@code value}, adding its zone to {@code zones}. */
+  public static void write(WireWriter writer, ZonedDateTime value, ZoneDictionary zones) {
+    final ZoneId zone = value.getZone();
+    final int ref = zones.indexOrAdd(zone);
+    writer.writeVarint32(size(value, ref));
+    final long seconds = value.toEpochSecond();
+    final int nanos = value.getNano();
+    if (seconds != 0) {
+      writer.writeVarint32(SECONDS_KEY);
+      writer.writeVarint64(seconds);
+    }
+    if (nanos != 0) {
+      writer.writeVarint32(NANOS_KEY);
+      writer.writeVarint32(nanos);
+    }
+    if (ref == -1) {
+      writer.writeVarint32(ZONE_KEY);
+      writer.writeString(zone.getId());
+    } else {
+      writer.writeVarint32(ZONE_REF_KEY);
+      writer.writeVarint32(ref);
+    }
+  }
+
+  /** Same as {@link #write(WireWriter, ZonedDateTime, ZoneDictionary)}. */
+  public static void write(ProtoWriter writer, ZonedDateTime value, ZoneDictionary zones)
+      throws IOException {
+    final int ref = zones.indexOrAdd(value.getZone());
+    writer.writeVarint32(size(value, ref));
+    encode(writer, value, ref);
+  }
+
+  /** Reads a value written by {@link #write}, positioned after its tag. */
+  public static ZonedDateTime read(WireReader reader, ZoneDictionary zones) throws IOException {
+    final long token = reader.beginMessage();
+    long seconds = 0;
+    int nanos = 0;
+    ZoneId zone = null;
+    for (int tag; (tag = reader.nextTag()) != -1; ) {
+      switch (tag) {
+        case 1:
+          seconds = reader.readVarint64();
+          break;
+        case 2:
+          nanos = reader.readVarint32();
+          break;
+        case 3:
+          zone = zoneOf(reader.readString());
+          zones.add(zone);
+          break;
+        case 4:
+          zone = zones.get(reader.readVarint32());
+          break;
+        default:
+          reader.skip();
+          break;
+      }
+    }
+    reader.endMessage(token);
+    return ZonedDateTime.ofInstant(
+        Instant.ofEpochSecond(seconds, nanos), zone != null ? zone : ZoneOffset.UTC);
+  }
+
+  /** Same as {@link #read(WireReader, ZoneDictionary)}. {@link #ADAPTER} passes null zones. */
+  public static ZonedDateTime read(ProtoReader reader, ZoneDictionary zones) throws IOException {
+    final long token = reader.beginMessage();
+    long seconds = 0;
+    int nanos = 0;
+    ZoneId zone = null;
+    for (int tag; (tag = reader.nextTag()) != -1; ) {
+      switch (tag) {
+        case 1:
+          seconds = reader.readVarint64();
+          break;
+        case 2:
+          nanos = reader.readVarint32();
+          break;
+        case 3:
+          zone = zoneOf(reader.readString());
+          if (zones != null) {
+            zones.add(zone);
+          }
+          break;
+        case 4:
+          if (zones == null) {
+            throw new ProtocolException("zone_ref outside of a message");
+          }
+          zone = zones.get(reader.readVarint32());
+          break;
+        default:
+          reader.skip();
+          break;
+      }
+    }
+    reader.endMessage(token);
+    return ZonedDateTime.ofInstant(
+        Instant.ofEpochSecond(seconds, nanos), zone != null ? zone : ZoneOffset.UTC);
+  }
+
+  // ref is the zone's index in the dictionary, or -1 to write its id.
+  private static int size(ZonedDateTime value, int ref) {
+    final long seconds = value.toEpochSecond();
+    final int nanos = value.getNano();
+    int size = 0;
+    if (seconds != 0) {
+      size += 1 + Scalars.varint64Size(seconds);
+    }
+    if (nanos != 0) {
+      size += 1 + Scalars.varint32Size(nanos);
+    }
+    if (ref == -1) {
+      final int length = Scalars.utf8Size(value.getZone().getId());
+      size += 1 + Scalars.varint32Size(length) + length;
+    } else {
+      size += 1 + Scalars.varint32Size(ref);
+    }
+    return size;
+  }
+
+  private static void encode(ProtoWriter writer, ZonedDateTime value, int ref) throws IOException {
+    final long seconds = value.toEpochSecond();
+    final int nanos = value.getNano();
+    if (seconds != 0) {
+      writer.writeVarint32(SECONDS_KEY);
+      writer.writeVarint64(seconds);
+    }
+    if (nanos != 0) {
+      writer.writeVarint32(NANOS_KEY);
+      writer.writeVarint32(nanos);
+    }
+    if (ref == -1) {
+      final String id = value.getZone().getId();
+      writer.writeVarint32(ZONE_KEY);
+      writer.writeVarint32(Scalars.utf8Size(id));
+      writer.writeString(id);
+    } else {
+      writer.writeVarint32(ZONE_REF_KEY);
+      writer.writeVarint32(ref);
+    }
+  }
+
+  private static ZoneId zoneOf(String id) {
+    ZoneId zone = ZONES.get(id);
+    if (zone == null) {
+      zone = ZoneId.of(id);
+      if (ZONES.size() < MAX_ZONES) {
+        ZONES.put(id, zone);
+      }
+    }
+    return zone;
+  }
+
+  private static final class Adapter extends ProtoAdapter<ZonedDateTime> {
+    Adapter() {
+      super(FieldEncoding.LENGTH_DELIMITED, ZonedDateTime.class);
+    }
+
+    @Override
+    public int encodedSize(ZonedDateTime value) {
+      return size(value, -1);
+    }
+
+    @Override
+    public void encode(ProtoWriter writer, ZonedDateTime value) throws IOException {
+      ZonedDateTimes.encode(writer, value, -1);
+    }
+
+    @Override
+    public ZonedDateTime decode(ProtoReader reader) throws IOException {
+      return read(reader, null);
+    }
+  }
+}
@@ -0,0 +1,83 @@
+package run.mojo.wire.type;
+
+import run.mojo.unsafe.UnsafeHelper;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * The declared members of a class that {@link ReflectionSchema#extractProps} matches up, read
+ * once per class and shared by every schema and thread. Reflection hands out fresh copies of
+ * fields and methods on every call, so holding on to them also keeps their parsed annotations.
+ */
+final class ClassMembers {
+  private static final ClassValue<ClassMembers> MEMBERS =
+      new ClassValue<ClassMembers>() {
+        @Override
+        protected ClassMembers computeValue(Class<?> type) {
+          return new ClassMembers(type);
+        }
+      };
+
+  // Non-static declared fields, in declaration order.
+  final Field[] fields;
+  // Each field's generic type and native offset, -1 if it has none.
+  final Type[] genericTypes;
+  final long[] offsets;
+  // Last declared method of each name.
+  private final HashMap<String, Method> methods = new HashMap<>();
+  // First declared method of each name taking no arguments, for fluent getters.
+  private final HashMap<String, Method> noArgMethods = new HashMap<>();
+
+  private ClassMembers(Class<?> cls) {
+    final List<Field> declared = new ArrayList<>();
+    for (Field field : cls.getDeclaredFields()) {
+      if (!Modifier.isStatic(field.getModifiers())) {
+        declared.add(field);
+      }
+    }
+    fields = declared.toArray(new Field[0]);
+    genericTypes = new Type[fields.length];
+    offsets = new long[fields.length];
+    for (int i = 0; i < fields.length; i++) {
+      genericTypes[i] = fields[i].getGenericType();
+      // Parsed now so it's done on whichever thread builds the table.
+      fields[i].getDeclaredAnnotations();
+      try {
+        offsets[i] = UnsafeHelper.objectFieldOffset(fields[i]);
+      } catch (Throwable e) {
+        offsets[i] = -1;
+        System.err.println("could not get native field offset");
+      }
+    }
+    for (Method method : cls.getDeclaredMethods()) {
+      methods.put(method.getName(), method);
+      if (method.getParameterCount() == 0) {
+        noArgMethods.putIfAbsent(method.getName(), method);
+      }
+    }
+  }
+
+  static ClassMembers of(Class<?> cls) {
+    return MEMBERS.get(cls);
+  }
+
+  /**
+   * Last declared method named {@code name}, unless {@code taken} already holds that name, which it
+   * adds so the same method doesn't match two fields.
+   */
+  Method take(String name, Set<String> taken) {
+    return taken.add(name) ? methods.get(name) : null;
+  }
+
+  /** First declared no-arg method named {@code name}, taken or not. */
+  Method noArgMethod(String name) {
+    return noArgMethods.get(name);
+  }
+}
@@ -0,0 +1,487 @@
+package run.mojo.wire.type;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.lang.reflect.Modifier;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Predicate;
+import java.util.jar.Attributes;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+import java.util.jar.Manifest;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Finds classes on a class loader's classpath by reading their class files, without loading them.
+ *
+ * <p>Each class file is parsed only as far as its header: access flags, name, superclass,
+ * interfaces and class annotations, so a filter can pick out messages and handlers by name,
+ * supertype or annotation and only those are ever loaded, through {@link ClassHeader#load()}. Jars
+ * and directories are scanned in parallel.
+ */
+public final class ClassScanner {
+  private final ClassLoader loader;
+  private final List<File> roots;
+  // Resource path prefixes, e.g. "com/example/", a class must be under to be read at all.
+  private String[] prefixes = {""};
+
+  private ClassScanner(ClassLoader loader, List<File> roots) {
+    this.loader = loader;
+    this.roots = roots;
+  }
+
+  /** Scanner over every jar and directory {@code loader} and its parents load from. */
+  public static ClassScanner of(ClassLoader loader) {
+    final Set<File> roots = new LinkedHashSet<>();
+    for (ClassLoader l = loader; l != null; l = l.getParent()) {
+      if (l instanceof URLClassLoader) {
+        for (URL url : ((URLClassLoader) l).getURLs()) {
+          addRoot(roots, url);
+        }
+      }
+      if (l == ClassLoader.getSystemClassLoader()) {
+        for (String path : System.getProperty("java.class.path").split(File.pathSeparator)) {
+          if (!path.isEmpty()) {
+            addRoot(roots, new File(path));
+          }
+        }
+      }
+    }
+    return new ClassScanner(loader, new ArrayList<>(roots));
+  }
+
+  /** Only reads classes in these packages or their subpackages. */
+  public ClassScanner packages(String... packages) {
+    prefixes = new String[packages.length];
+    for (int i = 0; i < packages.length; i++) {
+      prefixes[i] = packages[i].replace('.', '/') + '/';
+    }
+    return this;
+  }
+
+  /**
+   * Hash of every root's path, size and modification time, and those of the class files under a
+   * directory root, so it changes whenever anything on the classpath does.
+   */
+  public long fingerprint() {
+    long hash = 1125899906842597L;
+    for (File root : roots) {
+      hash = 31 * hash + root.getPath().hashCode();
+      if (root.isDirectory()) {
+        // Summed, since directories list in no particular order.
+        long files = 0;
+        try (Stream<Path> walk = Files.walk(root.toPath())) {
+          for (Path file : (Iterable<Path>) walk::iterator) {
+            if (file.toString().endsWith(".class")) {
+              final File f = file.toFile();
+              files += (31L * file.toString().hashCode() + f.length()) * 31 + f.lastModified();
+            }
+          }
+        } catch (IOException | UncheckedIOException e) {
+          files = -1;
+        }
+        hash = 31 * hash + files;
+      } else {
+        hash = 31 * hash + root.length();
+        hash = 31 * hash + root.lastModified();
+      }
+    }
+    return hash;
+  }
+
+  /** Headers of every class {@code filter} accepts. */
+  public List<ClassHeader> scan(Predicate<ClassHeader> filter) {
+    return roots
+        .parallelStream()
+        .flatMap(root -> scan(root, filter).stream())
+        .collect(Collectors.toList());
+  }
+
+  private List<ClassHeader> scan(File root, Predicate<ClassHeader> filter) {
+    final List<ClassHeader> result = new ArrayList<>();
+    try {
+      if (root.isDirectory()) {
+        final Path base = root.toPath();
+        try (Stream<Path> files = Files.walk(base)) {
+          for (Path file : (Iterable<Path>) files::iterator) {
+            final String path = base.relativize(file).toString().replace(File.separatorChar, '/');
+            if (isCandidate(path)) {
+              accept(Files.readAllBytes(file), filter, result);
+            }
+          }
+        }
+      } else {
+        try (JarFile jar = new JarFile(root)) {
+          final Enumeration<JarEntry> entries = jar.entries();
+          while (entries.hasMoreElements()) {
+            final JarEntry entry = entries.nextElement();
+            if (isCandidate(entry.getName())) {
+              try (InputStream in = jar.getInputStream(entry)) {
+                accept(readAll(in, (int) entry.getSize()), filter, result);
+              }
+            }
+          }
+        }
+      }
+    } catch (IOException | UncheckedIOException e) {
+      // Unreadable roots are skipped, the same as a class loader would.
+    }
+    return result;
+  }
+
+  private void accept(byte[] bytes, Predicate<ClassHeader> filter, List<ClassHeader> result) {
+    ClassHeader header;
+    try {
+      header = ClassHeader.parse(bytes, loader);
+    } catch (RuntimeException e) {
+      // Truncated or malformed.
+      header = null;
+    }
+    if (header != null && filter.test(header)) {
+      result.add(header);
+    }
+  }
+
+  private boolean isCandidate(String path) {
+    if (!path.endsWith(".class")
+        || path.startsWith("META-INF/")
+        || path.endsWith("module-info.class")
+        || path.endsWith("package-info.class")) {
+      return false;
+    }
+    for (String prefix : prefixes) {
+      if (path.startsWith(prefix)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private static void addRoot(Set<File> roots, URL url) {
+    if (!"file".equals(url.getProtocol())) {
+      return;
+    }
+    try {
+      addRoot(roots, Paths.get(url.toURI()).toFile());
+    } catch (URISyntaxException | IllegalArgumentException e) {
+      addRoot(roots, new File(url.getPath()));
+    }
+  }
+
+  /** Adds {@code file} and, for a jar, whatever its manifest's Class-Path names. */
+  private static void addRoot(Set<File> roots, File file) {
+    if (!file.exists() || !roots.add(file) || file.isDirectory()) {
+      return;
+    }
+    try (JarFile jar = new JarFile(file)) {
+      final Manifest manifest = jar.getManifest();
+      final String classPath =
+          manifest == null
+              ? null
+              : manifest.getMainAttributes().getValue(Attributes.Name.CLASS_PATH);
+      if (classPath != null) {
+        for (String path : classPath.trim().split("\\s+")) {
+          if (!path.isEmpty()) {
+            addRoot(roots, new URL(file.toURI().toURL(), path));
+          }
+        }
+      }
+    } catch (IOException e) {
+      // Not a jar.
+    }
+  }
+
+  private static byte[] readAll(InputStream in, int size) throws IOException {
+    final ByteArrayOutputStream out = new ByteArrayOutputStream(size > 0 ? size : 4096);
+    final byte[] buffer = new byte[8192];
+    for (int n; (n = in.read(buffer)) != -1; ) {
+      out.write(buffer, 0, n);
+    }
+    return out.toByteArray();
+  }
+
+  /** What a class file says about its class, read without loading it. */
+  public static final class ClassHeader {
+    private static final int ACC_ANNOTATION = 0x2000;
+    private static final int ACC_ENUM = 0x4000;
+
+    private final ClassLoader loader;
+    // Binary names, e.g. "com.example.Outer$Inner".
+    public final String name;
+    // Null only for java.lang.Object.
+    public final String superName;
+    public final List<String> interfaces;
+    // Class level annotations, visible and invisible at runtime.
+    public final List<String> annotations;
+    public final int access;
+
+    private ClassHeader(
+        ClassLoader loader,
+        String name,
+        String superName,
+        List<String> interfaces,
+        List<String> annotations,
+        int access) {
+      this.loader = loader;
+      this.name = name;
+      this.superName = superName;
+      this.interfaces = interfaces;
+      this.annotations = annotations;
+      this.access = access;
+    }
+
+    public String packageName() {
+      final int dot = name.lastIndexOf('.');
+      return dot < 0 ? "" : name.substring(0, dot);
+    }
+
+    /** Name without its package or enclosing classes, empty for anonymous classes. */
+    public String simpleName() {
+      final int inner = name.lastIndexOf('$');
+      if (inner < 0) {
+        return name.substring(name.lastIndexOf('.') + 1);
+      }
+      int start = inner + 1;
+      while (start < name.length() && Character.isDigit(name.charAt(start))) {
+        start++;
+      }
+      return name.substring(start);
+    }
+
+    public boolean isPublic() {
+      return Modifier.isPublic(access);
+    }
+
+    public boolean isAbstract() {
+      return Modifier.isAbstract(access);
+    }
+
+    public boolean isInterface() {
+      return Modifier.isInterface(access);
+    }
+
+    public boolean isEnum() {
+      return (access & ACC_ENUM) != 0;
+    }
+
+    public boolean isAnnotation() {
+      return (access & ACC_ANNOTATION) != 0;
+    }
+
+    public boolean isAnnotatedWith(Class<?> annotation) {
+      return annotations.contains(annotation.getName());
+    }
+
+    /** Loads the class, without initializing it. */
+    public Class<?> load() {
+      try {
+        return loader.loadClass(name);
+      } catch (ClassNotFoundException e) {
+        throw new IllegalStateException(e);
+      }
+    }
+
+    @Override
+    public String toString() {
+      return name;
+    }
+
+    /** Parses the header of a class file, or returns null if it isn't one. */
+    static ClassHeader parse(byte[] bytes, ClassLoader loader) {
+      final Cursor in = new Cursor(bytes);
+      if (bytes.length < 10 || in.u4() != 0xCAFEBABE) {
+        return null;
+      }
+      in.skip(4);
+      final int count = in.u2();
+      // Offset of each constant pool entry's payload, just past its tag.
+      final int[] offsets = new int[count];
+      for (int i = 1; i < count; i++) {
+        final int tag = in.u1();
+        offsets[i] = in.position;
+        switch (tag) {
+          case 1: // Utf8
+            in.skip(in.u2());
+            break;
+          case 7: // Class
+          case 8: // String
+          case 16: // MethodType
+          case 19: // Module
+          case 20: // Package
+            in.skip(2);
+            break;
+          case 15: // MethodHandle
+            in.skip(3);
+            break;
+          case 3: // Integer
+          case 4: // Float
+          case 9: // Fieldref
+          case 10: // Methodref
+          case 11: // InterfaceMethodref
+          case 12: // NameAndType
+          case 17: // Dynamic
+          case 18: // InvokeDynamic
+            in.skip(4);
+            break;
+          case 5: // Long
+          case 6: // Double
+            in.skip(8);
+            i++;
+            break;
+          default:
+            return null;
+        }
+      }
+      final Pool pool = new Pool(bytes, offsets);
+      final int access = in.u2();
+      final String name = pool.className(in.u2());
+      final int superIndex = in.u2();
+      final String superName = superIndex == 0 ? null : pool.className(superIndex);
+      final int interfaceCount = in.u2();
+      final List<String> interfaces = new ArrayList<>(interfaceCount);
+      for (int i = 0; i < interfaceCount; i++) {
+        interfaces.add(pool.className(in.u2()));
+      }
+      // Fields then methods, neither of which we need.
+      for (int members = 0; members < 2; members++) {
+        for (int i = in.u2(); i > 0; i--) {
+          in.skip(6);
+          skipAttributes(in);
+        }
+      }
+      List<String> annotations = Collections.emptyList();
+      for (int i = in.u2(); i > 0; i--) {
+        final String attribute = pool.utf8(in.u2());
+        final int length = in.u4();
+        final int end = in.position + length;
+        if ("RuntimeVisibleAnnotations".equals(attribute)
+            || "RuntimeInvisibleAnnotations".equals(attribute)) {
+          if (annotations.isEmpty()) {
+            annotations = new ArrayList<>();
+          }
+          for (int n = in.u2(); n > 0; n--) {
+            final String descriptor = pool.utf8(in.u2());
+            annotations.add(descriptor.substring(1, descriptor.length() - 1).replace('/', '.'));
+            skipElementValuePairs(in);
+          }
+        }
+        in.position = end;
+      }
+      return new ClassHeader(loader, name, superName, interfaces, annotations, access);
+    }
+
+    private static void skipAttributes(Cursor in) {
+      for (int i = in.u2(); i > 0; i--) {
+        in.skip(2);
+        in.skip(in.u4());
+      }
+    }
+
+    private static void skipElementValuePairs(Cursor in) {
+      for (int i = in.u2(); i > 0; i--) {
+        in.skip(2);
+        skipElementValue(in);
+      }
+    }
+
+    private static void skipElementValue(Cursor in) {
+      switch (in.u1()) {
+        case 'e':
+          in.skip(4);
+          break;
+        case '@':
+          in.skip(2);
+          skipElementValuePairs(in);
+          break;
+        case '[':
+          for (int i = in.u2(); i > 0; i--) {
+            skipElementValue(in);
+          }
+          break;
+        default:
+          // Constants and classes are a single pool index.
+          in.skip(2);
+          break;
+      }
+    }
+  }
+
+  /** Big-endian reader over a class file. */
+  private static final class Cursor {
+    final byte[] bytes;
+    int position;
+
+    Cursor(byte[] bytes) {
+      this.bytes = bytes;
+    }
+
+    int u1() {
+      return bytes[position++] & 0xff;
+    }
+
+    int u2() {
+      return (u1() << 8) | u1();
+    }
+
+    int u4() {
+      return (u2() << 16) | u2();
+    }
+
+    void skip(int n) {
+      position += n;
+    }
+  }
+
+  /** Constant pool entries, decoded when asked for. */
+  private static final class Pool {
+    final byte[] bytes;
+    final int[] offsets;
+
+    Pool(byte[] bytes, int[] offsets) {
+      this.bytes = bytes;
+      this.offsets = offsets;
+    }
+
+    String utf8(int index) {
+      final Cursor in = new Cursor(bytes);
+      in.position = offsets[index];
+      final int length = in.u2();
+      final char[] chars = new char[length];
+      int n = 0;
+      // Modified UTF-8: no four byte forms and NUL as two bytes, which this decodes as is.
+      for (int end = in.position + length; in.position < end; ) {
+        final int c = in.u1();
+        if (c < 0x80) {
+          chars[n++] = (char) c;
+        } else if (c < 0xe0) {
+          chars[n++] = (char) (((c & 0x1f) << 6) | (in.u1() & 0x3f));
+        } else {
+          chars[n++] = (char) (((c & 0x0f) << 12) | ((in.u1() & 0x3f) << 6) | (in.u1() & 0x3f));
+        }
+      }
+      return new String(chars, 0, n);
+    }
+
+    /** Binary name of the class at a CONSTANT_Class index. */
+    String className(int index) {
+      final Cursor in = new Cursor(bytes);
+      in.position = offsets[index];
+      return utf8(in.u2()).replace('/', '.');
+    }
+  }
+}
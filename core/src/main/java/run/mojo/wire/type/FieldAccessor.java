@@ -0,0 +1,480 @@
+package run.mojo.wire.type;
+
+import run.mojo.unsafe.UnsafeHelper;
+
+import java.lang.invoke.LambdaMetafactory;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+
+/**
+ * Reads and writes one {@link FieldDesc} of an object without reflection, with a typed variant for
+ * each primitive so nothing is boxed. Call the variant matching {@link FieldDesc#javaKind}.
+ *
+ * <p>A public getter or setter is bound through {@link LambdaMetafactory}, so the call is as
+ * direct as a hand written one and inlines once the JIT sees a single accessor at a call site. Any
+ * other access goes straight to the field at its {@link FieldDesc#offset}.
+ */
+public abstract class FieldAccessor {
+  private static final MethodHandles.Lookup LOOKUP = MethodHandles.lookup();
+
+  public final FieldDesc field;
+
+  FieldAccessor(FieldDesc field) {
+    this.field = field;
+  }
+
+  /** Accessor for {@code field}. Prefer {@link FieldDesc#accessor()}, which builds it once. */
+  public static FieldAccessor of(FieldDesc field) {
+    final Object getter = spinGetter(field);
+    final Object setter = spinSetter(field);
+    if (getter == null && setter == null) {
+      return new Direct(field);
+    }
+    return new Bound(field, getter, setter);
+  }
+
+  public abstract boolean getBoolean(Object target);
+
+  public abstract void setBoolean(Object target, boolean value);
+
+  public abstract byte getByte(Object target);
+
+  public abstract void setByte(Object target, byte value);
+
+  public abstract short getShort(Object target);
+
+  public abstract void setShort(Object target, short value);
+
+  public abstract char getChar(Object target);
+
+  public abstract void setChar(Object target, char value);
+
+  public abstract int getInt(Object target);
+
+  public abstract void setInt(Object target, int value);
+
+  public abstract long getLong(Object target);
+
+  public abstract void setLong(Object target, long value);
+
+  public abstract float getFloat(Object target);
+
+  public abstract void setFloat(Object target, float value);
+
+  public abstract double getDouble(Object target);
+
+  public abstract void setDouble(Object target, double value);
+
+  public abstract Object getObject(Object target);
+
+  public abstract void setObject(Object target, Object value);
+
+  /** Getter bound to one of the typed getter interfaces, or null to read the field. */
+  private static Object spinGetter(FieldDesc field) {
+    final Method method = field.getter;
+    if (!bindable(method) || method.getParameterCount() != 0) {
+      return null;
+    }
+    final Class<?> type = method.getReturnType();
+    final Class<?> dataClass = field.dataClass;
+    if (dataClass.isPrimitive() ? type != dataClass : !dataClass.isAssignableFrom(type)) {
+      return null;
+    }
+    final Class<?> sam = getterOf(type);
+    return spin(
+        method,
+        sam,
+        MethodType.methodType(type.isPrimitive() ? type : Object.class, Object.class),
+        MethodType.methodType(type, method.getDeclaringClass()));
+  }
+
+  /** Setter bound to one of the typed setter interfaces, or null to write the field. */
+  private static Object spinSetter(FieldDesc field) {
+    final Method method = field.setter;
+    if (!bindable(method) || method.getParameterCount() != 1) {
+      return null;
+    }
+    final Class<?> type = method.getParameterTypes()[0];
+    final Class<?> dataClass = field.dataClass;
+    if (dataClass.isPrimitive() ? type != dataClass : !type.isAssignableFrom(dataClass)) {
+      return null;
+    }
+    final Class<?> sam = setterOf(type);
+    return spin(
+        method,
+        sam,
+        MethodType.methodType(void.class, Object.class, type.isPrimitive() ? type : Object.class),
+        MethodType.methodType(void.class, method.getDeclaringClass(), type));
+  }
+
+  /**
+   * Whether {@code method} can be bound from here. The spun class links against the declaring
+   * class from this class's loader, so it has to be public and visible there.
+   */
+  private static boolean bindable(Method method) {
+    if (method == null
+        || Modifier.isStatic(method.getModifiers())
+        || !Modifier.isPublic(method.getModifiers())
+        || !Modifier.isPublic(method.getDeclaringClass().getModifiers())) {
+      return false;
+    }
+    final Class<?> declaring = method.getDeclaringClass();
+    try {
+      return Class.forName(declaring.getName(), false, FieldAccessor.class.getClassLoader())
+          == declaring;
+    } catch (ClassNotFoundException e) {
+      return false;
+    }
+  }
+
+  private static Object spin(Method method, Class<?> sam, MethodType erased, MethodType exact) {
+    try {
+      final MethodHandle impl = LOOKUP.unreflect(method);
+      final String name = sam.getMethods()[0].getName();
+      return LambdaMetafactory.metafactory(
+              LOOKUP, name, MethodType.methodType(sam), erased, impl, exact)
+          .getTarget()
+          .invoke();
+    } catch (Throwable e) {
+      // Bound accessors are only an optimization; the field is still there.
+      return null;
+    }
+  }
+
+  private static Class<?> getterOf(Class<?> type) {
+    if (type == boolean.class) return BooleanGetter.class;
+    if (type == byte.class) return ByteGetter.class;
+    if (type == short.class) return ShortGetter.class;
+    if (type == char.class) return CharGetter.class;
+    if (type == int.class) return IntGetter.class;
+    if (type == long.class) return LongGetter.class;
+    if (type == float.class) return FloatGetter.class;
+    if (type == double.class) return DoubleGetter.class;
+    return ObjectGetter.class;
+  }
+
+  private static Class<?> setterOf(Class<?> type) {
+    if (type == boolean.class) return BooleanSetter.class;
+    if (type == byte.class) return ByteSetter.class;
+    if (type == short.class) return ShortSetter.class;
+    if (type == char.class) return CharSetter.class;
+    if (type == int.class) return IntSetter.class;
+    if (type == long.class) return LongSetter.class;
+    if (type == float.class) return FloatSetter.class;
+    if (type == double.class) return DoubleSetter.class;
+    return ObjectSetter.class;
+  }
+
+  public interface BooleanGetter {
+    boolean get(Object target);
+  }
+
+  public interface BooleanSetter {
+    void set(Object target, boolean value);
+  }
+
+  public interface ByteGetter {
+    byte get(Object target);
+  }
+
+  public interface ByteSetter {
+    void set(Object target, byte value);
+  }
+
+  public interface ShortGetter {
+    short get(Object target);
+  }
+
+  public interface ShortSetter {
+    void set(Object target, short value);
+  }
+
+  public interface CharGetter {
+    char get(Object target);
+  }
+
+  public interface CharSetter {
+    void set(Object target, char value);
+  }
+
+  public interface IntGetter {
+    int get(Object target);
+  }
+
+  public interface IntSetter {
+    void set(Object target, int value);
+  }
+
+  public interface LongGetter {
+    long get(Object target);
+  }
+
+  public interface LongSetter {
+    void set(Object target, long value);
+  }
+
+  public interface FloatGetter {
+    float get(Object target);
+  }
+
+  public interface FloatSetter {
+    void set(Object target, float value);
+  }
+
+  public interface DoubleGetter {
+    double get(Object target);
+  }
+
+  public interface DoubleSetter {
+    void set(Object target, double value);
+  }
+
+  public interface ObjectGetter {
+    Object get(Object target);
+  }
+
+  public interface ObjectSetter {
+    void set(Object target, Object value);
+  }
+
+  /** Reads and writes the field in place at its offset. */
+  static class Direct extends FieldAccessor {
+    final long offset;
+
+    Direct(FieldDesc field) {
+      super(field);
+      this.offset = field.offset;
+    }
+
+    @Override
+    public boolean getBoolean(Object target) {
+      return UnsafeHelper.getBoolean(target, offset);
+    }
+
+    @Override
+    public void setBoolean(Object target, boolean value) {
+      UnsafeHelper.setBoolean(target, offset, value);
+    }
+
+    @Override
+    public byte getByte(Object target) {
+      return UnsafeHelper.getByte(target, offset);
+    }
+
+    @Override
+    public void setByte(Object target, byte value) {
+      UnsafeHelper.setByte(target, offset, value);
+    }
+
+    @Override
+    public short getShort(Object target) {
+      return UnsafeHelper.getShort(target, offset);
+    }
+
+    @Override
+    public void setShort(Object target, short value) {
+      UnsafeHelper.setShort(target, offset, value);
+    }
+
+    @Override
+    public char getChar(Object target) {
+      return UnsafeHelper.getChar(target, offset);
+    }
+
+    @Override
+    public void setChar(Object target, char value) {
+      UnsafeHelper.setChar(target, offset, value);
+    }
+
+    @Override
+    public int getInt(Object target) {
+      return UnsafeHelper.getInt(target, offset);
+    }
+
+    @Override
+    public void setInt(Object target, int value) {
+      UnsafeHelper.setInt(target, offset, value);
+    }
+
+    @Override
+    public long getLong(Object target) {
+      return UnsafeHelper.getLong(target, offset);
+    }
+
+    @Override
+    public void setLong(Object target, long value) {
+      UnsafeHelper.setLong(target, offset, value);
+    }
+
+    @Override
+    public float getFloat(Object target) {
+      return UnsafeHelper.getFloat(target, offset);
+    }
+
+    @Override
+    public void setFloat(Object target, float value) {
+      UnsafeHelper.setFloat(target, offset, value);
+    }
+
+    @Override
+    public double getDouble(Object target) {
+      return UnsafeHelper.getDouble(target, offset);
+    }
+
+    @Override
+    public void setDouble(Object target, double value) {
+      UnsafeHelper.setDouble(target, offset, value);
+    }
+
+    @Override
+    public Object getObject(Object target) {
+      return UnsafeHelper.getObject(target, offset);
+    }
+
+    @Override
+    public void setObject(Object target, Object value) {
+      UnsafeHelper.setObject(target, offset, value);
+    }
+  }
+
+  /** Goes through the bound getter and setter, and the field for whichever of them is missing. */
+  static final class Bound extends Direct {
+    private final Object getter;
+    private final Object setter;
+
+    Bound(FieldDesc field, Object getter, Object setter) {
+      super(field);
+      this.getter = getter;
+      this.setter = setter;
+    }
+
+    @Override
+    public boolean getBoolean(Object target) {
+      return getter != null ? ((BooleanGetter) getter).get(target) : super.getBoolean(target);
+    }
+
+    @Override
+    public void setBoolean(Object target, boolean value) {
+      if (setter != null) {
+        ((BooleanSetter) setter).set(target, value);
+      } else {
+        super.setBoolean(target, value);
+      }
+    }
+
+    @Override
+    public byte getByte(Object target) {
+      return getter != null ? ((ByteGetter) getter).get(target) : super.getByte(target);
+    }
+
+    @Override
+    public void setByte(Object target, byte value) {
+      if (setter != null) {
+        ((ByteSetter) setter).set(target, value);
+      } else {
+        super.setByte(target, value);
+      }
+    }
+
+    @Override
+    public short getShort(Object target) {
+      return getter != null ? ((ShortGetter) getter).get(target) : super.getShort(target);
+    }
+
+    @Override
+    public void setShort(Object target, short value) {
+      if (setter != null) {
+        ((ShortSetter) setter).set(target, value);
+      } else {
+        super.setShort(target, value);
+      }
+    }
+
+    @Override
+    public char getChar(Object target) {
+      return getter != null ? ((CharGetter) getter).get(target) : super.getChar(target);
+    }
+
+    @Override
+    public void setChar(Object target, char value) {
+      if (setter != null) {
+        ((CharSetter) setter).set(target, value);
+      } else {
+        super.setChar(target, value);
+      }
+    }
+
+    @Override
+    public int getInt(Object target) {
+      return getter != null ? ((IntGetter) getter).get(target) : super.getInt(target);
+    }
+
+    @Override
+    public void setInt(Object target, int value) {
+      if (setter != null) {
+        ((IntSetter) setter).set(target, value);
+      } else {
+        super.setInt(target, value);
+      }
+    }
+
+    @Override
+    public long getLong(Object target) {
+      return getter != null ? ((LongGetter) getter).get(target) : super.getLong(target);
+    }
+
+    @Override
+    public void setLong(Object target, long value) {
+      if (setter != null) {
+        ((LongSetter) setter).set(target, value);
+      } else {
+        super.setLong(target, value);
+      }
+    }
+
+    @Override
+    public float getFloat(Object target) {
+      return getter != null ? ((FloatGetter) getter).get(target) : super.getFloat(target);
+    }
+
+    @Override
+    public void setFloat(Object target, float value) {
+      if (setter != null) {
+        ((FloatSetter) setter).set(target, value);
+      } else {
+        super.setFloat(target, value);
+      }
+    }
+
+    @Override
+    public double getDouble(Object target) {
+      return getter != null ? ((DoubleGetter) getter).get(target) : super.getDouble(target);
+    }
+
+    @Override
+    public void setDouble(Object target, double value) {
+      if (setter != null) {
+        ((DoubleSetter) setter).set(target, value);
+      } else {
+        super.setDouble(target, value);
+      }
+    }
+
+    @Override
+    public Object getObject(Object target) {
+      return getter != null ? ((ObjectGetter) getter).get(target) : super.getObject(target);
+    }
+
+    @Override
+    public void setObject(Object target, Object value) {
+      if (setter != null) {
+        ((ObjectSetter) setter).set(target, value);
+      } else {
+        super.setObject(target, value);
+      }
+    }
+  }
+}
@@ -73,6 +73,9 @@ public class FieldDesc {
   // setter.
   public JsonDeserialize jsonDeserialize;
 
+  // Built on first use by accessor().
+  private FieldAccessor accessor;
+
   public static boolean isPublic(Package p) {
     final String name = p.getName();
     if (name.startsWith("java") || name.startsWith("jdk") || name.isEmpty() || name.equals(".")) {
@@ -129,6 +132,15 @@ public class FieldDesc {
     return null;
   }
 
+  /** Accessor for this field, built once. */
+  public FieldAccessor accessor() {
+    FieldAccessor result = accessor;
+    if (result == null) {
+      accessor = result = FieldAccessor.of(this);
+    }
+    return result;
+  }
+
   public boolean isGeneric() {
     return generic != null;
   }
@@ -151,9 +163,14 @@ public class FieldDesc {
   }
 
   public FieldDesc impl(Class cls) {
+    return impl(cls, generic);
+  }
+
+  /** Copy of this field with its type variables bound, e.g. List&lt;T&gt; as List&lt;Integer&gt;. */
+  public FieldDesc impl(Class cls, ParameterizedType generic) {
     final FieldDesc descriptor = new FieldDesc();
     descriptor.typeDescriptor = typeDescriptor;
-    descriptor.javaKind = javaKind;
+    descriptor.javaKind = cls == dataClass ? javaKind : JavaKind.of(cls);
     descriptor.containingClass = containingClass;
     descriptor.dataClass = cls;
     descriptor.name = name;
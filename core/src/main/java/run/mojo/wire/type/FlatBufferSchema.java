@@ -19,7 +19,7 @@ public class FlatBufferSchema {
   public static FlatBufferSchema create(File outputDir, ReflectionSchema registry) {
     FlatBufferSchema schema = new FlatBufferSchema();
     schema.outputDir = outputDir;
-    schema.registry = registry;
+    schema.registry = registry.resolveAll();
     return schema;
   }
 
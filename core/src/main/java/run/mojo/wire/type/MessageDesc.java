@@ -1,6 +1,7 @@
 package run.mojo.wire.type;
 
 import com.squareup.wire.schema.ProtoType;
+import run.mojo.wire.FieldMask;
 import run.mojo.wire.JavaKind;
 
 import java.lang.reflect.ParameterizedType;
@@ -16,6 +17,19 @@ public class MessageDesc extends TypeDesc {
     return props.values().stream();
   }
 
+  /** Mask of the named fields, for decoding only those. */
+  public FieldMask mask(String... names) {
+    final int[] tags = new int[names.length];
+    for (int i = 0; i < names.length; i++) {
+      final FieldDesc field = props.get(names[i]);
+      if (field == null) {
+        throw new IllegalArgumentException("no field '" + names[i] + "' on " + getName());
+      }
+      tags[i] = field.tag;
+    }
+    return FieldMask.of(tags);
+  }
+
   @Override
   public JavaKind getJavaKind() {
     return JavaKind.OBJECT;
@@ -30,10 +44,21 @@ public class MessageDesc extends TypeDesc {
     public ParameterizedType generic;
     public ArrayList<Impl> impls = new ArrayList<>();
 
-    public Impl impl(String name, String simpleName, Class declaringClass) {
+    /** Impl of {@code spec} already generated for {@code declaringClass}, or null. */
+    public Impl find(Class declaringClass, ParameterizedType spec) {
+      for (Impl impl : impls) {
+        if (impl.declaringClass == declaringClass && spec.equals(impl.spec)) {
+          return impl;
+        }
+      }
+      return null;
+    }
+
+    public Impl impl(String name, String simpleName, Class declaringClass, ParameterizedType spec) {
       final Impl impl = new Impl();
 
       impl.template = this;
+      impl.spec = spec;
       impl.implName = name;
       impl.declaringClass = declaringClass;
       impl.compiled = compiled;
@@ -49,6 +74,8 @@ public class MessageDesc extends TypeDesc {
 
   public static class Impl extends MessageDesc {
     public Template template;
+    // Type arguments the template's fields are bound with, e.g. Records<Integer>.
+    public ParameterizedType spec;
     public String implName;
     public Class declaringClass;
 
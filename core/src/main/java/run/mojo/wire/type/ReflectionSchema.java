@@ -6,13 +6,15 @@ import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
 import com.fasterxml.jackson.databind.annotation.JsonSerialize;
 import com.google.common.reflect.ClassPath;
 import com.google.common.reflect.TypeToken;
-import run.mojo.unsafe.UnsafeHelper;
+import run.mojo.Wire;
 import run.mojo.wire.JavaKind;
+import run.mojo.wire.WireEnumAdapter;
 
 import java.io.IOException;
 import java.lang.reflect.*;
 import java.nio.ByteBuffer;
 import java.util.*;
+import java.util.concurrent.ConcurrentSkipListMap;
 import java.util.function.Function;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
@@ -27,12 +29,18 @@ public class ReflectionSchema {
   public final Function<Class, Boolean> whitelist;
   public final Function<Class, Boolean> blacklist;
   public final HashSet<String> prefixWhitelist = new HashSet<>();
-  public final TreeMap<String, PackageDesc> packages = new TreeMap<>();
-  public final TreeMap<String, TypeDesc> descriptors = new TreeMap<>();
-  public final TreeMap<String, RpcDesc> actions = new TreeMap<>();
+  // Sorted by name, and safe to read while a snapshot is being resolved.
+  public final ConcurrentSkipListMap<String, PackageDesc> packages = new ConcurrentSkipListMap<>();
+  public final ConcurrentSkipListMap<String, TypeDesc> descriptors = new ConcurrentSkipListMap<>();
+  public final ConcurrentSkipListMap<String, RpcDesc> actions = new ConcurrentSkipListMap<>();
   // Message templates.
-  public final TreeMap<String, MessageDesc.Template> templates = new TreeMap<>();
+  public final ConcurrentSkipListMap<String, MessageDesc.Template> templates =
+      new ConcurrentSkipListMap<>();
   public final Function<Class<?>, RpcInfo> rpc;
+  // Entries registered through create, in order, for SchemaSnapshot to persist.
+  final List<Entry> entries = new ArrayList<>();
+  // Entries of a snapshot this schema was opened from that haven't been registered yet.
+  SchemaSnapshot snapshot;
 
   private ReflectionSchema(
       Function<Class, Boolean> whitelist,
@@ -52,16 +60,17 @@ public class ReflectionSchema {
   }
 
   /**
-   * @param cp
+   * @param cp candidate classes, e.g. {@link ClassPath.ClassInfo}s or the {@link
+   *     ClassScanner.ClassHeader}s a {@link ClassScanner} found without loading anything
    * @param adapter
    * @param whitelist
    * @param blacklist
    * @param rpc
    * @return
    */
-  public static ReflectionSchema create(
-      Stream<ClassPath.ClassInfo> cp,
-      Function<ClassPath.ClassInfo, Entry> adapter,
+  public static <C> ReflectionSchema create(
+      Stream<C> cp,
+      Function<? super C, Entry> adapter,
       Function<Class, Boolean> whitelist,
       Function<Class, Boolean> blacklist,
       Function<Class<?>, RpcInfo> rpc) {
@@ -74,16 +83,59 @@ public class ReflectionSchema {
 
     final ReflectionSchema builder = new ReflectionSchema(whitelist, blacklist, rpc == null ? (cls) -> null : rpc);
 
-    cp.map(info -> adapter.apply(info))
-        .collect(Collectors.toList())
-        .stream()
-        .map(entry -> builder.register(entry))
-        .collect(Collectors.toList());
+    final List<Entry> entries = cp.map(info -> adapter.apply(info)).collect(Collectors.toList());
+    readMembers(entries);
+    entries.forEach(builder::register);
 
     return builder;
   }
 
+  /**
+   * Reads the member tables of every entry's classes, a package at a time in parallel. That's
+   * most of the reflection registering them does, and unlike registering it shares no state.
+   */
+  private static void readMembers(List<Entry> entries) {
+    final Map<String, List<Class>> byPackage = new HashMap<>();
+    for (Entry entry : entries) {
+      if (entry instanceof TypeEntry) {
+        addClass(byPackage, ((TypeEntry) entry).cls);
+      } else if (entry instanceof RpcEntry) {
+        final RpcEntry rpc = (RpcEntry) entry;
+        addClass(byPackage, rpc.request);
+        addClass(byPackage, rpc.response);
+      }
+    }
+    byPackage
+        .values()
+        .parallelStream()
+        .forEach(
+            classes -> {
+              for (Class cls : classes) {
+                for (Class c = cls; c != null && c != Object.class; c = c.getSuperclass()) {
+                  try {
+                    ClassMembers.of(c);
+                  } catch (Throwable e) {
+                    // Registering it will run into the same thing.
+                  }
+                }
+              }
+            });
+  }
+
+  private static void addClass(Map<String, List<Class>> byPackage, Class cls) {
+    if (cls != null && !cls.isPrimitive() && !cls.isArray()) {
+      final String name = cls.getName();
+      final int dot = name.lastIndexOf('.');
+      byPackage
+          .computeIfAbsent(dot < 0 ? "" : name.substring(0, dot), k -> new ArrayList<>())
+          .add(cls);
+    }
+  }
+
   private Entry register(Entry entry) {
+    if (entry != null) {
+      entries.add(entry);
+    }
     if (entry instanceof TypeEntry) {
       registerType((TypeEntry) entry);
     } else if (entry instanceof RpcEntry) {
@@ -96,6 +148,56 @@ public class ReflectionSchema {
     registerType(entry.cls);
   }
 
+  /**
+   * Descriptor of the class with this canonical name, registering it from the snapshot this schema
+   * was opened from if it hasn't been yet. Null if the schema has no such type.
+   */
+  public synchronized TypeDesc type(String name) {
+    TypeDesc type = descriptors.get(name);
+    while (type == null && resolve(name)) {
+      type = descriptors.get(name);
+    }
+    return type;
+  }
+
+  /** Same as {@link #type(String)} for an action, by its handler's canonical name. */
+  public synchronized RpcDesc action(String name) {
+    RpcDesc action = actions.get(name);
+    while (action == null && resolve(name)) {
+      action = actions.get(name);
+    }
+    return action;
+  }
+
+  /**
+   * Registers everything left in the snapshot this schema was opened from, for callers that walk
+   * the whole schema rather than looking types up.
+   */
+  public synchronized ReflectionSchema resolveAll() {
+    if (snapshot != null) {
+      snapshot.takeAll().forEach(this::register);
+      snapshot = null;
+    }
+    return this;
+  }
+
+  /**
+   * Registers the snapshot entry that declares {@code name}, or everything left when no entry
+   * does, since it may be a dependency of one. Returns whether anything was registered.
+   */
+  private boolean resolve(String name) {
+    if (snapshot == null) {
+      return false;
+    }
+    final Entry entry = snapshot.take(name);
+    if (entry != null) {
+      register(entry);
+    } else {
+      resolveAll();
+    }
+    return true;
+  }
+
   public boolean isWhitelisted(Class cls) {
     if (whitelist == null) {
       return true;
@@ -284,6 +386,9 @@ public class ReflectionSchema {
         }
 
       case DATE:
+      case LOCAL_DATE:
+      case LOCAL_DATE_TIME:
+      case ZONED_DATE:
         {
           DateDesc model = new DateDesc();
           descriptors.put(cls.getCanonicalName(), model);
@@ -324,6 +429,7 @@ public class ReflectionSchema {
             model.pkg = namespaceOf(cls);
             model.componentClass = elementClass;
             model.component = registerType(elementClass);
+            return model;
           }
         }
 
@@ -352,7 +458,7 @@ public class ReflectionSchema {
 
           if (generic != null && generic.getActualTypeArguments().length > 0) {
             keyClass = resolveTypeParam(sourceClass, generic.getActualTypeArguments()[0]);
-            valueClass = resolveTypeParam(sourceClass, generic.getActualTypeArguments()[0]);
+            valueClass = resolveTypeParam(sourceClass, generic.getActualTypeArguments()[1]);
           }
 
           MapDesc model = new MapDesc();
@@ -387,10 +493,12 @@ public class ReflectionSchema {
           descriptors.put(cls.getCanonicalName(), model);
           Object[] constants = cls.getEnumConstants();
           EnumConstant[] values = new EnumConstant[constants.length];
+          // Numbered the same as generated adapters number them.
+          int[] tags = WireEnumAdapter.tagsOf(cls);
           for (int i = 0; i < values.length; i++) {
             EnumConstant value = new EnumConstant();
             value.name = constants[i].toString();
-            value.tag = i;
+            value.tag = tags[i];
             values[i] = value;
           }
           model.values = values;
@@ -465,6 +573,11 @@ public class ReflectionSchema {
   }
 
   /**
+   * Binds the template's fields to the type arguments of {@code spec}, so that each concrete
+   * parameterization, e.g. Records&lt;Integer&gt; and Records&lt;Order&gt;, gets its own Impl whose
+   * fields and collection elements have concrete descriptors instead of erased ones. Impls are
+   * shared by every field of {@code declaringClass} with the same parameterization.
+   *
    * @param namespace
    * @param declaringClass
    * @param spec
@@ -476,10 +589,16 @@ public class ReflectionSchema {
       Class declaringClass,
       ParameterizedType spec,
       MessageDesc.Template template) {
-    final String simpleName = ((Class) spec.getRawType()).getSimpleName() + "Impl";
+    final MessageDesc.Impl existing = template.find(declaringClass, spec);
+    if (existing != null) {
+      return existing;
+    }
+
+    final String simpleName = implSimpleName(declaringClass, spec);
     final String name = declaringClass.getCanonicalName() + "." + simpleName;
 
-    MessageDesc.Impl impl = template.impl(name, simpleName, declaringClass);
+    MessageDesc.Impl impl = template.impl(name, simpleName, declaringClass, spec);
+    final TypeToken<?> bound = TypeToken.of(spec);
 
     template
         .props
@@ -489,10 +608,19 @@ public class ReflectionSchema {
               Type t = p.field.getGenericType();
               if (t instanceof TypeVariable) {
                 TypeVariable typeVar = (TypeVariable) t;
-                Class resolved = TypeToken.of(spec).resolveType(typeVar).getRawType();
-                FieldDesc implProp = p.impl(resolved);
+                Class resolved = bound.resolveType(typeVar).getRawType();
+                FieldDesc implProp = p.impl(resolved, null);
                 implProp.typeDescriptor = registerType(resolved);
                 impl.props.put(implProp.name, implProp);
+              } else if (t instanceof ParameterizedType && hasTypeVariable(t)) {
+                // e.g. List<T> or Map<String, T>, whose elements must be bound too.
+                final ParameterizedType resolved =
+                    (ParameterizedType) bound.resolveType(t).getType();
+                final FieldDesc implProp = p.impl(p.dataClass, resolved);
+                implProp.typeDescriptor =
+                    registerType(
+                        declaringClass, p.containingClass, implProp.generic, implProp.dataClass);
+                impl.props.put(implProp.name, implProp);
               } else {
                 final FieldDesc implProp = p.impl(p.dataClass);
                 try {
@@ -509,6 +637,51 @@ public class ReflectionSchema {
     return impl;
   }
 
+  /**
+   * Name of the Impl of {@code spec}, e.g. RecordsIntegerImpl, made unique among the Impls
+   * already nested in {@code declaringClass}.
+   */
+  private String implSimpleName(Class declaringClass, ParameterizedType spec) {
+    final StringBuilder simpleName =
+        new StringBuilder(((Class) spec.getRawType()).getSimpleName());
+    for (Type arg : spec.getActualTypeArguments()) {
+      simpleName.append(TypeToken.of(arg).getRawType().getSimpleName());
+    }
+    simpleName.append("Impl");
+
+    final TypeDesc declaring = descriptors.get(declaringClass.getCanonicalName());
+    if (declaring == null || !declaring.nested.containsKey(simpleName.toString())) {
+      return simpleName.toString();
+    }
+    int counter = 2;
+    while (declaring.nested.containsKey(simpleName.toString() + counter)) {
+      counter++;
+    }
+    return simpleName.toString() + counter;
+  }
+
+  private static boolean hasTypeVariable(Type type) {
+    if (type instanceof TypeVariable) {
+      return true;
+    }
+    if (type instanceof ParameterizedType) {
+      for (Type arg : ((ParameterizedType) type).getActualTypeArguments()) {
+        if (hasTypeVariable(arg)) {
+          return true;
+        }
+      }
+    } else if (type instanceof WildcardType) {
+      for (Type bound : ((WildcardType) type).getUpperBounds()) {
+        if (hasTypeVariable(bound)) {
+          return true;
+        }
+      }
+    } else if (type instanceof GenericArrayType) {
+      return hasTypeVariable(((GenericArrayType) type).getGenericComponentType());
+    }
+    return false;
+  }
+
   /**
    * Walks up the declaring class path until it reaches the package. It registers the enclosing
    * class if no registration is found. That registration may be overriden if there is a hard
@@ -621,38 +794,28 @@ public class ReflectionSchema {
     int index = 0;
     final LinkedHashMap<String, FieldDesc> props = new LinkedHashMap<>();
     for (Class containingClass : inheritance) {
-      // Collect all declared fields.
-      final LinkedHashMap<String, Field> fields =
-          Arrays.stream(containingClass.getDeclaredFields())
-              .filter(f -> !Modifier.isStatic(f.getModifiers()))
-              .collect(
-                  Collectors.toMap(
-                      Field::getName, Function.identity(), (o, o2) -> o2, LinkedHashMap::new));
-
-      // Collect all declared methods.
-      final LinkedHashMap<String, Method> methods =
-          Arrays.stream(containingClass.getDeclaredMethods())
-              .collect(
-                  Collectors.toMap(
-                      Method::getName, Function.identity(), (o, o2) -> o2, LinkedHashMap::new));
+      final ClassMembers members = ClassMembers.of(containingClass);
+      // Names of the methods already matched to a field.
+      final HashSet<String> taken = new HashSet<>();
 
       // Iterate through the fields.
-      for (Field field : fields.values()) {
+      for (int f = 0; f < members.fields.length; f++) {
+        final Field field = members.fields[f];
         String name = field.getName();
         // Let's search for a getter.
         String getterName = "get" + name.substring(0, 1).toUpperCase() + name.substring(1);
-        Method getter = methods.remove(getterName);
+        Method getter = members.take(getterName, taken);
         Method setter = null;
         // Any luck?
         if (getter == null) {
           // Let's try this...
           getterName = "is" + name.substring(0, 1).toUpperCase() + name.substring(1);
-          getter = methods.remove(getterName);
+          getter = members.take(getterName, taken);
 
           // Any luck?
           if (getter == null) {
             // OK maybe "fluentNaming" style?
-            getter = methods.remove(name);
+            getter = members.take(name, taken);
 
             // Any luck?
             if (getter != null) {
@@ -661,11 +824,7 @@ public class ReflectionSchema {
                 setter = getter;
 
                 // Let's search for a fluentNaming getter now.
-                getter =
-                    Arrays.stream(containingClass.getDeclaredMethods())
-                        .filter(m -> m.getParameterCount() == 0 && name.equals(m.getName()))
-                        .findFirst()
-                        .orElse(null);
+                getter = members.noArgMethod(name);
               }
             }
           }
@@ -673,25 +832,20 @@ public class ReflectionSchema {
 
         if (setter == null) {
           String setterName = "set" + name.substring(0, 1).toUpperCase() + name.substring(1);
-          setter = methods.remove(setterName);
+          setter = members.take(setterName, taken);
         }
 
         // Create prop descriptor.
         FieldDesc prop = new FieldDesc();
         prop.field = field;
-        try {
-          // Get field pointer offset.
-          prop.offset = UnsafeHelper.objectFieldOffset(field);
-        } catch (Throwable e) {
-          // Ignore.
-          System.err.println("could not get native field offset");
-          //          log.warn("could not get native field offset", e);
+        if (members.offsets[f] >= 0) {
+          prop.offset = members.offsets[f];
         }
         prop.containingClass = containingClass;
 
         // Member name.
         prop.name = name;
-        Type genericType = field.getGenericType();
+        Type genericType = members.genericTypes[f];
         if (genericType instanceof ParameterizedType) {
           prop.generic = (ParameterizedType) genericType;
           prop.dataClass = field.getType();
@@ -723,14 +877,13 @@ public class ReflectionSchema {
           model.pkg.dependsOn.put(d.pkg.name(), d.pkg.model);
         } else if (prop.typeDescriptor instanceof MapDesc) {
           final MapDesc d = (MapDesc) prop.typeDescriptor;
-          // Add key dep.
-          model.pkg.dependsOn.put(d.key.pkg.name(), d.key.pkg.model);
-          // Add value dep.
-          model.pkg.dependsOn.put(d.value.pkg.name(), d.value.pkg.model);
+          // Add key and value deps. Builtins like String have no package.
+          addDependency(model, d.key);
+          addDependency(model, d.value);
         } else if (prop.typeDescriptor instanceof ListDesc) {
           // Add component dep.
           final ListDesc d = (ListDesc) prop.typeDescriptor;
-          model.pkg.dependsOn.put(d.component.pkg.name(), d.component.pkg.model);
+          addDependency(model, d.component);
         } else if (prop.typeDescriptor instanceof EnumDesc) {
           // Add dep.
           final EnumDesc d = (EnumDesc) prop.typeDescriptor;
@@ -796,6 +949,12 @@ public class ReflectionSchema {
     return props;
   }
 
+  private static void addDependency(TypeDesc model, TypeDesc dependency) {
+    if (dependency != null && dependency.pkg != null) {
+      model.pkg.dependsOn.put(dependency.pkg.name(), dependency.pkg.model);
+    }
+  }
+
   /** */
   public abstract static class Entry {}
 
@@ -0,0 +1,1504 @@
+package run.mojo.wire.type;
+
+import com.squareup.wire.FieldEncoding;
+import com.squareup.wire.ProtoAdapter;
+import com.squareup.wire.ProtoReader;
+import com.squareup.wire.ProtoWriter;
+import okio.ByteString;
+import run.mojo.Wire;
+import run.mojo.unsafe.UnsafeHelper;
+import run.mojo.wire.FieldMask;
+import run.mojo.wire.IntKeyMap;
+import run.mojo.wire.JavaKind;
+import run.mojo.wire.LongKeyMap;
+import run.mojo.wire.WireEnumAdapter;
+import run.mojo.wire.WireProtoAdapter;
+import run.mojo.wire.codec.Dates;
+import run.mojo.wire.codec.Decimals;
+import run.mojo.wire.codec.Durations;
+import run.mojo.wire.codec.LocalDateTimes;
+import run.mojo.wire.codec.LocalDates;
+import run.mojo.wire.codec.PackedArrays;
+import run.mojo.wire.codec.Scalars;
+import run.mojo.wire.codec.SizeStack;
+import run.mojo.wire.codec.WireReader;
+import run.mojo.wire.codec.WireWriter;
+import run.mojo.wire.codec.ZonedDateTimes;
+
+import java.io.IOException;
+import java.lang.reflect.Array;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Modifier;
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZonedDateTime;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+
+/**
+ * Adapter built at runtime from a {@link MessageDesc}, for classes the annotation processor never
+ * saw, e.g. those a {@link ReflectionSchema} finds on the classpath. Each field is read and written
+ * through its {@link FieldDesc#accessor()}, its public getter and setter or else the field in place
+ * at its offset, so primitives are never boxed and nothing is looked up by name or reflected on per
+ * message.
+ *
+ * <p>The wire format is the one generated adapters use for the same class: fields are numbered as
+ * the schema numbers them, or by {@link Wire#tag}, enum constants carry their schema tags, ints are
+ * int32 and longs int64, primitive arrays are packed as {@link Wire#pack} says and value types go
+ * through their codecs. Maps are written by the map adapter and {@link ZonedDateTime}s always carry
+ * their zone id. Unknown fields are skipped.
+ *
+ * <p>Building an adapter fails for field types it has no codec for, such as {@link
+ * run.mojo.wire.Lazy} or arrays of objects.
+ */
+@SuppressWarnings("unchecked")
+public final class RuntimeAdapter<T> extends WireProtoAdapter<T> {
+  // Tags are looked up in a table indexed by the tag itself while it'd be no more than this many
+  // times larger than the number of fields.
+  private static final int DENSE_FACTOR = 4;
+  private static final int DENSE_SLACK = 16;
+
+  private final MessageDesc desc;
+  private final Class<T> type;
+  private Constructor<T> constructor;
+  // Fields in tag order.
+  private Slot[] slots;
+  // Fields by tag when dense, otherwise null and looked up in tags.
+  private Slot[] byTag;
+  private int[] tags;
+
+  private RuntimeAdapter(MessageDesc desc) {
+    super(FieldEncoding.LENGTH_DELIMITED, (Class<T>) desc.compiled);
+    this.desc = desc;
+    this.type = (Class<T>) desc.compiled;
+  }
+
+  /** Adapter of {@code desc}, along with adapters of the messages it references. */
+  public static <T> RuntimeAdapter<T> of(MessageDesc desc) {
+    return new Factory().adapter(desc);
+  }
+
+  public MessageDesc desc() {
+    return desc;
+  }
+
+  @Override
+  public int measure(T value, SizeStack sizes) {
+    int size = 0;
+    for (Slot slot : slots) {
+      size += slot.measure(value, sizes);
+    }
+    return size;
+  }
+
+  @Override
+  public void encode(ProtoWriter writer, T value, SizeStack sizes) throws IOException {
+    for (Slot slot : slots) {
+      slot.encode(writer, value, sizes);
+    }
+  }
+
+  @Override
+  public void encode(WireWriter writer, T value, SizeStack sizes) throws IOException {
+    for (Slot slot : slots) {
+      slot.encode(writer, value, sizes);
+    }
+  }
+
+  @Override
+  public T decode(ProtoReader reader) throws IOException {
+    final T value = newInstance();
+    final long token = reader.beginMessage();
+    for (int tag; (tag = reader.nextTag()) != -1; ) {
+      final Slot slot = slot(tag);
+      if (slot == null) {
+        reader.skip();
+      } else {
+        slot.read(reader, value);
+      }
+    }
+    reader.endMessage(token);
+    return value;
+  }
+
+  @Override
+  public T decode(WireReader reader) throws IOException {
+    final T value = newInstance();
+    final long token = reader.beginMessage();
+    for (int tag; (tag = reader.nextTag()) != -1; ) {
+      final Slot slot = slot(tag);
+      if (slot == null) {
+        reader.skip();
+      } else {
+        slot.read(reader, value);
+      }
+    }
+    reader.endMessage(token);
+    return value;
+  }
+
+  @Override
+  public T decode(WireReader reader, FieldMask mask) throws IOException {
+    final T value = newInstance();
+    final long token = reader.beginMessage();
+    for (int tag; (tag = reader.nextTag()) != -1; ) {
+      final Slot slot = mask.contains(tag) ? slot(tag) : null;
+      if (slot == null) {
+        reader.skip();
+      } else {
+        slot.read(reader, value);
+      }
+    }
+    reader.endMessage(token);
+    return value;
+  }
+
+  /** Runs the class's no-arg constructor, or when it has none allocates it with zeroed fields. */
+  @Override
+  public T newInstance() {
+    if (constructor == null) {
+      return UnsafeHelper.allocateInstance(type);
+    }
+    try {
+      return constructor.newInstance();
+    } catch (ReflectiveOperationException e) {
+      throw new IllegalStateException("Could not create " + type.getName(), e);
+    }
+  }
+
+  private Slot slot(int tag) {
+    if (byTag != null) {
+      return tag < byTag.length ? byTag[tag] : null;
+    }
+    final int i = Arrays.binarySearch(tags, tag);
+    return i >= 0 ? slots[i] : null;
+  }
+
+  // Called once this adapter is registered, so that fields can refer back to it.
+  private void init(Factory factory) {
+    try {
+      constructor = type.getDeclaredConstructor();
+      constructor.setAccessible(true);
+    } catch (NoSuchMethodException | RuntimeException e) {
+      constructor = null;
+    }
+
+    final ArrayList<Slot> fields = new ArrayList<>();
+    for (FieldDesc field : desc.props.values()) {
+      final Wire wire = field.field.getAnnotation(Wire.class);
+      if (wire != null && wire.ignore()) {
+        continue;
+      }
+      final int tag = wire != null && wire.tag() > 0 ? wire.tag() : field.tag;
+      fields.add(factory.slot(field, tag));
+    }
+    fields.sort(Comparator.comparingInt(slot -> slot.tag));
+
+    slots = fields.toArray(new Slot[0]);
+    tags = new int[slots.length];
+    for (int i = 0; i < slots.length; i++) {
+      tags[i] = slots[i].tag;
+      if (i > 0 && tags[i] == tags[i - 1]) {
+        throw new IllegalArgumentException(
+            desc.getName() + " has more than one field tagged " + tags[i]);
+      }
+    }
+    final int max = tags.length == 0 ? 0 : tags[tags.length - 1];
+    if (max < slots.length * DENSE_FACTOR + DENSE_SLACK) {
+      byTag = new Slot[max + 1];
+      for (Slot slot : slots) {
+        byTag[slot.tag] = slot;
+      }
+    }
+  }
+
+  /** Builds adapters, sharing one per message so that recursive messages terminate. */
+  private static final class Factory {
+    private final IdentityHashMap<MessageDesc, RuntimeAdapter<?>> adapters =
+        new IdentityHashMap<>();
+
+    <T> RuntimeAdapter<T> adapter(MessageDesc desc) {
+      RuntimeAdapter<T> adapter = (RuntimeAdapter<T>) adapters.get(desc);
+      if (adapter == null) {
+        adapter = new RuntimeAdapter<>(desc);
+        adapters.put(desc, adapter);
+        adapter.init(this);
+      }
+      return adapter;
+    }
+
+    Slot slot(FieldDesc field, int tag) {
+      final FieldAccessor access = field.accessor();
+      switch (field.javaKind) {
+        case BOOL:
+          return new BoolSlot(tag, access);
+        case BYTE:
+        case SHORT:
+        case CHAR:
+        case INT:
+          return new IntSlot(tag, access, field.javaKind);
+        case LONG:
+          return new LongSlot(tag, access);
+        case FLOAT:
+          return new FloatSlot(tag, access);
+        case DOUBLE:
+          return new DoubleSlot(tag, access);
+        case ARRAY:
+          {
+            final Wire wire = field.field.getAnnotation(Wire.class);
+            return new PackedSlot(
+                tag,
+                access,
+                field.dataClass.getComponentType(),
+                wire != null ? wire.pack() : Wire.Pack.UNSIGNED);
+          }
+        case LIST:
+        case SET:
+        case QUEUE:
+          {
+            final ListDesc list = (ListDesc) field.typeDescriptor;
+            return new RepeatedSlot(
+                tag,
+                access,
+                element(list.component, list.componentClass),
+                constructor(field.dataClass, collectionImpl(field.javaKind)));
+          }
+        case MAP:
+          {
+            final MapDesc map = (MapDesc) field.typeDescriptor;
+            final ProtoAdapter<?> key = element(map.key, map.keyClass).adapter();
+            final ProtoAdapter<?> value = element(map.value, map.valueClass).adapter();
+            return new MapSlot(
+                tag,
+                access,
+                ProtoAdapter.newMapAdapter(key, value),
+                constructor(field.dataClass, mapImpl(JavaKind.of(map.keyClass))));
+          }
+        default:
+          return new ValueSlot(tag, access, element(field.typeDescriptor, field.dataClass));
+      }
+    }
+
+    Element element(TypeDesc desc, Class<?> cls) {
+      final JavaKind kind = JavaKind.of(cls);
+      switch (kind) {
+        case BOOL:
+        case BOXED_BOOL:
+        case BYTE:
+        case BOXED_BYTE:
+        case SHORT:
+        case BOXED_SHORT:
+        case CHAR:
+        case BOXED_CHAR:
+        case INT:
+        case BOXED_INT:
+        case LONG:
+        case BOXED_LONG:
+        case FLOAT:
+        case BOXED_FLOAT:
+        case DOUBLE:
+        case BOXED_DOUBLE:
+          return new ScalarElement(kind);
+        case STRING:
+          return new StringElement();
+        case BYTES:
+          if (cls == byte[].class) {
+            return new BytesElement();
+          }
+          break;
+        case BIG_DECIMAL:
+        case DURATION:
+        case DATE:
+        case LOCAL_DATE:
+        case LOCAL_DATE_TIME:
+        case ZONED_DATE:
+          return new CodecElement(kind);
+        case ENUM:
+          return enumElement((EnumDesc) desc);
+        default:
+          if (desc instanceof MessageDesc) {
+            return new MessageElement(adapter((MessageDesc) desc));
+          }
+          break;
+      }
+      throw new IllegalArgumentException("No runtime codec for " + cls.getName());
+    }
+
+    @SuppressWarnings("unchecked") // EnumDescs only describe enums.
+    private static <E extends Enum<E>> EnumElement<E> enumElement(EnumDesc desc) {
+      final Class<E> type = (Class<E>) desc.compiled;
+      final int[] tags = new int[desc.values.length];
+      for (int i = 0; i < tags.length; i++) {
+        tags[i] = desc.values[i].tag;
+      }
+      return new EnumElement<>(type, new WireEnumAdapter<>(type, tags));
+    }
+
+    private static Class<?> collectionImpl(JavaKind kind) {
+      switch (kind) {
+        case SET:
+          return LinkedHashSet.class;
+        case QUEUE:
+          return ArrayDeque.class;
+        default:
+          return ArrayList.class;
+      }
+    }
+
+    private static Class<?> mapImpl(JavaKind key) {
+      switch (key) {
+        case INT:
+        case BOXED_INT:
+          return IntKeyMap.class;
+        case LONG:
+        case BOXED_LONG:
+          return LongKeyMap.class;
+        default:
+          return LinkedHashMap.class;
+      }
+    }
+
+    // No-arg constructor of the collection a field is decoded into: impl, unless the field is
+    // declared as a concrete class of its own.
+    private static Constructor<?> constructor(Class<?> declared, Class<?> impl) {
+      final Class<?> cls =
+          declared.isAssignableFrom(impl)
+                  || declared.isInterface()
+                  || Modifier.isAbstract(declared.getModifiers())
+              ? impl
+              : declared;
+      try {
+        final Constructor<?> constructor = cls.getDeclaredConstructor();
+        constructor.setAccessible(true);
+        return constructor;
+      } catch (NoSuchMethodException e) {
+        throw new IllegalArgumentException(cls.getName() + " has no no-arg constructor", e);
+      }
+    }
+  }
+
+  private static int tagSize(int tag) {
+    return Scalars.varint32Size(tag << 3);
+  }
+
+  private static Object create(Constructor<?> constructor) {
+    try {
+      return constructor.newInstance();
+    } catch (ReflectiveOperationException e) {
+      throw new IllegalStateException(
+          "Could not create " + constructor.getDeclaringClass().getName(), e);
+    }
+  }
+
+  //////////////////////////////////////////////////////////////////////
+  // Fields
+  //////////////////////////////////////////////////////////////////////
+
+  /** One field of the message, read and written through its accessor. */
+  private abstract static class Slot {
+    final int tag;
+    final int tagSize;
+    final FieldAccessor access;
+
+    Slot(int tag, FieldAccessor access) {
+      this.tag = tag;
+      this.tagSize = tagSize(tag);
+      this.access = access;
+    }
+
+    abstract int measure(Object message, SizeStack sizes);
+
+    abstract void encode(ProtoWriter writer, Object message, SizeStack sizes) throws IOException;
+
+    abstract void encode(WireWriter writer, Object message, SizeStack sizes) throws IOException;
+
+    /** Reads one occurrence of the field into {@code message}. */
+    abstract void read(ProtoReader reader, Object message) throws IOException;
+
+    abstract void read(WireReader reader, Object message) throws IOException;
+  }
+
+  private static final class BoolSlot extends Slot {
+    BoolSlot(int tag, FieldAccessor access) {
+      super(tag, access);
+    }
+
+    @Override
+    int measure(Object message, SizeStack sizes) {
+      return tagSize + 1;
+    }
+
+    @Override
+    void encode(ProtoWriter writer, Object message, SizeStack sizes) throws IOException {
+      writer.writeTag(tag, FieldEncoding.VARINT);
+      writer.writeVarint32(access.getBoolean(message) ? 1 : 0);
+    }
+
+    @Override
+    void encode(WireWriter writer, Object message, SizeStack sizes) {
+      writer.writeTag(tag, FieldEncoding.VARINT);
+      writer.writeVarint32(access.getBoolean(message) ? 1 : 0);
+    }
+
+    @Override
+    void read(ProtoReader reader, Object message) throws IOException {
+      access.setBoolean(message, reader.readVarint32() != 0);
+    }
+
+    @Override
+    void read(WireReader reader, Object message) throws IOException {
+      access.setBoolean(message, reader.readVarint32() != 0);
+    }
+  }
+
+  /** int, or a byte, short or char widened to one, written as an int32. */
+  private static final class IntSlot extends Slot {
+    private final JavaKind kind;
+
+    IntSlot(int tag, FieldAccessor access, JavaKind kind) {
+      super(tag, access);
+      this.kind = kind;
+    }
+
+    private int get(Object message) {
+      switch (kind) {
+        case BYTE:
+          return access.getByte(message);
+        case SHORT:
+          return access.getShort(message);
+        case CHAR:
+          return access.getChar(message);
+        default:
+          return access.getInt(message);
+      }
+    }
+
+    private void set(Object message, int value) {
+      switch (kind) {
+        case BYTE:
+          access.setByte(message, (byte) value);
+          break;
+        case SHORT:
+          access.setShort(message, (short) value);
+          break;
+        case CHAR:
+          access.setChar(message, (char) value);
+          break;
+        default:
+          access.setInt(message, value);
+          break;
+      }
+    }
+
+    @Override
+    int measure(Object message, SizeStack sizes) {
+      return tagSize + Scalars.int32Size(get(message));
+    }
+
+    @Override
+    void encode(ProtoWriter writer, Object message, SizeStack sizes) throws IOException {
+      writer.writeTag(tag, FieldEncoding.VARINT);
+      // Negative values are sign extended to ten bytes.
+      writer.writeVarint64(get(message));
+    }
+
+    @Override
+    void encode(WireWriter writer, Object message, SizeStack sizes) {
+      writer.writeTag(tag, FieldEncoding.VARINT);
+      writer.writeInt32(get(message));
+    }
+
+    @Override
+    void read(ProtoReader reader, Object message) throws IOException {
+      set(message, reader.readVarint32());
+    }
+
+    @Override
+    void read(WireReader reader, Object message) throws IOException {
+      set(message, reader.readVarint32());
+    }
+  }
+
+  private static final class LongSlot extends Slot {
+    LongSlot(int tag, FieldAccessor access) {
+      super(tag, access);
+    }
+
+    @Override
+    int measure(Object message, SizeStack sizes) {
+      return tagSize + Scalars.varint64Size(access.getLong(message));
+    }
+
+    @Override
+    void encode(ProtoWriter writer, Object message, SizeStack sizes) throws IOException {
+      writer.writeTag(tag, FieldEncoding.VARINT);
+      writer.writeVarint64(access.getLong(message));
+    }
+
+    @Override
+    void encode(WireWriter writer, Object message, SizeStack sizes) {
+      writer.writeTag(tag, FieldEncoding.VARINT);
+      writer.writeVarint64(access.getLong(message));
+    }
+
+    @Override
+    void read(ProtoReader reader, Object message) throws IOException {
+      access.setLong(message, reader.readVarint64());
+    }
+
+    @Override
+    void read(WireReader reader, Object message) throws IOException {
+      access.setLong(message, reader.readVarint64());
+    }
+  }
+
+  private static final class FloatSlot extends Slot {
+    FloatSlot(int tag, FieldAccessor access) {
+      super(tag, access);
+    }
+
+    @Override
+    int measure(Object message, SizeStack sizes) {
+      return tagSize + 4;
+    }
+
+    @Override
+    void encode(ProtoWriter writer, Object message, SizeStack sizes) throws IOException {
+      writer.writeTag(tag, FieldEncoding.FIXED32);
+      writer.writeFixed32(Float.floatToIntBits(access.getFloat(message)));
+    }
+
+    @Override
+    void encode(WireWriter writer, Object message, SizeStack sizes) {
+      writer.writeTag(tag, FieldEncoding.FIXED32);
+      writer.writeFixed32(Float.floatToIntBits(access.getFloat(message)));
+    }
+
+    @Override
+    void read(ProtoReader reader, Object message) throws IOException {
+      access.setFloat(message, Float.intBitsToFloat(reader.readFixed32()));
+    }
+
+    @Override
+    void read(WireReader reader, Object message) throws IOException {
+      access.setFloat(message, Float.intBitsToFloat(reader.readFixed32()));
+    }
+  }
+
+  private static final class DoubleSlot extends Slot {
+    DoubleSlot(int tag, FieldAccessor access) {
+      super(tag, access);
+    }
+
+    @Override
+    int measure(Object message, SizeStack sizes) {
+      return tagSize + 8;
+    }
+
+    @Override
+    void encode(ProtoWriter writer, Object message, SizeStack sizes) throws IOException {
+      writer.writeTag(tag, FieldEncoding.FIXED64);
+      writer.writeFixed64(Double.doubleToLongBits(access.getDouble(message)));
+    }
+
+    @Override
+    void encode(WireWriter writer, Object message, SizeStack sizes) {
+      writer.writeTag(tag, FieldEncoding.FIXED64);
+      writer.writeFixed64(Double.doubleToLongBits(access.getDouble(message)));
+    }
+
+    @Override
+    void read(ProtoReader reader, Object message) throws IOException {
+      access.setDouble(message, Double.longBitsToDouble(reader.readFixed64()));
+    }
+
+    @Override
+    void read(WireReader reader, Object message) throws IOException {
+      access.setDouble(message, Double.longBitsToDouble(reader.readFixed64()));
+    }
+  }
+
+  /** A single nullable value. */
+  private static final class ValueSlot extends Slot {
+    private final Element element;
+
+    ValueSlot(int tag, FieldAccessor access, Element element) {
+      super(tag, access);
+      this.element = element;
+    }
+
+    @Override
+    int measure(Object message, SizeStack sizes) {
+      final Object value = access.getObject(message);
+      return value == null ? 0 : element.measure(tag, value, sizes);
+    }
+
+    @Override
+    void encode(ProtoWriter writer, Object message, SizeStack sizes) throws IOException {
+      final Object value = access.getObject(message);
+      if (value != null) {
+        element.encode(writer, tag, value, sizes);
+      }
+    }
+
+    @Override
+    void encode(WireWriter writer, Object message, SizeStack sizes) throws IOException {
+      final Object value = access.getObject(message);
+      if (value != null) {
+        element.encode(writer, tag, value, sizes);
+      }
+    }
+
+    @Override
+    void read(ProtoReader reader, Object message) throws IOException {
+      access.setObject(message, element.read(reader));
+    }
+
+    @Override
+    void read(WireReader reader, Object message) throws IOException {
+      access.setObject(message, element.read(reader));
+    }
+  }
+
+  /** A list, set or queue, written unpacked. */
+  private static final class RepeatedSlot extends Slot {
+    private final Element element;
+    private final Constructor<?> impl;
+
+    RepeatedSlot(int tag, FieldAccessor access, Element element, Constructor<?> impl) {
+      super(tag, access);
+      this.element = element;
+      this.impl = impl;
+    }
+
+    @Override
+    int measure(Object message, SizeStack sizes) {
+      final Collection<?> values = (Collection<?>) access.getObject(message);
+      if (values == null) {
+        return 0;
+      }
+      int size = 0;
+      for (Object value : values) {
+        size += element.measure(tag, value, sizes);
+      }
+      return size;
+    }
+
+    @Override
+    void encode(ProtoWriter writer, Object message, SizeStack sizes) throws IOException {
+      final Collection<?> values = (Collection<?>) access.getObject(message);
+      if (values != null) {
+        for (Object value : values) {
+          element.encode(writer, tag, value, sizes);
+        }
+      }
+    }
+
+    @Override
+    void encode(WireWriter writer, Object message, SizeStack sizes) throws IOException {
+      final Collection<?> values = (Collection<?>) access.getObject(message);
+      if (values != null) {
+        for (Object value : values) {
+          element.encode(writer, tag, value, sizes);
+        }
+      }
+    }
+
+    @Override
+    void read(ProtoReader reader, Object message) throws IOException {
+      values(message).add(element.read(reader));
+    }
+
+    @Override
+    void read(WireReader reader, Object message) throws IOException {
+      values(message).add(element.read(reader));
+    }
+
+    private Collection<Object> values(Object message) {
+      Collection<Object> values = (Collection<Object>) access.getObject(message);
+      if (values == null) {
+        values = (Collection<Object>) create(impl);
+        access.setObject(message, values);
+      }
+      return values;
+    }
+  }
+
+  /** A map, written and read entry by entry by the map adapter. */
+  private static final class MapSlot extends Slot {
+    private final ProtoAdapter<Map<Object, Object>> adapter;
+    private final Constructor<?> impl;
+
+    MapSlot(int tag, FieldAccessor access, ProtoAdapter<?> adapter, Constructor<?> impl) {
+      super(tag, access);
+      this.adapter = (ProtoAdapter<Map<Object, Object>>) adapter;
+      this.impl = impl;
+    }
+
+    @Override
+    int measure(Object message, SizeStack sizes) {
+      final Map<Object, Object> values = get(message);
+      return values == null ? 0 : adapter.encodedSizeWithTag(tag, values);
+    }
+
+    @Override
+    void encode(ProtoWriter writer, Object message, SizeStack sizes) throws IOException {
+      final Map<Object, Object> values = get(message);
+      if (values != null) {
+        adapter.encodeWithTag(writer, tag, values);
+      }
+    }
+
+    @Override
+    void encode(WireWriter writer, Object message, SizeStack sizes) throws IOException {
+      final Map<Object, Object> values = get(message);
+      if (values != null) {
+        writer.write(adapter, tag, values);
+      }
+    }
+
+    @Override
+    void read(ProtoReader reader, Object message) throws IOException {
+      values(message).putAll(adapter.decode(reader));
+    }
+
+    @Override
+    void read(WireReader reader, Object message) throws IOException {
+      values(message).putAll(reader.read(adapter, FieldEncoding.LENGTH_DELIMITED));
+    }
+
+    private Map<Object, Object> get(Object message) {
+      return (Map<Object, Object>) access.getObject(message);
+    }
+
+    private Map<Object, Object> values(Object message) {
+      Map<Object, Object> values = get(message);
+      if (values == null) {
+        values = (Map<Object, Object>) create(impl);
+        access.setObject(message, values);
+      }
+      return values;
+    }
+  }
+
+  /**
+   * An int[], long[], float[] or double[], written as one packed run the way {@link PackedArrays}
+   * does for generated adapters, ints and longs as {@link Wire#pack} says. The varint payload size
+   * is recorded in a slot.
+   */
+  private static final class PackedSlot extends Slot {
+    private final Class<?> component;
+    private final Wire.Pack pack;
+    // Bytes per element, or 0 for varints.
+    private final int width;
+
+    PackedSlot(int tag, FieldAccessor access, Class<?> component, Wire.Pack pack) {
+      super(tag, access);
+      this.component = component;
+      this.pack = pack;
+      if (component == int.class) {
+        width = pack == Wire.Pack.FIXED ? 4 : 0;
+      } else if (component == long.class) {
+        width = pack == Wire.Pack.FIXED ? 8 : 0;
+      } else if (component == float.class) {
+        width = 4;
+      } else if (component == double.class) {
+        width = 8;
+      } else {
+        throw new IllegalArgumentException("No runtime codec for " + component.getName() + "[]");
+      }
+    }
+
+    @Override
+    int measure(Object message, SizeStack sizes) {
+      final Object values = access.getObject(message);
+      final int count = count(values);
+      if (count == 0) {
+        return 0;
+      }
+      final int length;
+      if (width == 0) {
+        final int slot = sizes.reserve();
+        if (component == int.class) {
+          length =
+              pack == Wire.Pack.SIGNED
+                  ? PackedArrays.sint32Size((int[]) values)
+                  : PackedArrays.int32Size((int[]) values);
+        } else {
+          length =
+              pack == Wire.Pack.SIGNED
+                  ? PackedArrays.sint64Size((long[]) values)
+                  : PackedArrays.int64Size((long[]) values);
+        }
+        sizes.set(slot, length);
+      } else {
+        length = count * width;
+      }
+      return tagSize + Scalars.varint32Size(length) + length;
+    }
+
+    @Override
+    void encode(ProtoWriter writer, Object message, SizeStack sizes) throws IOException {
+      final Object values = access.getObject(message);
+      final int count = count(values);
+      if (count == 0) {
+        return;
+      }
+      writer.writeTag(tag, FieldEncoding.LENGTH_DELIMITED);
+      writer.writeVarint32(width == 0 ? sizes.next() : count * width);
+      if (component == int.class) {
+        if (pack == Wire.Pack.SIGNED) {
+          PackedArrays.writeSInt32(writer, (int[]) values);
+        } else if (pack == Wire.Pack.FIXED) {
+          PackedArrays.writeFixed32(writer, (int[]) values);
+        } else {
+          PackedArrays.writeInt32(writer, (int[]) values);
+        }
+      } else if (component == long.class) {
+        if (pack == Wire.Pack.SIGNED) {
+          PackedArrays.writeSInt64(writer, (long[]) values);
+        } else if (pack == Wire.Pack.FIXED) {
+          PackedArrays.writeFixed64(writer, (long[]) values);
+        } else {
+          PackedArrays.writeInt64(writer, (long[]) values);
+        }
+      } else if (component == float.class) {
+        PackedArrays.writeFloat(writer, (float[]) values);
+      } else {
+        PackedArrays.writeDouble(writer, (double[]) values);
+      }
+    }
+
+    @Override
+    void encode(WireWriter writer, Object message, SizeStack sizes) {
+      final Object values = access.getObject(message);
+      final int count = count(values);
+      if (count == 0) {
+        return;
+      }
+      writer.writeTag(tag, FieldEncoding.LENGTH_DELIMITED);
+      writer.writeVarint32(width == 0 ? sizes.next() : count * width);
+      if (component == int.class) {
+        if (pack == Wire.Pack.SIGNED) {
+          writer.writePackedSInt32((int[]) values);
+        } else if (pack == Wire.Pack.FIXED) {
+          writer.writePackedFixed32((int[]) values);
+        } else {
+          writer.writePackedInt32((int[]) values);
+        }
+      } else if (component == long.class) {
+        if (pack == Wire.Pack.SIGNED) {
+          writer.writePackedSInt64((long[]) values);
+        } else if (pack == Wire.Pack.FIXED) {
+          writer.writePackedFixed64((long[]) values);
+        } else {
+          writer.writePackedInt64((long[]) values);
+        }
+      } else if (component == float.class) {
+        writer.writePackedFloat((float[]) values);
+      } else {
+        writer.writePackedDouble((double[]) values);
+      }
+    }
+
+    // ProtoReader hands out packed runs one element at a time.
+    @Override
+    void read(ProtoReader reader, Object message) throws IOException {
+      final Object values = access.getObject(message);
+      final Object result;
+      if (component == int.class) {
+        final int value;
+        if (pack == Wire.Pack.SIGNED) {
+          value = Scalars.decodeZigZag32(reader.readVarint32());
+        } else if (pack == Wire.Pack.FIXED) {
+          value = reader.readFixed32();
+        } else {
+          value = reader.readVarint32();
+        }
+        result = append((int[]) values, value);
+      } else if (component == long.class) {
+        final long value;
+        if (pack == Wire.Pack.SIGNED) {
+          value = Scalars.decodeZigZag64(reader.readVarint64());
+        } else if (pack == Wire.Pack.FIXED) {
+          value = reader.readFixed64();
+        } else {
+          value = reader.readVarint64();
+        }
+        result = append((long[]) values, value);
+      } else if (component == float.class) {
+        result = append((float[]) values, Float.intBitsToFloat(reader.readFixed32()));
+      } else {
+        result = append((double[]) values, Double.longBitsToDouble(reader.readFixed64()));
+      }
+      access.setObject(message, result);
+    }
+
+    @Override
+    void read(WireReader reader, Object message) throws IOException {
+      final Object values = access.getObject(message);
+      final boolean packed = reader.peekFieldEncoding() == FieldEncoding.LENGTH_DELIMITED;
+      final Object result;
+      if (component == int.class) {
+        result =
+            packed
+                ? readPackedInts(reader, (int[]) values)
+                : append((int[]) values, readInt(reader));
+      } else if (component == long.class) {
+        result =
+            packed
+                ? readPackedLongs(reader, (long[]) values)
+                : append((long[]) values, readLong(reader));
+      } else if (component == float.class) {
+        result =
+            packed
+                ? reader.readPackedFloat((float[]) values, count(values))
+                : append((float[]) values, Float.intBitsToFloat(reader.readFixed32()));
+      } else {
+        result =
+            packed
+                ? reader.readPackedDouble((double[]) values, count(values))
+                : append((double[]) values, Double.longBitsToDouble(reader.readFixed64()));
+      }
+      access.setObject(message, result);
+    }
+
+    private int[] readPackedInts(WireReader reader, int[] values) throws IOException {
+      if (pack == Wire.Pack.SIGNED) {
+        return reader.readPackedSInt32(values, count(values));
+      } else if (pack == Wire.Pack.FIXED) {
+        return reader.readPackedFixed32(values, count(values));
+      }
+      return reader.readPackedInt32(values, count(values));
+    }
+
+    private long[] readPackedLongs(WireReader reader, long[] values) throws IOException {
+      if (pack == Wire.Pack.SIGNED) {
+        return reader.readPackedSInt64(values, count(values));
+      } else if (pack == Wire.Pack.FIXED) {
+        return reader.readPackedFixed64(values, count(values));
+      }
+      return reader.readPackedInt64(values, count(values));
+    }
+
+    private int readInt(WireReader reader) throws IOException {
+      if (pack == Wire.Pack.SIGNED) {
+        return Scalars.decodeZigZag32(reader.readVarint32());
+      } else if (pack == Wire.Pack.FIXED) {
+        return reader.readFixed32();
+      }
+      return reader.readVarint32();
+    }
+
+    private long readLong(WireReader reader) throws IOException {
+      if (pack == Wire.Pack.SIGNED) {
+        return Scalars.decodeZigZag64(reader.readVarint64());
+      } else if (pack == Wire.Pack.FIXED) {
+        return reader.readFixed64();
+      }
+      return reader.readVarint64();
+    }
+
+    private static int count(Object values) {
+      return values == null ? 0 : Array.getLength(values);
+    }
+
+    // Arrays are kept at exactly their element count, so a lone element costs a copy.
+
+    private static int[] append(int[] values, int value) {
+      final int[] result = values == null ? new int[1] : Arrays.copyOf(values, values.length + 1);
+      result[result.length - 1] = value;
+      return result;
+    }
+
+    private static long[] append(long[] values, long value) {
+      final long[] result = values == null ? new long[1] : Arrays.copyOf(values, values.length + 1);
+      result[result.length - 1] = value;
+      return result;
+    }
+
+    private static float[] append(float[] values, float value) {
+      final float[] result =
+          values == null ? new float[1] : Arrays.copyOf(values, values.length + 1);
+      result[result.length - 1] = value;
+      return result;
+    }
+
+    private static double[] append(double[] values, double value) {
+      final double[] result =
+          values == null ? new double[1] : Arrays.copyOf(values, values.length + 1);
+      result[result.length - 1] = value;
+      return result;
+    }
+  }
+
+  //////////////////////////////////////////////////////////////////////
+  // Values
+  //////////////////////////////////////////////////////////////////////
+
+  /** Codec of one non-null value of a field, list element, or map key or value. */
+  private abstract static class Element {
+    /** Size of {@code value} and its tag, recording any lengths encode will need. */
+    abstract int measure(int tag, Object value, SizeStack sizes);
+
+    abstract void encode(ProtoWriter writer, int tag, Object value, SizeStack sizes)
+        throws IOException;
+
+    abstract void encode(WireWriter writer, int tag, Object value, SizeStack sizes)
+        throws IOException;
+
+    abstract Object read(ProtoReader reader) throws IOException;
+
+    abstract Object read(WireReader reader) throws IOException;
+
+    /** Adapter of the value on its own, which maps are written with. */
+    ProtoAdapter<?> adapter() {
+      throw new IllegalArgumentException("No runtime map codec for " + getClass().getSimpleName());
+    }
+  }
+
+  /** A boxed primitive. Byte, short and char are written as int32. */
+  private static final class ScalarElement extends Element {
+    private final JavaKind kind;
+
+    ScalarElement(JavaKind kind) {
+      this.kind = kind;
+    }
+
+    @Override
+    int measure(int tag, Object value, SizeStack sizes) {
+      switch (kind) {
+        case BOOL:
+        case BOXED_BOOL:
+          return tagSize(tag) + 1;
+        case LONG:
+        case BOXED_LONG:
+          return tagSize(tag) + Scalars.varint64Size((Long) value);
+        case FLOAT:
+        case BOXED_FLOAT:
+          return tagSize(tag) + 4;
+        case DOUBLE:
+        case BOXED_DOUBLE:
+          return tagSize(tag) + 8;
+        default:
+          return tagSize(tag) + Scalars.int32Size(intValue(value));
+      }
+    }
+
+    @Override
+    void encode(ProtoWriter writer, int tag, Object value, SizeStack sizes) throws IOException {
+      switch (kind) {
+        case BOOL:
+        case BOXED_BOOL:
+          writer.writeTag(tag, FieldEncoding.VARINT);
+          writer.writeVarint32((Boolean) value ? 1 : 0);
+          break;
+        case LONG:
+        case BOXED_LONG:
+          writer.writeTag(tag, FieldEncoding.VARINT);
+          writer.writeVarint64((Long) value);
+          break;
+        case FLOAT:
+        case BOXED_FLOAT:
+          writer.writeTag(tag, FieldEncoding.FIXED32);
+          writer.writeFixed32(Float.floatToIntBits((Float) value));
+          break;
+        case DOUBLE:
+        case BOXED_DOUBLE:
+          writer.writeTag(tag, FieldEncoding.FIXED64);
+          writer.writeFixed64(Double.doubleToLongBits((Double) value));
+          break;
+        default:
+          writer.writeTag(tag, FieldEncoding.VARINT);
+          writer.writeVarint64(intValue(value));
+          break;
+      }
+    }
+
+    @Override
+    void encode(WireWriter writer, int tag, Object value, SizeStack sizes) {
+      switch (kind) {
+        case BOOL:
+        case BOXED_BOOL:
+          writer.writeTag(tag, FieldEncoding.VARINT);
+          writer.writeVarint32((Boolean) value ? 1 : 0);
+          break;
+        case LONG:
+        case BOXED_LONG:
+          writer.writeTag(tag, FieldEncoding.VARINT);
+          writer.writeVarint64((Long) value);
+          break;
+        case FLOAT:
+        case BOXED_FLOAT:
+          writer.writeTag(tag, FieldEncoding.FIXED32);
+          writer.writeFixed32(Float.floatToIntBits((Float) value));
+          break;
+        case DOUBLE:
+        case BOXED_DOUBLE:
+          writer.writeTag(tag, FieldEncoding.FIXED64);
+          writer.writeFixed64(Double.doubleToLongBits((Double) value));
+          break;
+        default:
+          writer.writeTag(tag, FieldEncoding.VARINT);
+          writer.writeInt32(intValue(value));
+          break;
+      }
+    }
+
+    @Override
+    Object read(ProtoReader reader) throws IOException {
+      switch (kind) {
+        case BOOL:
+        case BOXED_BOOL:
+          return reader.readVarint32() != 0;
+        case LONG:
+        case BOXED_LONG:
+          return reader.readVarint64();
+        case FLOAT:
+        case BOXED_FLOAT:
+          return Float.intBitsToFloat(reader.readFixed32());
+        case DOUBLE:
+        case BOXED_DOUBLE:
+          return Double.longBitsToDouble(reader.readFixed64());
+        default:
+          return narrow(reader.readVarint32());
+      }
+    }
+
+    @Override
+    Object read(WireReader reader) throws IOException {
+      switch (kind) {
+        case BOOL:
+        case BOXED_BOOL:
+          return reader.readVarint32() != 0;
+        case LONG:
+        case BOXED_LONG:
+          return reader.readVarint64();
+        case FLOAT:
+        case BOXED_FLOAT:
+          return Float.intBitsToFloat(reader.readFixed32());
+        case DOUBLE:
+        case BOXED_DOUBLE:
+          return Double.longBitsToDouble(reader.readFixed64());
+        default:
+          return narrow(reader.readVarint32());
+      }
+    }
+
+    @Override
+    ProtoAdapter<?> adapter() {
+      switch (kind) {
+        case BOOL:
+        case BOXED_BOOL:
+          return ProtoAdapter.BOOL;
+        case INT:
+        case BOXED_INT:
+          return ProtoAdapter.INT32;
+        case LONG:
+        case BOXED_LONG:
+          return ProtoAdapter.INT64;
+        case FLOAT:
+        case BOXED_FLOAT:
+          return ProtoAdapter.FLOAT;
+        case DOUBLE:
+        case BOXED_DOUBLE:
+          return ProtoAdapter.DOUBLE;
+        default:
+          return super.adapter();
+      }
+    }
+
+    private static int intValue(Object value) {
+      return value instanceof Character ? (Character) value : ((Number) value).intValue();
+    }
+
+    private Object narrow(int value) {
+      switch (kind) {
+        case BYTE:
+        case BOXED_BYTE:
+          return (byte) value;
+        case SHORT:
+        case BOXED_SHORT:
+          return (short) value;
+        case CHAR:
+        case BOXED_CHAR:
+          return (char) value;
+        default:
+          return value;
+      }
+    }
+  }
+
+  /** A string. Its UTF-8 length is recorded in a slot so encode can write it in a single pass. */
+  private static final class StringElement extends Element {
+    @Override
+    int measure(int tag, Object value, SizeStack sizes) {
+      final int length = Scalars.utf8Size((String) value);
+      sizes.set(sizes.reserve(), length);
+      return tagSize(tag) + Scalars.varint32Size(length) + length;
+    }
+
+    @Override
+    void encode(ProtoWriter writer, int tag, Object value, SizeStack sizes) throws IOException {
+      writer.writeTag(tag, FieldEncoding.LENGTH_DELIMITED);
+      writer.writeVarint32(sizes.next());
+      writer.writeString((String) value);
+    }
+
+    @Override
+    void encode(WireWriter writer, int tag, Object value, SizeStack sizes) {
+      writer.writeTag(tag, FieldEncoding.LENGTH_DELIMITED);
+      writer.writeString((String) value, sizes.next());
+    }
+
+    @Override
+    Object read(ProtoReader reader) throws IOException {
+      return reader.readString();
+    }
+
+    @Override
+    Object read(WireReader reader) throws IOException {
+      return reader.readString();
+    }
+
+    @Override
+    ProtoAdapter<?> adapter() {
+      return ProtoAdapter.STRING;
+    }
+  }
+
+  /** A byte[]. */
+  private static final class BytesElement extends Element {
+    @Override
+    int measure(int tag, Object value, SizeStack sizes) {
+      final int length = ((byte[]) value).length;
+      return tagSize(tag) + Scalars.varint32Size(length) + length;
+    }
+
+    @Override
+    void encode(ProtoWriter writer, int tag, Object value, SizeStack sizes) throws IOException {
+      final byte[] bytes = (byte[]) value;
+      writer.writeTag(tag, FieldEncoding.LENGTH_DELIMITED);
+      writer.writeVarint32(bytes.length);
+      writer.writeBytes(ByteString.of(bytes));
+    }
+
+    @Override
+    void encode(WireWriter writer, int tag, Object value, SizeStack sizes) {
+      writer.writeTag(tag, FieldEncoding.LENGTH_DELIMITED);
+      writer.writeBytes((byte[]) value);
+    }
+
+    @Override
+    Object read(ProtoReader reader) throws IOException {
+      return reader.readBytes().toByteArray();
+    }
+
+    @Override
+    Object read(WireReader reader) throws IOException {
+      return reader.readByteArray();
+    }
+  }
+
+  /** An enum, written as its tag. */
+  private static final class EnumElement<E extends Enum<E>> extends Element {
+    private final Class<E> type;
+    private final WireEnumAdapter<E> adapter;
+
+    EnumElement(Class<E> type, WireEnumAdapter<E> adapter) {
+      this.type = type;
+      this.adapter = adapter;
+    }
+
+    @Override
+    int measure(int tag, Object value, SizeStack sizes) {
+      return tagSize(tag) + Scalars.int32Size(adapter.tag(type.cast(value)));
+    }
+
+    @Override
+    void encode(ProtoWriter writer, int tag, Object value, SizeStack sizes) throws IOException {
+      writer.writeTag(tag, FieldEncoding.VARINT);
+      writer.writeVarint64(adapter.tag(type.cast(value)));
+    }
+
+    @Override
+    void encode(WireWriter writer, int tag, Object value, SizeStack sizes) {
+      writer.writeTag(tag, FieldEncoding.VARINT);
+      writer.writeInt32(adapter.tag(type.cast(value)));
+    }
+
+    @Override
+    Object read(ProtoReader reader) throws IOException {
+      return adapter.decodeTag(reader.readVarint32());
+    }
+
+    @Override
+    Object read(WireReader reader) throws IOException {
+      return adapter.decodeTag(reader.readVarint32());
+    }
+
+    @Override
+    ProtoAdapter<?> adapter() {
+      return adapter;
+    }
+  }
+
+  /** A value type written by one of the codecs in {@code run.mojo.wire.codec}. */
+  private static final class CodecElement extends Element {
+    private final JavaKind kind;
+    private final ProtoAdapter<Object> adapter;
+    private final FieldEncoding encoding;
+
+    CodecElement(JavaKind kind) {
+      this.kind = kind;
+      switch (kind) {
+        case BIG_DECIMAL:
+          adapter = (ProtoAdapter) Decimals.ADAPTER;
+          break;
+        case DURATION:
+          adapter = (ProtoAdapter) Durations.ADAPTER;
+          break;
+        case DATE:
+          adapter = (ProtoAdapter) Dates.ADAPTER;
+          break;
+        case LOCAL_DATE:
+          adapter = (ProtoAdapter) LocalDates.ADAPTER;
+          break;
+        case LOCAL_DATE_TIME:
+          adapter = (ProtoAdapter) LocalDateTimes.ADAPTER;
+          break;
+        default:
+          adapter = (ProtoAdapter) ZonedDateTimes.ADAPTER;
+          break;
+      }
+      encoding =
+          kind == JavaKind.DATE || kind == JavaKind.LOCAL_DATE
+              ? FieldEncoding.VARINT
+              : FieldEncoding.LENGTH_DELIMITED;
+    }
+
+    @Override
+    int measure(int tag, Object value, SizeStack sizes) {
+      final int size = adapter.encodedSize(value);
+      return encoding == FieldEncoding.VARINT
+          ? tagSize(tag) + size
+          : tagSize(tag) + Scalars.varint32Size(size) + size;
+    }
+
+    @Override
+    void encode(ProtoWriter writer, int tag, Object value, SizeStack sizes) throws IOException {
+      adapter.encodeWithTag(writer, tag, value);
+    }
+
+    @Override
+    void encode(WireWriter writer, int tag, Object value, SizeStack sizes) throws IOException {
+      if (kind == JavaKind.ZONED_DATE) {
+        // No zones are shared here, so each value carries its id, as with ADAPTER.
+        writer.write(adapter, tag, value);
+        return;
+      }
+      writer.writeTag(tag, encoding);
+      switch (kind) {
+        case BIG_DECIMAL:
+          Decimals.write(writer, (BigDecimal) value);
+          break;
+        case DURATION:
+          Durations.write(writer, (Duration) value);
+          break;
+        case DATE:
+          Dates.write(writer, (Date) value);
+          break;
+        case LOCAL_DATE:
+          LocalDates.write(writer, (LocalDate) value);
+          break;
+        default:
+          LocalDateTimes.write(writer, (LocalDateTime) value);
+          break;
+      }
+    }
+
+    @Override
+    Object read(ProtoReader reader) throws IOException {
+      return adapter.decode(reader);
+    }
+
+    @Override
+    Object read(WireReader reader) throws IOException {
+      switch (kind) {
+        case BIG_DECIMAL:
+          return Decimals.read(reader);
+        case DURATION:
+          return Durations.read(reader);
+        case DATE:
+          return Dates.read(reader);
+        case LOCAL_DATE:
+          return LocalDates.read(reader);
+        case LOCAL_DATE_TIME:
+          return LocalDateTimes.read(reader);
+        default:
+          return ZonedDateTimes.read(reader, null);
+      }
+    }
+
+    @Override
+    ProtoAdapter<?> adapter() {
+      return adapter;
+    }
+  }
+
+  /** A nested message. Its length is recorded in a slot reserved before descending into it. */
+  private static final class MessageElement extends Element {
+    private final WireProtoAdapter<Object> adapter;
+
+    MessageElement(WireProtoAdapter<?> adapter) {
+      this.adapter = (WireProtoAdapter<Object>) adapter;
+    }
+
+    @Override
+    int measure(int tag, Object value, SizeStack sizes) {
+      final int slot = sizes.reserve();
+      final int length = adapter.measure(value, sizes);
+      sizes.set(slot, length);
+      return tagSize(tag) + Scalars.varint32Size(length) + length;
+    }
+
+    @Override
+    void encode(ProtoWriter writer, int tag, Object value, SizeStack sizes) throws IOException {
+      writer.writeTag(tag, FieldEncoding.LENGTH_DELIMITED);
+      writer.writeVarint32(sizes.next());
+      adapter.encode(writer, value, sizes);
+    }
+
+    @Override
+    void encode(WireWriter writer, int tag, Object value, SizeStack sizes) throws IOException {
+      writer.writeTag(tag, FieldEncoding.LENGTH_DELIMITED);
+      writer.writeVarint32(sizes.next());
+      adapter.encode(writer, value, sizes);
+    }
+
+    @Override
+    Object read(ProtoReader reader) throws IOException {
+      return adapter.decode(reader);
+    }
+
+    @Override
+    Object read(WireReader reader) throws IOException {
+      return adapter.decode(reader);
+    }
+
+    @Override
+    ProtoAdapter<?> adapter() {
+      return adapter;
+    }
+  }
+}
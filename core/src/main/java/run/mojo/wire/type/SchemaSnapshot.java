@@ -0,0 +1,217 @@
+package run.mojo.wire.type;
+
+import run.mojo.wire.type.ReflectionSchema.Entry;
+import run.mojo.wire.type.ReflectionSchema.RpcEntry;
+import run.mojo.wire.type.ReflectionSchema.TypeEntry;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.function.Function;
+import java.util.stream.Stream;
+
+/**
+ * The entries a {@link ReflectionSchema} was built from, saved so the next process on the same
+ * classpath can skip finding them again.
+ *
+ * <p>A snapshot is only valid for the classpath {@link ClassScanner#fingerprint()} it was written
+ * with. Opening one maps the file and indexes its entries by the names they declare, without
+ * loading anything; a schema opened from it registers each entry the first time {@link
+ * ReflectionSchema#type(String)} or {@link ReflectionSchema#action(String)} asks for one of those
+ * names, and {@link ReflectionSchema#resolveAll()} registers the rest.
+ *
+ * <p>The file is a header of magic, version and fingerprint followed by the entries in
+ * registration order, each a kind byte and its class names.
+ */
+public final class SchemaSnapshot {
+  private static final int MAGIC = 0x4d4a5353;
+  private static final int VERSION = 1;
+  private static final byte TYPE = 1;
+  private static final byte RPC = 2;
+
+  private final ByteBuffer buffer;
+  private final ClassLoader loader;
+  // Offset of each entry's kind byte, or -1 once it has been taken.
+  private final int[] offsets;
+  // Entry declaring each canonical name.
+  private final HashMap<String, Integer> index;
+  private int remaining;
+
+  private SchemaSnapshot(
+      ByteBuffer buffer, ClassLoader loader, int[] offsets, HashMap<String, Integer> index) {
+    this.buffer = buffer;
+    this.loader = loader;
+    this.offsets = offsets;
+    this.index = index;
+    this.remaining = offsets.length;
+  }
+
+  /** Writes the entries {@code schema} was built from, replacing {@code file} atomically. */
+  public static void write(ReflectionSchema schema, long fingerprint, Path file)
+      throws IOException {
+    schema.resolveAll();
+    final Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+    try (DataOutputStream out =
+        new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp)))) {
+      out.writeInt(MAGIC);
+      out.writeInt(VERSION);
+      out.writeLong(fingerprint);
+      final List<Entry> entries = new ArrayList<>();
+      for (Entry entry : schema.entries) {
+        if (entry instanceof TypeEntry || entry instanceof RpcEntry) {
+          entries.add(entry);
+        }
+      }
+      out.writeInt(entries.size());
+      for (Entry entry : entries) {
+        if (entry instanceof TypeEntry) {
+          out.writeByte(TYPE);
+          writeName(out, ((TypeEntry) entry).cls);
+        } else {
+          final RpcEntry rpc = (RpcEntry) entry;
+          out.writeByte(RPC);
+          out.writeByte((rpc.streamRequests ? 1 : 0) | (rpc.streamResponses ? 2 : 0));
+          writeName(out, rpc.processor);
+          writeName(out, rpc.handler);
+          writeName(out, rpc.request);
+          writeName(out, rpc.response);
+        }
+      }
+    }
+    Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+  }
+
+  /**
+   * Opens the snapshot at {@code file}, resolving its classes through {@code loader}. Returns null
+   * if there's none, it was written for another classpath, or it can't be read.
+   */
+  public static SchemaSnapshot read(Path file, long fingerprint, ClassLoader loader) {
+    if (!Files.isRegularFile(file)) {
+      return null;
+    }
+    try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+      // The mapping outlives the channel.
+      final ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+      if (buffer.getInt() != MAGIC
+          || buffer.getInt() != VERSION
+          || buffer.getLong() != fingerprint) {
+        return null;
+      }
+      final int[] offsets = new int[buffer.getInt()];
+      final HashMap<String, Integer> index = new HashMap<>();
+      for (int i = 0; i < offsets.length; i++) {
+        offsets[i] = buffer.position();
+        if (buffer.get() == TYPE) {
+          indexName(index, readName(buffer), i);
+        } else {
+          buffer.get();
+          readName(buffer);
+          indexName(index, readName(buffer), i);
+          indexName(index, readName(buffer), i);
+          indexName(index, readName(buffer), i);
+        }
+      }
+      return new SchemaSnapshot(buffer, loader, offsets, index);
+    } catch (IOException | BufferUnderflowException | IllegalArgumentException e) {
+      return null;
+    }
+  }
+
+  /** Empty schema that registers this snapshot's entries as they're asked for. */
+  public ReflectionSchema schema(
+      Function<Class<?>, Boolean> whitelist,
+      Function<Class<?>, Boolean> blacklist,
+      Function<Class<?>, RpcInfo> rpc) {
+    final ReflectionSchema schema =
+        ReflectionSchema.create(
+            Stream.empty(),
+            null,
+            whitelist == null ? null : whitelist::apply,
+            blacklist == null ? null : blacklist::apply,
+            rpc);
+    schema.snapshot = this;
+    return schema;
+  }
+
+  /** Entry declaring {@code name} if it hasn't been taken yet, loading its classes. */
+  Entry take(String name) {
+    final Integer i = index.get(name);
+    return i == null ? null : take(i);
+  }
+
+  /** Every entry not taken yet, in the order they were registered. */
+  List<Entry> takeAll() {
+    final List<Entry> result = new ArrayList<>(remaining);
+    for (int i = 0; i < offsets.length; i++) {
+      final Entry entry = take(i);
+      if (entry != null) {
+        result.add(entry);
+      }
+    }
+    return result;
+  }
+
+  private Entry take(int i) {
+    if (offsets[i] < 0) {
+      return null;
+    }
+    final ByteBuffer in = buffer.duplicate();
+    in.position(offsets[i]);
+    offsets[i] = -1;
+    remaining--;
+    if (in.get() == TYPE) {
+      return TypeEntry.create(load(readName(in)));
+    }
+    final int flags = in.get();
+    final RpcEntry entry =
+        RpcEntry.create(
+            load(readName(in)), load(readName(in)), load(readName(in)), load(readName(in)));
+    entry.streamRequests = (flags & 1) != 0;
+    entry.streamResponses = (flags & 2) != 0;
+    return entry;
+  }
+
+  private Class<?> load(String name) {
+    if (name.isEmpty()) {
+      return null;
+    }
+    try {
+      return Class.forName(name, false, loader);
+    } catch (ClassNotFoundException e) {
+      // The fingerprint says the classpath hasn't changed since this was written.
+      throw new IllegalStateException("snapshot names missing class " + name, e);
+    }
+  }
+
+  private static void indexName(HashMap<String, Integer> index, String name, int i) {
+    if (!name.isEmpty()) {
+      // Schemas are keyed by canonical name.
+      index.putIfAbsent(name.replace('$', '.'), i);
+    }
+  }
+
+  /** Binary name as a length prefixed UTF-8 string, empty for null. */
+  private static void writeName(DataOutputStream out, Class<?> cls) throws IOException {
+    final byte[] bytes =
+        cls == null ? new byte[0] : cls.getName().getBytes(StandardCharsets.UTF_8);
+    out.writeShort(bytes.length);
+    out.write(bytes);
+  }
+
+  private static String readName(ByteBuffer in) {
+    final byte[] bytes = new byte[in.getShort() & 0xffff];
+    in.get(bytes);
+    return new String(bytes, StandardCharsets.UTF_8);
+  }
+}
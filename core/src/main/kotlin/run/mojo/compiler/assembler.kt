@@ -1,13 +1,42 @@
 package run.mojo.compiler
 
 import com.squareup.javapoet.*
+import com.squareup.javapoet.NameAllocator as JavaNameAllocator
 import com.squareup.kotlinpoet.NameAllocator
+import com.squareup.moshi.JsonReader
+import com.squareup.moshi.JsonWriter
 import com.squareup.wire.FieldEncoding
 import com.squareup.wire.ProtoAdapter
 import com.squareup.wire.ProtoReader
 import com.squareup.wire.ProtoWriter
 import okio.ByteString
 import run.mojo.model.*
+import run.mojo.Wire
+import run.mojo.wire.FieldMask
+import run.mojo.wire.IntKeyMap
+import run.mojo.wire.JavaKind
+import run.mojo.wire.KotlinDefaults
+import run.mojo.wire.Lazy
+import run.mojo.wire.LongKeyMap
+import run.mojo.wire.WireEnumAdapter
+import run.mojo.wire.WireJsonAdapter
+import run.mojo.wire.WireProtoAdapter
+import run.mojo.wire.codec.ByteSlice
+import run.mojo.wire.codec.Decimals
+import run.mojo.wire.codec.Dates
+import run.mojo.wire.codec.Durations
+import run.mojo.wire.codec.LocalDateTimes
+import run.mojo.wire.codec.LocalDates
+import run.mojo.wire.codec.JsonSink
+import run.mojo.wire.codec.PackedArrays
+import run.mojo.wire.codec.Scalars
+import run.mojo.wire.codec.SizeStack
+import run.mojo.wire.codec.StringCache
+import run.mojo.wire.codec.UnknownFields
+import run.mojo.wire.codec.WireReader
+import run.mojo.wire.codec.WireWriter
+import run.mojo.wire.codec.ZoneDictionary
+import run.mojo.wire.codec.ZonedDateTimes
 import java.io.IOException
 import java.util.*
 import java.util.stream.Collectors
@@ -21,8 +50,11 @@ class Assembler(
 ) {
     var filer: Filer? = null
 
-    fun build() {
-        packageMap.values.forEach { pkg -> pkg.build() }
+    /** Generates the Wire_ class of every top-level type, writing them to [filer] when it's set. */
+    fun build(): List<JavaFile> {
+        val files = packageMap.values.flatMap { pkg -> pkg.build() }
+        filer?.let { filer -> files.forEach { it.writeTo(filer) } }
+        return files
     }
 
     private fun toWireOuterName(prefix: String, enclosing: ClassName?, declared: DeclaredModel): ClassName {
@@ -35,27 +67,35 @@ class Assembler(
 
     /**  */
     class Pkg(val model: PackageModel) {
+        // Top-level types have Wire_ classes of their own, named by toWireOuter.
         val nested: List<Declared<*>> = model.nested.values
-            .map(NestedMapper(this, null, ClassName.bestGuess(model.name)))
+            .map(NestedMapper(this, null, null))
             .filterNotNull()
             .toList()
 
-        fun build() {
-            nested.forEach {
-                it.buildWire()?.let {
-
-                }
+        fun build(): List<JavaFile> {
+            return nested.mapNotNull { declared ->
+                declared.buildWire()?.let { JavaFile.builder(model.name, it).build() }
             }
         }
     }
 
-    /**  */
+    /**
+     * Adapter specialized for one fully specified template, e.g. Records<Integer>, nested in the
+     * Wire class of the message holding it. Its fields are bound to the type arguments, so element
+     * codecs are static calls and List<Integer> is written through the inline scalar path instead
+     * of the erased template's boxed, megamorphic one.
+     */
     class Impl(
         val impl: ImplModel,
         pkg: Pkg,
         enclosing: Enclosing<*>?,
         wireOuter: ClassName
-    ) : Message(pkg, enclosing, impl.message, wireOuter)
+    ) : Message(pkg, enclosing, impl.message, wireOuter) {
+
+        override val valueType: TypeName
+            get() = impl.message.toTypeName(true)
+    }
 
     abstract class Declared<T : DeclaredModel>(
         val pkg: Pkg,
@@ -73,6 +113,14 @@ class Assembler(
         open fun buildWire(): TypeSpec? {
             return null
         }
+
+        /** Modifiers of the Wire_ class, which is static only when nested in another. */
+        internal fun wireModifiers(): Array<Modifier> =
+            if (wireOuter.enclosingClassName() == null) {
+                arrayOf(Modifier.PUBLIC, Modifier.FINAL)
+            } else {
+                arrayOf(Modifier.PUBLIC, Modifier.STATIC, Modifier.FINAL)
+            }
     }
 
     private class NestedMapper(
@@ -83,7 +131,11 @@ class Assembler(
         override fun invoke(n: DeclaredModel): Declared<*>? {
             val wireClass = wireOuter?.nestedClass(n.simpleName) ?: toWireOuter(n)
 
-            return if (n is MessageModel) {
+            return if (n is MessageModel && n.isTemplate) {
+                // Templates have no adapter of their own. Each parameterization is an Impl in the
+                // message holding it, so only the template's nested types need a home.
+                if (n.nested.isEmpty()) null else Enclosing(pkg, enclosing, n, wireClass)
+            } else if (n is MessageModel) {
                 Message(
                     pkg, enclosing, n, wireClass
                 )
@@ -144,7 +196,12 @@ class Assembler(
         val protoAdapterVar: ProtoAssignment = toProtoAdapter(model)
         val fields: List<Field>
         var builder: MessageBuilder? = null
-        internal var unknownField: Field? = null
+        /** Name of the message's [UnknownFields] field, or null if unknown fields are dropped. */
+        internal val unknownField: String? = model.unknownFields
+
+        /** Type of the messages read and written, parameterized for an [Impl]. */
+        internal open val valueType: TypeName
+            get() = name
 
         init {
             // Create fields.
@@ -162,20 +219,129 @@ class Assembler(
                 .toList()
         }
 
-        fun buildBuilder(): TypeSpec? {
-            //      final TypeSpec.MessageBuilder builder = TypeSpec.classBuilder()
+        /**
+         * Arguments of the all-args constructor that builds the message once every field has been
+         * read, or null when the message is built empty and its fields assigned. Kotlin classes,
+         * Lombok @Value and messages with final fields or no empty constructor are constructed.
+         */
+        internal val factory: List<Field>? = factoryFields()
+
+        /** Fields decode reads into locals: the [factory] arguments or every assignable field. */
+        internal val decodedFields: List<Field> = factory ?: fields.filter { it.isAssignable }
+
+        /** Names of the [factory] arguments Kotlin doesn't let be null. */
+        private val nonNullArgs: Set<String> =
+            model.factoryCtor?.fields.orEmpty().filter { !it.nullable }.mapNotNull { it.field?.name }.toSet()
+
+        /**
+         * Whether missing [factory] arguments are left to the defaults of a Kotlin constructor,
+         * through the [KotlinDefaults] in [KOTLIN_DEFAULTS_NAME].
+         */
+        private val usesKotlinDefaults: Boolean =
+            model.kot && factory?.any { !it.spec.model.toTypeName(false).isPrimitive } == true
+
+        /** Whether measure, encode and decode share zones through a [ZoneDictionary]. */
+        internal val hasZones: Boolean = fields.any { isZoned(it.spec.model) }
+
+        private fun factoryFields(): List<Field>? {
+            if (model.emptyCtor != null && !model.kot && !model.lombokValue && fields.all { it.isAssignable }) {
+                return null
+            }
+            val ctor = model.factoryCtor
+            if (ctor != null) {
+                return ctor.fields.map { param -> fields.first { it.name == param.field!!.name } }
+            }
+            // Lombok adds its constructor after annotation processing, taking fields in order.
+            if (model.lombokValue) {
+                return fields
+            }
+            if (model.emptyCtor == null) {
+                throw IllegalStateException(
+                    "MessageSpec '${model.name}' needs a no-arg constructor or one taking every field"
+                )
+            }
             return null
         }
 
+        /**
+         * Builds the resettable Builder. Fields are held in their declared types and copied onto a
+         * new message by build(), so resetting a builder never touches a message it built.
+         */
+        fun buildBuilder(): TypeSpec? {
+            val builderName = wireOuter.nestedClass(BUILDER_NAME)
+            val builder = TypeSpec.classBuilder(builderName)
+                .addModifiers(Modifier.PUBLIC, Modifier.STATIC, Modifier.FINAL)
+                .superclass(ParameterizedTypeName.get(MESSAGE_BUILDER, valueType, builderName))
+
+            val clear = MethodSpec.methodBuilder("clearFields")
+                .addAnnotation(Override::class.java)
+                .addModifiers(Modifier.PROTECTED)
+            val build = MethodSpec.methodBuilder("build")
+                .addAnnotation(Override::class.java)
+                .addModifiers(Modifier.PUBLIC)
+                .returns(valueType)
+            if (factory == null) {
+                build.addStatement("\$T result = new \$T()", valueType, valueType)
+            }
+            val factory = this.factory
+            for (field in factory ?: fields.filter { it.isAssignable }) {
+                val type = field.spec.model.toTypeName(false)
+                builder.addField(type, field.name, Modifier.PRIVATE)
+
+                val setter = if (BUILDER_RESERVED.contains(field.name)) {
+                    "set" + field.name.substring(0, 1).toUpperCase() + field.name.substring(1)
+                } else {
+                    field.name
+                }
+                builder.addMethod(
+                    MethodSpec.methodBuilder(setter)
+                        .addModifiers(Modifier.PUBLIC)
+                        .returns(builderName)
+                        .addParameter(type, field.name)
+                        .addStatement("this.\$L = \$L", field.name, field.name)
+                        .addStatement("return this")
+                        .build()
+                )
+
+                clear.addStatement(
+                    "\$L = \$L",
+                    field.name,
+                    if (type == TypeName.BOOLEAN) "false" else if (type.isPrimitive) "0" else "null"
+                )
+
+                val value = CodeBlock.of("\$L", field.name)
+                if (factory != null) {
+                    continue
+                } else if (type.isPrimitive) {
+                    build.addStatement("\$L", field.assign("result", value))
+                } else {
+                    // Unset fields keep whatever the message initializes them to.
+                    build.beginControlFlow("if (\$L != null)", field.name)
+                    build.addStatement("\$L", field.assign("result", value))
+                    build.endControlFlow()
+                }
+            }
+
+            if (factory != null) {
+                addConstruct(build, JavaNameAllocator(), factory.map { "this." + it.name }, factory.map {
+                    CodeBlock.of("this.\$L", it.name)
+                })
+            }
+            build.addStatement("return result")
+            builder.addMethod(clear.build())
+            builder.addMethod(build.build())
+            return builder.build()
+        }
+
         override fun buildWire(): TypeSpec? {
             val outer = TypeSpec.classBuilder(wireOuter)
-                .addModifiers(Modifier.PUBLIC, Modifier.STATIC, Modifier.FINAL)
+                .addModifiers(*wireModifiers())
 
             // WireMessage Adapter Var.
             outer.addField(
                 FieldSpec.builder(
                     protoAdapterName,
-                    ADAPTER_VAR_NAME,
+                    PROTO_VAR_NAME,
                     Modifier.PUBLIC,
                     Modifier.STATIC,
                     Modifier.FINAL
@@ -183,226 +349,1380 @@ class Assembler(
                     .initializer("new \$T()", protoAdapterName)
                     .build()
             )
+            outer.addField(
+                FieldSpec.builder(
+                    jsonAdapterName,
+                    JSON_VAR_NAME,
+                    Modifier.PUBLIC,
+                    Modifier.STATIC,
+                    Modifier.FINAL
+                )
+                    .initializer("new \$T()", jsonAdapterName)
+                    .build()
+            )
+            if (usesKotlinDefaults) {
+                val types = CodeBlock.builder()
+                factory!!.forEach { types.add(", \$T.class", erasure(it.spec.model.toTypeName(false))) }
+                outer.addField(
+                    FieldSpec.builder(
+                        ParameterizedTypeName.get(KOTLIN_DEFAULTS, valueType),
+                        KOTLIN_DEFAULTS_NAME,
+                        Modifier.STATIC,
+                        Modifier.FINAL
+                    )
+                        .initializer("\$T.of(\$L\$L)", KOTLIN_DEFAULTS, javaTypeLiteral(), types.build())
+                        .build()
+                )
+            }
 
             // Create WireMessage adapter.
             val protoAdapter = TypeSpec.classBuilder(protoAdapterName)
                 .addModifiers(Modifier.PUBLIC, Modifier.STATIC, Modifier.FINAL)
-                .superclass(ParameterizedTypeName.get(PROTO_ADAPTER, name))
+                .superclass(ParameterizedTypeName.get(WIRE_PROTO_ADAPTER, valueType))
                 .addMethod(
                     MethodSpec.constructorBuilder()
-                        .addStatement("super(\$T.FIELD_DELIMITED, \$T.class)", FIELD_ENCODING, name)
+                        .addStatement("super(\$T.LENGTH_DELIMITED, \$L)", FIELD_ENCODING, javaTypeLiteral())
                         .build()
                 )
 
             // Declare adapter fields.
             for (field in fields) {
+                field.stringCache?.let {
+                    protoAdapter.addField(
+                        FieldSpec.builder(STRING_CACHE, it, Modifier.PRIVATE, Modifier.STATIC, Modifier.FINAL)
+                            .initializer("new \$T(\$L)", STRING_CACHE, STRING_CACHE_CAPACITY)
+                            .build()
+                    )
+                }
                 val adapterField = field.proto.build()
-                // Does this field need to cache a local adapter instance?
-                if (adapterField != null) {
+                // Does this field need to cache a local adapter instance? Primitive arrays are
+                // written by PackedArrays and lazy messages by Lazy, neither needs one.
+                if (adapterField != null && field.packedArray == null && !field.isLazy) {
                     protoAdapter.addField(adapterField)
                 }
             }
 
             //////////////////////////////////////////////////////////////////////
-            // encodedSize
+            // measure
             //////////////////////////////////////////////////////////////////////
 
             run {
-                // encodedSize
-                val encodedSize = MethodSpec.methodBuilder("encodedSize")
+                // Nested messages are measured through their own measure() and their lengths
+                // recorded so encode never has to size them again. WireProtoAdapter.encodedSize()
+                // is implemented on top of this.
+                val measure = MethodSpec.methodBuilder("measure")
                     .addAnnotation(Override::class.java)
+                    .addModifiers(Modifier.PUBLIC)
                     .returns(TypeName.INT)
-                    .addParameter(ParameterSpec.builder(name, "value").build())
+                    .addParameter(ParameterSpec.builder(valueType, "value").build())
+                    .addParameter(ParameterSpec.builder(SIZE_STACK, "sizes").build())
 
-                encodedSize.addStatement("int size = 0")
+                measure.addStatement("int size = 0")
+                if (hasZones) {
+                    addZones(measure)
+                }
                 for (field in fields) {
                     val nullable = !field.spec.model.javaKind.isPrimitive
                     if (nullable) {
-                        encodedSize.beginControlFlow("if (value.\$L != null)", field.getAccessor())
+                        measure.beginControlFlow("if (value.\$L != null)", field.getAccessor())
+                    }
+                    val message = field.nestedMessage()
+                    val packed = field.packedArray
+                    if (packed != null) {
+                        addMeasurePacked(measure, field.tag, packed, "value." + field.getAccessor())
+                    } else if (message != null) {
+                        if (field.spec.model.isList) {
+                            measure.beginControlFlow(
+                                "for (\$T element : value.\$L)",
+                                (field.spec.model as ListModel).component.toTypeName(true),
+                                field.getAccessor()
+                            )
+                            addMeasureNested(measure, field.tag, message, "element", field.isLazy)
+                            measure.endControlFlow()
+                        } else {
+                            addMeasureNested(
+                                measure, field.tag, message, "value." + field.getAccessor(), field.isLazy
+                            )
+                        }
+                    } else if (isKeyMap(field.spec.model)) {
+                        addMeasureKeyMap(
+                            measure,
+                            field.tag,
+                            field.proto as ProtoMapAssignment,
+                            field.spec.model as MapModel,
+                            "value." + field.getAccessor()
+                        )
+                    } else if (isZoned(field.spec.model)) {
+                        if (field.spec.model.isList) {
+                            measure.beginControlFlow(
+                                "for (\$T element : value.\$L)",
+                                (field.spec.model as ListModel).component.toTypeName(true),
+                                field.getAccessor()
+                            )
+                            addMeasureZoned(measure, field.tag, "element")
+                            measure.endControlFlow()
+                        } else {
+                            addMeasureZoned(measure, field.tag, "value." + field.getAccessor())
+                        }
+                    } else if (field.isString) {
+                        if (field.spec.model.isList) {
+                            measure.beginControlFlow("for (String element : value.\$L)", field.getAccessor())
+                            addMeasureString(measure, field.tag, "element")
+                            measure.endControlFlow()
+                        } else {
+                            addMeasureString(measure, field.tag, "value." + field.getAccessor())
+                        }
+                    } else if (field.isBytes) {
+                        val model = field.spec.model
+                        if (model is ListModel) {
+                            val bytes = model.component as BytesModel
+                            measure.beginControlFlow(
+                                "for (\$T element : value.\$L)", bytes.toTypeName(true), field.getAccessor()
+                            )
+                            addMeasureBytes(measure, field.tag, bytes, "element")
+                            measure.endControlFlow()
+                        } else {
+                            val value = "value." + field.getAccessor()
+                            addMeasureBytes(measure, field.tag, model as BytesModel, value)
+                        }
+                    } else if (isWrittenByElement(field.spec.model)) {
+                        val component = (field.spec.model as ListModel).component
+                        val proto = toProtoAdapter(component)
+                        measure.beginControlFlow(
+                            "for (\$T element : value.\$L)", component.toTypeName(true), field.getAccessor()
+                        )
+                        measure.addStatement(
+                            "size += \$T.\$L.encodedSizeWithTag(\$L, \$L)",
+                            proto.location,
+                            proto.field,
+                            field.tag,
+                            toProtoValue(component, "element")
+                        )
+                        measure.endControlFlow()
+                    } else {
+                        measure.addStatement(
+                            "size += \$T.\$L.encodedSizeWithTag(\$L, \$L)",
+                            field.proto.location,
+                            field.proto.field,
+                            field.tag,
+                            toProtoValue(field.spec.model, "value." + field.getAccessor())
+                        )
                     }
-                    encodedSize.addStatement(
-                        "size += \$T.\$L.encodeSizeWithTag(writer, \$L, \$L)",
-                        field.proto.location,
-                        field.proto.field,
-                        field.tag,
-                        field.getAccessor()
-                    )
                     if (nullable) {
-                        encodedSize.endControlFlow()
+                        measure.endControlFlow()
                     }
                 }
-                encodedSize.addStatement("return size")
-                protoAdapter.addMethod(encodedSize.build())
+                if (unknownField != null) {
+                    measure.beginControlFlow("if (value.\$L != null)", unknownField)
+                    measure.addStatement("size += value.\$L.size()", unknownField)
+                    measure.endControlFlow()
+                }
+                measure.addStatement("return size")
+                protoAdapter.addMethod(measure.build())
             }
 
             //////////////////////////////////////////////////////////////////////
             // encode
             //////////////////////////////////////////////////////////////////////
 
-            run {
-                val encode = MethodSpec.methodBuilder("encode")
-                    .addAnnotation(Override::class.java)
-                    .returns(TypeName.VOID)
-                    .addParameter(ParameterSpec.builder(PROTO_WRITER, "writer").build())
-                    .addParameter(ParameterSpec.builder(name, "value").build())
-                    .addException(IO_EXCEPTION)
+            protoAdapter.addMethod(buildEncode(PROTO_WRITER))
+            protoAdapter.addMethod(buildEncode(WIRE_WRITER))
 
-                for (field in fields) {
-                    val nullable = !field.spec.model.javaKind.isPrimitive
+            //////////////////////////////////////////////////////////////////////
+            // decode
+            //////////////////////////////////////////////////////////////////////
 
-                    if (nullable) {
-                        // Wrap in a "!= null" statement.
-                        encode.beginControlFlow("if (value.\$L != null)", field.getAccessor())
+            protoAdapter.addMethod(buildDecode(PROTO_READER))
+            protoAdapter.addMethod(buildDecode(WIRE_READER))
+            protoAdapter.addMethod(buildDecode(WIRE_READER, masked = true))
+
+            // Constructed messages can't be refilled.
+            if (factory == null) {
+                // What decode leaves a missing field holding, which decodeInto resets it to.
+                protoAdapter.addField(
+                    FieldSpec.builder(valueType, DEFAULTS_NAME)
+                        .addModifiers(Modifier.PRIVATE, Modifier.STATIC, Modifier.FINAL)
+                        .initializer("new \$T()", valueType)
+                        .build()
+                )
+                // A missing nested message is reset in place by decoding its default into it.
+                for (field in decodedFields.filter { it.spec.model.isMessage }) {
+                    protoAdapter.addField(
+                        FieldSpec.builder(ArrayTypeName.of(TypeName.BYTE), defaultMessageName(field))
+                            .addModifiers(Modifier.PRIVATE, Modifier.STATIC, Modifier.FINAL)
+                            .initializer(
+                                "\$L.\$L == null ? null : \$T.\$L.encodeToArray(\$L.\$L)",
+                                DEFAULTS_NAME,
+                                field.getAccessor(),
+                                field.proto.location,
+                                field.proto.field,
+                                DEFAULTS_NAME,
+                                field.getAccessor()
+                            )
+                            .build()
+                    )
+                }
+                protoAdapter.addMethod(buildDecode(WIRE_READER, into = true))
+                protoAdapter.addMethod(
+                    MethodSpec.methodBuilder("newInstance")
+                        .addAnnotation(Override::class.java)
+                        .addModifiers(Modifier.PUBLIC)
+                        .returns(valueType)
+                        .addStatement("return new \$T()", valueType)
+                        .build()
+                )
+            }
+
+            outer.addType(protoAdapter.build())
+            outer.addType(buildJson())
+
+            buildBuilder()?.let { builder ->
+                val builderName = wireOuter.nestedClass(BUILDER_NAME)
+                outer.addType(builder)
+                outer.addField(
+                    FieldSpec.builder(
+                        ParameterizedTypeName.get(THREAD_LOCAL, builderName),
+                        LOCAL_BUILDER_VAR_NAME,
+                        Modifier.PRIVATE,
+                        Modifier.STATIC,
+                        Modifier.FINAL
+                    )
+                        .initializer("\$T.withInitial(\$T::new)", THREAD_LOCAL, builderName)
+                        .build()
+                )
+                outer.addMethod(
+                    MethodSpec.methodBuilder("builder")
+                        .addModifiers(Modifier.PUBLIC, Modifier.STATIC)
+                        .returns(builderName)
+                        .addStatement("return new \$T()", builderName)
+                        .build()
+                )
+                outer.addMethod(
+                    MethodSpec.methodBuilder("localBuilder")
+                        .addJavadoc("Returns this thread's builder, reset. Call build() before asking for it again.\n")
+                        .addModifiers(Modifier.PUBLIC, Modifier.STATIC)
+                        .returns(builderName)
+                        .addStatement("return \$L.get().reset()", LOCAL_BUILDER_VAR_NAME)
+                        .build()
+                )
+            }
+
+            // Nested enums, messages and specialized templates have their Wire_ classes in this one.
+            nested.forEach { declared -> declared.buildWire()?.let { outer.addType(it) } }
+
+            return outer.build()
+        }
+
+        // Class literal handed to the adapter. A parameterized type has none, so its raw one is cast.
+        private fun javaTypeLiteral(): CodeBlock {
+            return if (valueType == name) {
+                CodeBlock.of("\$T.class", name)
+            } else {
+                CodeBlock.of("(\$T<\$T>) (\$T<?>) \$T.class", CLASS, valueType, CLASS, name)
+            }
+        }
+
+        /**
+         * Builds encode(writer, value, sizes) for either a [ProtoWriter] or a [WireWriter]. The
+         * [WireWriter] overload writes scalars inline and only falls back to the field's
+         * [ProtoAdapter] for enums, maps and packed fields.
+         */
+        private fun buildEncode(writerType: ClassName): MethodSpec {
+            val wire = writerType == WIRE_WRITER
+            val encode = MethodSpec.methodBuilder("encode")
+                .addAnnotation(Override::class.java)
+                .addModifiers(Modifier.PUBLIC)
+                .returns(TypeName.VOID)
+                .addParameter(ParameterSpec.builder(writerType, "writer").build())
+                .addParameter(ParameterSpec.builder(valueType, "value").build())
+                .addParameter(ParameterSpec.builder(SIZE_STACK, "sizes").build())
+                .addException(IO_EXCEPTION)
+
+            if (hasZones) {
+                addZones(encode)
+            }
+            for (field in fields) {
+                val model = field.spec.model
+                val nullable = !model.javaKind.isPrimitive
+                // Value types are written through their codec, which zoned ones need either way.
+                val direct = wire || isZoned(model)
+
+                if (nullable) {
+                    // Wrap in a "!= null" statement.
+                    encode.beginControlFlow("if (value.\$L != null)", field.getAccessor())
+                }
+                val message = field.nestedMessage()
+                val packed = field.packedArray
+                if (packed != null) {
+                    addEncodePacked(encode, field.tag, packed, "value." + field.getAccessor(), wire)
+                } else if (message != null) {
+                    if (model.isList) {
+                        encode.beginControlFlow(
+                            "for (\$T element : value.\$L)",
+                            (model as ListModel).component.toTypeName(true),
+                            field.getAccessor()
+                        )
+                        addEncodeNested(encode, field.tag, message, "element", field.isLazy)
+                        encode.endControlFlow()
+                    } else {
+                        addEncodeNested(encode, field.tag, message, "value." + field.getAccessor(), field.isLazy)
+                    }
+                } else if (field.isString) {
+                    if (model.isList) {
+                        encode.beginControlFlow("for (String element : value.\$L)", field.getAccessor())
+                        addEncodeString(encode, field.tag, "element", wire)
+                        encode.endControlFlow()
+                    } else {
+                        addEncodeString(encode, field.tag, "value." + field.getAccessor(), wire)
                     }
+                } else if (field.isBytes) {
+                    if (model is ListModel) {
+                        val bytes = model.component as BytesModel
+                        encode.beginControlFlow(
+                            "for (\$T element : value.\$L)", bytes.toTypeName(true), field.getAccessor()
+                        )
+                        addEncodeBytes(encode, field.tag, bytes, "element", wire)
+                        encode.endControlFlow()
+                    } else {
+                        val value = "value." + field.getAccessor()
+                        addEncodeBytes(encode, field.tag, model as BytesModel, value, wire)
+                    }
+                } else if (isKeyMap(model)) {
+                    addEncodeKeyMap(
+                        encode,
+                        field.tag,
+                        field.proto as ProtoMapAssignment,
+                        model as MapModel,
+                        "value." + field.getAccessor(),
+                        wire
+                    )
+                } else if (direct && valueCodec(model) != null) {
+                    addWriteValue(encode, field.tag, model, "value." + field.getAccessor())
+                } else if (direct && model is ListModel && valueCodec(model.component) != null) {
+                    encode.beginControlFlow(
+                        "for (\$T element : value.\$L)",
+                        model.component.toTypeName(true),
+                        field.getAccessor()
+                    )
+                    addWriteValue(encode, field.tag, model.component, "element")
+                    encode.endControlFlow()
+                } else if (wire && isInlineScalar(model)) {
+                    addWriteScalar(encode, field.tag, model, "value." + field.getAccessor())
+                } else if (wire && model is ListModel && !model.isPacked && isInlineScalar(model.component)) {
+                    encode.beginControlFlow(
+                        "for (\$T element : value.\$L)",
+                        model.component.toTypeName(true),
+                        field.getAccessor()
+                    )
+                    addWriteScalar(encode, field.tag, model.component, "element")
+                    encode.endControlFlow()
+                } else if (isWrittenByElement(model)) {
+                    val component = (model as ListModel).component
+                    val proto = toProtoAdapter(component)
+                    encode.beginControlFlow(
+                        "for (\$T element : value.\$L)", component.toTypeName(true), field.getAccessor()
+                    )
+                    encode.addStatement(
+                        if (wire) "writer.write(\$T.\$L, \$L, \$L)" else "\$T.\$L.encodeWithTag(writer, \$L, \$L)",
+                        proto.location,
+                        proto.field,
+                        field.tag,
+                        toProtoValue(component, "element")
+                    )
+                    encode.endControlFlow()
+                } else if (wire) {
+                    encode.addStatement(
+                        "writer.write(\$T.\$L, \$L, \$L)",
+                        field.proto.location,
+                        field.proto.field,
+                        field.tag,
+                        toProtoValue(model, "value." + field.getAccessor())
+                    )
+                } else {
                     encode.addStatement(
                         "\$T.\$L.encodeWithTag(writer, \$L, \$L)",
                         field.proto.location,
                         field.proto.field,
                         field.tag,
-                        field.getAccessor()
+                        toProtoValue(model, "value." + field.getAccessor())
                     )
-                    if (nullable) {
-                        encode.endControlFlow()
-                    }
                 }
-                protoAdapter.addMethod(encode.build())
+                if (nullable) {
+                    encode.endControlFlow()
+                }
             }
+            if (unknownField != null) {
+                // Copied out as they were read.
+                encode.beginControlFlow("if (value.\$L != null)", unknownField)
+                encode.addStatement("value.\$L.writeTo(writer)", unknownField)
+                encode.endControlFlow()
+            }
+            return encode.build()
+        }
 
-            //////////////////////////////////////////////////////////////////////
-            // decode
-            //////////////////////////////////////////////////////////////////////
+        /**
+         * Builds decode(reader) for either a [ProtoReader] or a [WireReader]. When [masked] is set
+         * it builds decode(reader, mask) instead, which skips every field the [FieldMask] leaves out.
+         * When [into] is set it builds decodeInto(reader, target), which refills target and reuses
+         * its collections, primitive arrays and nested messages.
+         */
+        private fun buildDecode(
+            readerType: ClassName,
+            masked: Boolean = false,
+            into: Boolean = false
+        ): MethodSpec {
+            val wire = readerType == WIRE_READER
+            val decode = MethodSpec.methodBuilder(if (into) "decodeInto" else "decode")
+                .addAnnotation(Override::class.java)
+                .addModifiers(Modifier.PUBLIC)
+                .returns(valueType)
+                .addParameter(ParameterSpec.builder(readerType, "reader").build())
+                .addException(IO_EXCEPTION)
+            if (masked) {
+                decode.addParameter(ParameterSpec.builder(FIELD_MASK, "mask").build())
+            }
+            if (into) {
+                decode.addParameter(ParameterSpec.builder(valueType, "target").build())
+            }
 
-            run {
-                // decode
-                val decode = MethodSpec.methodBuilder("decode")
-                    .addAnnotation(Override::class.java)
-                    .returns(name)
-                    .addParameter(ParameterSpec.builder(PROTO_READER, "reader").build())
-                    .addException(IO_EXCEPTION)
+            // Reserve the names used by the generated body so field locals can't shadow them.
+            val names = JavaNameAllocator()
+            names.newName("reader")
+            names.newName("mask")
+            names.newName("target")
+            names.newName("token")
+            names.newName("tag")
+            names.newName("result")
+            names.newName("fieldEncoding")
+            names.newName("value")
+            names.newName(ZONES_VAR_NAME)
+
+            val decoded = decodedFields
+            if (hasZones) {
+                addZones(decode)
+            }
 
-                // Create local vars.
-                for (field in fields) {
-                    //
+            addLocals(decode, names, decoded, into)
+            for (field in decoded.filter { it.spec.model.isMap }) {
+                for (part in listOf("entry", "entryTag", "key", "value")) {
+                    names.newName(field.name + part.capitalize(), field.name + "#" + part)
                 }
+            }
+            if (unknownField != null) {
+                val unknown = names.newName(unknownField, UNKNOWN_FIELDS_TAG)
+                if (into) {
+                    decode.addStatement("\$T \$L = target.\$L", UNKNOWN_FIELDS, unknown, unknownField)
+                    decode.beginControlFlow("if (\$L != null)", unknown)
+                    decode.addStatement("\$L.clear()", unknown)
+                    decode.endControlFlow()
+                } else {
+                    decode.addStatement("\$T \$L = null", UNKNOWN_FIELDS, unknown)
+                }
+            }
 
-                decode.addStatement("\$T builder = new \$T()", name, name)
-                decode.addStatement("long token = reader.beginMessage()")
-
-                // Begin for loop.
-                decode.beginControlFlow("for (int getTag; (getTag = reader.nextTag()) != -1;)")
-
-                // Begin switch.
-                decode.beginControlFlow("switch (getTag)")
-
-                for (field in fields) {
-                    val nullable = !field.spec.model.javaKind.isPrimitive
-
-                    decode.beginControlFlow("case \$L:", field.tag)
-
+            // Reads one occurrence of a field into its local. [packedRun] is set when the reader is
+            // known to be on a packed run of a primitive array.
+            fun addRead(field: Field, packedRun: Boolean) {
+                val local = names.get(field)
+                val packed = field.packedArray
+                if (packed != null) {
+                    val count = names.get(field.countTag)
+                    if (wire) {
+                        if (!packedRun) {
+                            decode.beginControlFlow(
+                                "if (reader.peekFieldEncoding() == \$T.LENGTH_DELIMITED)",
+                                FIELD_ENCODING
+                            )
+                        }
+                        decode.addStatement("\$L = reader.readPacked\$L(\$L, \$L)", local, packed.codec, local, count)
+                        decode.addStatement("\$L = \$L.length", count, local)
+                        if (packedRun) {
+                            return
+                        }
+                        decode.nextControlFlow("else")
+                    }
+                    // One element at a time. ProtoReader hands out packed runs this way too.
+                    decode.beginControlFlow("if (\$L == null || \$L == \$L.length)", local, count, local)
+                    decode.addStatement("\$L = \$T.grow(\$L)", local, PACKED_ARRAYS, local)
+                    decode.endControlFlow()
+                    decode.addStatement("\$L[\$L++] = \$L", local, count, packed.readElement())
+                    if (wire) {
+                        decode.endControlFlow()
+                    }
+                } else if (into && reusesElements(field)) {
+                    // Decode into the message already at this index, if any.
+                    val list = field.spec.model as ListModel
+                    val component = (field.proto as ProtoListAssignment).component
+                    val size = names.get(field.sizeTag)
+                    val element = names.get(field.elementTag)
+                    decode.beginControlFlow("if (\$L == null)", local)
+                    decode.addStatement("\$L = new \$T<>()", local, collectionImpl(list.javaKind))
+                    decode.endControlFlow()
+                    decode.beginControlFlow("if (\$L < \$L.size())", size, local)
                     decode.addStatement(
-                        "\$T.\$L.encodeWithTag(writer, \$L, \$L)",
+                        "\$T \$L = \$L.get(\$L)",
+                        list.component.toTypeName(true),
+                        element,
+                        local,
+                        size
+                    )
+                    decode.addStatement(
+                        "\$L.set(\$L, \$L != null ? \$T.\$L.decodeInto(reader, \$L) : \$L)",
+                        local,
+                        size,
+                        element,
+                        component.location,
+                        component.field,
+                        element,
+                        readValue(component, list.component, wire)
+                    )
+                    decode.nextControlFlow("else")
+                    decode.addStatement("\$L.add(\$L)", local, readValue(component, list.component, wire))
+                    decode.endControlFlow()
+                    decode.addStatement("\$L++", size)
+                } else if (field.spec.model.isList) {
+                    val list = field.spec.model as ListModel
+                    decode.beginControlFlow("if (\$L == null)", local)
+                    decode.addStatement("\$L = new \$T<>()", local, collectionImpl(list.javaKind))
+                    decode.endControlFlow()
+                    decode.addStatement(
+                        "\$L.add(\$L)",
+                        local,
+                        readValue(
+                            (field.proto as ProtoListAssignment).component,
+                            list.component,
+                            wire,
+                            field.stringCache
+                        )
+                    )
+                } else if (field.spec.model.isMap) {
+                    val map = field.spec.model as MapModel
+                    decode.beginControlFlow("if (\$L == null)", local)
+                    decode.addStatement("\$L = new \$T<>()", local, mapImpl(map))
+                    decode.endControlFlow()
+                    addReadEntry(decode, field.proto as ProtoMapAssignment, map, local, wire) {
+                        names.get(field.name + "#" + it)
+                    }
+                } else if (into && field.spec.model.isMessage) {
+                    // Decode into the target's nested message when it has one.
+                    decode.addStatement(
+                        "\$L = target.\$L != null ? \$T.\$L.decodeInto(reader, target.\$L) : \$L",
+                        local,
+                        field.getAccessor(),
                         field.proto.location,
                         field.proto.field,
-                        field.tag,
-                        field.getAccessor()
+                        field.getAccessor(),
+                        readValue(field.proto, field.spec.model, wire)
+                    )
+                } else {
+                    decode.addStatement(
+                        "\$L = \$L",
+                        local,
+                        readValue(field.proto, field.spec.model, wire, field.stringCache)
                     )
+                }
+            }
 
-                    decode.endControlFlow("break")
+            decode.addStatement("long token = reader.beginMessage()")
+
+            if (wire && !masked) {
+                // Fields are normally written in ascending tag order, so guess each key in turn
+                // and compare it against the raw bytes. Whatever is left over (missing, reordered
+                // or unknown fields) is picked up by the switch below.
+                decode.addComment("Keys are (tag << 3) | wire type.")
+                for (field in decoded.sortedBy { it.tag }) {
+                    // Primitive arrays are written packed.
+                    val packedRun = field.packedArray != null
+                    val key = (field.tag shl 3) or (if (packedRun) 2 else wireType(field.spec.model))
+                    decode.beginControlFlow(
+                        if (field.spec.model.isRepeated || field.spec.model.isMap) {
+                            "while (reader.expectTag(\$L))"
+                        } else {
+                            "if (reader.expectTag(\$L))"
+                        },
+                        key
+                    )
+                    addRead(field, packedRun)
+                    decode.endControlFlow()
                 }
+            }
 
-                // Unknown handling.
-                decode.beginControlFlow("default:")
+            // Begin for loop.
+            decode.beginControlFlow("for (int tag; (tag = reader.nextTag()) != -1;)")
 
-                decode.addStatement("\$T fieldEncoding = reader.peekFieldEncoding()", FIELD_ENCODING)
-                decode.addStatement("Object value = fieldEncoding.rawProtoAdapter().decode(reader)")
-                if (unknownField != null) {
-                    // Add to unknown field.
-                }
+            if (masked) {
+                // Length delimited fields are skipped without looking at their contents.
+                decode.beginControlFlow("if (!mask.contains(tag))")
+                decode.addStatement("reader.skip()")
+                decode.addStatement("continue")
+                decode.endControlFlow()
+            }
+
+            // Begin switch.
+            decode.beginControlFlow("switch (tag)")
 
+            for (field in decoded) {
+                decode.beginControlFlow("case \$L:", field.tag)
+                addRead(field, false)
                 decode.endControlFlow("break")
+            }
 
-                // End switch.
-                decode.endControlFlow()
+            // Unknown handling.
+            decode.beginControlFlow("default:")
 
-                // End for loop.
+            if (unknownField == null) {
+                decode.addStatement("reader.skip()")
+            } else {
+                val unknown = names.get(UNKNOWN_FIELDS_TAG)
+                decode.beginControlFlow("if (\$L == null)", unknown)
+                decode.addStatement("\$L = new \$T()", unknown, UNKNOWN_FIELDS)
                 decode.endControlFlow()
-
-                decode.addStatement("reader.endMessage(token)")
-                decode.addStatement("return builder")
-                protoAdapter.addMethod(decode.build())
+                if (wire) {
+                    // Records the field's byte range without decoding it.
+                    decode.addStatement("reader.skip(\$L)", unknown)
+                } else {
+                    decode.addStatement("\$T fieldEncoding = reader.peekFieldEncoding()", FIELD_ENCODING)
+                    decode.addStatement(
+                        "\$L.add(tag, fieldEncoding, fieldEncoding.rawProtoAdapter().decode(reader))",
+                        unknown
+                    )
+                }
             }
 
-            outer.addType(protoAdapter.build())
+            decode.endControlFlow("break")
 
-            //      nested.forEach(nested -> outer.addType(nested.buildWire()));
+            // End switch.
+            decode.endControlFlow()
 
-            return outer.build()
+            // End for loop.
+            decode.endControlFlow()
+
+            decode.addStatement("reader.endMessage(token)")
+
+            addBuildResult(decode, names, decoded, into)
+            if (unknownField != null) {
+                decode.addStatement("result.\$L = \$L", unknownField, names.get(UNKNOWN_FIELDS_TAG))
+            }
+            decode.addStatement("return result")
+            return decode.build()
         }
-    }
 
-    class MessageBuilder(val message: Message, val name: ClassName)
+        /**
+         * Builds the Moshi adapter. Field names are encoded once, as [JsonReader.Options] for
+         * reading and as [ByteString]s for [JsonSink], and jsonIgnore fields are left out.
+         */
+        private fun buildJson(): TypeSpec {
+            val json = fields.filter { !it.spec.jsonIgnore }
+            val jsonAdapter = TypeSpec.classBuilder(jsonAdapterName)
+                .addModifiers(Modifier.PUBLIC, Modifier.STATIC, Modifier.FINAL)
+                .superclass(ParameterizedTypeName.get(WIRE_JSON_ADAPTER, valueType))
+
+            val options = CodeBlock.builder().add("\$T.of(", JSON_OPTIONS)
+            val encoded = CodeBlock.builder().add("{")
+            json.forEachIndexed { i, field ->
+                if (i > 0) {
+                    options.add(", ")
+                    encoded.add(", ")
+                }
+                options.add("\$S", field.spec.jsonName)
+                encoded.add("\$T.encodeName(\$S)", JSON_SINK, field.spec.jsonName)
+            }
+            jsonAdapter.addField(
+                FieldSpec.builder(JSON_OPTIONS, "OPTIONS", Modifier.PRIVATE, Modifier.STATIC, Modifier.FINAL)
+                    .initializer(options.add(")").build())
+                    .build()
+            )
+            jsonAdapter.addField(
+                FieldSpec.builder(
+                    ArrayTypeName.of(BYTE_STRING),
+                    "NAMES",
+                    Modifier.PRIVATE,
+                    Modifier.STATIC,
+                    Modifier.FINAL
+                )
+                    .initializer(encoded.add("}").build())
+                    .build()
+            )
 
-    /**  */
-    class Field internal constructor(
-        val spec: FieldModel, val tag: Int, val name: String, // ProtoAdapter static expression.
-        val proto: ProtoAssignment
-    ) {
+            //////////////////////////////////////////////////////////////////////
+            // fromJson
+            //////////////////////////////////////////////////////////////////////
 
-        fun getAccessor(): String {
-            return ""
-        }
-    }
+            val fromJson = MethodSpec.methodBuilder("fromJson")
+                .addAnnotation(Override::class.java)
+                .addModifiers(Modifier.PUBLIC)
+                .returns(valueType)
+                .addParameter(ParameterSpec.builder(JSON_READER, "reader").build())
+                .addException(IO_EXCEPTION)
+
+            val names = JavaNameAllocator()
+            names.newName("reader")
+            names.newName("index")
+            names.newName("result")
+
+            fromJson.beginControlFlow("if (reader.peek() == \$T.NULL)", JSON_TOKEN)
+            fromJson.addStatement("return reader.nextNull()")
+            fromJson.endControlFlow()
+
+            // A constructed message takes every field, ignored ones included.
+            val decoded = factory ?: json.filter { it.isAssignable }
+            addLocals(fromJson, names, decoded, false)
+
+            fromJson.addStatement("reader.beginObject()")
+            fromJson.beginControlFlow("while (reader.hasNext())")
+            fromJson.addStatement("int index = reader.selectName(OPTIONS)")
+            fromJson.beginControlFlow("if (index == -1)")
+            fromJson.addStatement("reader.skipName()")
+            fromJson.addStatement("reader.skipValue()")
+            fromJson.addStatement("continue")
+            fromJson.endControlFlow()
+            // Nulls leave the field unset.
+            fromJson.beginControlFlow("if (reader.peek() == \$T.NULL)", JSON_TOKEN)
+            fromJson.addStatement("reader.skipValue()")
+            fromJson.addStatement("continue")
+            fromJson.endControlFlow()
+
+            fromJson.beginControlFlow("switch (index)")
+            json.forEachIndexed { i, field ->
+                if (!decoded.contains(field)) {
+                    return@forEachIndexed
+                }
+                fromJson.beginControlFlow("case \$L:", i)
+                addReadJson(fromJson, field, names)
+                fromJson.endControlFlow("break")
+            }
+            fromJson.beginControlFlow("default:")
+            fromJson.addStatement("reader.skipValue()")
+            fromJson.endControlFlow("break")
+            fromJson.endControlFlow()
+            fromJson.endControlFlow()
+            fromJson.addStatement("reader.endObject()")
 
-    /**  */
-    class Enum(
-        pkg: Pkg,
-        enclosing: Enclosing<*>?,
-        model: EnumModel,
-        wireOuter: ClassName
-    ) : Declared<EnumModel>(
-        pkg,
-        enclosing,
-        ClassName.bestGuess(model.name),
-        model,
-        wireOuter,
-        emptyList()
-    ) {
+            addBuildResult(fromJson, names, decoded, false)
+            fromJson.addStatement("return result")
+            jsonAdapter.addMethod(fromJson.build())
 
-        // {package}.Proto_
-        val protoAdapterName: ClassName
-        val jsonAdapterName: ClassName
-        val constants: List<EnumConstant>
+            //////////////////////////////////////////////////////////////////////
+            // toJson
+            //////////////////////////////////////////////////////////////////////
 
-        var processed: Long = 0
+            jsonAdapter.addMethod(buildToJson(JSON_WRITER, json))
+            jsonAdapter.addMethod(buildToJson(JSON_SINK, json))
 
-        init {
-            this.protoAdapterName = wireOuter.nestedClass(PROTO_ADAPTER_NAME)
-            this.jsonAdapterName = wireOuter.nestedClass(JSON_ADAPTER_NAME)
-            this.constants = model.constants
+            return jsonAdapter.build()
         }
 
-        fun build(): TypeSpec? {
-            return null
+        /** Reads one JSON value of [field] into its local. */
+        private fun addReadJson(code: MethodSpec.Builder, field: Field, names: JavaNameAllocator) {
+            val local = names.get(field)
+            val model = field.spec.model
+            val packed = field.packedArray
+            if (packed != null) {
+                val count = names.get(field.countTag)
+                val component = (model as ListModel).component
+                code.addStatement("reader.beginArray()")
+                code.beginControlFlow("while (reader.hasNext())")
+                code.beginControlFlow("if (\$L == null || \$L == \$L.length)", local, count, local)
+                code.addStatement("\$L = \$T.grow(\$L)", local, PACKED_ARRAYS, local)
+                code.endControlFlow()
+                code.addStatement("\$L[\$L++] = \$L", local, count, readJsonValue(component))
+                code.endControlFlow()
+                code.addStatement("reader.endArray()")
+            } else if (model is ListModel) {
+                code.beginControlFlow("if (\$L == null)", local)
+                code.addStatement("\$L = new \$T<>()", local, collectionImpl(model.javaKind))
+                code.endControlFlow()
+                code.addStatement("reader.beginArray()")
+                code.beginControlFlow("while (reader.hasNext())")
+                code.addStatement("\$L.add(\$L)", local, readJsonValue(model.component))
+                code.endControlFlow()
+                code.addStatement("reader.endArray()")
+            } else if (model is MapModel) {
+                code.beginControlFlow("if (\$L == null)", local)
+                code.addStatement("\$L = new \$T<>()", local, mapImpl(model))
+                code.endControlFlow()
+                code.addStatement("reader.beginObject()")
+                code.beginControlFlow("while (reader.hasNext())")
+                code.addStatement(
+                    "\$L.put(\$L, \$L)",
+                    local,
+                    readJsonKey(model.key),
+                    readJsonValue(model.value)
+                )
+                code.endControlFlow()
+                code.addStatement("reader.endObject()")
+            } else {
+                code.addStatement("\$L = \$L", local, readJsonValue(model))
+            }
         }
-    }
 
-    companion object {
+        /**
+         * Builds toJson(writer, value) for either a Moshi JsonWriter or a [JsonSink]. The two have
+         * the same shape apart from how field names are written.
+         */
+        private fun buildToJson(writerType: ClassName, json: List<Field>): MethodSpec {
+            val sink = writerType == JSON_SINK
+            val toJson = MethodSpec.methodBuilder("toJson")
+                .addAnnotation(Override::class.java)
+                .addModifiers(Modifier.PUBLIC)
+                .returns(TypeName.VOID)
+                .addParameter(ParameterSpec.builder(writerType, "writer").build())
+                .addParameter(ParameterSpec.builder(valueType, "value").build())
+                .addException(IO_EXCEPTION)
+
+            toJson.beginControlFlow("if (value == null)")
+            toJson.addStatement("writer.nullValue()")
+            toJson.addStatement("return")
+            toJson.endControlFlow()
+
+            toJson.addStatement("writer.beginObject()")
+            json.forEachIndexed { i, field ->
+                val nullable = !field.spec.model.javaKind.isPrimitive
+                if (nullable) {
+                    toJson.beginControlFlow("if (value.\$L != null)", field.getAccessor())
+                }
+                if (sink) {
+                    toJson.addStatement("writer.name(NAMES[\$L])", i)
+                } else {
+                    // Moshi's JsonWriter only takes names as strings, it has nothing like
+                    // JsonReader.Options for writing, so this path can't use NAMES.
+                    toJson.addStatement("writer.name(\$S)", field.spec.jsonName)
+                }
+                addWriteJson(toJson, field.spec.model, "value." + field.getAccessor(), sink)
+                if (nullable) {
+                    toJson.endControlFlow()
+                }
+            }
+            toJson.addStatement("writer.endObject()")
+            return toJson.build()
+        }
 
-        val PROTO_PREFIX = "Proto_"
-        val JSON_PREFIX = "Json_"
-        val WIRE_PREFIX = "Wire_"
+        /**
+         * Declares a local for each of [decoded]. Scalars are read straight into primitives and
+         * the message is only constructed once every field has been read. With [into] set the
+         * target's collections and arrays are taken over to be refilled.
+         */
+        private fun addLocals(
+            code: MethodSpec.Builder,
+            names: JavaNameAllocator,
+            decoded: List<Field>,
+            into: Boolean
+        ) {
+            for (field in decoded) {
+                val type = field.localType()
+                val local = names.newName(field.name, field)
+                val model = field.spec.model
+                val reusable = field.packedArray != null || model.isMap ||
+                        (model.isList && model.javaKind != JavaKind.ARRAY)
+                if (into && reusesElements(field)) {
+                    // Elements past the decoded ones are dropped once the message has been read.
+                    code.addStatement("\$T \$L = target.\$L", type, local, field.getAccessor())
+                    code.addStatement("int \$L = 0", names.newName(field.name + "Size", field.sizeTag))
+                    names.newName(field.name + "Element", field.elementTag)
+                } else if (into && reusable) {
+                    // Refill the target's own collection or array.
+                    code.addStatement("\$T \$L = target.\$L", type, local, field.getAccessor())
+                    if (field.packedArray == null) {
+                        code.beginControlFlow("if (\$L != null)", local)
+                        code.addStatement("\$L.clear()", local)
+                        code.endControlFlow()
+                    }
+                } else {
+                    code.addStatement(
+                        "\$T \$L = \$L",
+                        type,
+                        local,
+                        if (type == TypeName.BOOLEAN) "false" else if (type.isPrimitive) "0" else "null"
+                    )
+                }
+                if (field.packedArray != null) {
+                    // Number of elements in use; the array grows ahead of it.
+                    code.addStatement("int \$L = 0", names.newName(field.name + "Count", field.countTag))
+                }
+            }
+        }
+
+        /** Value of [field] to store in the message, made from its local. Null locals aren't handled. */
+        private fun resultValue(field: Field, names: JavaNameAllocator): CodeBlock {
+            val local = names.get(field)
+            return if (field.packedArray != null) {
+                val count = names.get(field.countTag)
+                CodeBlock.of(
+                    "\$L.length == \$L ? \$L : \$T.copyOf(\$L, \$L)",
+                    local,
+                    count,
+                    local,
+                    ARRAYS,
+                    local,
+                    count
+                )
+            } else if (field.spec.model.javaKind == JavaKind.ARRAY) {
+                CodeBlock.of(
+                    "\$L.toArray(\$L)",
+                    local,
+                    newEmptyArray((field.spec.model as ListModel).component.toTypeName(true))
+                )
+            } else {
+                CodeBlock.of("\$L", local)
+            }
+        }
+
+        /**
+         * Constructor argument for [field] holding [value], which is read from [local]. A missing
+         * field is passed [missingArg].
+         */
+        private fun factoryArg(field: Field, value: CodeBlock, local: String): CodeBlock {
+            if (field.spec.model.toTypeName(false).isPrimitive) {
+                return value
+            }
+            val missing = missingArg(field)
+            if (value.toString() == local && missing.toString() == "null") {
+                return value
+            }
+            return CodeBlock.of("\$L == null ? \$L : \$L", local, missing, value)
+        }
+
+        /**
+         * Constructor argument for [field] when it's missing: null, unless it's a Kotlin parameter
+         * that isn't nullable. That gets the empty string, collection or array, or an empty message.
+         * Where the parameter has a default, [KotlinDefaults] uses that instead.
+         */
+        private fun missingArg(field: Field): CodeBlock {
+            if (!nonNullArgs.contains(field.name)) {
+                return CodeBlock.of("null")
+            }
+            val model = field.spec.model
+            return kotlinEmpty(model)
+                ?: if (model.isMessage) {
+                    CodeBlock.of("\$T.\$L.newInstance()", field.proto.location, field.proto.field)
+                } else {
+                    CodeBlock.of("null")
+                }
+        }
+
+        /**
+         * Declares "result" and constructs it from [factory] with [values], read from [locals].
+         * When a Kotlin message is missing fields its defaults constructor is called instead, with
+         * a mask of the missing ones, so that their default arguments apply.
+         */
+        private fun addConstruct(
+            code: MethodSpec.Builder,
+            names: JavaNameAllocator,
+            locals: List<String>,
+            values: List<CodeBlock>
+        ) {
+            val factory = this.factory!!
+            val args = CodeBlock.builder()
+            factory.forEachIndexed { i, field ->
+                if (i > 0) {
+                    args.add(", ")
+                }
+                args.add(factoryArg(field, values[i], locals[i]))
+            }
+            if (!usesKotlinDefaults) {
+                code.addStatement("\$T result = new \$T(\$L)", valueType, valueType, args.build())
+                return
+            }
+            // One bit per parameter, in ints of 32 like Kotlin's own masks.
+            val masks = (0 until (factory.size + 31) / 32).map { names.newName("missing") }
+            for ((m, mask) in masks.withIndex()) {
+                val bits = (m * 32 until minOf(factory.size, m * 32 + 32))
+                    .filter { !factory[it].spec.model.toTypeName(false).isPrimitive }
+                    .map { CodeBlock.of("(\$L == null ? \$L : 0)", locals[it], 1 shl (it % 32)) }
+                val value = if (bits.isEmpty()) CodeBlock.of("0") else CodeBlock.join(bits, " | ")
+                code.addStatement("int \$L = \$L", mask, value)
+            }
+            code.addStatement("\$T result", valueType)
+            code.beginControlFlow(
+                "if (\$L != 0 && \$T.\$L.exists())",
+                if (masks.size == 1) masks[0] else "(" + masks.joinToString(" | ") + ")",
+                wireOuter,
+                KOTLIN_DEFAULTS_NAME
+            )
+            code.addStatement(
+                "result = \$T.\$L.newInstance(new Object[] {\$L}, \$L)",
+                wireOuter,
+                KOTLIN_DEFAULTS_NAME,
+                args.build(),
+                masks.joinToString(", ")
+            )
+            code.nextControlFlow("else")
+            code.addStatement("result = new \$T(\$L)", valueType, args.build())
+            code.endControlFlow()
+        }
+
+        /**
+         * Resets [field], missing from the input, to what decode leaves it holding, i.e. its
+         * initializer. Collections and nested messages the target already holds are refilled
+         * from [DEFAULTS_NAME] in place; a new message is only made for the value when the target
+         * has none. [local] holds the target's collection, cleared, or null.
+         */
+        private fun addResetToDefault(code: MethodSpec.Builder, field: Field, local: String) {
+            val model = field.spec.model
+            val default = CodeBlock.of("\$L.\$L", DEFAULTS_NAME, field.getAccessor())
+            if (isImmutable(model)) {
+                code.addStatement("\$L", field.assign("result", default))
+                return
+            }
+            val fresh = CodeBlock.of("new \$T().\$L", valueType, field.getAccessor())
+            code.beginControlFlow("if (\$L == null)", default)
+            code.addStatement("\$L", field.assign("result", CodeBlock.of("null")))
+            val collection = field.packedArray == null &&
+                    (model.isMap || (model.isList && model.javaKind != JavaKind.ARRAY))
+            if (collection) {
+                // Elements that can be changed aren't shared with DEFAULTS, only an empty default is.
+                val shared = if (model is MapModel) {
+                    isImmutable(model.key) && isImmutable(model.value)
+                } else {
+                    isImmutable((model as ListModel).component)
+                }
+                if (shared) {
+                    code.nextControlFlow("else if (\$L != null)", local)
+                    code.addStatement("\$L.\$L(\$L)", local, if (model.isMap) "putAll" else "addAll", default)
+                } else {
+                    code.nextControlFlow("else if (\$L != null && \$L.isEmpty())", local, default)
+                }
+                code.addStatement("\$L", field.assign("result", CodeBlock.of("\$L", local)))
+            } else if (model.isMessage) {
+                code.nextControlFlow("else if (target.\$L != null)", field.getAccessor())
+                val reset = CodeBlock.of(
+                    "\$T.\$L.decodeInto(\$T.of(\$L), target.\$L)",
+                    field.proto.location,
+                    field.proto.field,
+                    WIRE_READER,
+                    defaultMessageName(field),
+                    field.getAccessor()
+                )
+                code.addStatement("\$L", field.assign("result", reset))
+            }
+            code.nextControlFlow("else")
+            val array = field.packedArray != null || model.javaKind == JavaKind.ARRAY ||
+                    (model is BytesModel && model.isByteArray)
+            val value = if (array) CodeBlock.of("\$L.clone()", default) else fresh
+            code.addStatement("\$L", field.assign("result", value))
+            code.endControlFlow()
+        }
+
+        /** Builds "result" from the locals [addLocals] declared. */
+        private fun addBuildResult(
+            code: MethodSpec.Builder,
+            names: JavaNameAllocator,
+            decoded: List<Field>,
+            into: Boolean
+        ) {
+            val factory = this.factory
+            if (factory != null) {
+                addConstruct(code, names, factory.map { names.get(it) }, factory.map { resultValue(it, names) })
+                return
+            }
+            if (into) {
+                code.addStatement("\$T result = target", valueType)
+            } else {
+                code.addStatement("\$T result = new \$T()", valueType, valueType)
+            }
+            for (field in decoded) {
+                val local = names.get(field)
+                val value = resultValue(field, names)
+
+                if (field.localType().isPrimitive) {
+                    code.addStatement("\$L", field.assign("result", value))
+                } else if (into) {
+                    // Fields missing from the input are reset to what decode leaves them holding.
+                    // A refilled collection or primitive array that ended up empty is missing too.
+                    val model = field.spec.model
+                    if (reusesElements(field)) {
+                        val size = names.get(field.sizeTag)
+                        code.beginControlFlow("if (\$L != null && \$L < \$L.size())", local, size, local)
+                        code.addStatement("\$L.subList(\$L, \$L.size()).clear()", local, size, local)
+                        code.endControlFlow()
+                    }
+                    if (field.packedArray != null) {
+                        code.beginControlFlow("if (\$L != 0)", names.get(field.countTag))
+                    } else if (model.isMap || (model.isList && model.javaKind != JavaKind.ARRAY)) {
+                        code.beginControlFlow("if (\$L != null && !\$L.isEmpty())", local, local)
+                    } else {
+                        code.beginControlFlow("if (\$L != null)", local)
+                    }
+                    code.addStatement("\$L", field.assign("result", value))
+                    code.nextControlFlow("else")
+                    addResetToDefault(code, field, local)
+                    code.endControlFlow()
+                } else {
+                    code.beginControlFlow("if (\$L != null)", local)
+                    code.addStatement("\$L", field.assign("result", value))
+                    code.endControlFlow()
+                }
+            }
+        }
+    }
+
+    class MessageBuilder(val message: Message, val name: ClassName)
+
+    /**  */
+    class Field internal constructor(
+        val spec: FieldModel, val tag: Int, val name: String, // ProtoAdapter static expression.
+        val proto: ProtoAssignment
+    ) {
+
+        /** Packed codec of an int[], long[], float[] or double[] field, null for anything else. */
+        val packedArray: PackedArray? = PackedArray.of(spec)
+
+        /** Name allocator tag of the element count local that goes with a [packedArray]. */
+        val countTag = name + "#count"
+
+        /** Name allocator tags of the locals decodeInto walks a list of messages with. */
+        val sizeTag = name + "#size"
+        val elementTag = name + "#element"
+
+        /** Whether the field holds [run.mojo.wire.Lazy] messages, directly or as list elements. */
+        val isLazy: Boolean = spec.model.let { it is LazyModel || (it is ListModel && it.component is LazyModel) }
+
+        /** Whether the field holds a string or a collection or array of strings. */
+        val isString: Boolean = spec.model.let {
+            it.javaKind == JavaKind.STRING || (it is ListModel && it.component.javaKind == JavaKind.STRING)
+        }
+
+        /** Whether the field holds bytes or a collection or array of them. */
+        val isBytes: Boolean =
+            spec.model.let { it is BytesModel || (it is ListModel && it.component is BytesModel) }
+
+        /** Name of the field's [StringCache] when it is marked [Wire.intern], otherwise null. */
+        val stringCache: String? = if (isString && spec.wire?.intern == true) "__${name}Strings" else null
+
+        /** Whether decode can set the field on a freshly constructed message. */
+        val isAssignable: Boolean
+            get() = (spec.isPackagePrivate && !spec.isFinal) || spec.setter != null
+
+        /** Member expression that reads the field. Direct field access is preferred over a getter. */
+        fun getAccessor(): String {
+            val getter = spec.getter
+            return if (spec.isPackagePrivate || getter == null) name else getter.name + "()"
+        }
+
+        /**
+         * Adapter of the message this field holds directly or as the element of a repeated field,
+         * or null if the field holds something else. Messages held by a [LazyModel] count as well.
+         */
+        fun nestedMessage(): ProtoAssignment? {
+            val model = spec.model
+            if (model.isList) {
+                val component = (model as ListModel).component
+                return if (component.isMessage || component is LazyModel) {
+                    (proto as ProtoListAssignment).component
+                } else {
+                    null
+                }
+            }
+            return if (model.isMessage || model is LazyModel) proto else null
+        }
+
+        /** Type of the local the decoder reads this field into. */
+        fun localType(): TypeName {
+            val model = spec.model
+            if (packedArray != null) {
+                return model.toTypeName(false)
+            }
+            if (model.javaKind == JavaKind.ARRAY) {
+                // Arrays are accumulated in a list and copied out once the message is built.
+                return ParameterizedTypeName.get(
+                    ClassName.get(List::class.java),
+                    (model as ListModel).component.toTypeName(true)
+                )
+            }
+            return model.toTypeName(false)
+        }
+
+        /** Statement that stores [value] into the field of [target]. */
+        fun assign(target: String, value: CodeBlock): CodeBlock {
+            return if (spec.isPackagePrivate && !spec.isFinal) {
+                CodeBlock.of("\$L.\$L = \$L", target, name, value)
+            } else {
+                CodeBlock.of("\$L.\$L(\$L)", target, spec.setter!!.name, value)
+            }
+        }
+    }
+
+    /**
+     * Packed repeated scalar held in a primitive array. [codec] names the matching methods on
+     * [PackedArrays], [WireWriter] and [WireReader] and [width] is the size of a fixed width
+     * element, or 0 for varints.
+     */
+    class PackedArray internal constructor(val codec: String, val width: Int) {
+
+        /** Expression that reads a single element from "reader". */
+        fun readElement(): CodeBlock {
+            return when (codec) {
+                "Int32" -> CodeBlock.of("reader.readVarint32()")
+                "SInt32" -> CodeBlock.of("\$T.decodeZigZag32(reader.readVarint32())", SCALARS)
+                "Fixed32" -> CodeBlock.of("reader.readFixed32()")
+                "Int64" -> CodeBlock.of("reader.readVarint64()")
+                "SInt64" -> CodeBlock.of("\$T.decodeZigZag64(reader.readVarint64())", SCALARS)
+                "Fixed64" -> CodeBlock.of("reader.readFixed64()")
+                "Float" -> CodeBlock.of("Float.intBitsToFloat(reader.readFixed32())")
+                else -> CodeBlock.of("Double.longBitsToDouble(reader.readFixed64())")
+            }
+        }
+
+        companion object {
+            internal fun of(field: FieldModel): PackedArray? {
+                val model = field.model
+                if (model !is ListModel || model.javaKind != JavaKind.ARRAY) {
+                    return null
+                }
+                val pack = field.wire?.pack ?: Wire.Pack.UNSIGNED
+                return when (model.component.javaKind) {
+                    JavaKind.INT -> when (pack) {
+                        Wire.Pack.SIGNED -> PackedArray("SInt32", 0)
+                        Wire.Pack.FIXED -> PackedArray("Fixed32", 4)
+                        else -> PackedArray("Int32", 0)
+                    }
+                    JavaKind.LONG -> when (pack) {
+                        Wire.Pack.SIGNED -> PackedArray("SInt64", 0)
+                        Wire.Pack.FIXED -> PackedArray("Fixed64", 8)
+                        else -> PackedArray("Int64", 0)
+                    }
+                    JavaKind.FLOAT -> PackedArray("Float", 4)
+                    JavaKind.DOUBLE -> PackedArray("Double", 8)
+                    else -> null
+                }
+            }
+        }
+    }
+
+    /**  */
+    class Enum(
+        pkg: Pkg,
+        enclosing: Enclosing<*>?,
+        model: EnumModel,
+        wireOuter: ClassName
+    ) : Declared<EnumModel>(
+        pkg,
+        enclosing,
+        ClassName.bestGuess(model.name),
+        model,
+        wireOuter,
+        emptyList()
+    ) {
+
+        // {package}.Proto_
+        val protoAdapterName: ClassName
+        val jsonAdapterName: ClassName
+        val constants: List<EnumConstant>
+
+        var processed: Long = 0
+
+        init {
+            this.protoAdapterName = wireOuter.nestedClass(PROTO_ADAPTER_NAME)
+            this.jsonAdapterName = wireOuter.nestedClass(JSON_ADAPTER_NAME)
+            this.constants = model.constants
+        }
+
+        /** Builds Wire_X holding the enum's [WireEnumAdapter], which maps constants to tags. */
+        override fun buildWire(): TypeSpec? {
+            val outer = TypeSpec.classBuilder(wireOuter)
+                .addModifiers(*wireModifiers())
+
+            val tags = CodeBlock.builder()
+            constants.sortedBy { it.ordinal }.forEachIndexed { i, constant ->
+                if (i > 0) {
+                    tags.add(", ")
+                }
+                tags.add("\$L", constant.tag)
+            }
+            outer.addField(
+                FieldSpec.builder(
+                    ParameterizedTypeName.get(WIRE_ENUM_ADAPTER, name),
+                    PROTO_VAR_NAME,
+                    Modifier.PUBLIC,
+                    Modifier.STATIC,
+                    Modifier.FINAL
+                )
+                    .initializer("new \$T<>(\$T.class, \$L)", WIRE_ENUM_ADAPTER, name, tags.build())
+                    .build()
+            )
+            return outer.build()
+        }
+    }
+
+    companion object {
+
+        val PROTO_PREFIX = "Proto_"
+        val JSON_PREFIX = "Json_"
+        val WIRE_PREFIX = "Wire_"
         val WIRE_SUFFIX = "Wire_"
         val PROTO_ADAPTER_NAME = "_Proto"
         val JSON_ADAPTER_NAME = "_Json"
         val PROTO_VAR_NAME = "PROTO"
+        val JSON_VAR_NAME = "JSON"
+        /** Message holding the field initializers, on adapters that can decode into a message. */
+        val DEFAULTS_NAME = "DEFAULTS"
+        val KOTLIN_DEFAULTS_NAME = "KOTLIN_DEFAULTS"
+        val BUILDER_NAME = "Builder"
+        val LOCAL_BUILDER_VAR_NAME = "LOCAL_BUILDER"
+        internal val UNKNOWN_FIELDS_TAG = "#unknownFields"
+        internal val ZONES_VAR_NAME = "zones"
+
+        /** Names a builder setter can't take, since MessageBuilder or Object declare them. */
+        internal val BUILDER_RESERVED = setOf(
+            "build",
+            "reset",
+            "clearFields",
+            "addUnknownFields",
+            "clearUnknownFields",
+            "buildUnknownFields",
+            "equals",
+            "wait"
+        )
         val PROTO_ADAPTER_FIELD_VAR_PREFIX = "__"
 
         val ADAPTER_VAR_NAME = "ADAPTER"
         internal val PROTO_ADAPTER = ClassName.get(ProtoAdapter::class.java)
+        internal val WIRE_PROTO_ADAPTER = ClassName.get(WireProtoAdapter::class.java)
+        internal val SIZE_STACK = ClassName.get(SizeStack::class.java)
         internal val FIELD_ENCODING = ClassName.get(FieldEncoding::class.java)
         internal val PROTO_WRITER = ClassName.get(ProtoWriter::class.java)
         internal val PROTO_READER = ClassName.get(ProtoReader::class.java)
+        internal val WIRE_WRITER = ClassName.get(WireWriter::class.java)
+        internal val WIRE_READER = ClassName.get(WireReader::class.java)
         internal val IO_EXCEPTION = ClassName.get(IOException::class.java)
+        internal val SCALARS = ClassName.get(Scalars::class.java)
+        internal val LAZY = ClassName.get(Lazy::class.java)
+        internal val FIELD_MASK = ClassName.get(FieldMask::class.java)
+        internal val WIRE_JSON_ADAPTER = ClassName.get(WireJsonAdapter::class.java)
+        internal val MESSAGE_BUILDER = ClassName.get(run.mojo.builder.MessageBuilder::class.java)
+        internal val THREAD_LOCAL = ClassName.get(ThreadLocal::class.java)
+        internal val CLASS = ClassName.get(Class::class.java)
+        internal val COLLECTIONS = ClassName.get(java.util.Collections::class.java)
+        internal val UNKNOWN_FIELDS = ClassName.get(UnknownFields::class.java)
+        internal val STRING_CACHE = ClassName.get(StringCache::class.java)
+        internal val DECIMALS = ClassName.get(Decimals::class.java)
+        internal val DURATIONS = ClassName.get(Durations::class.java)
+        internal val DATES = ClassName.get(Dates::class.java)
+        internal val LOCAL_DATES = ClassName.get(LocalDates::class.java)
+        internal val LOCAL_DATE_TIMES = ClassName.get(LocalDateTimes::class.java)
+        internal val ZONED_DATE_TIMES = ClassName.get(ZonedDateTimes::class.java)
+        internal val ZONE_DICTIONARY = ClassName.get(ZoneDictionary::class.java)
+        internal val WIRE_ENUM_ADAPTER = ClassName.get(WireEnumAdapter::class.java)
+
+        /** Slots in each [Wire.intern] field's cache. */
+        internal val STRING_CACHE_CAPACITY = 1024
+        internal val JSON_SINK = ClassName.get(JsonSink::class.java)
+        internal val JSON_READER = ClassName.get(JsonReader::class.java)
+        internal val JSON_WRITER = ClassName.get(JsonWriter::class.java)
+        internal val JSON_OPTIONS = JSON_READER.nestedClass("Options")
+        internal val JSON_TOKEN = JSON_READER.nestedClass("Token")
+        internal val BYTE_STRING = ClassName.get(ByteString::class.java)
+        internal val BYTE_SLICE = ClassName.get(ByteSlice::class.java)
+        internal val KOTLIN_DEFAULTS = ClassName.get(KotlinDefaults::class.java)
+        internal val PACKED_ARRAYS = ClassName.get(PackedArrays::class.java)
+        internal val ARRAYS = ClassName.get(Arrays::class.java)
+        internal val ARRAY_LIST = ClassName.get(ArrayList::class.java)
+        internal val ARRAY_DEQUE = ClassName.get(ArrayDeque::class.java)
+        internal val LINKED_HASH_SET = ClassName.get(LinkedHashSet::class.java)
+        internal val LINKED_HASH_MAP = ClassName.get(LinkedHashMap::class.java)
+        internal val ILLEGAL_STATE = ClassName.get(IllegalStateException::class.java)
+        internal val INT_KEY_MAP = ClassName.get(IntKeyMap::class.java)
+        internal val LONG_KEY_MAP = ClassName.get(LongKeyMap::class.java)
 
         // WireMessage adapter types.
         internal val BOOL = toBuiltinProtoAdapter(Boolean::class.java, "BOOL")
@@ -450,6 +1770,10 @@ class Assembler(
          * @return
          */
         internal fun toWireOuter(declared: DeclaredModel): ClassName {
+            // Fully specified templates are written with the adapter specialized for them.
+            if (declared is MessageModel) {
+                declared.specialization?.let { return toWireOuter(it) }
+            }
             val packageName = declared.packageName
             var name = declared.name
 
@@ -468,10 +1792,964 @@ class Assembler(
 
         internal fun toBuiltinProtoAdapter(type: Class<*>, varName: String): ProtoAssignment {
             return ProtoAssignment(
-                ParameterizedTypeName.get(PROTO_ADAPTER, ClassName.get(type)), PROTO_ADAPTER, varName
+                // Kotlin's Int::class.java is the primitive, which only the boxed type can stand for.
+                ParameterizedTypeName.get(PROTO_ADAPTER, TypeName.get(type).box()), PROTO_ADAPTER, varName
+            )
+        }
+
+        /** Number of bytes the key of [tag] takes on the wire. */
+        internal fun tagSize(tag: Int): Int {
+            return Scalars.varint32Size(tag shl 3)
+        }
+
+        /**
+         * Measures a nested message, recording its length in a reserved slot. A [lazy] value is
+         * measured by its [run.mojo.wire.Lazy], which skips descending into undecoded bytes.
+         */
+        internal fun addMeasureNested(
+            measure: MethodSpec.Builder,
+            tag: Int,
+            message: ProtoAssignment,
+            value: String,
+            lazy: Boolean = false
+        ) {
+            // Reserve before descending so slots end up in the order encode reads them.
+            val slot = "slot$tag"
+            val length = "length$tag"
+            measure.addStatement("int \$L = sizes.reserve()", slot)
+            if (lazy) {
+                measure.addStatement(
+                    "int \$L = \$L.measure(\$T.\$L, sizes)",
+                    length,
+                    value,
+                    message.location,
+                    message.field
+                )
+            } else {
+                measure.addStatement(
+                    "int \$L = \$T.\$L.measure(\$L, sizes)",
+                    length,
+                    message.location,
+                    message.field,
+                    value
+                )
+            }
+            measure.addStatement("sizes.set(\$L, \$L)", slot, length)
+            measure.addStatement(
+                "size += \$L + \$T.varint32Size(\$L) + \$L",
+                tagSize(tag),
+                SCALARS,
+                length,
+                length
+            )
+        }
+
+        /**
+         * Measures a string. Its UTF-8 length is recorded in a slot so encode can write it in a
+         * single pass.
+         */
+        internal fun addMeasureString(measure: MethodSpec.Builder, tag: Int, value: String) {
+            val length = "length$tag"
+            measure.addStatement("int \$L = \$T.utf8Size(\$L)", length, SCALARS, value)
+            measure.addStatement("sizes.set(sizes.reserve(), \$L)", length)
+            measure.addStatement(
+                "size += \$L + \$T.varint32Size(\$L) + \$L",
+                tagSize(tag),
+                SCALARS,
+                length,
+                length
             )
         }
 
+        /** Writes a string using the length [addMeasureString] recorded for it. */
+        internal fun addEncodeString(encode: MethodSpec.Builder, tag: Int, value: String, wire: Boolean) {
+            encode.addStatement("writer.writeTag(\$L, \$T.LENGTH_DELIMITED)", tag, FIELD_ENCODING)
+            if (wire) {
+                encode.addStatement("writer.writeString(\$L, sizes.next())", value)
+            } else {
+                encode.addStatement("writer.writeVarint32(sizes.next())")
+                encode.addStatement("writer.writeString(\$L)", value)
+            }
+        }
+
+        /** Measures a ByteString or byte[], whose length is at hand, so no slot is recorded. */
+        internal fun addMeasureBytes(measure: MethodSpec.Builder, tag: Int, spec: BytesModel, value: String) {
+            val length = "length$tag"
+            measure.addStatement(
+                "int \$L = \$L.\$L", length, value, if (spec.isByteArray) "length" else "size()"
+            )
+            measure.addStatement(
+                "size += \$L + \$T.varint32Size(\$L) + \$L",
+                tagSize(tag),
+                SCALARS,
+                length,
+                length
+            )
+        }
+
+        /** Writes a ByteString or byte[] and its length. */
+        internal fun addEncodeBytes(
+            encode: MethodSpec.Builder,
+            tag: Int,
+            spec: BytesModel,
+            value: String,
+            wire: Boolean
+        ) {
+            encode.addStatement("writer.writeTag(\$L, \$T.LENGTH_DELIMITED)", tag, FIELD_ENCODING)
+            if (wire) {
+                encode.addStatement("writer.writeBytes(\$L)", value)
+            } else if (spec.isByteArray) {
+                encode.addStatement("writer.writeVarint32(\$L.length)", value)
+                encode.addStatement("writer.writeBytes(\$T.of(\$L))", BYTE_STRING, value)
+            } else {
+                encode.addStatement("writer.writeVarint32(\$L.size())", value)
+                encode.addStatement("writer.writeBytes(\$L)", value)
+            }
+        }
+
+        /**
+         * Measures a non-empty primitive array as one packed run. Varint payload sizes are recorded
+         * in a slot so encode doesn't add them up a second time.
+         */
+        internal fun addMeasurePacked(measure: MethodSpec.Builder, tag: Int, packed: PackedArray, value: String) {
+            val length = "length$tag"
+            measure.beginControlFlow("if (\$L.length != 0)", value)
+            if (packed.width == 0) {
+                val slot = "slot$tag"
+                measure.addStatement("int \$L = sizes.reserve()", slot)
+                measure.addStatement(
+                    "int \$L = \$T.\$LSize(\$L)",
+                    length,
+                    PACKED_ARRAYS,
+                    packed.codec.toLowerCase(),
+                    value
+                )
+                measure.addStatement("sizes.set(\$L, \$L)", slot, length)
+            } else {
+                measure.addStatement("int \$L = \$L.length * \$L", length, value, packed.width)
+            }
+            measure.addStatement(
+                "size += \$L + \$T.varint32Size(\$L) + \$L",
+                tagSize(tag),
+                SCALARS,
+                length,
+                length
+            )
+            measure.endControlFlow()
+        }
+
+        /** Writes a non-empty primitive array as one packed run. */
+        internal fun addEncodePacked(
+            encode: MethodSpec.Builder,
+            tag: Int,
+            packed: PackedArray,
+            value: String,
+            wire: Boolean
+        ) {
+            encode.beginControlFlow("if (\$L.length != 0)", value)
+            encode.addStatement("writer.writeTag(\$L, \$T.LENGTH_DELIMITED)", tag, FIELD_ENCODING)
+            if (packed.width == 0) {
+                encode.addStatement("writer.writeVarint32(sizes.next())")
+            } else {
+                encode.addStatement("writer.writeVarint32(\$L.length * \$L)", value, packed.width)
+            }
+            if (wire) {
+                encode.addStatement("writer.writePacked\$L(\$L)", packed.codec, value)
+            } else {
+                encode.addStatement("\$T.write\$L(writer, \$L)", PACKED_ARRAYS, packed.codec, value)
+            }
+            encode.endControlFlow()
+        }
+
+        /**
+         * Writes a nested message using the length [addMeasureNested] recorded for it. A [lazy]
+         * value that was never decoded writes back the bytes it was read from.
+         */
+        internal fun addEncodeNested(
+            encode: MethodSpec.Builder,
+            tag: Int,
+            message: ProtoAssignment,
+            value: String,
+            lazy: Boolean = false
+        ) {
+            encode.addStatement("writer.writeTag(\$L, \$T.LENGTH_DELIMITED)", tag, FIELD_ENCODING)
+            encode.addStatement("writer.writeVarint32(sizes.next())")
+            if (lazy) {
+                encode.addStatement("\$L.encode(writer, \$T.\$L, sizes)", value, message.location, message.field)
+            } else {
+                encode.addStatement("\$T.\$L.encode(writer, \$L, sizes)", message.location, message.field, value)
+            }
+        }
+
+        /** Collection class a repeated field of the given kind is decoded into. */
+        internal fun collectionImpl(kind: JavaKind): ClassName {
+            return when (kind) {
+                JavaKind.SET -> LINKED_HASH_SET
+                JavaKind.QUEUE -> ARRAY_DEQUE
+                else -> ARRAY_LIST
+            }
+        }
+
+        /** Map class a map field is decoded into. Int and long keys are kept unboxed. */
+        internal fun mapImpl(map: MapModel): ClassName {
+            return when (map.key.javaKind) {
+                JavaKind.INT, JavaKind.BOXED_INT -> INT_KEY_MAP
+                JavaKind.LONG, JavaKind.BOXED_LONG -> LONG_KEY_MAP
+                else -> LINKED_HASH_MAP
+            }
+        }
+
+        /**
+         * Whether measure and encode walk [spec], a map, with the slot cursor of its [mapImpl]
+         * rather than through the map adapter, which would box every key and entry.
+         */
+        internal fun isKeyMap(spec: WireModel): Boolean {
+            return spec is MapModel && mapImpl(spec) != LINKED_HASH_MAP && spec.value !is LazyModel
+        }
+
+        /**
+         * Value a map entry that leaves out its key or value of [spec] gets, the same default
+         * proto3 gives a missing field. Null when there is none, e.g. for messages.
+         */
+        internal fun entryDefault(spec: WireModel): CodeBlock? {
+            val type = spec.toTypeName(true)
+            if (type.isBoxedPrimitive) {
+                return CodeBlock.of(if (type.unbox() == TypeName.BOOLEAN) "false" else "0")
+            }
+            if (spec.isEnum || !spec.protoType.isScalar || spec.isList || spec.isMap) {
+                return null
+            }
+            return when (spec.protoType.simpleName().toLowerCase()) {
+                "string" -> CodeBlock.of("\"\"")
+                "bytes" -> if (spec is BytesModel && spec.isByteArray) {
+                    CodeBlock.of("new byte[0]")
+                } else {
+                    CodeBlock.of("\$T.EMPTY", BYTE_STRING)
+                }
+                else -> null
+            }
+        }
+
+        /** Local type an entry's key or value of [spec] is read into, unboxed where possible. */
+        internal fun entryType(spec: WireModel): TypeName {
+            val type = spec.toTypeName(true)
+            return if (type.isBoxedPrimitive) type.unbox() else type
+        }
+
+        /**
+         * Reads one entry of [map] into "local", parsing the entry message in place instead of
+         * going through the map adapter, which decodes each entry into a map of its own. [name]
+         * gives the reserved names of the entry's locals.
+         */
+        internal fun addReadEntry(
+            decode: MethodSpec.Builder,
+            assignment: ProtoMapAssignment,
+            map: MapModel,
+            local: String,
+            wire: Boolean,
+            name: (String) -> String
+        ) {
+            val entry = name("entry")
+            val tag = name("entryTag")
+            val key = name("key")
+            val value = name("value")
+            decode.addStatement("long \$L = reader.beginMessage()", entry)
+            decode.addStatement(
+                "\$T \$L = \$L",
+                entryType(map.key),
+                key,
+                entryDefault(map.key) ?: CodeBlock.of("null")
+            )
+            decode.addStatement(
+                "\$T \$L = \$L",
+                entryType(map.value),
+                value,
+                entryDefault(map.value) ?: CodeBlock.of("null")
+            )
+            decode.beginControlFlow("for (int \$L; (\$L = reader.nextTag()) != -1;)", tag, tag)
+            decode.beginControlFlow("if (\$L == 1)", tag)
+            decode.addStatement("\$L = \$L", key, readEntryValue(assignment.key, map.key, wire))
+            decode.nextControlFlow("else if (\$L == 2)", tag)
+            decode.addStatement("\$L = \$L", value, readEntryValue(assignment.value, map.value, wire))
+            decode.nextControlFlow("else")
+            decode.addStatement("reader.skip()")
+            decode.endControlFlow()
+            decode.endControlFlow()
+            decode.addStatement("reader.endMessage(\$L)", entry)
+            if (entryDefault(map.key) == null) {
+                decode.beginControlFlow("if (\$L == null)", key)
+                decode.addStatement("throw new \$T(\"Map entry with null key\")", ILLEGAL_STATE)
+                decode.endControlFlow()
+            }
+            if (entryDefault(map.value) == null) {
+                decode.beginControlFlow("if (\$L == null)", value)
+                decode.addStatement("throw new \$T(\"Map entry with null value\")", ILLEGAL_STATE)
+                decode.endControlFlow()
+            }
+            when (mapImpl(map)) {
+                INT_KEY_MAP, LONG_KEY_MAP ->
+                    decode.addStatement("\$T.putUnboxed(\$L, \$L, \$L)", mapImpl(map), local, key, value)
+                else -> decode.addStatement("\$L.put(\$L, \$L)", local, key, value)
+            }
+        }
+
+        // Zoned values have no "zones" dictionary to share inside a map, so go through the adapter.
+        private fun readEntryValue(assignment: ProtoAssignment, spec: WireModel, wire: Boolean): CodeBlock {
+            if (!isZoned(spec)) {
+                return readValue(assignment, spec, wire)
+            }
+            return if (wire) {
+                CodeBlock.of(
+                    "reader.read(\$T.\$L, \$T.LENGTH_DELIMITED)",
+                    assignment.location,
+                    assignment.field,
+                    FIELD_ENCODING
+                )
+            } else {
+                CodeBlock.of("\$T.\$L.decode(reader)", assignment.location, assignment.field)
+            }
+        }
+
+        /**
+         * Measures an int or long keyed map (see [isKeyMap]) entry by entry off its slot cursor,
+         * recording each entry's length, and those of nested messages and strings in it, the way
+         * [addMeasureNested] does. Any other map is measured by the map adapter.
+         */
+        internal fun addMeasureKeyMap(
+            measure: MethodSpec.Builder,
+            tag: Int,
+            assignment: ProtoMapAssignment,
+            map: MapModel,
+            value: String
+        ) {
+            val impl = mapImpl(map)
+            val entrySlot = "entrySlot$tag"
+            val entrySize = "entrySize$tag"
+            val key = "key$tag"
+            val entryValue = "value$tag"
+            measure.beginControlFlow("if (\$L instanceof \$T)", value, impl)
+            addKeyMapLoop(measure, tag, impl, map, value)
+            measure.addStatement("int \$L = sizes.reserve()", entrySlot)
+            val valueSize = if (map.value.isMessage) {
+                val length = "valueLength$tag"
+                measure.addStatement("int \$L = sizes.reserve()", "valueSlot$tag")
+                measure.addStatement(
+                    "int \$L = \$T.\$L.measure(\$L, sizes)",
+                    length,
+                    assignment.value.location,
+                    assignment.value.field,
+                    entryValue
+                )
+                measure.addStatement("sizes.set(\$L, \$L)", "valueSlot$tag", length)
+                CodeBlock.of("1 + \$T.varint32Size(\$L) + \$L", SCALARS, length, length)
+            } else if (isString(map.value)) {
+                val length = "valueLength$tag"
+                measure.addStatement("int \$L = \$T.utf8Size(\$L)", length, SCALARS, entryValue)
+                measure.addStatement("sizes.set(sizes.reserve(), \$L)", length)
+                CodeBlock.of("1 + \$T.varint32Size(\$L) + \$L", SCALARS, length, length)
+            } else {
+                CodeBlock.of(
+                    "\$T.\$L.encodedSizeWithTag(2, \$L)",
+                    assignment.value.location,
+                    assignment.value.field,
+                    entryValue
+                )
+            }
+            measure.addStatement("int \$L = \$L + \$L", entrySize, keySize(map.key, key), valueSize)
+            measure.addStatement("sizes.set(\$L, \$L)", entrySlot, entrySize)
+            measure.addStatement(
+                "size += \$L + \$T.varint32Size(\$L) + \$L",
+                tagSize(tag),
+                SCALARS,
+                entrySize,
+                entrySize
+            )
+            measure.endControlFlow()
+            measure.nextControlFlow("else")
+            measure.addStatement(
+                "size += \$T.\$L.encodedSizeWithTag(\$L, \$L)",
+                assignment.location,
+                assignment.field,
+                tag,
+                value
+            )
+            measure.endControlFlow()
+        }
+
+        /** Writes a map measured by [addMeasureKeyMap], using the lengths it recorded. */
+        internal fun addEncodeKeyMap(
+            encode: MethodSpec.Builder,
+            tag: Int,
+            assignment: ProtoMapAssignment,
+            map: MapModel,
+            value: String,
+            wire: Boolean
+        ) {
+            val impl = mapImpl(map)
+            val key = "key$tag"
+            val entryValue = "value$tag"
+            encode.beginControlFlow("if (\$L instanceof \$T)", value, impl)
+            addKeyMapLoop(encode, tag, impl, map, value)
+            encode.addStatement("writer.writeTag(\$L, \$T.LENGTH_DELIMITED)", tag, FIELD_ENCODING)
+            encode.addStatement("writer.writeVarint32(sizes.next())")
+            if (wire) {
+                addWriteScalar(encode, 1, map.key, key)
+            } else {
+                addWriteKey(encode, map.key, key)
+            }
+            if (map.value.isMessage) {
+                addEncodeNested(encode, 2, assignment.value, entryValue)
+            } else if (isString(map.value)) {
+                addEncodeString(encode, 2, entryValue, wire)
+            } else if (wire && isInlineScalar(map.value)) {
+                addWriteScalar(encode, 2, map.value, entryValue)
+            } else if (wire) {
+                encode.addStatement(
+                    "writer.write(\$T.\$L, 2, \$L)",
+                    assignment.value.location,
+                    assignment.value.field,
+                    entryValue
+                )
+            } else {
+                encode.addStatement(
+                    "\$T.\$L.encodeWithTag(writer, 2, \$L)",
+                    assignment.value.location,
+                    assignment.value.field,
+                    entryValue
+                )
+            }
+            encode.endControlFlow()
+            encode.nextControlFlow("else")
+            if (wire) {
+                encode.addStatement(
+                    "writer.write(\$T.\$L, \$L, \$L)",
+                    assignment.location,
+                    assignment.field,
+                    tag,
+                    value
+                )
+            } else {
+                encode.addStatement(
+                    "\$T.\$L.encodeWithTag(writer, \$L, \$L)",
+                    assignment.location,
+                    assignment.field,
+                    tag,
+                    value
+                )
+            }
+            encode.endControlFlow()
+        }
+
+        // Opens the loop over a key map's slots, with its key and value in "key<tag>" and "value<tag>".
+        private fun addKeyMapLoop(
+            code: MethodSpec.Builder,
+            tag: Int,
+            impl: ClassName,
+            map: MapModel,
+            value: String
+        ) {
+            val valueType = map.value.toTypeName(true)
+            val local = "map$tag"
+            val slot = "entry$tag"
+            code.addStatement(
+                "\$T \$L = (\$T) \$L",
+                ParameterizedTypeName.get(impl, valueType),
+                local,
+                ParameterizedTypeName.get(impl, valueType),
+                value
+            )
+            code.beginControlFlow(
+                "for (int \$L = \$L.nextSlot(-1); \$L >= 0; \$L = \$L.nextSlot(\$L))",
+                slot,
+                local,
+                slot,
+                slot,
+                local,
+                slot
+            )
+            code.addStatement("\$T key\$L = \$L.keyAt(\$L)", entryType(map.key), tag, local, slot)
+            code.addStatement("\$T value\$L = \$L.valueAt(\$L)", valueType, tag, local, slot)
+        }
+
+        private fun isString(spec: WireModel): Boolean {
+            return spec.protoType.isScalar && spec.protoType.simpleName() == "string" && !spec.isList
+        }
+
+        /** Size of an int or long map key and its tag, 1 byte since keys are field 1. */
+        internal fun keySize(spec: WireModel, key: String): CodeBlock {
+            return when (spec.protoType.simpleName().toLowerCase()) {
+                "int32" -> CodeBlock.of("1 + \$T.int32Size(\$L)", SCALARS, key)
+                "uint32" -> CodeBlock.of("1 + \$T.varint32Size(\$L)", SCALARS, key)
+                "sint32" -> CodeBlock.of("1 + \$T.varint32Size(\$T.encodeZigZag32(\$L))", SCALARS, SCALARS, key)
+                "fixed32", "sfixed32" -> CodeBlock.of("5")
+                "int64", "uint64" -> CodeBlock.of("1 + \$T.varint64Size(\$L)", SCALARS, key)
+                "sint64" -> CodeBlock.of("1 + \$T.varint64Size(\$T.encodeZigZag64(\$L))", SCALARS, SCALARS, key)
+                "fixed64", "sfixed64" -> CodeBlock.of("9")
+                else -> throw IllegalStateException("Not an int or long map key: " + spec.protoType)
+            }
+        }
+
+        /** Writes an int or long map key and its tag to the [ProtoWriter] "writer". */
+        internal fun addWriteKey(encode: MethodSpec.Builder, spec: WireModel, key: String) {
+            val (encoding, write) = when (spec.protoType.simpleName().toLowerCase()) {
+                // Negative int32s are sign extended to ten bytes.
+                "int32", "int64", "uint64" -> "VARINT" to CodeBlock.of("writer.writeVarint64(\$L)", key)
+                "uint32" -> "VARINT" to CodeBlock.of("writer.writeVarint32(\$L)", key)
+                "sint32" -> "VARINT" to CodeBlock.of(
+                    "writer.writeVarint32(\$T.encodeZigZag32(\$L))", SCALARS, key
+                )
+                "sint64" -> "VARINT" to CodeBlock.of(
+                    "writer.writeVarint64(\$T.encodeZigZag64(\$L))", SCALARS, key
+                )
+                "fixed32", "sfixed32" -> "FIXED32" to CodeBlock.of("writer.writeFixed32(\$L)", key)
+                "fixed64", "sfixed64" -> "FIXED64" to CodeBlock.of("writer.writeFixed64(\$L)", key)
+                else -> throw IllegalStateException("Not an int or long map key: " + spec.protoType)
+            }
+            encode.addStatement("writer.writeTag(1, \$T.\$L)", FIELD_ENCODING, encoding)
+            encode.addStatement("\$L", write)
+        }
+
+        /**
+         * Expression that reads a single value of [spec] from "reader". Scalars are read with the
+         * primitive [ProtoReader] methods so nothing is boxed, everything else is delegated to the
+         * [ProtoAdapter] behind [assignment]. When [wire] is set "reader" is a [WireReader], which
+         * hands nested generated messages to their own [WireReader] overload and anything else to
+         * [WireReader.read]. A [LazyModel] keeps the message's bytes, shared with the input when
+         * reading from a [WireReader] over an array.
+         */
+        internal fun readValue(
+            assignment: ProtoAssignment,
+            spec: WireModel,
+            wire: Boolean,
+            strings: String? = null
+        ): CodeBlock {
+            if (spec is LazyModel) {
+                return if (wire) {
+                    CodeBlock.of(
+                        "\$T.wrap(\$T.\$L, reader.readSlice())",
+                        LAZY,
+                        assignment.location,
+                        assignment.field
+                    )
+                } else {
+                    CodeBlock.of(
+                        "\$T.wrap(\$T.\$L, \$T.of(reader.readBytes().toByteArray()))",
+                        LAZY,
+                        assignment.location,
+                        assignment.field,
+                        BYTE_SLICE
+                    )
+                }
+            }
+            val protoType = spec.protoType
+            if (spec.isEnum) {
+                // A table lookup by tag on the enum's WireEnumAdapter.
+                return CodeBlock.of(
+                    "\$T.\$L.decodeTag(reader.readVarint32())",
+                    assignment.location,
+                    assignment.field
+                )
+            }
+            val codec = valueCodec(spec)
+            if (codec != null) {
+                return when {
+                    isZoned(spec) -> CodeBlock.of("\$T.read(reader, \$L)", codec, ZONES_VAR_NAME)
+                    wire -> CodeBlock.of("\$T.read(reader)", codec)
+                    else -> CodeBlock.of("\$T.ADAPTER.decode(reader)", codec)
+                }
+            }
+            if (!protoType.isScalar || spec.isList || spec.isMap) {
+                return if (!wire || spec.isMessage) {
+                    CodeBlock.of("\$T.\$L.decode(reader)", assignment.location, assignment.field)
+                } else {
+                    CodeBlock.of(
+                        "reader.read(\$T.\$L, \$T.\$L)",
+                        assignment.location,
+                        assignment.field,
+                        FIELD_ENCODING,
+                        "LENGTH_DELIMITED"
+                    )
+                }
+            }
+
+            val read = when (protoType.simpleName().toLowerCase()) {
+                "bool" -> CodeBlock.of("reader.readVarint32() != 0")
+                "int32", "uint32" -> CodeBlock.of("reader.readVarint32()")
+                "sint32" -> CodeBlock.of("\$T.decodeZigZag32(reader.readVarint32())", SCALARS)
+                "fixed32", "sfixed32" -> CodeBlock.of("reader.readFixed32()")
+                "int64", "uint64" -> CodeBlock.of("reader.readVarint64()")
+                "sint64" -> CodeBlock.of("\$T.decodeZigZag64(reader.readVarint64())", SCALARS)
+                "fixed64", "sfixed64" -> CodeBlock.of("reader.readFixed64()")
+                "float" -> CodeBlock.of("Float.intBitsToFloat(reader.readFixed32())")
+                "double" -> CodeBlock.of("Double.longBitsToDouble(reader.readFixed64())")
+                "string" -> if (strings == null) {
+                    CodeBlock.of("reader.readString()")
+                } else if (wire) {
+                    CodeBlock.of("reader.readString(\$L)", strings)
+                } else {
+                    CodeBlock.of("\$L.intern(reader.readString())", strings)
+                }
+                "bytes" -> if (spec is BytesModel && spec.isByteArray) {
+                    CodeBlock.of(if (wire) "reader.readByteArray()" else "reader.readBytes().toByteArray()")
+                } else {
+                    CodeBlock.of("reader.readBytes()")
+                }
+
+                else -> throw IllegalStateException(
+                    "Scalar ProtoType not recognized: " + protoType.simpleName().toLowerCase()
+                )
+            }
+
+            // Narrow int32 back to the declared width.
+            return when (spec.javaKind) {
+                JavaKind.BYTE, JavaKind.BOXED_BYTE -> CodeBlock.of("(byte) \$L", read)
+                JavaKind.SHORT, JavaKind.BOXED_SHORT -> CodeBlock.of("(short) \$L", read)
+                JavaKind.CHAR, JavaKind.BOXED_CHAR -> CodeBlock.of("(char) \$L", read)
+                else -> read
+            }
+        }
+
+        /**
+         * Codec of a value type that is written as a small message of its own, e.g. [Decimals], or
+         * null. Generated code calls its static size/write/read routines directly.
+         */
+        internal fun valueCodec(spec: WireModel): ClassName? {
+            return when (spec) {
+                is DecimalModel -> DECIMALS
+                is DurationModel -> DURATIONS
+                is DateModel -> when (spec.javaKind) {
+                    JavaKind.DATE -> DATES
+                    JavaKind.LOCAL_DATE -> LOCAL_DATES
+                    JavaKind.LOCAL_DATE_TIME -> LOCAL_DATE_TIMES
+                    else -> ZONED_DATE_TIMES
+                }
+                else -> null
+            }
+        }
+
+        /** Whether a [valueCodec] type is written as a plain varint rather than a message. */
+        internal fun isVarintValue(spec: WireModel): Boolean {
+            return spec.javaKind == JavaKind.DATE || spec.javaKind == JavaKind.LOCAL_DATE
+        }
+
+        /**
+         * Whether [spec] is a [java.time.ZonedDateTime] or a list of them. Their zones are shared
+         * through a [ZoneDictionary] that measure, encode and decode keep in a "zones" local, so
+         * the ProtoWriter and ProtoReader paths go through [ZonedDateTimes] as well.
+         */
+        internal fun isZoned(spec: WireModel): Boolean {
+            return spec.javaKind == JavaKind.ZONED_DATE || (spec is ListModel && isZoned(spec.component))
+        }
+
+        /** Declares the "zones" dictionary of a message's [java.time.ZonedDateTime] fields. */
+        internal fun addZones(method: MethodSpec.Builder) {
+            method.addStatement("\$T \$L = new \$T()", ZONE_DICTIONARY, ZONES_VAR_NAME, ZONE_DICTIONARY)
+        }
+
+        /** Measures a [java.time.ZonedDateTime], adding its zone to the "zones" dictionary. */
+        internal fun addMeasureZoned(measure: MethodSpec.Builder, tag: Int, value: String) {
+            measure.addStatement(
+                "size += \$T.encodedSizeWithTag(\$L, \$L, \$L)",
+                ZONED_DATE_TIMES,
+                tag,
+                value,
+                ZONES_VAR_NAME
+            )
+        }
+
+        /** Writes a value of a [valueCodec] type and its tag to "writer". */
+        internal fun addWriteValue(encode: MethodSpec.Builder, tag: Int, spec: WireModel, value: String) {
+            val varint = isVarintValue(spec)
+            encode.addStatement(
+                "writer.writeTag(\$L, \$T.\$L)",
+                tag,
+                FIELD_ENCODING,
+                if (varint) "VARINT" else "LENGTH_DELIMITED"
+            )
+            if (isZoned(spec)) {
+                encode.addStatement("\$T.write(writer, \$L, \$L)", valueCodec(spec), value, ZONES_VAR_NAME)
+            } else {
+                encode.addStatement("\$T.write(writer, \$L)", valueCodec(spec), value)
+            }
+        }
+
+        /** Wire type a single value of [spec] is written with. Repeated fields use the unpacked form. */
+        internal fun wireType(spec: WireModel): Int {
+            if (spec is ListModel) {
+                return wireType(spec.component)
+            }
+            if (spec.isEnum || isVarintValue(spec)) {
+                return 0
+            }
+            if (!spec.protoType.isScalar || spec.isMap) {
+                return 2
+            }
+            return when (spec.protoType.simpleName().toLowerCase()) {
+                "fixed64", "sfixed64", "double" -> 1
+                "string", "bytes" -> 2
+                "fixed32", "sfixed32", "float" -> 5
+                else -> 0
+            }
+        }
+
+        /** Whether [addWriteScalar] can write [spec] without going through its [ProtoAdapter]. */
+        internal fun isInlineScalar(spec: WireModel): Boolean {
+            return (spec.protoType.isScalar || spec.isEnum) && !spec.isList && !spec.isMap
+        }
+
+        /** Writes a single scalar of [spec] and its tag to the [WireWriter] "writer". */
+        internal fun addWriteScalar(encode: MethodSpec.Builder, tag: Int, spec: WireModel, value: String) {
+            if (spec.isEnum) {
+                encode.addStatement("writer.writeTag(\$L, \$T.VARINT)", tag, FIELD_ENCODING)
+                encode.addStatement(
+                    "writer.writeInt32(\$T.\$L.tag(\$L))",
+                    toWireOuter(spec as DeclaredModel),
+                    PROTO_VAR_NAME,
+                    value
+                )
+                return
+            }
+            val protoType = spec.protoType
+            val (encoding, write) = when (protoType.simpleName().toLowerCase()) {
+                "bool" -> "VARINT" to CodeBlock.of("writer.writeVarint32(\$L ? 1 : 0)", value)
+                "int32" -> "VARINT" to CodeBlock.of("writer.writeInt32(\$L)", value)
+                "uint32" -> "VARINT" to CodeBlock.of("writer.writeVarint32(\$L)", value)
+                "sint32" -> "VARINT" to CodeBlock.of(
+                    "writer.writeVarint32(\$T.encodeZigZag32(\$L))", SCALARS, value
+                )
+                "fixed32", "sfixed32" -> "FIXED32" to CodeBlock.of("writer.writeFixed32(\$L)", value)
+                "int64", "uint64" -> "VARINT" to CodeBlock.of("writer.writeVarint64(\$L)", value)
+                "sint64" -> "VARINT" to CodeBlock.of(
+                    "writer.writeVarint64(\$T.encodeZigZag64(\$L))", SCALARS, value
+                )
+                "fixed64", "sfixed64" -> "FIXED64" to CodeBlock.of("writer.writeFixed64(\$L)", value)
+                "float" -> "FIXED32" to CodeBlock.of("writer.writeFixed32(Float.floatToIntBits(\$L))", value)
+                "double" -> "FIXED64" to CodeBlock.of(
+                    "writer.writeFixed64(Double.doubleToLongBits(\$L))", value
+                )
+                "string" -> "LENGTH_DELIMITED" to CodeBlock.of("writer.writeString(\$L)", value)
+                "bytes" -> "LENGTH_DELIMITED" to CodeBlock.of("writer.writeBytes(\$L)", value)
+
+                else -> throw IllegalStateException(
+                    "Scalar ProtoType not recognized: " + protoType.simpleName().toLowerCase()
+                )
+            }
+            encode.addStatement("writer.writeTag(\$L, \$T.\$L)", tag, FIELD_ENCODING, encoding)
+            encode.addStatement("\$L", write)
+        }
+
+        /**
+         * Writes [value] of [spec] to the JsonWriter or [JsonSink] "writer". Lists become arrays
+         * and maps objects keyed by the string form of their keys.
+         */
+        internal fun addWriteJson(code: MethodSpec.Builder, spec: WireModel, value: String, sink: Boolean) {
+            if (spec is ListModel) {
+                code.addStatement("writer.beginArray()")
+                code.beginControlFlow(
+                    "for (\$T element : \$L)",
+                    spec.component.toTypeName(spec.javaKind != JavaKind.ARRAY),
+                    value
+                )
+                addWriteJson(code, spec.component, "element", sink)
+                code.endControlFlow()
+                code.addStatement("writer.endArray()")
+                return
+            }
+            if (spec is MapModel) {
+                code.addStatement("writer.beginObject()")
+                code.beginControlFlow(
+                    "for (\$T entry : \$L.entrySet())",
+                    ParameterizedTypeName.get(
+                        ClassName.get(Map.Entry::class.java),
+                        spec.key.toTypeName(true),
+                        spec.value.toTypeName(true)
+                    ),
+                    value
+                )
+                if (spec.key.isEnum) {
+                    code.addStatement("writer.name(entry.getKey().name())")
+                } else {
+                    code.addStatement("writer.name(String.valueOf(entry.getKey()))")
+                }
+                addWriteJson(code, spec.value, "entry.getValue()", sink)
+                code.endControlFlow()
+                code.addStatement("writer.endObject()")
+                return
+            }
+            when {
+                spec is LazyModel -> code.addStatement(
+                    "\$T.\$L.toJson(writer, \$L.get())",
+                    toWireOuter(spec.component as DeclaredModel),
+                    JSON_VAR_NAME,
+                    value
+                )
+                spec.isMessage -> code.addStatement(
+                    "\$T.\$L.toJson(writer, \$L)",
+                    toWireOuter(spec as DeclaredModel),
+                    JSON_VAR_NAME,
+                    value
+                )
+                spec.isEnum -> code.addStatement("writer.value(\$L.name())", value)
+                spec is BytesModel && spec.isByteArray ->
+                    code.addStatement("writer.value(\$T.of(\$L).base64())", BYTE_STRING, value)
+                // Strings, so that no digits are lost to a reader that parses numbers as doubles.
+                spec is DecimalModel -> code.addStatement("writer.value(\$L.toString())", value)
+                spec is DurationModel -> code.addStatement("writer.value(\$T.toJson(\$L))", DURATIONS, value)
+                spec is DateModel -> if (spec.javaKind == JavaKind.DATE) {
+                    code.addStatement("writer.value(\$L.getTime())", value)
+                } else {
+                    // ISO-8601, e.g. 2011-12-03T10:15:30+01:00[Europe/Paris].
+                    code.addStatement("writer.value(\$L.toString())", value)
+                }
+                spec.javaKind == JavaKind.BYTES -> code.addStatement("writer.value(\$L.base64())", value)
+                // JsonWriter.value(double) would print the widened float, value(Number) doesn't.
+                !sink && spec.javaKind == JavaKind.FLOAT -> code.addStatement("writer.value(Float.valueOf(\$L))", value)
+                else -> code.addStatement("writer.value(\$L)", value)
+            }
+        }
+
+        /** Expression that reads one JSON value of [spec] from "reader". */
+        internal fun readJsonValue(spec: WireModel): CodeBlock {
+            return when {
+                spec is LazyModel -> CodeBlock.of(
+                    "\$T.of(\$T.\$L.fromJson(reader))",
+                    LAZY,
+                    toWireOuter(spec.component as DeclaredModel),
+                    JSON_VAR_NAME
+                )
+                spec.isMessage -> CodeBlock.of(
+                    "\$T.\$L.fromJson(reader)",
+                    toWireOuter(spec as DeclaredModel),
+                    JSON_VAR_NAME
+                )
+                spec.isEnum -> CodeBlock.of("nextEnum(reader, \$T.class)", spec.toTypeName(true))
+                spec is BytesModel && spec.isByteArray -> CodeBlock.of("nextBase64(reader).toByteArray()")
+                spec is DecimalModel -> CodeBlock.of("new \$T(reader.nextString())", spec.toTypeName(true))
+                spec is DurationModel -> CodeBlock.of("\$T.fromJson(reader.nextString())", DURATIONS)
+                spec is DateModel -> if (spec.javaKind == JavaKind.DATE) {
+                    CodeBlock.of("new \$T(reader.nextLong())", spec.toTypeName(true))
+                } else {
+                    CodeBlock.of("\$T.parse(reader.nextString())", spec.toTypeName(true))
+                }
+                else -> when (spec.javaKind) {
+                    JavaKind.BOOL, JavaKind.BOXED_BOOL -> CodeBlock.of("reader.nextBoolean()")
+                    JavaKind.BYTE, JavaKind.BOXED_BYTE -> CodeBlock.of("(byte) reader.nextInt()")
+                    JavaKind.SHORT, JavaKind.BOXED_SHORT -> CodeBlock.of("(short) reader.nextInt()")
+                    JavaKind.CHAR, JavaKind.BOXED_CHAR -> CodeBlock.of("(char) reader.nextInt()")
+                    JavaKind.INT, JavaKind.BOXED_INT -> CodeBlock.of("reader.nextInt()")
+                    JavaKind.LONG, JavaKind.BOXED_LONG -> CodeBlock.of("reader.nextLong()")
+                    JavaKind.FLOAT, JavaKind.BOXED_FLOAT -> CodeBlock.of("(float) reader.nextDouble()")
+                    JavaKind.DOUBLE, JavaKind.BOXED_DOUBLE -> CodeBlock.of("reader.nextDouble()")
+                    JavaKind.STRING -> CodeBlock.of("reader.nextString()")
+                    JavaKind.BYTES -> CodeBlock.of("nextBase64(reader)")
+
+                    else -> throw IllegalStateException("WireSpec: '$spec' has no JSON form")
+                }
+            }
+        }
+
+        /** Expression that reads a map key of [spec] from the next JSON name. */
+        internal fun readJsonKey(spec: WireModel): CodeBlock {
+            if (spec.isEnum) {
+                return CodeBlock.of("\$T.valueOf(reader.nextName())", spec.toTypeName(true))
+            }
+            return when (spec.javaKind) {
+                JavaKind.STRING -> CodeBlock.of("reader.nextName()")
+                JavaKind.BOOL, JavaKind.BOXED_BOOL -> CodeBlock.of("Boolean.parseBoolean(reader.nextName())")
+                JavaKind.BYTE, JavaKind.BOXED_BYTE -> CodeBlock.of("Byte.parseByte(reader.nextName())")
+                JavaKind.SHORT, JavaKind.BOXED_SHORT -> CodeBlock.of("Short.parseShort(reader.nextName())")
+                JavaKind.INT, JavaKind.BOXED_INT -> CodeBlock.of("Integer.parseInt(reader.nextName())")
+                JavaKind.LONG, JavaKind.BOXED_LONG -> CodeBlock.of("Long.parseLong(reader.nextName())")
+
+                else -> throw IllegalStateException("WireSpec: '$spec' can't be a JSON map key")
+            }
+        }
+
+        /** `new C[0]` for an array of [component], which may itself be an array, e.g. `new byte[0][]`. */
+        internal fun newEmptyArray(component: TypeName): CodeBlock {
+            var base = component
+            var dimensions = ""
+            while (base is ArrayTypeName) {
+                dimensions += "[]"
+                base = base.componentType
+            }
+            return CodeBlock.of("new \$T[0]\$L", base, dimensions)
+        }
+
+        /** [type] without its type arguments, as a class literal takes it. */
+        internal fun erasure(type: TypeName): TypeName {
+            return when (type) {
+                is ParameterizedTypeName -> type.rawType
+                is ArrayTypeName -> ArrayTypeName.of(erasure(type.componentType))
+                is TypeVariableName -> type.bounds.firstOrNull()?.let { erasure(it) } ?: TypeName.OBJECT
+                else -> type
+            }
+        }
+
+        /** Empty value of a string, collection, array or bytes [spec], or null for anything else. */
+        internal fun kotlinEmpty(spec: WireModel): CodeBlock? {
+            return when {
+                spec is BytesModel && spec.isByteArray -> CodeBlock.of("new byte[0]")
+                spec is ListModel && spec.javaKind == JavaKind.ARRAY ->
+                    newEmptyArray(spec.component.toTypeName(false))
+                else -> when (spec.javaKind) {
+                    JavaKind.STRING -> CodeBlock.of("\"\"")
+                    JavaKind.BYTES -> CodeBlock.of("\$T.EMPTY", BYTE_STRING)
+                    JavaKind.LIST -> CodeBlock.of("\$T.emptyList()", COLLECTIONS)
+                    JavaKind.SET -> CodeBlock.of("\$T.emptySet()", COLLECTIONS)
+                    JavaKind.MAP -> CodeBlock.of("\$T.emptyMap()", COLLECTIONS)
+                    else -> null
+                }
+            }
+        }
+
+        /** Name of the static holding the encoded default of [field], a nested message. */
+        internal fun defaultMessageName(field: Field): String = "DEFAULT_MESSAGE_" + field.tag
+
+        /** Whether decodeInto refills the messages of [field], a list, rather than replacing them. */
+        internal fun reusesElements(field: Field): Boolean {
+            val model = field.spec.model
+            return model.javaKind == JavaKind.LIST && (model as ListModel).component.isMessage
+        }
+
+        /** Whether a value of [spec] can't be changed, so messages may share it. */
+        internal fun isImmutable(spec: WireModel): Boolean {
+            return when (spec.javaKind) {
+                JavaKind.BIG_DECIMAL,
+                JavaKind.DURATION,
+                JavaKind.LOCAL_DATE,
+                JavaKind.LOCAL_DATE_TIME,
+                JavaKind.ZONED_DATE,
+                JavaKind.ENUM,
+                JavaKind.STRING -> true
+                JavaKind.BYTES -> !(spec is BytesModel && spec.isByteArray)
+                else -> spec.javaKind.isBoxedPrimitive
+            }
+        }
+
+        /** Whether [kind] is a byte, short or char, which the int32 adapters take widened to an int. */
+        internal fun isNarrowInt(kind: JavaKind): Boolean {
+            return when (kind) {
+                JavaKind.BYTE, JavaKind.BOXED_BYTE,
+                JavaKind.SHORT, JavaKind.BOXED_SHORT,
+                JavaKind.CHAR, JavaKind.BOXED_CHAR -> true
+                else -> false
+            }
+        }
+
+        /** [expr] as the value [spec]'s ProtoAdapter takes. */
+        internal fun toProtoValue(spec: WireModel, expr: String): CodeBlock {
+            return if (isNarrowInt(spec.javaKind)) CodeBlock.of("(int) \$L", expr) else CodeBlock.of("\$L", expr)
+        }
+
+        /**
+         * Whether a repeated field is written element by element with its component's adapter. The
+         * List adapter takes neither a Set or array nor a list of narrow ints.
+         */
+        internal fun isWrittenByElement(spec: WireModel): Boolean {
+            return spec is ListModel && (spec.listKind != JavaKind.LIST || isNarrowInt(spec.component.javaKind))
+        }
+
         internal fun toProtoAdapter(spec: WireModel): ProtoAssignment {
             return toProtoAdapter(null, null, spec)
         }
@@ -480,7 +2758,14 @@ class Assembler(
             protoAdapterName: ClassName?, fieldName: String?, spec: WireModel
         ): ProtoAssignment {
             val protoType = spec.protoType
-            if (protoType.isScalar) {
+            // Some value types are written as scalars, so they too must be matched first.
+            valueCodec(spec)?.let { codec ->
+                return ProtoAssignment(
+                    ParameterizedTypeName.get(PROTO_ADAPTER, spec.toTypeName(true)), codec, "ADAPTER"
+                )
+            }
+            // Lists share the component's ProtoType so they must be matched before scalars.
+            if (protoType.isScalar && !spec.isList) {
                 when (protoType.simpleName().toLowerCase()) {
                     "bool" -> return BOOL
                     "bytes" -> return BYTES
@@ -508,9 +2793,11 @@ class Assembler(
                 val listSpec = spec as ListModel
 
                 val component = toProtoAdapter(listSpec.component)
+                // Typed by what the component's adapter reads, which for narrow ints is an Integer.
                 return ProtoListAssignment(
                     ParameterizedTypeName.get(
-                        ClassName.get(ProtoAdapter::class.java), listSpec.component.toTypeName(true)
+                        ClassName.get(ProtoAdapter::class.java),
+                        ParameterizedTypeName.get(ClassName.get(List::class.java), component.signature.typeArguments[0])
                     ),
                     protoAdapterName!!,
                     fieldName!!,
@@ -522,7 +2809,7 @@ class Assembler(
             if (spec.isMap) {
                 val mapSpec = spec as MapModel
                 val keyName = mapSpec.key.toTypeName(true)
-                val valueName = mapSpec.key.toTypeName(true)
+                val valueName = mapSpec.value.toTypeName(true)
 
                 val key = toProtoAdapter(mapSpec.key)
                 val value = toProtoAdapter(mapSpec.value)
@@ -539,6 +2826,11 @@ class Assembler(
                 )
             }
 
+            if (spec is LazyModel) {
+                // Lazy<T> fields are read and written with T's generated adapter.
+                return toProtoAdapter(spec.component)
+            }
+
             if (spec !is DeclaredModel) {
                 throw IllegalStateException(
                     "WireSpec: '" + spec.toString() + "' toProtoAdapter() cannot determine type"
@@ -669,7 +2961,7 @@ internal class ProtoListAssignment(
     override fun initializer(): CodeBlock {
         return CodeBlock.builder()
             .add(component.initializer())
-            .add(if (packed) CodeBlock.of("asPacked()") else CodeBlock.of("asRepeated()"))
+            .add(if (packed) CodeBlock.of(".asPacked()") else CodeBlock.of(".asRepeated()"))
             .build()
     }
 
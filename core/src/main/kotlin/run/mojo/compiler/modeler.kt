@@ -3,6 +3,8 @@ package run.mojo.compiler
 import com.google.common.reflect.TypeToken
 import okio.ByteString
 import run.mojo.wire.JavaKind
+import run.mojo.wire.Lazy
+import run.mojo.wire.WireEnumAdapter
 import run.mojo.Wire
 import run.mojo.model.*
 import java.lang.IllegalStateException
@@ -11,6 +13,11 @@ import javax.tools.Diagnostic
 import java.lang.Package
 import java.lang.reflect.*
 import java.lang.reflect.Modifier
+import java.math.BigDecimal
+import java.time.Duration
+import java.time.LocalDate
+import java.time.LocalDateTime
+import java.time.ZonedDateTime
 import java.util.*
 import javax.lang.model.element.*
 import javax.lang.model.type.TypeMirror
@@ -196,6 +203,9 @@ open class ModelTransformer {
             if (Queue::class.java.isAssignableFrom(cls)) {
                 return paramTypeToListModel(JavaKind.QUEUE, type)
             }
+            if (Lazy::class.java == cls) {
+                return LazyModel(typeToModel(type.actualTypeArguments[0]))
+            }
             return if (Map::class.java.isAssignableFrom(cls)) {
                 paramTypeToMapModel(type) ?: NOTHING
             } else typeToMessageModel(type) ?: NOTHING
@@ -205,6 +215,10 @@ open class ModelTransformer {
             if (type.isEnum) {
                 return classToEnumModel(type)
             }
+            // Bytes, not an array of byte scalars.
+            if (ByteArray::class.java == type) {
+                return BYTE_ARRAY
+            }
             if (type.isArray) {
                 return classToArrayModel(type) ?: NOTHING
             }
@@ -227,49 +241,49 @@ open class ModelTransformer {
             if (Boolean::class.javaPrimitiveType == type) {
                 return BOOL
             }
-            if (Boolean::class.java == type) {
+            if (Boolean::class.javaObjectType == type) {
                 return BOOL_BOXED
             }
             if (Byte::class.javaPrimitiveType == type) {
                 return BYTE
             }
-            if (Byte::class.java == type) {
+            if (Byte::class.javaObjectType == type) {
                 return BYTE_BOXED
             }
             if (Short::class.javaPrimitiveType == type) {
                 return SHORT
             }
-            if (Short::class.java == type) {
+            if (Short::class.javaObjectType == type) {
                 return SHORT_BOXED
             }
             if (Char::class.javaPrimitiveType == type) {
                 return CHAR
             }
-            if (Char::class.java == type) {
+            if (Char::class.javaObjectType == type) {
                 return CHAR_BOXED
             }
             if (Int::class.javaPrimitiveType == type) {
                 return INT
             }
-            if (Int::class.java == type) {
+            if (Int::class.javaObjectType == type) {
                 return INT_BOXED
             }
             if (Long::class.javaPrimitiveType == type) {
                 return LONG
             }
-            if (Long::class.java == type) {
+            if (Long::class.javaObjectType == type) {
                 return LONG_BOXED
             }
             if (Float::class.javaPrimitiveType == type) {
                 return FLOAT
             }
-            if (Float::class.java == type) {
+            if (Float::class.javaObjectType == type) {
                 return FLOAT_BOXED
             }
             if (Double::class.javaPrimitiveType == type) {
                 return DOUBLE
             }
-            if (Double::class.java == type) {
+            if (Double::class.javaObjectType == type) {
                 return DOUBLE_BOXED
             }
             if (String::class.java == type) {
@@ -278,9 +292,25 @@ open class ModelTransformer {
             if (ByteString::class.java == type) {
                 return BYTE_STRING
             }
-            return if (ByteArray::class.java == type) {
-                BytesModel("byte[]")
-            } else typeToMessageModel(type) ?: NOTHING
+            if (BigDecimal::class.java == type) {
+                return BIG_DECIMAL
+            }
+            if (Duration::class.java == type) {
+                return DURATION
+            }
+            if (Date::class.java == type) {
+                return DATE
+            }
+            if (LocalDate::class.java == type) {
+                return LOCAL_DATE
+            }
+            if (LocalDateTime::class.java == type) {
+                return LOCAL_DATE_TIME
+            }
+            if (ZonedDateTime::class.java == type) {
+                return ZONED_DATE
+            }
+            return typeToMessageModel(type) ?: NOTHING
         }
         return NOTHING
     }
@@ -380,10 +410,10 @@ open class ModelTransformer {
 
             val name = constantObject.toString()
 
+            val wire = type.getField((constantObject as Enum<*>).name).getAnnotation(Wire::class.java)
             val constant = EnumConstant(
                 ordinal = ordinal++,
-                tag = lastTag + 1,
-//                tag = enclosed.getAnnotation(Wire::class.java)?.let { it.tag } ?: lastTag+1,
+                tag = WireEnumAdapter.tagOf(wire, lastTag),
                 name = name,
                 relativeName = relativeNameBase + "_" + name
             )
@@ -458,7 +488,7 @@ open class ModelTransformer {
             return null
         }
 
-        var typeArgs = emptyList<Type>()
+        val typeArgs: List<Type>
         val parameterizedType: ParameterizedType?
         val type: Class<*>
         val typeVariables: List<TypeVarModel>
@@ -475,6 +505,8 @@ open class ModelTransformer {
         } else if (t is Class<*>) {
             type = t
             parameterizedType = null
+            // A generic class on its own, e.g. Records<T>, is a template like the processor's.
+            typeArgs = type.typeParameters.toList()
 
             typeVariables = type.typeParameters
                 .map { a -> TypeVarModel.of(a) }
@@ -489,7 +521,7 @@ open class ModelTransformer {
         val existing = getEnclosing(name)
         // Enclosing and Template types must be recreated. Template types may have it's Type Args
         // specified.
-        if (existing != null && !existing.isEnclosing && !existing.isTemplate) {
+        if (existing != null && typeArgs.isEmpty() && !existing.isEnclosing && !existing.isTemplate) {
             return existing
         }
 
@@ -526,8 +558,14 @@ open class ModelTransformer {
 
         }
 
+        // Each fully specified template, e.g. Records<Integer>, is specialized on its own by the
+        // message that holds it, so it must not take the place of the template's model.
+        if (impl) {
+            typeToMessageModel(type)
+        }
+
         val message = MessageModel.ofClass(
-            enclosing = classResolveEnclosing(pkg, type),
+            enclosing = if (impl) null else classResolveEnclosing(pkg, type),
             packageName = pkg.name,
             cls = type,
             declaredType = parameterizedType,
@@ -540,13 +578,15 @@ open class ModelTransformer {
             wire = type.getAnnotation(Wire::class.java)
         )
 
-        // If null then the package is the encloser.
-        if (message.enclosing == null) {
-            pkg.nested[message.name] = message
-        }
+        if (!impl) {
+            // If null then the package is the encloser.
+            if (message.enclosing == null) {
+                pkg.nested[message.name] = message
+            }
 
-        // Add to schema.
-        add(message)
+            // Add to schema.
+            add(message)
+        }
 
         // Are there inherited fields?
         message.superType?.let {
@@ -569,6 +609,19 @@ open class ModelTransformer {
             .filter { !Modifier.isStatic(it.modifiers) && !Modifier.isNative(it.modifiers) }
             .forEach { message.registerField(this, it) }
 
+        // Bind the template's own fields to the type arguments, e.g. List<T> to List<Integer>.
+        if (impl) {
+            val resolver = TypeArgResolver(message.typeVars, this)
+
+            message.fields.values.toList().forEach { field ->
+                if (field.declared === message && field.model.isTemplate) {
+                    resolver.resolve(field.model)?.let {
+                        message.pushField(field.resolved(message, it))
+                    }
+                }
+            }
+        }
+
         type.declaredMethods
             .forEach { executable -> message.matchAccessorReflection(this, executable) }
 
@@ -626,6 +679,13 @@ open class ModelTransformer {
         val KOTLIN_METADATA = "kotlin.Metadata"
 
         val JAVA_LANG_STRING = "java.lang.String"
+        val OKIO_BYTE_STRING = "okio.ByteString"
+        val JAVA_MATH_BIG_DECIMAL = "java.math.BigDecimal"
+        val JAVA_TIME_DURATION = "java.time.Duration"
+        val JAVA_UTIL_DATE = "java.util.Date"
+        val JAVA_TIME_LOCAL_DATE = "java.time.LocalDate"
+        val JAVA_TIME_LOCAL_DATE_TIME = "java.time.LocalDateTime"
+        val JAVA_TIME_ZONED_DATE_TIME = "java.time.ZonedDateTime"
         val JAVA_LANG_BOOLEAN = "java.lang.Boolean"
         val JAVA_LANG_INTEGER = "java.lang.Integer"
         val JAVA_LANG_LONG = "java.lang.Long"
@@ -646,6 +706,8 @@ open class ModelTransformer {
         val JAVA_UTIL_SET = "java.util.Set<?>"
         val JAVA_UTIL_SET_UNTYPED = "java.util.Set"
         val JAVA_LANG_ENUM = "java.lang.Enum<?>"
+        val JAVA_LANG_ENUM_UNTYPED = "java.lang.Enum"
+        val RUN_MOJO_WIRE_LAZY = "run.mojo.wire.Lazy"
 
         val BOOL = PrimitiveModel(JavaKind.BOOL)
         val BOOL_BOXED = PrimitiveModel(JavaKind.BOXED_BOOL)
@@ -665,7 +727,14 @@ open class ModelTransformer {
         val DOUBLE_BOXED = PrimitiveModel(JavaKind.BOXED_DOUBLE)
 
         val STRING = StringModel(String::class.java.canonicalName)
-        val BYTE_STRING = StringModel(ByteString::class.java.canonicalName)
+        val BYTE_STRING = BytesModel(ByteString::class.java.canonicalName)
+        val BYTE_ARRAY = BytesModel(BytesModel.BYTE_ARRAY)
+        val BIG_DECIMAL = DecimalModel(BigDecimal::class.java.canonicalName)
+        val DURATION = DurationModel(Duration::class.java.canonicalName)
+        val DATE = DateModel(JavaKind.DATE)
+        val LOCAL_DATE = DateModel(JavaKind.LOCAL_DATE)
+        val LOCAL_DATE_TIME = DateModel(JavaKind.LOCAL_DATE_TIME)
+        val ZONED_DATE = DateModel(JavaKind.ZONED_DATE)
 
         val NOTHING = NothingModel
 
@@ -692,8 +761,10 @@ open class ModelTransformer {
 /**
  * Standardized Type Argument resolver that unifies a single model between reflection and java compiler model.
  */
-class TypeArgResolver(val message: MessageModel, val processor: ModelTransformer) {
-    val typeArgs: List<TypeVarModel> = message.superType!!.typeVars
+class TypeArgResolver(val typeArgs: List<TypeVarModel>, val processor: ModelTransformer) {
+
+    constructor(message: MessageModel, processor: ModelTransformer) :
+            this(message.superType!!.typeVars, processor)
 
     fun resolve(kindMirror: WireModel): WireModel? {
         if (kindMirror is WildcardModel) {
@@ -790,9 +861,11 @@ class TypeArgResolver(val message: MessageModel, val processor: ModelTransformer
         } else if (kindMirror is ListModel) {
             val resolved = resolve(kindMirror.component)
             return ListModel(kindMirror.javaKind, resolved!!)
+        } else if (kindMirror is LazyModel) {
+            return LazyModel(resolve(kindMirror.component)!!)
         } else if (kindMirror is MapModel) {
             val key = resolve(kindMirror.key)
-            val value = resolve(kindMirror.key)
+            val value = resolve(kindMirror.value)
             return MapModel(key!!, value!!)
         } else {
             return kindMirror
@@ -6,6 +6,7 @@ import io.grpc.ServerCallHandler
 import io.grpc.stub.ServerCalls
 import io.grpc.stub.StreamObserver
 import run.mojo.wire.FunctionDescriptor
+import run.mojo.wire.WireProtoAdapter
 import java.io.ByteArrayInputStream
 import java.io.InputStream
 
@@ -38,12 +39,18 @@ class WireMarshaller<T>(val adapter: ProtoAdapter<T>) : MethodDescriptor.Marshal
     }
 
     override fun stream(value: T): InputStream {
-        val encoded = adapter.encode(value)
+        // Generated adapters write straight into an exactly sized array.
+        val encoded = if (adapter is WireProtoAdapter<T>) adapter.encodeToArray(value) else adapter.encode(value)
         local().encodedBytes += encoded.size
         return ByteArrayInputStream(encoded)
     }
 
     override fun parse(stream: InputStream?): T {
+        if (adapter is WireProtoAdapter<T>) {
+            val bytes = stream!!.readBytes()
+            local().decodedBytes += bytes.size
+            return adapter.decode(bytes, 0, bytes.size)
+        }
         return adapter.decode(stream!!)
     }
 }
@@ -4,6 +4,7 @@ import com.squareup.moshi.JsonAdapter
 import com.squareup.wire.ProtoAdapter
 import com.squareup.wire.schema.ProtoType
 import run.mojo.compiler.ModelTransformer
+import run.mojo.wire.FieldMask
 import run.mojo.wire.JavaKind
 
 
@@ -141,7 +142,17 @@ data class MessageDescriptor<T>(
     val flavor: Flavor,
     val adapters: Adapters<T>,
     val validExamples: List<Validator> = emptyList()
-)
+) {
+
+    /** Mask of the named fields, for decoding only those. */
+    fun mask(vararg names: String): FieldMask {
+        val tags = names.map { fieldName ->
+            fieldsByTag.entries.firstOrNull { it.value.name == fieldName }?.key
+                ?: throw IllegalArgumentException("no field '$fieldName' on $name")
+        }
+        return FieldMask.of(*tags.toIntArray())
+    }
+}
 
 /**
  *
@@ -1,8 +1,11 @@
 package run.mojo.model
 
+import com.fasterxml.jackson.annotation.JsonIgnore
+import com.fasterxml.jackson.annotation.JsonProperty
 import com.squareup.javapoet.ClassName
 import com.squareup.javapoet.TypeName
 import run.mojo.wire.JavaKind
+import run.mojo.wire.codec.UnknownFields
 import run.mojo.Wire
 import run.mojo.compiler.ModelTransformer
 import java.beans.ConstructorProperties
@@ -13,6 +16,7 @@ import javax.lang.model.element.Modifier
 import javax.lang.model.type.DeclaredType
 import javax.lang.model.type.TypeKind
 import javax.lang.model.type.TypeMirror
+import kotlin.reflect.jvm.kotlinFunction
 
 /**  */
 enum class NamingConvention {
@@ -66,7 +70,7 @@ data class BuilderField(val field: FieldModel, val setter: AccessorModel) {
 /**  */
 data class ConstructorModel(val type: Any, val fields: List<ConstructorParam>) {
     fun isValid(): Boolean {
-        return fields.filter { !it.isValid() }.count() == fields.size
+        return fields.all { it.isValid() }
     }
 
     companion object {
@@ -84,7 +88,9 @@ data class ConstructorModel(val type: Any, val fields: List<ConstructorParam>) {
 /**  */
 data class ConstructorParam(
     val parameter: Any? = null,
-    val field: FieldModel? = null
+    val field: FieldModel? = null,
+    /** Whether null may be passed, which Kotlin doesn't allow unless the type is marked nullable. */
+    val nullable: Boolean = true
 ) {
     fun isValid() = field != null
 }
@@ -125,20 +131,41 @@ data class MessageModel(
 
     val fields = LinkedHashMap<String, FieldModel>()
     val fieldsByTag = TreeMap<Int, FieldModel>()
+
+    init {
+        // EnclosingModel's own init sees these overrides before they're assigned.
+        enclosing?.let { it.nested[name] = this }
+    }
     val constructors: MutableList<ConstructorModel> = ArrayList(2)
 
     //  public List<ImplModel> impls = Collections.emptyList();
     // Type Variables.
 
     var builder: BuilderModel? = null
+
+    /**
+     * Name of a non-private [UnknownFields] field that keeps fields this message doesn't declare,
+     * or null to drop them.
+     */
+    var unknownFields: String? = null
     var factoryCtor: ConstructorModel? = null
     var emptyCtor: ConstructorModel? = null
     private val nameCounter: Int = 0
 
+    /** Specialized model generated for this fully specified template by the message holding it. */
+    var specialization: ImplModel? = null
+
     override fun toTypeName(boxed: Boolean): TypeName {
         if (typeVars.isEmpty()) {
             return ClassName.bestGuess(name)
         }
+        if (impl) {
+            // Type arguments are concrete, e.g. Records<Integer>.
+            when (declaredType) {
+                is Type -> return TypeName.get(declaredType)
+                is TypeMirror -> return TypeName.get(declaredType)
+            }
+        }
         if (isTemplate) {
             return ClassName.bestGuess(name)
         }
@@ -210,17 +237,18 @@ data class MessageModel(
         var name = "$name.$simpleName"
 
         if (nested.containsKey(name)) {
-            val counter = 1
-            var nextSimpleName = simpleName
+            var counter = 1
+            var nextSimpleName: String
             do {
-                nextSimpleName = simpleName + Integer.toString(counter)
-                name = "$name.$nextSimpleName"
+                nextSimpleName = simpleName + Integer.toString(counter++)
+                name = "${this.name}.$nextSimpleName"
             } while (nested.containsKey(name))
 
             simpleName = nextSimpleName
         }
 
         val implModel = ImplModel(this, message, packageName, name, simpleName)
+        message.specialization = implModel
 
         nested[name] = implModel
 
@@ -230,9 +258,18 @@ data class MessageModel(
     fun registerField(processor: ModelTransformer, typeModel: Any): FieldModel? {
         val field = FieldBuilder(this, this)
         if (typeModel is VariableElement) {
+            if (typeModel.asType().toString() == UnknownFields::class.java.name) {
+                return registerUnknownFields(
+                    typeModel.simpleName.toString(),
+                    !typeModel.modifiers.contains(Modifier.PRIVATE) &&
+                            !typeModel.modifiers.contains(Modifier.FINAL)
+                )
+            }
             field.name = typeModel.simpleName.toString()
             field.type = typeModel.asType()
             field.wire = typeModel.getAnnotation(Wire::class.java)
+            field.jsonName = typeModel.getAnnotation(JsonProperty::class.java)?.value ?: ""
+            field.jsonIgnore = typeModel.getAnnotation(JsonIgnore::class.java)?.value ?: false
             // Get WireSpec.
             field.model = processor.register(field.type!!)
             if (field.model == null) {
@@ -267,12 +304,21 @@ data class MessageModel(
                 }
             }
         } else if (typeModel is Field) {
+            if (typeModel.type == UnknownFields::class.java) {
+                return registerUnknownFields(
+                    typeModel.name,
+                    !java.lang.reflect.Modifier.isPrivate(typeModel.modifiers) &&
+                            !java.lang.reflect.Modifier.isFinal(typeModel.modifiers)
+                )
+            }
             field.name = typeModel.name
             field.type = typeModel.genericType
             if (field.type == null) {
                 field.type = typeModel.type
             }
             field.wire = typeModel.getAnnotation(Wire::class.java)
+            field.jsonName = typeModel.getAnnotation(JsonProperty::class.java)?.value ?: ""
+            field.jsonIgnore = typeModel.getAnnotation(JsonIgnore::class.java)?.value ?: false
             field.model = processor.register(field.type!!)
             field.isPublic = java.lang.reflect.Modifier.isPublic(typeModel.modifiers)
             field.isPackagePrivate = field.isPublic || !java.lang.reflect.Modifier.isPrivate(typeModel.modifiers) &&
@@ -324,6 +370,16 @@ data class MessageModel(
         return f
     }
 
+    /** Takes [name] as the [unknownFields] field. It isn't a proto field, so null is returned. */
+    private fun registerUnknownFields(name: String, assignable: Boolean): FieldModel? {
+        if (!assignable) {
+            System.err.println("${this.name}.$name must be non-private and non-final to keep unknown fields")
+        } else {
+            unknownFields = name
+        }
+        return null
+    }
+
     fun matchAccessorReflection(processor: ModelTransformer, executable: Method) {
         if (executable.parameterCount == 0) {
             getterCandidate(
@@ -412,6 +468,10 @@ data class MessageModel(
     protected fun registerFactory(factory: ConstructorModel) {
         if (factory.isValid()) {
             constructors.add(factory)
+            // The first constructor that takes every field can build the message by itself.
+            if (factoryCtor == null && factory.fields.size == fields.size) {
+                factoryCtor = factory
+            }
         }
     }
 
@@ -422,11 +482,19 @@ data class MessageModel(
         }
 
         ctor.getAnnotation(ConstructorProperties::class.java)?.let {
-            return ConstructorModel(
+            val factory = ConstructorModel(
                 ctor,
                 it.value
-                    .map { propName -> ConstructorParam(fields[propName]) }
+                    .mapIndexed { i, propName ->
+                        ConstructorParam(
+                            parameter = ctor.parameters[i],
+                            field = fields[propName],
+                            nullable = isNullable(ctor, i)
+                        )
+                    }
                     .toList())
+            registerFactory(factory)
+            return factory
         }
 
         // Only proceed if this is a candidate to cover all fields.
@@ -444,20 +512,14 @@ data class MessageModel(
 
             // Map to field at same index if types match.
             val parameterType = parameter.parameterizedType
-            if (parameterType == field.type) {
-                ctorFields.add(ConstructorParam(field))
-                continue
-            }
-
-            val ptypeName = parameterType.toString()
-            val typeName = field.type.toString()
-
             if (parameterType == field.type || parameterType.toString() == field.type.toString()) {
-                ctorFields.add(ConstructorParam(field))
+                ctorFields.add(
+                    ConstructorParam(parameter = parameter, field = field, nullable = isNullable(ctor, i))
+                )
                 continue
             }
 
-            ctorFields.add(ConstructorParam(null))
+            ctorFields.add(ConstructorParam(parameter = parameter))
         }
 
         val factory = ConstructorModel(ctor, ctorFields)
@@ -465,10 +527,23 @@ data class MessageModel(
         return factory
     }
 
+    /** Whether [ctor] takes null for parameter [i]. Only a Kotlin class can say it doesn't. */
+    private fun isNullable(ctor: Constructor<*>, i: Int): Boolean {
+        if (!kot) {
+            return true
+        }
+        return ctor.kotlinFunction?.parameters?.getOrNull(i)?.type?.isMarkedNullable ?: true
+    }
+
     ////////////////////////////////////////////////////////////////////////////////////////////////
     // Model
     ////////////////////////////////////////////////////////////////////////////////////////////////
 
+    /** Same as the reflection overload, read from the @Nullable kapt puts on Kotlin parameters. */
+    private fun isNullable(parameter: VariableElement): Boolean {
+        return !kot || parameter.annotationMirrors.any { it.annotationType.toString() == JETBRAINS_NULLABLE }
+    }
+
     fun registerCtor(ctor: ExecutableElement): ConstructorModel? {
         if (ctor.parameters == null || ctor.parameters.size == 0) {
             emptyCtor = ConstructorModel(ctor, emptyList())
@@ -477,11 +552,19 @@ data class MessageModel(
 
         // Handle constructor properties.
         ctor.getAnnotation(ConstructorProperties::class.java)?.let {
-            return ConstructorModel(
+            val factory = ConstructorModel(
                 ctor,
                 it.value
-                    .map { propName -> ConstructorParam(fields[propName]) }
+                    .mapIndexed { i, propName ->
+                        ConstructorParam(
+                            parameter = ctor.parameters[i],
+                            field = fields[propName],
+                            nullable = isNullable(ctor.parameters[i])
+                        )
+                    }
                     .toList())
+            registerFactory(factory)
+            return factory
         }
 
         if (ctor.parameters.size == fields.size) {
@@ -496,7 +579,9 @@ data class MessageModel(
                 // Map to field at same index if types match.
                 val parameterType = parameter.asType()
                 if (parameterType == field.type) {
-                    ctorFields.add(ConstructorParam(field))
+                    ctorFields.add(
+                        ConstructorParam(parameter = parameter, field = field, nullable = isNullable(parameter))
+                    )
                     continue
                 }
 
@@ -504,12 +589,14 @@ data class MessageModel(
                 val ptypeName = parameterType.toString()
                 val typeName = field.type.toString()
                 if (ptypeName == typeName) {
-                    ctorFields.add(ConstructorParam(field))
+                    ctorFields.add(
+                        ConstructorParam(parameter = parameter, field = field, nullable = isNullable(parameter))
+                    )
                     continue
                 }
 
                 // We have a miss.
-                ctorFields.add(ConstructorParam(null))
+                ctorFields.add(ConstructorParam(parameter = parameter))
             }
 
             val factory = ConstructorModel(ctor, ctorFields)
@@ -533,6 +620,9 @@ data class MessageModel(
     }
 
     companion object {
+        private const val KOTLIN_METADATA = "kotlin.Metadata"
+        private const val JETBRAINS_NULLABLE = "org.jetbrains.annotations.Nullable"
+
         fun ofElement(
             enclosing: EnclosingModel?,
             packageName: String,
@@ -595,7 +685,7 @@ data class MessageModel(
                 template,
                 impl,
                 wire,
-                false,
+                cls.declaredAnnotations.any { it.annotationClass.java.name == KOTLIN_METADATA },
                 false,
                 false,
                 false,
@@ -640,6 +730,9 @@ data class FieldModel(
     // The name used within Json.
     val jsonName: String,
 
+    // Left out of Json.
+    val jsonIgnore: Boolean = false,
+
     // The javaType of data. Used the word javaType instead of Type to prevent the overuse of that
     // word.
     val model: WireModel,
@@ -679,6 +772,7 @@ data class FieldModel(
 class FieldBuilder(val parent:MessageModel, val declared: MessageModel) {
     var name: String = ""
     var jsonName: String = ""
+    var jsonIgnore: Boolean = false
     var model: WireModel? = null
     var type: Any? = null
     var tag: Int = -1
@@ -700,7 +794,8 @@ class FieldBuilder(val parent:MessageModel, val declared: MessageModel) {
             parent = parent,
             declared = declared,
             name = name,
-            jsonName = jsonName,
+            jsonName = if (jsonName.isEmpty()) name else jsonName,
+            jsonIgnore = jsonIgnore,
             model = model!!,
             type = type,
             tag = tag,
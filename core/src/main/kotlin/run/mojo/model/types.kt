@@ -6,8 +6,10 @@ import com.squareup.javapoet.ClassName
 import com.squareup.javapoet.ParameterizedTypeName
 import com.squareup.javapoet.TypeName
 import com.squareup.wire.schema.ProtoType
+import okio.ByteString
 import run.mojo.wire.FlatKind
 import run.mojo.wire.JavaKind
+import run.mojo.wire.Lazy
 import java.util.*
 import javax.lang.model.element.PackageElement
 import javax.lang.model.element.TypeElement
@@ -153,7 +155,7 @@ abstract class WireModel constructor(open val javaKind: JavaKind, open val proto
         get() = false
 
     open fun toTypeName(boxed: Boolean): TypeName {
-        return ClassName.get(javaKind.asClass(true))
+        return TypeName.get(javaKind.asClass(boxed))
     }
 }
 
@@ -214,19 +216,73 @@ data class StringModel(var type: Any) : WireModel(JavaKind.STRING, ProtoType.STR
 }
 
 
-/**  */
+/** Bytes held in an [okio.ByteString], or in a byte[] when [type] is [BYTE_ARRAY]. */
 data class BytesModel(var type: Any) : WireModel(JavaKind.BYTES, ProtoType.BYTES) {
 
+    val isByteArray: Boolean
+        get() = type == BYTE_ARRAY
+
+    override fun toTypeName(boxed: Boolean): TypeName {
+        return if (isByteArray) ArrayTypeName.of(TypeName.BYTE) else ClassName.get(ByteString::class.java)
+    }
+
+    override fun toString(): String {
+        return javaKind.name
+    }
+
+    companion object {
+        const val BYTE_ARRAY = "byte[]"
+    }
+}
+
+/** [java.math.BigDecimal], written as a run.mojo.wire.Decimal message by [run.mojo.wire.codec.Decimals]. */
+data class DecimalModel(var type: Any) : WireModel(
+    JavaKind.BIG_DECIMAL, ProtoType.get("run.mojo.wire.Decimal")
+) {
+
+    override fun toString(): String {
+        return javaKind.name
+    }
+}
+
+/** [java.time.Duration], written as a run.mojo.wire.Duration message by [run.mojo.wire.codec.Durations]. */
+data class DurationModel(var type: Any) : WireModel(
+    JavaKind.DURATION, ProtoType.get("run.mojo.wire.Duration")
+) {
+
+    override fun toString(): String {
+        return javaKind.name
+    }
+}
+
+/**
+ * [java.util.Date], [java.time.LocalDate], [java.time.LocalDateTime] or [java.time.ZonedDateTime],
+ * written as epoch numbers by [run.mojo.wire.codec.Dates] and its siblings rather than as text.
+ */
+data class DateModel(val kind: JavaKind) : WireModel(kind, protoTypeOf(kind)) {
+
     override fun toString(): String {
         return javaKind.name
     }
+
+    companion object {
+
+        private fun protoTypeOf(kind: JavaKind): ProtoType {
+            return when (kind) {
+                JavaKind.DATE, JavaKind.LOCAL_DATE -> ProtoType.SINT64
+                JavaKind.LOCAL_DATE_TIME -> ProtoType.get("run.mojo.wire.Timestamp")
+                JavaKind.ZONED_DATE -> ProtoType.get("run.mojo.wire.ZonedTimestamp")
+                else -> throw IllegalArgumentException("Not a date: $kind")
+            }
+        }
+    }
 }
 
 /**  */
 data class ListModel(
-    override val javaKind: JavaKind,
+    val listKind: JavaKind,
     val component: WireModel
-) : WireModel(javaKind, component.protoType) {
+) : WireModel(listKind, component.protoType) {
 
     override val isList: Boolean
         get() = true
@@ -239,7 +295,7 @@ data class ListModel(
 
     override fun toTypeName(boxed: Boolean): TypeName {
         return when (javaKind) {
-            JavaKind.ARRAY -> ArrayTypeName.of(component.toTypeName(true))
+            JavaKind.ARRAY -> ArrayTypeName.of(component.toTypeName(false))
 
             JavaKind.LIST -> ParameterizedTypeName.get(
                 ClassName.get(List::class.java),
@@ -264,6 +320,25 @@ data class ListModel(
     }
 }
 
+/** Nested message held as a [run.mojo.wire.Lazy] and only decoded on first access. */
+data class LazyModel(val component: WireModel) : WireModel(JavaKind.LAZY, component.protoType) {
+
+    override val isTemplate: Boolean
+        get() = component.isTemplate
+
+    override fun toTypeName(boxed: Boolean): TypeName {
+        return ParameterizedTypeName.get(LAZY, component.toTypeName(true))
+    }
+
+    override fun toString(): String {
+        return javaKind.toString() + "<" + component.toString() + ">"
+    }
+
+    companion object {
+        private val LAZY = ClassName.get(Lazy::class.java)
+    }
+}
+
 /**  */
 data class MapModel(val key: WireModel, val value: WireModel) : WireModel(
     JavaKind.MAP, ProtoType.get(
@@ -313,6 +388,10 @@ data class EnumModel(
     override val isEnum: Boolean
         get() = true
 
+    override fun toTypeName(boxed: Boolean): TypeName {
+        return ClassName.bestGuess(name)
+    }
+
     override fun toString(): String {
         return javaKind.toString() + "<" + name + ">"
     }
@@ -1,66 +1,131 @@
 package run.mojo.wire
 
 import com.squareup.wire.ProtoAdapter
-
+import run.mojo.wire.type.MessageDesc
+import run.mojo.wire.type.ReflectionSchema
+import run.mojo.wire.type.RuntimeAdapter
+import java.util.ServiceConfigurationError
+import java.util.ServiceLoader
 import java.util.function.Function
+import java.util.stream.Stream
 
-/**  */
+/**
+ * Proto adapters by class. Each class is looked up once, through the [AdapterIndex]es the
+ * processor wrote, its generated adapter and then a [RuntimeAdapter] built from its schema, and
+ * the outcome is kept with the class in a [ClassValue], failures included, so lookups after the
+ * first take no lock.
+ */
 @Suppress("UNCHECKED_CAST")
 object AdapterRepo {
-    private val protoProviders = mutableListOf(
-        GeneratedProvider() as Function<Class<*>, ProtoAdapter<*>>
+    // As Assembler names the generated class and its adapter.
+    private const val WIRE_PREFIX = "Wire_"
+    private const val PROTO_FIELD = "PROTO"
+
+    private val protoProviders: List<Function<Class<*>, ProtoAdapter<*>?>> = listOf(
+        IndexProvider(),
+        GeneratedProvider(),
+        RuntimeProvider()
     )
 
-    private val protoCache = mutableMapOf<String, ProtoAdapter<*>>()
+    private val protoCache = object : ClassValue<Lookup>() {
+        override fun computeValue(type: Class<*>): Lookup = lookup(type)
+    }
 
-    @Synchronized
-    fun <T> proto(cls: Class<T>): ProtoAdapter<T>? {
-        protoCache[cls.canonicalName].apply {
-            return@proto this as ProtoAdapter<T>
-        }
-        protoProviders.forEach {
-            it.apply(cls).apply {
-                return@proto it as ProtoAdapter<T>
-            }
-        }
-        return null
+    /** Adapter for [cls], or an [IllegalArgumentException] saying why there's none. */
+    fun <T> proto(cls: Class<T>): ProtoAdapter<T> {
+        val lookup = protoCache.get(cls)
+        return lookup.adapter as ProtoAdapter<T>? ?: throw IllegalArgumentException(
+            "no proto adapter for ${cls.name}", lookup.failure
+        )
     }
 
-    private fun enclosing(cls: Class<*>): String? {
-        if (cls.enclosingClass == null) {
-            return null
-        } else {
-            val enclosing = enclosing(cls)
-            if (enclosing != null) {
-                return enclosing + "." + cls.simpleName
-            } else {
-                return cls.simpleName
+    /** Adapter for [cls], or null if there's none. */
+    fun <T> protoOrNull(cls: Class<T>): ProtoAdapter<T>? {
+        return protoCache.get(cls).adapter as ProtoAdapter<T>?
+    }
+
+    private fun lookup(cls: Class<*>): Lookup {
+        var failure: Throwable? = null
+        for (provider in protoProviders) {
+            try {
+                val adapter = provider.apply(cls)
+                if (adapter != null) {
+                    return Lookup(adapter, null)
+                }
+            } catch (e: Throwable) {
+                if (failure == null) {
+                    failure = e
+                } else {
+                    failure.addSuppressed(e)
+                }
             }
         }
+        return Lookup(null, failure)
     }
 
+    /** Binary name of the generated Wire_ class holding [cls]'s adapter, e.g. a.Wire_Outer$Inner. */
     private fun generatedOuter(cls: Class<*>): String {
-        val pkg = cls.`package`.name
-        val enclosing = enclosing(cls)
-        return pkg + "Wire_" + enclosing
+        val name = cls.name
+        val dot = name.lastIndexOf('.')
+        return name.substring(0, dot + 1) + WIRE_PREFIX + name.substring(dot + 1)
     }
 
-    private class GeneratedProvider : Function<Class<*>, ProtoAdapter<*>?> {
+    /** The outcome of looking a class up: its adapter, or why it has none. */
+    private class Lookup(val adapter: ProtoAdapter<*>?, val failure: Throwable?)
+
+    /**
+     * Asks the indexes visible to the context class loader. Classes of other loaders, or compiled
+     * without the processor, fall through to [GeneratedProvider].
+     */
+    private class IndexProvider : Function<Class<*>, ProtoAdapter<*>?> {
+        private val indexes: List<AdapterIndex> by lazy { load() }
+
         override fun apply(t: Class<*>): ProtoAdapter<*>? {
-            val outerName = generatedOuter(t)
-            try {
-                val outer = Class.forName(outerName) ?: return null
-                val protoField = outer.getDeclaredField("PROTO") ?: return null
-                val result = protoField.get(outer)
-                if (result !is ProtoAdapter<*>) {
-                    return null
-                } else {
-                    return result
+            for (index in indexes) {
+                index.proto(t)?.let { return it }
+            }
+            return null
+        }
+
+        private fun load(): List<AdapterIndex> {
+            val loader = Thread.currentThread().contextClassLoader ?: AdapterRepo::class.java.classLoader
+            val indexes = ArrayList<AdapterIndex>()
+            val it = ServiceLoader.load(AdapterIndex::class.java, loader).iterator()
+            while (true) {
+                try {
+                    if (!it.hasNext()) {
+                        return indexes
+                    }
+                    indexes.add(it.next())
+                } catch (e: ServiceConfigurationError) {
+                    // A stale entry; its classes are still found by name.
                 }
-            } catch (e: Throwable) {
+            }
+        }
+    }
+
+    /** Reads the PROTO field of the class Assembler generated. */
+    private class GeneratedProvider : Function<Class<*>, ProtoAdapter<*>?> {
+        override fun apply(t: Class<*>): ProtoAdapter<*>? {
+            val outer = try {
+                Class.forName(generatedOuter(t), true, t.classLoader)
+            } catch (e: ClassNotFoundException) {
                 return null
             }
+            return outer.getField(PROTO_FIELD).get(null) as? ProtoAdapter<*>
         }
     }
-}
 
+    /** Builds a [RuntimeAdapter] from the class's schema. */
+    private class RuntimeProvider : Function<Class<*>, ProtoAdapter<*>?> {
+        // Registering isn't thread-safe, and only happens once per class.
+        private val schema = ReflectionSchema.create(Stream.empty<Any>(), null, null, null, null)
+
+        override fun apply(t: Class<*>): ProtoAdapter<*>? {
+            synchronized(schema) {
+                val desc = schema.registerType(t) as? MessageDesc ?: return null
+                return RuntimeAdapter.of<Any>(desc)
+            }
+        }
+    }
+}
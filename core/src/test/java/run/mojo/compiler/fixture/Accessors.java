@@ -0,0 +1,47 @@
+package run.mojo.compiler.fixture;
+
+/** Fields reached through bean and fluent accessors, for matching them up by reflection. */
+public class Accessors {
+  // Both a bean and a fluent getter.
+  private String name;
+  private boolean active;
+  // Only fluent accessors.
+  private String label;
+  private int size;
+  // Its getter's name is also the name of the next field.
+  private String value;
+  private String getValue;
+
+  public String getName() {
+    return name;
+  }
+
+  public String name() {
+    return name;
+  }
+
+  public void setName(String name) {
+    this.name = name;
+  }
+
+  public boolean isActive() {
+    return active;
+  }
+
+  public void setActive(boolean active) {
+    this.active = active;
+  }
+
+  public String label() {
+    return label;
+  }
+
+  public Accessors size(int size) {
+    this.size = size;
+    return this;
+  }
+
+  public String getValue() {
+    return value;
+  }
+}
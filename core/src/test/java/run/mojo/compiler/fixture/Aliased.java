@@ -0,0 +1,16 @@
+package run.mojo.compiler.fixture;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+/** Fields renamed in JSON or left out of it. */
+public class Aliased {
+  @JsonProperty("full_name")
+  public String name;
+
+  @JsonIgnore
+  public String secret;
+
+  @JsonProperty("say \"é\"")
+  public int count;
+}
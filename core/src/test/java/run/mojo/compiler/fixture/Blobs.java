@@ -0,0 +1,12 @@
+package run.mojo.compiler.fixture;
+
+import java.util.List;
+import okio.ByteString;
+
+/** Bytes held as ByteStrings and byte arrays. */
+public class Blobs {
+  public ByteString data;
+  public byte[] raw;
+  public List<ByteString> chunks;
+  public byte[][] rows;
+}
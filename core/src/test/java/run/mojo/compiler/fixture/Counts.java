@@ -0,0 +1,10 @@
+package run.mojo.compiler.fixture;
+
+import java.util.Map;
+
+/** Maps keyed by boxed scalars. */
+public class Counts {
+  public Map<Integer, String> names;
+  public Map<Long, Integer> totals;
+  public Map<String, Point> points;
+}
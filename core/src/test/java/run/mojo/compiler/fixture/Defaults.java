@@ -0,0 +1,13 @@
+package run.mojo.compiler.fixture;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/** Fields with initializers, which decoding leaves in place when they are missing. */
+public class Defaults {
+  public String name = "none";
+  public Integer limit = 10;
+  public List<String> tags;
+  public List<String> notes = new ArrayList<>();
+  public Point origin = new Point(1, 1);
+}
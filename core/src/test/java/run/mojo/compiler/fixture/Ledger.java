@@ -0,0 +1,7 @@
+package run.mojo.compiler.fixture;
+
+/** Holds a template with its type argument set. */
+public class Ledger {
+  public String owner;
+  public Records<Point> points;
+}
@@ -0,0 +1,26 @@
+package run.mojo.compiler.fixture;
+
+/** An immutable message that can only be built through its constructor. */
+public class Money {
+  public final String currency;
+  public final long amount;
+
+  public Money(String currency, long amount) {
+    this.currency = currency;
+    this.amount = amount;
+  }
+
+  @Override
+  public boolean equals(Object o) {
+    if (!(o instanceof Money)) {
+      return false;
+    }
+    final Money other = (Money) o;
+    return amount == other.amount && currency.equals(other.currency);
+  }
+
+  @Override
+  public int hashCode() {
+    return 31 * currency.hashCode() + (int) amount;
+  }
+}
@@ -0,0 +1,12 @@
+package run.mojo.compiler.fixture;
+
+import run.mojo.wire.Lazy;
+
+import java.util.List;
+
+/** Nested messages that are only decoded when read. */
+public class Outline {
+  public String title;
+  public Lazy<Point> origin;
+  public List<Lazy<Point>> points;
+}
@@ -0,0 +1,17 @@
+package run.mojo.compiler.fixture;
+
+import run.mojo.Wire;
+
+/** Primitive arrays, written as packed runs. */
+public class Packed {
+  public int[] counts;
+
+  @Wire(pack = Wire.Pack.SIGNED)
+  public int[] deltas;
+
+  @Wire(pack = Wire.Pack.FIXED)
+  public long[] stamps;
+
+  public float[] weights;
+  public double[] scores;
+}
@@ -0,0 +1,15 @@
+package run.mojo.compiler.fixture;
+
+import run.mojo.Wire;
+import run.mojo.wire.codec.UnknownFields;
+
+/** Two of the fields of {@link Scalars}, keeping the rest as unknown fields. */
+public class Partial {
+  @Wire(tag = 5)
+  public int count;
+
+  @Wire(tag = 17)
+  public String name;
+
+  public UnknownFields unknown;
+}
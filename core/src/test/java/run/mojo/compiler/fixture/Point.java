@@ -0,0 +1,33 @@
+package run.mojo.compiler.fixture;
+
+/** A message nested in others. */
+public class Point {
+  public int x;
+  public int y;
+
+  public Point() {}
+
+  public Point(int x, int y) {
+    this.x = x;
+    this.y = y;
+  }
+
+  @Override
+  public boolean equals(Object o) {
+    if (!(o instanceof Point)) {
+      return false;
+    }
+    final Point other = (Point) o;
+    return x == other.x && y == other.y;
+  }
+
+  @Override
+  public int hashCode() {
+    return 31 * x + y;
+  }
+
+  @Override
+  public String toString() {
+    return "Point(" + x + ", " + y + ")";
+  }
+}
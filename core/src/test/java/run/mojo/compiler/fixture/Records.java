@@ -0,0 +1,9 @@
+package run.mojo.compiler.fixture;
+
+import java.util.List;
+
+/** A template, generated only for the type arguments it's held with. */
+public class Records<T> {
+  public List<T> items;
+  public T last;
+}
@@ -0,0 +1,37 @@
+package run.mojo.compiler.fixture;
+
+import java.util.List;
+import java.util.Set;
+
+/** Every scalar kind, boxed and not, plus strings, enums, nested messages and collections. */
+public class Scalars {
+  public boolean flag;
+  public byte tiny;
+  public short small;
+  public char letter;
+  public int count;
+  public long total;
+  public float ratio;
+  public double score;
+  public Boolean boxedFlag;
+  public Byte boxedTiny;
+  public Short boxedSmall;
+  public Character boxedLetter;
+  public Integer boxedCount;
+  public Long boxedTotal;
+  public Float boxedRatio;
+  public Double boxedScore;
+  public String name;
+  public Color color;
+  public Point origin;
+  public List<String> tags;
+  public Set<Integer> ids;
+  public List<Point> points;
+  public List<Short> steps;
+
+  public enum Color {
+    RED,
+    GREEN,
+    BLUE
+  }
+}
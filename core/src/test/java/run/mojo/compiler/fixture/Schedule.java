@@ -0,0 +1,16 @@
+package run.mojo.compiler.fixture;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZonedDateTime;
+import java.util.Date;
+import java.util.List;
+
+/** Every date and time kind, with zoned values sharing zones. */
+public class Schedule {
+  public Date created;
+  public LocalDate day;
+  public LocalDateTime at;
+  public ZonedDateTime start;
+  public List<ZonedDateTime> stops;
+}
@@ -0,0 +1,17 @@
+package run.mojo.compiler.fixture;
+
+import run.mojo.Wire;
+
+import java.util.List;
+
+/** Strings whose few values are shared between the messages decoded. */
+public class Status {
+  @Wire(tag = 1, intern = true)
+  public String code;
+
+  @Wire(tag = 2, intern = true)
+  public List<String> flags;
+
+  @Wire(tag = 3)
+  public String text;
+}
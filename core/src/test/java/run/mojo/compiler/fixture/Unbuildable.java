@@ -0,0 +1,10 @@
+package run.mojo.compiler.fixture;
+
+/** A message no decoder can construct: its only constructor doesn't take its fields. */
+public class Unbuildable {
+  public final int x;
+
+  public Unbuildable(String x) {
+    this.x = Integer.parseInt(x);
+  }
+}
@@ -0,0 +1,718 @@
+package run.mojo.compiler
+
+import com.squareup.wire.FieldEncoding
+import com.squareup.wire.ProtoAdapter
+import com.squareup.wire.ProtoWriter
+import okio.Buffer
+import okio.ByteString
+import okio.ByteString.Companion.encodeUtf8
+import org.junit.Assert
+import org.junit.Test
+import run.mojo.builder.MessageBuilder
+import run.mojo.compiler.fixture.Account
+import run.mojo.compiler.fixture.Aliased
+import run.mojo.compiler.fixture.Blobs
+import run.mojo.compiler.fixture.Counts
+import run.mojo.compiler.fixture.Defaults
+import run.mojo.compiler.fixture.Ledger
+import run.mojo.compiler.fixture.Money
+import run.mojo.compiler.fixture.Outline
+import run.mojo.compiler.fixture.Packed
+import run.mojo.compiler.fixture.Partial
+import run.mojo.compiler.fixture.Point
+import run.mojo.compiler.fixture.Records
+import run.mojo.compiler.fixture.Scalars
+import run.mojo.compiler.fixture.Status
+import run.mojo.compiler.fixture.Schedule
+import run.mojo.compiler.fixture.Unbuildable
+import run.mojo.wire.FieldMask
+import run.mojo.wire.Lazy
+import java.nio.ByteBuffer
+import java.time.LocalDate
+import java.time.LocalDateTime
+import java.time.ZoneId
+import java.time.ZonedDateTime
+import java.util.Date
+
+class AssemblerTest {
+    companion object {
+        private val generated by lazy {
+            Generated(
+                Scalars::class.java,
+                Counts::class.java,
+                Blobs::class.java,
+                Packed::class.java,
+                Money::class.java,
+                Records::class.java,
+                Ledger::class.java,
+                Defaults::class.java,
+                Partial::class.java,
+                Schedule::class.java,
+                Outline::class.java,
+                Aliased::class.java,
+                Account::class.java,
+                Status::class.java
+            )
+        }
+    }
+
+    private fun scalars(): Scalars {
+        val value = Scalars()
+        value.flag = true
+        value.tiny = -3
+        value.small = 300
+        value.letter = 'w'
+        value.count = -150
+        value.total = 1L shl 40
+        value.ratio = 0.5f
+        value.score = -2.25
+        value.boxedTiny = 7
+        value.boxedSmall = -2
+        value.boxedLetter = 'z'
+        value.boxedCount = 1 shl 20
+        value.name = "wire"
+        value.color = Scalars.Color.BLUE
+        value.origin = Point(1, -1)
+        value.tags = listOf("a", "", "b")
+        value.ids = linkedSetOf(3, 1, 2)
+        value.points = listOf(Point(2, 3), Point())
+        value.steps = listOf(4, -4)
+        return value
+    }
+
+    /** What Wire's own adapters write for [scalars], field by field. */
+    private fun expected(): ByteArray {
+        val buffer = Buffer()
+        val writer = ProtoWriter(buffer)
+        ProtoAdapter.BOOL.encodeWithTag(writer, 1, true)
+        ProtoAdapter.INT32.encodeWithTag(writer, 2, -3)
+        ProtoAdapter.INT32.encodeWithTag(writer, 3, 300)
+        ProtoAdapter.INT32.encodeWithTag(writer, 4, 'w'.toInt())
+        ProtoAdapter.INT32.encodeWithTag(writer, 5, -150)
+        ProtoAdapter.INT64.encodeWithTag(writer, 6, 1L shl 40)
+        ProtoAdapter.FLOAT.encodeWithTag(writer, 7, 0.5f)
+        ProtoAdapter.DOUBLE.encodeWithTag(writer, 8, -2.25)
+        ProtoAdapter.INT32.encodeWithTag(writer, 10, 7)
+        ProtoAdapter.INT32.encodeWithTag(writer, 11, -2)
+        ProtoAdapter.INT32.encodeWithTag(writer, 12, 'z'.toInt())
+        ProtoAdapter.INT32.encodeWithTag(writer, 13, 1 shl 20)
+        ProtoAdapter.STRING.encodeWithTag(writer, 17, "wire")
+        // Enum values are tagged from 1.
+        ProtoAdapter.INT32.encodeWithTag(writer, 18, 3)
+        writePoint(writer, 19, 1, -1)
+        listOf("a", "", "b").forEach { ProtoAdapter.STRING.encodeWithTag(writer, 20, it) }
+        listOf(3, 1, 2).forEach { ProtoAdapter.INT32.encodeWithTag(writer, 21, it) }
+        writePoint(writer, 22, 2, 3)
+        writePoint(writer, 22, 0, 0)
+        listOf(4, -4).forEach { ProtoAdapter.INT32.encodeWithTag(writer, 23, it) }
+        return buffer.readByteArray()
+    }
+
+    private fun writePoint(writer: ProtoWriter, tag: Int, x: Int, y: Int) {
+        val point = Buffer()
+        val pointWriter = ProtoWriter(point)
+        ProtoAdapter.INT32.encodeWithTag(pointWriter, 1, x)
+        ProtoAdapter.INT32.encodeWithTag(pointWriter, 2, y)
+        writer.writeTag(tag, FieldEncoding.LENGTH_DELIMITED)
+        writer.writeVarint32(point.size.toInt())
+        writer.writeBytes(point.readByteString())
+    }
+
+    @Test
+    fun writesWhatWireWrites() {
+        val proto = generated.proto(Scalars::class.java)
+        val expected = expected()
+        Assert.assertArrayEquals(expected, proto.encode(scalars()))
+        Assert.assertArrayEquals(expected, proto.encodeToArray(scalars()))
+        Assert.assertEquals(expected.size, proto.encodedSize(scalars()))
+    }
+
+    @Test
+    fun readsWhatWireWrites() {
+        val proto = generated.proto(Scalars::class.java)
+        val expected = scalars()
+        for (value in listOf(proto.decode(expected()), proto.decode(expected(), 0, expected().size))) {
+            Assert.assertEquals(expected.flag, value.flag)
+            Assert.assertEquals(expected.tiny, value.tiny)
+            Assert.assertEquals(expected.small, value.small)
+            Assert.assertEquals(expected.letter, value.letter)
+            Assert.assertEquals(expected.count, value.count)
+            Assert.assertEquals(expected.total, value.total)
+            Assert.assertEquals(expected.ratio, value.ratio, 0f)
+            Assert.assertEquals(expected.score, value.score, 0.0)
+            Assert.assertNull(value.boxedFlag)
+            Assert.assertEquals(expected.boxedTiny, value.boxedTiny)
+            Assert.assertEquals(expected.boxedSmall, value.boxedSmall)
+            Assert.assertEquals(expected.boxedLetter, value.boxedLetter)
+            Assert.assertEquals(expected.boxedCount, value.boxedCount)
+            Assert.assertNull(value.boxedTotal)
+            Assert.assertEquals(expected.name, value.name)
+            Assert.assertEquals(expected.color, value.color)
+            Assert.assertEquals(expected.origin, value.origin)
+            Assert.assertEquals(expected.tags, value.tags)
+            Assert.assertEquals(expected.ids, value.ids)
+            Assert.assertEquals(expected.points, value.points)
+            Assert.assertEquals(expected.steps, value.steps)
+        }
+    }
+
+    @Test
+    fun maskedDecodeSkipsOtherFields() {
+        val proto = generated.proto(Scalars::class.java)
+        val value = proto.decode(expected(), FieldMask.of(5, 17, 22))
+        Assert.assertEquals(-150, value.count)
+        Assert.assertEquals("wire", value.name)
+        Assert.assertEquals(listOf(Point(2, 3), Point()), value.points)
+        Assert.assertFalse(value.flag)
+        Assert.assertEquals(0L, value.total)
+        Assert.assertNull(value.boxedTiny)
+        Assert.assertNull(value.color)
+        Assert.assertNull(value.origin)
+        Assert.assertNull(value.tags)
+    }
+
+    @Test
+    fun unknownFieldsAreKeptAndWrittenBack() {
+        val partial = generated.proto(Partial::class.java)
+        val scalars = generated.proto(Scalars::class.java)
+        val bytes = expected()
+        val declared = Partial()
+        declared.count = -150
+        declared.name = "wire"
+        val declaredSize = partial.encode(declared).size
+        val direct = ByteBuffer.allocateDirect(bytes.size)
+        direct.put(bytes).flip()
+        // Wire's ProtoReader, a WireReader over the array and one over native memory.
+        for (value in listOf(
+            partial.decode(bytes),
+            partial.decode(bytes, 0, bytes.size),
+            partial.decode(direct)
+        )) {
+            Assert.assertEquals(-150, value.count)
+            Assert.assertEquals("wire", value.name)
+            Assert.assertEquals(bytes.size - declaredSize, value.unknown.size())
+
+            // Declared fields are written first, so the order is only restored by Scalars.
+            Assert.assertEquals(bytes.size, partial.encodedSize(value))
+            val written = partial.encodeToArray(value)
+            Assert.assertArrayEquals(written, partial.encode(value))
+            Assert.assertArrayEquals(bytes, scalars.encode(scalars.decode(written)))
+        }
+    }
+
+    @Test
+    fun decodeIntoReusesUnknownFields() {
+        val partial = generated.proto(Partial::class.java)
+        val target = partial.decode(expected())
+        val unknown = target.unknown
+        val decoded = partial.decodeInto(partial.encode(Partial()), target)
+        Assert.assertSame(target, decoded)
+        Assert.assertSame(unknown, decoded.unknown)
+        Assert.assertTrue(decoded.unknown.isEmpty())
+        Assert.assertNull(decoded.name)
+    }
+
+    @Test
+    fun datesRoundTripAndZonesAreWrittenOnce() {
+        val proto = generated.proto(Schedule::class.java)
+        val paris = ZoneId.of("Europe/Paris")
+        val value = Schedule()
+        value.created = Date(1_539_000_000_123L)
+        value.day = LocalDate.of(2018, 10, 18)
+        value.at = LocalDateTime.of(2018, 10, 18, 12, 34, 56, 789)
+        value.start = ZonedDateTime.of(2018, 10, 18, 9, 0, 0, 0, paris)
+        value.stops = listOf(
+            ZonedDateTime.of(2018, 10, 18, 10, 0, 0, 0, paris),
+            ZonedDateTime.of(2018, 10, 18, 4, 0, 0, 0, ZoneId.of("America/New_York")),
+            ZonedDateTime.of(2018, 10, 18, 11, 0, 0, 0, paris)
+        )
+
+        val bytes = proto.encodeToArray(value)
+        Assert.assertArrayEquals(bytes, proto.encode(value))
+        Assert.assertEquals(bytes.size, proto.encodedSize(value))
+        // Only the first value in each zone carries its id.
+        Assert.assertEquals(2, Buffer().write(bytes).readUtf8().split("Europe/Paris").size)
+
+        for (decoded in listOf(proto.decode(bytes), proto.decode(bytes, 0, bytes.size))) {
+            Assert.assertEquals(value.created, decoded.created)
+            Assert.assertEquals(value.day, decoded.day)
+            Assert.assertEquals(value.at, decoded.at)
+            Assert.assertEquals(value.start, decoded.start)
+            Assert.assertEquals(value.stops, decoded.stops)
+        }
+    }
+
+    private fun outline(): ByteArray {
+        val buffer = Buffer()
+        val writer = ProtoWriter(buffer)
+        ProtoAdapter.STRING.encodeWithTag(writer, 1, "plan")
+        writePoint(writer, 2, 1, -1)
+        writePoint(writer, 3, 2, 3)
+        writePoint(writer, 3, 0, 7)
+        return buffer.readByteArray()
+    }
+
+    @Test
+    fun lazyMessagesAreWrittenBackWithoutDecoding() {
+        val proto = generated.proto(Outline::class.java)
+        val bytes = outline()
+        val direct = ByteBuffer.allocateDirect(bytes.size)
+        direct.put(bytes).flip()
+        // Wire's ProtoReader copies, a WireReader over the array slices it, one over native memory
+        // copies.
+        for (value in listOf(
+            proto.decode(bytes),
+            proto.decode(bytes.copyOf(), 0, bytes.size),
+            proto.decode(direct)
+        )) {
+            Assert.assertEquals("plan", value.title)
+            Assert.assertFalse(value.origin.isDecoded)
+            Assert.assertTrue(value.points.none { it.isDecoded })
+            Assert.assertEquals(bytes.size, proto.encodedSize(value))
+            Assert.assertArrayEquals(bytes, proto.encode(value))
+            Assert.assertArrayEquals(bytes, proto.encodeToArray(value))
+            Assert.assertFalse(value.origin.isDecoded)
+
+            Assert.assertEquals(Point(1, -1), value.origin.get())
+            Assert.assertEquals(listOf(Point(2, 3), Point(0, 7)), value.points.map { it.get() })
+            Assert.assertTrue(value.origin.isDecoded)
+            // Once decoded, changes are what gets written.
+            value.origin.get().x = 4
+            val changed = proto.decode(proto.encodeToArray(value))
+            Assert.assertEquals(Point(4, -1), changed.origin.get())
+        }
+    }
+
+    @Test
+    fun lazyMessagesShareOnlyTheArrayTheyWereSlicedFrom() {
+        val proto = generated.proto(Outline::class.java)
+        val bytes = outline()
+        val copied = proto.decode(bytes)
+        val direct = ByteBuffer.allocateDirect(bytes.size)
+        direct.put(bytes).flip()
+        val fromDirect = proto.decode(direct)
+        val sliced = proto.decode(bytes, 0, bytes.size)
+
+        // Reuse the input for a message that differs only in the first point's x.
+        val reused = Outline()
+        reused.title = "plan"
+        reused.origin = Lazy.of(Point(9, -1))
+        reused.points = listOf(Lazy.of(Point(2, 3)), Lazy.of(Point(0, 7)))
+        Assert.assertEquals(bytes.size, proto.encode(ByteBuffer.wrap(bytes), reused))
+        direct.clear()
+        direct.put(bytes)
+
+        Assert.assertEquals(Point(1, -1), copied.origin.get())
+        Assert.assertEquals(Point(1, -1), fromDirect.origin.get())
+        // The slice reads whatever the array holds now, as WireProtoAdapter documents.
+        Assert.assertEquals(Point(9, -1), sliced.origin.get())
+        Assert.assertEquals(Point(2, 3), sliced.points[0].get())
+    }
+
+    @Test
+    fun lazyMessagesAreDecodedForJson() {
+        val proto = generated.proto(Outline::class.java)
+        val json = generated.json(Outline::class.java)
+        val value = proto.decode(outline(), 0, outline().size)
+        val text = json.toJsonUtf8(value).utf8()
+        Assert.assertEquals(
+            "{\"title\":\"plan\",\"origin\":{\"x\":1,\"y\":-1}," +
+                "\"points\":[{\"x\":2,\"y\":3},{\"x\":0,\"y\":7}]}",
+            text
+        )
+        Assert.assertEquals(text, json.toJson(proto.decode(outline())))
+
+        val read = json.fromJson(text)!!
+        Assert.assertTrue(read.origin.isDecoded)
+        Assert.assertEquals(Point(1, -1), read.origin.get())
+        Assert.assertArrayEquals(outline(), proto.encode(read))
+    }
+
+    @Test
+    fun internedFieldsShareTheirStrings() {
+        val proto = generated.proto(Status::class.java)
+        val value = Status()
+        value.code = "OK"
+        value.flags = listOf("new", "né")
+        value.text = "done"
+        val bytes = proto.encode(value)
+        // Wire's ProtoReader and a WireReader, each over its own copy of the input.
+        val readers = listOf<(ByteArray) -> Status>({ proto.decode(it) }, { proto.decode(it, 0, it.size) })
+        for (decode in readers) {
+            val first = decode(bytes.copyOf())
+            val second = decode(bytes.copyOf())
+            Assert.assertEquals("OK", first.code)
+            Assert.assertEquals(listOf("new", "né"), first.flags)
+            Assert.assertSame(first.code, second.code)
+            Assert.assertSame(first.flags[0], second.flags[0])
+            Assert.assertSame(first.flags[1], second.flags[1])
+            Assert.assertEquals(first.text, second.text)
+            Assert.assertNotSame(first.text, second.text)
+        }
+    }
+
+    @Test
+    fun emptyMessageWritesOnlyPrimitives() {
+        val proto = generated.proto(Scalars::class.java)
+        val value = proto.decode(proto.encode(Scalars()))
+        Assert.assertNull(value.name)
+        Assert.assertNull(value.tags)
+        Assert.assertNull(value.origin)
+        Assert.assertEquals(0, value.count)
+    }
+
+    @Test
+    fun boxedKeyedMapsRoundTrip() {
+        val proto = generated.proto(Counts::class.java)
+        val value = Counts()
+        value.names = linkedMapOf(1 to "one", -300 to "")
+        value.totals = linkedMapOf(1L shl 35 to 7)
+        value.points = linkedMapOf("p" to Point(4, 5))
+
+        val buffer = Buffer()
+        val writer = ProtoWriter(buffer)
+        val names = ProtoAdapter.newMapAdapter(ProtoAdapter.INT32, ProtoAdapter.STRING)
+        val totals = ProtoAdapter.newMapAdapter(ProtoAdapter.INT64, ProtoAdapter.INT32)
+        names.encodeWithTag(writer, 1, value.names)
+        totals.encodeWithTag(writer, 2, value.totals)
+        val scalarMaps = Counts()
+        scalarMaps.names = value.names
+        scalarMaps.totals = value.totals
+        Assert.assertArrayEquals(buffer.readByteArray(), proto.encode(scalarMaps))
+
+        val decoded = proto.decode(proto.encode(value))
+        Assert.assertEquals(value.names, decoded.names)
+        Assert.assertEquals(value.totals, decoded.totals)
+        Assert.assertEquals(value.points, decoded.points)
+    }
+
+    private fun blobs(): Blobs {
+        val value = Blobs()
+        value.data = "wire".encodeUtf8()
+        value.raw = byteArrayOf(0, -1, 127)
+        value.chunks = listOf(ByteString.EMPTY, ByteString.of(1, 2))
+        value.rows = arrayOf(byteArrayOf(9), byteArrayOf())
+        return value
+    }
+
+    @Test
+    fun bytesAreLengthDelimited() {
+        val proto = generated.proto(Blobs::class.java)
+        val buffer = Buffer()
+        val writer = ProtoWriter(buffer)
+        ProtoAdapter.BYTES.encodeWithTag(writer, 1, "wire".encodeUtf8())
+        ProtoAdapter.BYTES.encodeWithTag(writer, 2, ByteString.of(0, -1, 127))
+        ProtoAdapter.BYTES.encodeWithTag(writer, 3, ByteString.EMPTY)
+        ProtoAdapter.BYTES.encodeWithTag(writer, 3, ByteString.of(1, 2))
+        ProtoAdapter.BYTES.encodeWithTag(writer, 4, ByteString.of(9))
+        ProtoAdapter.BYTES.encodeWithTag(writer, 4, ByteString.EMPTY)
+        val expected = buffer.readByteArray()
+        Assert.assertArrayEquals(expected, proto.encode(blobs()))
+        Assert.assertArrayEquals(expected, proto.encodeToArray(blobs()))
+        Assert.assertEquals(expected.size, proto.encodedSize(blobs()))
+
+        for (value in listOf(proto.decode(expected), proto.decode(expected, 0, expected.size))) {
+            Assert.assertEquals(blobs().data, value.data)
+            Assert.assertArrayEquals(blobs().raw, value.raw)
+            Assert.assertEquals(blobs().chunks, value.chunks)
+            Assert.assertEquals(2, value.rows.size)
+            Assert.assertArrayEquals(byteArrayOf(9), value.rows[0])
+            Assert.assertArrayEquals(byteArrayOf(), value.rows[1])
+        }
+    }
+
+    @Test
+    fun bytesAreBase64InJson() {
+        val json = generated.json(Blobs::class.java)
+        val text = json.toJsonUtf8(blobs()).utf8()
+        val expected = "{\"data\":\"d2lyZQ==\",\"raw\":\"AP9/\"," +
+            "\"chunks\":[\"\",\"AQI=\"],\"rows\":[\"CQ==\",\"\"]}"
+        Assert.assertEquals(expected, text)
+        Assert.assertEquals(text, json.toJson(blobs()))
+
+        val value = json.fromJson(text)!!
+        Assert.assertEquals(blobs().data, value.data)
+        Assert.assertArrayEquals(blobs().raw, value.raw)
+        Assert.assertEquals(blobs().chunks, value.chunks)
+        Assert.assertArrayEquals(byteArrayOf(9), value.rows[0])
+    }
+
+    @Test
+    fun jsonNamesAndIgnoredFieldsOnBothWriters() {
+        val json = generated.json(Aliased::class.java)
+        val value = Aliased()
+        value.name = "wire"
+        value.secret = "hidden"
+        value.count = 2
+        val expected = "{\"full_name\":\"wire\",\"say \\\"é\\\"\":2}"
+        // Moshi's JsonWriter and the JsonSink with its names encoded up front.
+        Assert.assertEquals(expected, json.toJson(value))
+        Assert.assertEquals(expected, json.toJsonUtf8(value).utf8())
+
+        val text = "{\"name\":\"a\",\"secret\":\"b\",\"full_name\":\"c\",\"say \\\"é\\\"\":3}"
+        val read = json.fromJson(text)!!
+        Assert.assertEquals("c", read.name)
+        Assert.assertNull(read.secret)
+        Assert.assertEquals(3, read.count)
+
+        // Ignored fields are only left out of JSON.
+        val proto = generated.proto(Aliased::class.java)
+        Assert.assertEquals("hidden", proto.decode(proto.encode(value)).secret)
+    }
+
+    private fun packed(): Packed {
+        val value = Packed()
+        value.counts = intArrayOf(1, 300, -1)
+        value.deltas = intArrayOf(-2, 0, Int.MAX_VALUE)
+        value.stamps = longArrayOf(1L shl 40, -1)
+        value.weights = floatArrayOf()
+        value.scores = doubleArrayOf(0.5, -2.25)
+        return value
+    }
+
+    /** [packed] as Wire writes it, with the arrays packed or as one tagged value per element. */
+    private fun packedByWire(packed: Boolean): ByteArray {
+        val buffer = Buffer()
+        val writer = ProtoWriter(buffer)
+        fun <E> List<E>.write(adapter: ProtoAdapter<E>, tag: Int) =
+            (if (packed) adapter.asPacked() else adapter.asRepeated()).encodeWithTag(writer, tag, this)
+        listOf(1, 300, -1).write(ProtoAdapter.INT32, 1)
+        listOf(-2, 0, Int.MAX_VALUE).write(ProtoAdapter.SINT32, 2)
+        listOf(1L shl 40, -1L).write(ProtoAdapter.FIXED64, 3)
+        listOf(0.5, -2.25).write(ProtoAdapter.DOUBLE, 5)
+        return buffer.readByteArray()
+    }
+
+    @Test
+    fun primitiveArraysArePacked() {
+        val proto = generated.proto(Packed::class.java)
+        val expected = packedByWire(true)
+        Assert.assertArrayEquals(expected, proto.encode(packed()))
+        Assert.assertArrayEquals(expected, proto.encodeToArray(packed()))
+        Assert.assertEquals(expected.size, proto.encodedSize(packed()))
+    }
+
+    @Test
+    fun primitiveArraysReadPackedAndUnpacked() {
+        val proto = generated.proto(Packed::class.java)
+        for (bytes in listOf(packedByWire(true), packedByWire(false))) {
+            for (value in listOf(proto.decode(bytes), proto.decode(bytes, 0, bytes.size))) {
+                Assert.assertArrayEquals(packed().counts, value.counts)
+                Assert.assertArrayEquals(packed().deltas, value.deltas)
+                Assert.assertArrayEquals(packed().stamps, value.stamps)
+                Assert.assertNull(value.weights)
+                Assert.assertArrayEquals(packed().scores, value.scores, 0.0)
+            }
+        }
+    }
+
+    @Test
+    fun constructorOnlyMessageIsBuiltByItsConstructor() {
+        val proto = generated.proto(Money::class.java)
+        val buffer = Buffer()
+        val writer = ProtoWriter(buffer)
+        ProtoAdapter.STRING.encodeWithTag(writer, 1, "EUR")
+        ProtoAdapter.INT64.encodeWithTag(writer, 2, 1250L)
+        val expected = buffer.readByteArray()
+        Assert.assertArrayEquals(expected, proto.encode(Money("EUR", 1250)))
+
+        Assert.assertEquals(Money("EUR", 1250), proto.decode(expected))
+        Assert.assertEquals(Money("EUR", 1250), proto.decode(expected, 0, expected.size))
+    }
+
+    @Test(expected = IllegalStateException::class)
+    fun messageWithoutAUsableConstructorFails() {
+        val transformer = ModelTransformer()
+        transformer.register(Unbuildable::class.java)
+        Assembler.create(transformer).build()
+    }
+
+    @Test
+    fun templateIsGeneratedOnlyForItsParameterizations() {
+        try {
+            generated.wire(Records::class.java)
+            Assert.fail("a template has no Wire_ class of its own")
+        } catch (expected: ClassNotFoundException) {
+        }
+
+        val proto = generated.proto(Ledger::class.java)
+        val value = Ledger()
+        value.owner = "ann"
+        value.points = Records()
+        value.points.items = listOf(Point(1, 2), Point())
+        value.points.last = Point(3, 4)
+
+        val records = Buffer()
+        val recordsWriter = ProtoWriter(records)
+        writePoint(recordsWriter, 1, 1, 2)
+        writePoint(recordsWriter, 1, 0, 0)
+        writePoint(recordsWriter, 2, 3, 4)
+        val buffer = Buffer()
+        val writer = ProtoWriter(buffer)
+        ProtoAdapter.STRING.encodeWithTag(writer, 1, "ann")
+        ProtoAdapter.BYTES.encodeWithTag(writer, 2, records.readByteString())
+        val expected = buffer.readByteArray()
+        Assert.assertArrayEquals(expected, proto.encode(value))
+
+        val decoded = proto.decode(expected)
+        Assert.assertEquals("ann", decoded.owner)
+        Assert.assertEquals(value.points.items, decoded.points.items)
+        Assert.assertEquals(value.points.last, decoded.points.last)
+    }
+
+    @Test
+    fun decodeIntoResetsMissingFieldsLikeDecode() {
+        val proto = generated.proto(Defaults::class.java)
+        val target = proto.newInstance()
+        target.name = "set"
+        target.limit = 3
+        target.tags = arrayListOf("a")
+        target.notes.add("b")
+        target.origin = Point(5, 5)
+
+        val notes = target.notes
+        val origin = target.origin
+
+        val empty = ByteArray(0)
+        val decoded = proto.decode(empty)
+        val refilled = proto.decodeInto(empty, target)
+        Assert.assertSame(target, refilled)
+        Assert.assertEquals(decoded.name, refilled.name)
+        Assert.assertEquals(decoded.limit, refilled.limit)
+        Assert.assertNull(refilled.tags)
+        Assert.assertEquals(decoded.notes, refilled.notes)
+        Assert.assertEquals(decoded.origin, refilled.origin)
+        // The target's collections and messages are reset in place rather than replaced.
+        Assert.assertSame(notes, refilled.notes)
+        Assert.assertSame(origin, refilled.origin)
+        // Initializers that can be changed aren't shared between messages.
+        Assert.assertNotSame(proto.decodeInto(empty, proto.newInstance()).notes, refilled.notes)
+        val unset = Defaults()
+        unset.notes = null
+        unset.origin = null
+        proto.decodeInto(empty, unset)
+        Assert.assertEquals(Point(1, 1), unset.origin)
+        Assert.assertNotSame(refilled.origin, unset.origin)
+        Assert.assertEquals(Point(1, 1), proto.decode(empty).origin)
+
+        val scalars = generated.proto(Scalars::class.java)
+        val reused = scalars.decodeInto(expected(), scalars.newInstance())
+        Assert.assertEquals(scalars().tags, reused.tags)
+        val bytes = scalars.encode(Scalars())
+        scalars.decodeInto(bytes, reused)
+        Assert.assertNull(reused.tags)
+        Assert.assertNull(reused.ids)
+        Assert.assertNull(reused.points)
+        Assert.assertNull(reused.origin)
+        Assert.assertNull(reused.name)
+    }
+
+    @Test
+    fun decodeIntoReusesMessagesInLists() {
+        val proto = generated.proto(Scalars::class.java)
+        val target = proto.decode(expected())
+        val points = target.points
+        val first = points[0]
+        val second = points[1]
+        points.add(Point(8, 8))
+
+        val value = Scalars()
+        value.points = listOf(Point(4, 5), Point(6, 7))
+        val refilled = proto.decodeInto(proto.encode(value), target)
+        Assert.assertSame(points, refilled.points)
+        Assert.assertEquals(listOf(Point(4, 5), Point(6, 7)), refilled.points)
+        Assert.assertSame(first, refilled.points[0])
+        Assert.assertSame(second, refilled.points[1])
+
+        value.points = listOf(Point(1, 2), Point(3, 4), Point(5, 6))
+        proto.decodeInto(proto.encode(value), target)
+        Assert.assertEquals(value.points, target.points)
+        Assert.assertSame(first, target.points[0])
+    }
+
+    @Test
+    fun constructedMessagesAreDecodedAnew() {
+        val proto = generated.proto(Money::class.java)
+        val target = Money("USD", 1)
+        val decoded = proto.decodeInto(proto.encode(Money("EUR", 1250)), target)
+        Assert.assertEquals(Money("EUR", 1250), decoded)
+        Assert.assertEquals("USD", target.currency)
+
+        val empty = proto.newInstance()
+        Assert.assertNull(empty.currency)
+        Assert.assertEquals(0L, empty.amount)
+    }
+
+    @Test
+    fun kotlinMessagesAreConstructedWithTheirDefaults() {
+        val proto = generated.proto(Account::class.java)
+        val json = generated.json(Account::class.java)
+        val full = Account("ann", "a", listOf("x"), listOf("y"), "USD", "n", Point(1, 2), Point(3, 4), 5)
+        Assert.assertEquals(full, proto.decode(proto.encode(full)))
+        Assert.assertEquals(full, json.fromJson(json.toJson(full)))
+
+        // Nullable parameters get null, ones with defaults their default, and non-null ones an
+        // empty value, an empty message included.
+        val empty = Account("", null, null, emptyList(), "EUR", "none", Point(), null, 0)
+        Assert.assertEquals(empty, proto.decode(ByteArray(0)))
+        Assert.assertEquals(empty, proto.decode(ByteArray(0), 0, 0))
+        Assert.assertEquals(empty, json.fromJson("{}"))
+        Assert.assertEquals(empty, builder(Account::class.java).build())
+
+        val buffer = Buffer()
+        ProtoAdapter.STRING.encodeWithTag(ProtoWriter(buffer), 1, "bob")
+        ProtoAdapter.STRING.encodeWithTag(ProtoWriter(buffer), 6, "set")
+        Assert.assertEquals(empty.copy(owner = "bob", note = "set"), proto.decode(buffer.readByteArray()))
+    }
+
+    /** The generated builder of [type], from Wire_.builder() or, with [local] set, localBuilder(). */
+    @Suppress("UNCHECKED_CAST")
+    private fun <T> builder(type: Class<T>, local: Boolean = false): MessageBuilder<T, *> =
+        generated.wire(type).getMethod(if (local) "localBuilder" else "builder").invoke(null)
+            as MessageBuilder<T, *>
+
+    private fun MessageBuilder<*, *>.set(field: String, type: Class<*>, value: Any?) {
+        javaClass.getMethod(field, type).invoke(this, value)
+    }
+
+    @Test
+    fun localBuilderIsResetAndReused() {
+        val first = builder(Scalars::class.java, local = true)
+        first.set("name", String::class.java, "wire")
+        first.set("count", Int::class.javaPrimitiveType!!, 5)
+        first.set("tags", List::class.java, listOf("a"))
+        val built = first.build()
+        Assert.assertEquals("wire", built.name)
+        Assert.assertEquals(5, built.count)
+        Assert.assertEquals(listOf("a"), built.tags)
+
+        val second = builder(Scalars::class.java, local = true)
+        Assert.assertSame(first, second)
+        second.set("count", Int::class.javaPrimitiveType!!, 6)
+        val rebuilt = second.build()
+        Assert.assertNull(rebuilt.name)
+        Assert.assertNull(rebuilt.tags)
+        Assert.assertEquals(6, rebuilt.count)
+
+        // Resetting never touches a message the builder already built.
+        second.reset()
+        Assert.assertEquals("wire", built.name)
+        Assert.assertEquals(listOf("a"), built.tags)
+        Assert.assertEquals(6, rebuilt.count)
+    }
+
+    @Test
+    fun builderKeepsInitializersAndCallsConstructors() {
+        val defaults = builder(Defaults::class.java).build()
+        Assert.assertEquals("none", defaults.name)
+        Assert.assertEquals(10, defaults.limit)
+        Assert.assertEquals(Point(1, 1), defaults.origin)
+
+        val money = builder(Money::class.java)
+        money.set("currency", String::class.java, "EUR")
+        money.set("amount", Long::class.javaPrimitiveType!!, 1250L)
+        Assert.assertEquals(Money("EUR", 1250), money.build())
+        money.reset()
+        Assert.assertNull(money.build().currency)
+    }
+}
@@ -0,0 +1,57 @@
+package run.mojo.compiler
+
+import org.junit.Assert
+import run.mojo.wire.WireJsonAdapter
+import run.mojo.wire.WireProtoAdapter
+import java.io.File
+import java.net.URLClassLoader
+import java.nio.file.Files
+import javax.tools.ToolProvider
+
+/**
+ * Wire_ classes the [Assembler] generated for some fixtures, compiled with javac and loaded in a
+ * loader of their own whose parent holds the fixtures.
+ */
+internal class Generated(vararg types: Class<*>) {
+    val loader: ClassLoader
+
+    init {
+        val transformer = ModelTransformer()
+        types.forEach { transformer.register(it) }
+        val files = Assembler.create(transformer).build()
+
+        val root = Files.createTempDirectory("wire-gen").toFile()
+        val sources = File(root, "src")
+        val classes = File(root, "classes")
+        classes.mkdirs()
+        files.forEach { it.writeTo(sources) }
+
+        val javac = ToolProvider.getSystemJavaCompiler()
+        Assert.assertNotNull("the tests need a JDK", javac)
+        val args = listOf(
+            "-nowarn",
+            "-encoding", "UTF-8",
+            "-cp", System.getProperty("java.class.path"),
+            "-d", classes.path
+        ) + sources.walkTopDown().filter { it.name.endsWith(".java") }.map { it.path }
+        val exit = javac.run(null, null, null, *args.toTypedArray())
+        Assert.assertEquals("generated sources don't compile", 0, exit)
+        loader = URLClassLoader(arrayOf(classes.toURI().toURL()), javaClass.classLoader)
+    }
+
+    /** The PROTO adapter generated for [type]. */
+    @Suppress("UNCHECKED_CAST")
+    fun <T> proto(type: Class<T>): WireProtoAdapter<T> =
+        wire(type).getField(Assembler.PROTO_VAR_NAME).get(null) as WireProtoAdapter<T>
+
+    /** The JSON adapter generated for [type]. */
+    @Suppress("UNCHECKED_CAST")
+    fun <T> json(type: Class<T>): WireJsonAdapter<T> =
+        wire(type).getField(Assembler.JSON_VAR_NAME).get(null) as WireJsonAdapter<T>
+
+    /** The Wire_ class generated for [type]. */
+    fun wire(type: Class<*>): Class<*> {
+        val relative = type.name.removePrefix(type.`package`.name + ".")
+        return loader.loadClass(type.`package`.name + "." + Assembler.WIRE_PREFIX + relative)
+    }
+}
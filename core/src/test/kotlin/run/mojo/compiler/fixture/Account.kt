@@ -0,0 +1,14 @@
+package run.mojo.compiler.fixture
+
+/** A Kotlin message only its constructor can build, with nullable and default parameters. */
+data class Account(
+    val owner: String,
+    val nickname: String?,
+    val tags: List<String>?,
+    val labels: List<String>,
+    val currency: String = "EUR",
+    val note: String? = "none",
+    val origin: Point,
+    val home: Point?,
+    val count: Int
+)
@@ -0,0 +1,85 @@
+package run.mojo.wire
+
+import com.squareup.wire.FieldEncoding
+import com.squareup.wire.ProtoAdapter
+import com.squareup.wire.ProtoReader
+import com.squareup.wire.ProtoWriter
+import org.junit.Assert
+import org.junit.Test
+import run.mojo.compiler.fixture.Point
+import run.mojo.wire.type.RuntimeAdapter
+
+/** Stands in for a message the processor generated [Wire_Stamp] for. */
+class Stamp {
+    var at: Long = 0
+}
+
+@Suppress("ClassName")
+class Wire_Stamp {
+    companion object {
+        @JvmField
+        val PROTO: ProtoAdapter<Stamp> = object : ProtoAdapter<Stamp>(
+            FieldEncoding.LENGTH_DELIMITED,
+            Stamp::class.java
+        ) {
+            override fun encodedSize(value: Stamp) = 0
+
+            override fun encode(writer: ProtoWriter, value: Stamp) {
+            }
+
+            override fun decode(reader: ProtoReader) = Stamp()
+        }
+    }
+}
+
+class AdapterRepoTest {
+    class Grid {
+        var cells: Array<Point>? = null
+    }
+
+    @Test
+    fun generatedAdapterComesFirst() {
+        Assert.assertSame(Wire_Stamp.PROTO, AdapterRepo.proto(Stamp::class.java))
+    }
+
+    @Test
+    fun runtimeAdapterIsBuiltOnce() {
+        val adapter = AdapterRepo.proto(Point::class.java)
+        Assert.assertTrue(adapter is RuntimeAdapter<*>)
+        Assert.assertSame(adapter, AdapterRepo.proto(Point::class.java))
+        Assert.assertSame(adapter, AdapterRepo.protoOrNull(Point::class.java))
+    }
+
+    @Test
+    fun failureIsCachedWithItsReason() {
+        val first = try {
+            AdapterRepo.proto(Grid::class.java)
+            null
+        } catch (e: IllegalArgumentException) {
+            e
+        }
+        Assert.assertNotNull(first)
+        Assert.assertTrue(first!!.message!!.contains(Grid::class.java.name))
+        Assert.assertTrue(first.cause is IllegalArgumentException)
+        Assert.assertNull(AdapterRepo.protoOrNull(Grid::class.java))
+
+        try {
+            AdapterRepo.proto(Grid::class.java)
+            Assert.fail()
+        } catch (e: IllegalArgumentException) {
+            // The runtime adapter wasn't built again.
+            Assert.assertSame(first.cause, e.cause)
+        }
+    }
+
+    @Test
+    fun nonMessageHasNoAdapter() {
+        Assert.assertNull(AdapterRepo.protoOrNull(String::class.java))
+        try {
+            AdapterRepo.proto(String::class.java)
+            Assert.fail()
+        } catch (e: IllegalArgumentException) {
+            Assert.assertNull(e.cause)
+        }
+    }
+}
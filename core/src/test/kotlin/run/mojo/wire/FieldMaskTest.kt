@@ -0,0 +1,73 @@
+package run.mojo.wire
+
+import org.junit.Assert
+import org.junit.Test
+import run.mojo.wire.type.MessageDesc
+import run.mojo.wire.type.ReflectionSchema
+import run.mojo.wire.type.RuntimeAdapter
+import java.util.stream.Stream
+
+class FieldMaskTest {
+    class Bean {
+        var id: Int = 0
+        var name: String? = null
+        var total: Long = 0
+    }
+
+    @Test
+    fun containsLowAndHighTags() {
+        val mask = FieldMask.of(100, 1, 63, 64, 2)
+        listOf(1, 2, 63, 64, 100).forEach { Assert.assertTrue("tag $it", mask.contains(it)) }
+        listOf(0, 3, 62, 65, 99, 1000).forEach { Assert.assertFalse("tag $it", mask.contains(it)) }
+        Assert.assertEquals("FieldMask[1,2,63,64,100]", mask.toString())
+    }
+
+    @Test
+    fun emptyMaskContainsNothing() {
+        val mask = FieldMask.of()
+        listOf(1, 63, 64, 100).forEach { Assert.assertFalse("tag $it", mask.contains(it)) }
+        Assert.assertEquals("FieldMask[]", mask.toString())
+    }
+
+    @Test
+    fun allContainsEveryTag() {
+        listOf(1, 63, 64, 100, Int.MAX_VALUE).forEach {
+            Assert.assertTrue("tag $it", FieldMask.ALL.contains(it))
+        }
+        Assert.assertEquals("FieldMask[ALL]", FieldMask.ALL.toString())
+    }
+
+    @Test
+    fun rejectsTagsBelowOne() {
+        for (tag in listOf(0, -1)) {
+            try {
+                FieldMask.of(1, tag)
+                Assert.fail("tag $tag accepted")
+            } catch (expected: IllegalArgumentException) {
+            }
+        }
+    }
+
+    @Test
+    fun runtimeAdapterSkipsMaskedOutFields() {
+        val schema = ReflectionSchema.create(Stream.empty<Any>(), null, null, null, null)
+        val desc = schema.registerType(Bean::class.java) as MessageDesc
+        val adapter = RuntimeAdapter.of<Bean>(desc)
+        val bean = Bean()
+        bean.id = 7
+        bean.name = "wire"
+        bean.total = 1L shl 40
+        val bytes = adapter.encodeToArray(bean)
+
+        val nameTag = desc.props["name"]!!.tag
+        val masked = adapter.decode(bytes, FieldMask.of(nameTag))
+        Assert.assertEquals("wire", masked.name)
+        Assert.assertEquals(0, masked.id)
+        Assert.assertEquals(0L, masked.total)
+
+        val all = adapter.decode(bytes, FieldMask.ALL)
+        Assert.assertEquals(7, all.id)
+        Assert.assertEquals("wire", all.name)
+        Assert.assertEquals(1L shl 40, all.total)
+    }
+}
@@ -0,0 +1,67 @@
+package run.mojo.wire
+
+import okio.Buffer
+import org.junit.Assert
+import org.junit.Test
+import run.mojo.Wire
+import run.mojo.compiler.ModelTransformer
+import run.mojo.model.EnumModel
+import run.mojo.wire.type.EnumDesc
+import run.mojo.wire.type.ReflectionSchema
+import java.util.stream.Stream
+
+class WireEnumAdapterTest {
+    enum class Color {
+        RED,
+        GREEN,
+        @Wire(tag = 7)
+        BLUE
+    }
+
+    @Test
+    fun roundTripsDenseTags() {
+        val adapter = WireEnumAdapter(Color::class.java, 1, 2, 7)
+        for (color in Color.values()) {
+            Assert.assertEquals(color, adapter.decode(adapter.encode(color)))
+        }
+        Assert.assertEquals(7, adapter.tag(Color.BLUE))
+        Assert.assertNull(adapter.fromTag(3))
+    }
+
+    @Test
+    fun roundTripsSparseTags() {
+        val adapter = WireEnumAdapter(Color::class.java, 1000, -5, 1 shl 20)
+        for (color in Color.values()) {
+            Assert.assertEquals(color, adapter.decode(adapter.encode(color)))
+        }
+        Assert.assertEquals(Color.GREEN, adapter.fromTag(-5))
+        Assert.assertNull(adapter.fromTag(1001))
+    }
+
+    @Test
+    fun unknownTagNamesTagAndEnum() {
+        val adapter = WireEnumAdapter(Color::class.java, 1, 2, 7)
+        try {
+            adapter.decode(Buffer().writeByte(4))
+            Assert.fail()
+        } catch (e: IllegalArgumentException) {
+            Assert.assertTrue(e.message!!.contains("4"))
+            Assert.assertTrue(e.message!!.contains(Color::class.java.name))
+        }
+    }
+
+    @Test(expected = IllegalArgumentException::class)
+    fun duplicateTagsAreRejected() {
+        WireEnumAdapter(Color::class.java, 1, 1, 2)
+    }
+
+    @Test
+    fun reflectedTagsMatchGeneratedTags() {
+        val schema = ReflectionSchema.create(Stream.empty<Any>(), null, null, null, null)
+        val desc = schema.registerType(Color::class.java) as EnumDesc
+        val model = ModelTransformer().register(Color::class.java) as EnumModel
+        Assert.assertEquals(listOf(1, 2, 7), model.constants.map { it.tag })
+        Assert.assertEquals(model.constants.map { it.tag }, desc.values.map { it.tag })
+        Assert.assertArrayEquals(intArrayOf(1, 2, 7), WireEnumAdapter.tagsOf(Color::class.java))
+    }
+}
@@ -0,0 +1,40 @@
+package run.mojo.wire.codec
+
+import com.squareup.wire.ProtoAdapter
+import com.squareup.wire.ProtoWriter
+import okio.Buffer
+import org.junit.Assert
+import org.junit.Test
+import java.util.Date
+
+class DatesTest {
+    private val millis = listOf(0L, 1L, -1L, 1_539_000_000_123L, -62_135_596_800_000L, Long.MAX_VALUE)
+
+    @Test
+    fun writesEpochMillisAsSint64() {
+        for (time in millis) {
+            val expected = ProtoAdapter.SINT64.encode(time)
+            Assert.assertEquals(expected.size, Dates.ADAPTER.encodedSize(Date(time)))
+            Assert.assertArrayEquals(expected, Dates.ADAPTER.encode(Date(time)))
+            Assert.assertEquals(Date(time), Dates.ADAPTER.decode(expected))
+
+            val bytes = ByteArray(10)
+            val writer = WireWriter.of(bytes)
+            Dates.write(writer, Date(time))
+            Assert.assertArrayEquals(expected, bytes.copyOf(writer.position()))
+        }
+    }
+
+    @Test
+    fun readsWhatWireWrites() {
+        for (time in millis) {
+            val buffer = Buffer()
+            ProtoAdapter.SINT64.encodeWithTag(ProtoWriter(buffer), 1, time)
+            val reader = WireReader.of(buffer.readByteArray())
+            val token = reader.beginMessage()
+            Assert.assertEquals(1, reader.nextTag())
+            Assert.assertEquals(Date(time), Dates.read(reader))
+            reader.endMessage(token)
+        }
+    }
+}
@@ -0,0 +1,90 @@
+package run.mojo.wire.codec
+
+import com.squareup.wire.FieldEncoding
+import com.squareup.wire.ProtoAdapter
+import com.squareup.wire.ProtoWriter
+import okio.Buffer
+import okio.ByteString
+import org.junit.Assert
+import org.junit.Test
+import java.math.BigDecimal
+
+class DecimalsTest {
+    private val values = listOf(
+        BigDecimal.ZERO,
+        BigDecimal("0.000"),
+        BigDecimal("1.50"),
+        BigDecimal("-12345.6789"),
+        BigDecimal("1E+3"),
+        BigDecimal("999999999999999999"),
+        BigDecimal(Long.MAX_VALUE),
+        BigDecimal("123456789012345678901234.5"),
+        BigDecimal("-0.00000000000000000000000001")
+    )
+
+    /** The Decimal message Wire writes for [value]. */
+    private fun expected(value: BigDecimal): ByteArray {
+        val buffer = Buffer()
+        val writer = ProtoWriter(buffer)
+        if (value.scale() != 0) {
+            ProtoAdapter.SINT32.encodeWithTag(writer, 1, value.scale())
+        }
+        if (value.precision() <= 18) {
+            if (value.signum() != 0) {
+                ProtoAdapter.SINT64.encodeWithTag(writer, 2, value.unscaledValue().toLong())
+            }
+        } else {
+            val bytes = ByteString.of(*value.unscaledValue().toByteArray())
+            ProtoAdapter.BYTES.encodeWithTag(writer, 3, bytes)
+        }
+        return buffer.readByteArray()
+    }
+
+    @Test
+    fun adapterWritesAndReadsTheDecimalMessage() {
+        for (value in values) {
+            val expected = expected(value)
+            Assert.assertEquals("$value", expected.size, Decimals.ADAPTER.encodedSize(value))
+            Assert.assertArrayEquals("$value", expected, Decimals.ADAPTER.encode(value))
+            Assert.assertEquals(value, Decimals.ADAPTER.decode(expected))
+        }
+    }
+
+    @Test
+    fun wireWriterWritesWhatTheAdapterWrites() {
+        for (value in values) {
+            val expected = expected(value)
+            Assert.assertEquals("$value", expected.size, Decimals.size(value))
+
+            val bytes = ByteArray(expected.size + 6)
+            val writer = WireWriter.of(bytes)
+            writer.writeTag(1, FieldEncoding.LENGTH_DELIMITED)
+            Decimals.write(writer, value)
+
+            val buffer = Buffer()
+            val protoWriter = ProtoWriter(buffer)
+            protoWriter.writeTag(1, FieldEncoding.LENGTH_DELIMITED)
+            protoWriter.writeVarint32(expected.size)
+            protoWriter.writeBytes(ByteString.of(*expected))
+            val field = buffer.readByteArray()
+            Assert.assertArrayEquals("$value", field, bytes.copyOf(writer.position()))
+
+            val reader = WireReader.of(field)
+            val token = reader.beginMessage()
+            Assert.assertEquals(1, reader.nextTag())
+            Assert.assertEquals(value, Decimals.read(reader))
+            Assert.assertEquals(-1, reader.nextTag())
+            reader.endMessage(token)
+        }
+    }
+
+    @Test
+    fun readSkipsUnknownFields() {
+        val buffer = Buffer()
+        val writer = ProtoWriter(buffer)
+        ProtoAdapter.STRING.encodeWithTag(writer, 4, "later")
+        ProtoAdapter.SINT32.encodeWithTag(writer, 1, 2)
+        ProtoAdapter.SINT64.encodeWithTag(writer, 2, -150L)
+        Assert.assertEquals(BigDecimal("-1.50"), Decimals.ADAPTER.decode(buffer.readByteArray()))
+    }
+}
@@ -0,0 +1,112 @@
+package run.mojo.wire.codec
+
+import com.squareup.wire.FieldEncoding
+import com.squareup.wire.ProtoAdapter
+import com.squareup.wire.ProtoWriter
+import okio.Buffer
+import okio.ByteString
+import org.junit.Assert
+import org.junit.Test
+import java.time.Duration
+
+class DurationsTest {
+    /** Durations and their protobuf JSON form. */
+    private val values = linkedMapOf(
+        Duration.ZERO to "0s",
+        Duration.ofMillis(1500) to "1.500s",
+        Duration.ofMillis(-1500) to "-1.500s",
+        Duration.ofMillis(-2000) to "-2s",
+        Duration.ofNanos(-1) to "-0.000000001s",
+        Duration.ofSeconds(3, 1000) to "3.000001s",
+        Duration.ofSeconds(Long.MAX_VALUE, 999_999_999) to "${Long.MAX_VALUE}.999999999s",
+        Duration.ofSeconds(Long.MIN_VALUE) to "${Long.MIN_VALUE}s"
+    )
+
+    /** The google.protobuf.Duration Wire writes for [seconds] and [nanos] of the same sign. */
+    private fun expected(seconds: Long, nanos: Int): ByteArray {
+        val buffer = Buffer()
+        val writer = ProtoWriter(buffer)
+        if (seconds != 0L) {
+            ProtoAdapter.INT64.encodeWithTag(writer, 1, seconds)
+        }
+        if (nanos != 0) {
+            ProtoAdapter.INT32.encodeWithTag(writer, 2, nanos)
+        }
+        return buffer.readByteArray()
+    }
+
+    private fun expected(value: Duration): ByteArray {
+        val nanos = value.nano
+        return if (value.isNegative && nanos != 0) {
+            expected(value.seconds + 1, nanos - 1_000_000_000)
+        } else {
+            expected(value.seconds, nanos)
+        }
+    }
+
+    @Test
+    fun negativeDurationsHaveNegativeNanos() {
+        val minusOneAndAHalf = Durations.ADAPTER.encode(Duration.ofMillis(-1500))
+        Assert.assertArrayEquals(expected(-1, -500_000_000), minusOneAndAHalf)
+        Assert.assertArrayEquals(expected(0, -1), Durations.ADAPTER.encode(Duration.ofNanos(-1)))
+    }
+
+    @Test
+    fun adapterWritesAndReadsTheDurationMessage() {
+        for (value in values.keys) {
+            val expected = expected(value)
+            Assert.assertEquals("$value", expected.size, Durations.ADAPTER.encodedSize(value))
+            Assert.assertArrayEquals("$value", expected, Durations.ADAPTER.encode(value))
+            Assert.assertEquals(value, Durations.ADAPTER.decode(expected))
+        }
+    }
+
+    @Test
+    fun wireWriterWritesWhatTheAdapterWrites() {
+        for (value in values.keys) {
+            val expected = expected(value)
+            Assert.assertEquals("$value", expected.size, Durations.size(value))
+
+            val bytes = ByteArray(expected.size + 6)
+            val writer = WireWriter.of(bytes)
+            writer.writeTag(1, FieldEncoding.LENGTH_DELIMITED)
+            Durations.write(writer, value)
+
+            val buffer = Buffer()
+            val protoWriter = ProtoWriter(buffer)
+            protoWriter.writeTag(1, FieldEncoding.LENGTH_DELIMITED)
+            protoWriter.writeVarint32(expected.size)
+            protoWriter.writeBytes(ByteString.of(*expected))
+            val field = buffer.readByteArray()
+            Assert.assertArrayEquals("$value", field, bytes.copyOf(writer.position()))
+
+            val reader = WireReader.of(field)
+            val token = reader.beginMessage()
+            Assert.assertEquals(1, reader.nextTag())
+            Assert.assertEquals(value, Durations.read(reader))
+            Assert.assertEquals(-1, reader.nextTag())
+            reader.endMessage(token)
+        }
+    }
+
+    @Test
+    fun jsonIsSecondsWithAFraction() {
+        for ((value, json) in values) {
+            Assert.assertEquals(json, Durations.toJson(value))
+            Assert.assertEquals(json, value, Durations.fromJson(json))
+        }
+        Assert.assertEquals(Duration.ofMillis(1500), Durations.fromJson("1.5s"))
+        Assert.assertEquals(Duration.ofMillis(-100), Durations.fromJson("-0.1s"))
+    }
+
+    @Test
+    fun malformedJsonIsRejected() {
+        for (json in listOf("1.5", "1.s", "1.0123456789s")) {
+            try {
+                Durations.fromJson(json)
+                Assert.fail("$json accepted")
+            } catch (expected: IllegalArgumentException) {
+            }
+        }
+    }
+}
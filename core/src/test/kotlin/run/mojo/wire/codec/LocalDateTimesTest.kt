@@ -0,0 +1,72 @@
+package run.mojo.wire.codec
+
+import com.squareup.wire.FieldEncoding
+import com.squareup.wire.ProtoAdapter
+import com.squareup.wire.ProtoWriter
+import okio.Buffer
+import okio.ByteString
+import org.junit.Assert
+import org.junit.Test
+import java.time.LocalDateTime
+import java.time.ZoneOffset
+
+class LocalDateTimesTest {
+    private val values = listOf(
+        LocalDateTime.of(1970, 1, 1, 0, 0),
+        LocalDateTime.of(2018, 10, 18, 12, 34, 56, 789_000_000),
+        LocalDateTime.of(1969, 12, 31, 23, 59, 59, 999_999_999),
+        LocalDateTime.of(1, 1, 1, 0, 0, 0, 1)
+    )
+
+    /** The google.protobuf.Timestamp Wire writes for [value] taken at UTC. */
+    private fun expected(value: LocalDateTime): ByteArray {
+        val buffer = Buffer()
+        val writer = ProtoWriter(buffer)
+        val seconds = value.toEpochSecond(ZoneOffset.UTC)
+        if (seconds != 0L) {
+            ProtoAdapter.INT64.encodeWithTag(writer, 1, seconds)
+        }
+        if (value.nano != 0) {
+            ProtoAdapter.INT32.encodeWithTag(writer, 2, value.nano)
+        }
+        return buffer.readByteArray()
+    }
+
+    @Test
+    fun adapterWritesAndReadsTheTimestampMessage() {
+        for (value in values) {
+            val expected = expected(value)
+            Assert.assertEquals("$value", expected.size, LocalDateTimes.ADAPTER.encodedSize(value))
+            Assert.assertArrayEquals("$value", expected, LocalDateTimes.ADAPTER.encode(value))
+            Assert.assertEquals(value, LocalDateTimes.ADAPTER.decode(expected))
+        }
+    }
+
+    @Test
+    fun wireWriterWritesWhatTheAdapterWrites() {
+        for (value in values) {
+            val expected = expected(value)
+            Assert.assertEquals("$value", expected.size, LocalDateTimes.size(value))
+
+            val bytes = ByteArray(expected.size + 6)
+            val writer = WireWriter.of(bytes)
+            writer.writeTag(1, FieldEncoding.LENGTH_DELIMITED)
+            LocalDateTimes.write(writer, value)
+
+            val buffer = Buffer()
+            val protoWriter = ProtoWriter(buffer)
+            protoWriter.writeTag(1, FieldEncoding.LENGTH_DELIMITED)
+            protoWriter.writeVarint32(expected.size)
+            protoWriter.writeBytes(ByteString.of(*expected))
+            val field = buffer.readByteArray()
+            Assert.assertArrayEquals("$value", field, bytes.copyOf(writer.position()))
+
+            val reader = WireReader.of(field)
+            val token = reader.beginMessage()
+            Assert.assertEquals(1, reader.nextTag())
+            Assert.assertEquals(value, LocalDateTimes.read(reader))
+            Assert.assertEquals(-1, reader.nextTag())
+            reader.endMessage(token)
+        }
+    }
+}
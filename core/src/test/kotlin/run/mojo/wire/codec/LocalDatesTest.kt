@@ -0,0 +1,46 @@
+package run.mojo.wire.codec
+
+import com.squareup.wire.ProtoAdapter
+import com.squareup.wire.ProtoWriter
+import okio.Buffer
+import org.junit.Assert
+import org.junit.Test
+import java.time.LocalDate
+
+class LocalDatesTest {
+    private val days = listOf(
+        LocalDate.of(1970, 1, 1),
+        LocalDate.of(2018, 10, 18),
+        LocalDate.of(1969, 12, 31),
+        LocalDate.MIN,
+        LocalDate.MAX
+    )
+
+    @Test
+    fun writesEpochDayAsSint64() {
+        for (day in days) {
+            val expected = ProtoAdapter.SINT64.encode(day.toEpochDay())
+            Assert.assertEquals(expected.size, LocalDates.ADAPTER.encodedSize(day))
+            Assert.assertArrayEquals(expected, LocalDates.ADAPTER.encode(day))
+            Assert.assertEquals(day, LocalDates.ADAPTER.decode(expected))
+
+            val bytes = ByteArray(10)
+            val writer = WireWriter.of(bytes)
+            LocalDates.write(writer, day)
+            Assert.assertArrayEquals(expected, bytes.copyOf(writer.position()))
+        }
+    }
+
+    @Test
+    fun readsWhatWireWrites() {
+        for (day in days) {
+            val buffer = Buffer()
+            ProtoAdapter.SINT64.encodeWithTag(ProtoWriter(buffer), 1, day.toEpochDay())
+            val reader = WireReader.of(buffer.readByteArray())
+            val token = reader.beginMessage()
+            Assert.assertEquals(1, reader.nextTag())
+            Assert.assertEquals(day, LocalDates.read(reader))
+            reader.endMessage(token)
+        }
+    }
+}
@@ -0,0 +1,151 @@
+package run.mojo.wire.codec
+
+import com.squareup.wire.FieldEncoding
+import com.squareup.wire.ProtoAdapter
+import com.squareup.wire.ProtoWriter
+import okio.Buffer
+import org.junit.Assert
+import org.junit.Test
+import java.net.ProtocolException
+
+class PackedArraysTest {
+    private val ints = intArrayOf(0, 1, 300, -1, Int.MAX_VALUE, Int.MIN_VALUE)
+    private val longs = longArrayOf(0, 1, 1L shl 40, -1, Long.MAX_VALUE, Long.MIN_VALUE)
+    private val floats = floatArrayOf(0f, -1.5f, Float.NaN, Float.MAX_VALUE)
+    private val doubles = doubleArrayOf(0.0, 2.25, Double.NEGATIVE_INFINITY, Double.MIN_VALUE)
+
+    /** Wire's packed encoding of [values] as field 1. */
+    private fun <E> packed(adapter: ProtoAdapter<E>, values: List<E>): ByteArray {
+        val buffer = Buffer()
+        adapter.asPacked().encodeWithTag(ProtoWriter(buffer), 1, values)
+        return buffer.readByteArray()
+    }
+
+    /** Field 1 holding a packed run of [size] bytes that [payload] writes. */
+    private fun okio(size: Int, payload: (ProtoWriter) -> Unit): ByteArray {
+        val buffer = Buffer()
+        val writer = ProtoWriter(buffer)
+        writer.writeTag(1, FieldEncoding.LENGTH_DELIMITED)
+        writer.writeVarint32(size)
+        payload(writer)
+        return buffer.readByteArray()
+    }
+
+    /** Same as [okio] through a [WireWriter]. */
+    private fun wire(size: Int, payload: (WireWriter) -> Unit): ByteArray {
+        val bytes = ByteArray(size + 6)
+        val writer = WireWriter.of(bytes)
+        writer.writeTag(1, FieldEncoding.LENGTH_DELIMITED)
+        writer.writeVarint32(size)
+        payload(writer)
+        return bytes.copyOf(writer.position())
+    }
+
+    @Test
+    fun writesWhatWirePacks() {
+        val int32 = packed(ProtoAdapter.INT32, ints.toList())
+        val int32Size = PackedArrays.int32Size(ints)
+        Assert.assertArrayEquals(int32, okio(int32Size) { PackedArrays.writeInt32(it, ints) })
+        Assert.assertArrayEquals(int32, wire(int32Size) { it.writePackedInt32(ints) })
+
+        val sint32 = packed(ProtoAdapter.SINT32, ints.toList())
+        val sint32Size = PackedArrays.sint32Size(ints)
+        Assert.assertArrayEquals(sint32, okio(sint32Size) { PackedArrays.writeSInt32(it, ints) })
+        Assert.assertArrayEquals(sint32, wire(sint32Size) { it.writePackedSInt32(ints) })
+
+        val fixed32 = packed(ProtoAdapter.FIXED32, ints.toList())
+        Assert.assertArrayEquals(fixed32, okio(ints.size * 4) { PackedArrays.writeFixed32(it, ints) })
+        Assert.assertArrayEquals(fixed32, wire(ints.size * 4) { it.writePackedFixed32(ints) })
+
+        val int64 = packed(ProtoAdapter.INT64, longs.toList())
+        val int64Size = PackedArrays.int64Size(longs)
+        Assert.assertArrayEquals(int64, okio(int64Size) { PackedArrays.writeInt64(it, longs) })
+        Assert.assertArrayEquals(int64, wire(int64Size) { it.writePackedInt64(longs) })
+
+        val sint64 = packed(ProtoAdapter.SINT64, longs.toList())
+        val sint64Size = PackedArrays.sint64Size(longs)
+        Assert.assertArrayEquals(sint64, okio(sint64Size) { PackedArrays.writeSInt64(it, longs) })
+        Assert.assertArrayEquals(sint64, wire(sint64Size) { it.writePackedSInt64(longs) })
+
+        val fixed64 = packed(ProtoAdapter.FIXED64, longs.toList())
+        Assert.assertArrayEquals(fixed64, okio(longs.size * 8) { PackedArrays.writeFixed64(it, longs) })
+        Assert.assertArrayEquals(fixed64, wire(longs.size * 8) { it.writePackedFixed64(longs) })
+
+        val float = packed(ProtoAdapter.FLOAT, floats.toList())
+        Assert.assertArrayEquals(float, okio(floats.size * 4) { PackedArrays.writeFloat(it, floats) })
+        Assert.assertArrayEquals(float, wire(floats.size * 4) { it.writePackedFloat(floats) })
+
+        val double = packed(ProtoAdapter.DOUBLE, doubles.toList())
+        Assert.assertArrayEquals(double, okio(doubles.size * 8) { PackedArrays.writeDouble(it, doubles) })
+        Assert.assertArrayEquals(double, wire(doubles.size * 8) { it.writePackedDouble(doubles) })
+    }
+
+    /** Reads the packed field 1 of [bytes] with [read]. */
+    private fun <A> read(bytes: ByteArray, read: (WireReader) -> A): A {
+        val reader = WireReader.of(bytes)
+        val token = reader.beginMessage()
+        Assert.assertEquals(1, reader.nextTag())
+        val result = read(reader)
+        Assert.assertEquals(-1, reader.nextTag())
+        reader.endMessage(token)
+        return result
+    }
+
+    /** Reads [values] back after Wire packs them with [adapter]. */
+    private fun <E, A> readBack(adapter: ProtoAdapter<E>, values: List<E>, read: (WireReader) -> A): A =
+        read(packed(adapter, values), read)
+
+    @Test
+    fun readsWhatWirePacks() {
+        val int32 = readBack(ProtoAdapter.INT32, ints.toList()) { it.readPackedInt32(null, 0) }
+        Assert.assertArrayEquals(ints, int32)
+        val sint32 = readBack(ProtoAdapter.SINT32, ints.toList()) { it.readPackedSInt32(null, 0) }
+        Assert.assertArrayEquals(ints, sint32)
+        val fixed32 = readBack(ProtoAdapter.FIXED32, ints.toList()) { it.readPackedFixed32(null, 0) }
+        Assert.assertArrayEquals(ints, fixed32)
+
+        val int64 = readBack(ProtoAdapter.INT64, longs.toList()) { it.readPackedInt64(null, 0) }
+        Assert.assertArrayEquals(longs, int64)
+        val sint64 = readBack(ProtoAdapter.SINT64, longs.toList()) { it.readPackedSInt64(null, 0) }
+        Assert.assertArrayEquals(longs, sint64)
+        val fixed64 = readBack(ProtoAdapter.FIXED64, longs.toList()) { it.readPackedFixed64(null, 0) }
+        Assert.assertArrayEquals(longs, fixed64)
+
+        val float = readBack(ProtoAdapter.FLOAT, floats.toList()) { it.readPackedFloat(null, 0) }
+        Assert.assertArrayEquals(floats, float, 0f)
+        val double = readBack(ProtoAdapter.DOUBLE, doubles.toList()) { it.readPackedDouble(null, 0) }
+        Assert.assertArrayEquals(doubles, double, 0.0)
+    }
+
+    @Test
+    fun appendsToTheElementsInUse() {
+        val bytes = packed(ProtoAdapter.INT32, listOf(7, 8))
+        // Two of the three elements are in use, so the run lands after them in a new array.
+        val grown = read(bytes) { it.readPackedInt32(intArrayOf(1, 2, 3), 2) }
+        Assert.assertArrayEquals(intArrayOf(1, 2, 7, 8), grown)
+        // An array of exactly the right length is refilled in place.
+        val same = intArrayOf(1, 0, 0)
+        Assert.assertSame(same, read(bytes) { it.readPackedInt32(same, 1) })
+        Assert.assertArrayEquals(intArrayOf(1, 7, 8), same)
+    }
+
+    @Test(expected = ProtocolException::class)
+    fun fixedRunMustHoldWholeElements() {
+        val buffer = Buffer()
+        val writer = ProtoWriter(buffer)
+        writer.writeTag(1, FieldEncoding.LENGTH_DELIMITED)
+        writer.writeVarint32(6)
+        writer.writeFixed32(1)
+        writer.writeVarint32(0)
+        writer.writeVarint32(0)
+        read(buffer.readByteArray()) { it.readPackedFixed32(null, 0) }
+    }
+
+    @Test
+    fun growLeavesRoomForAnotherElement() {
+        Assert.assertEquals(8, PackedArrays.grow(null as IntArray?).size)
+        val grown = PackedArrays.grow(longArrayOf(1, 2, 3, 4, 5, 6, 7, 8))
+        Assert.assertEquals(16, grown.size)
+        Assert.assertEquals(8L, grown[7])
+    }
+}
@@ -0,0 +1,70 @@
+package run.mojo.wire.codec
+
+import org.junit.Assert
+import org.junit.Test
+
+class SizeStackTest {
+    @Test
+    fun readsLengthsBackInPreOrder() {
+        val sizes = SizeStack()
+        val token = sizes.begin()
+        // A message with two nested ones, the first holding a third.
+        val outer = sizes.reserve()
+        val inner = sizes.reserve()
+        sizes.set(inner, 3)
+        sizes.set(outer, 5)
+        val sibling = sizes.reserve()
+        sizes.set(sibling, 7)
+
+        Assert.assertEquals(5, sizes.next())
+        Assert.assertEquals(3, sizes.next())
+        Assert.assertEquals(7, sizes.next())
+        sizes.end(token)
+    }
+
+    @Test
+    fun nestedFrameLeavesTheOuterOneIntact() {
+        val sizes = SizeStack()
+        val outer = sizes.begin()
+        sizes.set(sizes.reserve(), 1)
+        sizes.set(sizes.reserve(), 2)
+        Assert.assertEquals(1, sizes.next())
+
+        val inner = sizes.begin()
+        sizes.set(sizes.reserve(), 10)
+        Assert.assertEquals(10, sizes.next())
+        sizes.end(inner)
+
+        Assert.assertEquals(2, sizes.next())
+        sizes.end(outer)
+
+        // Every slot was released, so a new frame starts over.
+        val again = sizes.begin()
+        Assert.assertEquals(0, sizes.reserve())
+        sizes.end(again)
+    }
+
+    @Test
+    fun growsPastItsInitialCapacity() {
+        val sizes = SizeStack()
+        val token = sizes.begin()
+        for (i in 0 until 1000) {
+            sizes.set(sizes.reserve(), i)
+        }
+        for (i in 0 until 1000) {
+            Assert.assertEquals(i, sizes.next())
+        }
+        sizes.end(token)
+    }
+
+    @Test
+    fun eachThreadHasItsOwnStack() {
+        val mine = SizeStack.get()
+        Assert.assertSame(mine, SizeStack.get())
+        var theirs: SizeStack? = null
+        val thread = Thread { theirs = SizeStack.get() }
+        thread.start()
+        thread.join()
+        Assert.assertNotSame(mine, theirs)
+    }
+}
@@ -0,0 +1,101 @@
+package run.mojo.wire.codec
+
+import com.squareup.wire.ProtoAdapter
+import com.squareup.wire.ProtoWriter
+import okio.Buffer
+import org.junit.Assert
+import org.junit.Test
+import java.nio.ByteBuffer
+
+class StringCacheTest {
+    /** A fresh instance equal to [value], so sameness shows where a string came from. */
+    private fun copyOf(value: String) = String(value.toCharArray())
+
+    /** Reads [value], written as a string field, through [WireReader.readString] and [strings]. */
+    private fun read(strings: StringCache, value: String, direct: Boolean = false): String {
+        val buffer = Buffer()
+        ProtoAdapter.STRING.encodeWithTag(ProtoWriter(buffer), 1, value)
+        val bytes = buffer.readByteArray()
+        val reader = if (direct) {
+            val native = ByteBuffer.allocateDirect(bytes.size)
+            native.put(bytes).flip()
+            WireReader.of(native)
+        } else {
+            WireReader.of(bytes)
+        }
+        val token = reader.beginMessage()
+        Assert.assertEquals(1, reader.nextTag())
+        val result = reader.readString(strings)
+        reader.endMessage(token)
+        return result
+    }
+
+    @Test
+    fun hitReturnsTheCachedInstance() {
+        val strings = StringCache(16)
+        val first = copyOf("active")
+        Assert.assertSame(first, strings.intern(first))
+        Assert.assertSame(first, strings.intern(copyOf("active")))
+        Assert.assertNull(strings.intern(null))
+    }
+
+    @Test
+    fun missReplacesTheSlot() {
+        val strings = StringCache(1)
+        val a = copyOf("a")
+        strings.intern(a)
+        Assert.assertEquals("b", strings.intern("b"))
+        val again = copyOf("a")
+        Assert.assertSame(again, strings.intern(again))
+    }
+
+    @Test
+    fun collidingStringsEvictEachOther() {
+        // Equal hash codes, so the same slot whatever the capacity.
+        Assert.assertEquals("Aa".hashCode(), "BB".hashCode())
+        val strings = StringCache(1024)
+        val aa = copyOf("Aa")
+        strings.intern(aa)
+        Assert.assertEquals("BB", strings.intern("BB"))
+        Assert.assertNotSame(aa, strings.intern(copyOf("Aa")))
+        Assert.assertEquals("BB", read(strings, "BB"))
+        Assert.assertEquals("Aa", read(strings, "Aa"))
+    }
+
+    @Test
+    fun longStringsAreNotCached() {
+        val strings = StringCache(16)
+        val long = "x".repeat(StringCache.MAX_LENGTH + 1)
+        strings.intern(long)
+        Assert.assertNotSame(long, strings.intern(copyOf(long)))
+        Assert.assertNotSame(read(strings, long), read(strings, long))
+        Assert.assertEquals(long, read(strings, long))
+    }
+
+    @Test
+    fun readerSharesRepeatsFromArraysAndNativeMemory() {
+        val strings = StringCache(16)
+        val first = read(strings, "GBP")
+        Assert.assertEquals("GBP", first)
+        Assert.assertSame(first, read(strings, "GBP"))
+        Assert.assertSame(first, read(strings, "GBP", direct = true))
+        Assert.assertSame(first, strings.intern(copyOf("GBP")))
+        Assert.assertEquals("", read(strings, ""))
+    }
+
+    @Test
+    fun nonAsciiIsDecodedAndShared() {
+        val strings = StringCache(16)
+        for (value in listOf("é", "日本", "😀", "naïve")) {
+            val first = read(strings, value)
+            Assert.assertEquals(value, first)
+            Assert.assertSame(first, read(strings, value, direct = true))
+            Assert.assertSame(first, strings.intern(copyOf(value)))
+        }
+    }
+
+    @Test(expected = IllegalArgumentException::class)
+    fun rejectsAnEmptyCache() {
+        StringCache(0)
+    }
+}
@@ -0,0 +1,118 @@
+package run.mojo.wire.codec
+
+import com.squareup.wire.FieldEncoding
+import com.squareup.wire.ProtoAdapter
+import com.squareup.wire.ProtoWriter
+import okio.Buffer
+import okio.ByteString
+import org.junit.Assert
+import org.junit.Test
+
+class UnknownFieldsTest {
+    private val input = ByteArray(16) { it.toByte() }
+
+    @Test
+    fun adjacentRangesAreMerged() {
+        val unknown = UnknownFields()
+        unknown.add(input, 2, 3)
+        unknown.add(input, 5, 2)
+        unknown.add(input, 10, 1)
+        unknown.add(input, 12, 0)
+        Assert.assertEquals(6, unknown.size())
+        Assert.assertArrayEquals(byteArrayOf(2, 3, 4, 5, 6, 10), unknown.toByteArray())
+        Assert.assertEquals(ByteString.of(2, 3, 4, 5, 6, 10), unknown.toByteString())
+    }
+
+    @Test
+    fun singleRangeSharesTheInput() {
+        val unknown = UnknownFields()
+        unknown.add(input, 4, 3)
+        Assert.assertEquals(ByteString.of(4, 5, 6), unknown.toByteString())
+        input[5] = 50
+        Assert.assertEquals(ByteString.of(4, 50, 6), unknown.toByteString())
+    }
+
+    @Test
+    fun anotherInputIsCopied() {
+        val unknown = UnknownFields()
+        unknown.add(input, 1, 2)
+        val other = byteArrayOf(9, 8, 7)
+        unknown.add(other, 1, 2)
+        other[1] = 0
+        input[1] = 0
+        Assert.assertArrayEquals(byteArrayOf(1, 2, 8, 7), unknown.toByteArray())
+        unknown.add(input, 3, 1)
+        Assert.assertArrayEquals(byteArrayOf(1, 2, 8, 7, 3), unknown.toByteArray())
+    }
+
+    @Test
+    fun clearForgetsEverything() {
+        val unknown = UnknownFields()
+        unknown.add(input, 1, 2)
+        unknown.clear()
+        Assert.assertTrue(unknown.isEmpty())
+        Assert.assertEquals(0, unknown.toByteArray().size)
+        unknown.add(input, 7, 1)
+        Assert.assertArrayEquals(byteArrayOf(7), unknown.toByteArray())
+    }
+
+    @Test
+    fun protoReaderFieldIsEncodedWithItsTag() {
+        val unknown = UnknownFields()
+        unknown.add(3, FieldEncoding.VARINT, 150L)
+        unknown.add(4, FieldEncoding.LENGTH_DELIMITED, ByteString.of(1, 2))
+
+        val buffer = Buffer()
+        val writer = ProtoWriter(buffer)
+        ProtoAdapter.UINT64.encodeWithTag(writer, 3, 150L)
+        ProtoAdapter.BYTES.encodeWithTag(writer, 4, ByteString.of(1, 2))
+        Assert.assertArrayEquals(buffer.readByteArray(), unknown.toByteArray())
+    }
+
+    @Test
+    fun writesRangesBackOut() {
+        val unknown = UnknownFields()
+        unknown.add(input, 2, 2)
+        unknown.add(input, 8, 3)
+        val expected = byteArrayOf(2, 3, 8, 9, 10)
+
+        val array = ByteArray(expected.size)
+        val wire = WireWriter.of(array)
+        unknown.writeTo(wire)
+        Assert.assertEquals(expected.size, wire.position())
+        Assert.assertArrayEquals(expected, array)
+
+        val buffer = Buffer()
+        unknown.writeTo(ProtoWriter(buffer))
+        Assert.assertArrayEquals(expected, buffer.readByteArray())
+    }
+
+    @Test
+    fun readerRecordsSkippedFieldsWithTheirTags() {
+        val buffer = Buffer()
+        val writer = ProtoWriter(buffer)
+        ProtoAdapter.INT32.encodeWithTag(writer, 1, 7)
+        ProtoAdapter.STRING.encodeWithTag(writer, 2, "skip")
+        ProtoAdapter.FIXED64.encodeWithTag(writer, 3, -1L)
+        ProtoAdapter.INT32.encodeWithTag(writer, 4, 8)
+        val bytes = buffer.readByteArray()
+
+        val unknown = UnknownFields()
+        val reader = WireReader.of(bytes)
+        val token = reader.beginMessage()
+        for (tag in generateSequence { reader.nextTag().takeIf { it != -1 } }) {
+            if (tag == 2 || tag == 3) {
+                reader.skip(unknown)
+            } else {
+                reader.readVarint32()
+            }
+        }
+        reader.endMessage(token)
+
+        val skipped = Buffer()
+        val skippedWriter = ProtoWriter(skipped)
+        ProtoAdapter.STRING.encodeWithTag(skippedWriter, 2, "skip")
+        ProtoAdapter.FIXED64.encodeWithTag(skippedWriter, 3, -1L)
+        Assert.assertArrayEquals(skipped.readByteArray(), unknown.toByteArray())
+    }
+}
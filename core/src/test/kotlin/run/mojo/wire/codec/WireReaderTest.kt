@@ -0,0 +1,170 @@
+package run.mojo.wire.codec
+
+import com.squareup.wire.FieldEncoding
+import com.squareup.wire.ProtoAdapter
+import com.squareup.wire.ProtoWriter
+import okio.Buffer
+import okio.ByteString
+import org.junit.Assert
+import org.junit.Test
+import java.io.EOFException
+import java.nio.ByteBuffer
+
+class WireReaderTest {
+    private val message: ByteArray = run {
+        val buffer = Buffer()
+        val writer = ProtoWriter(buffer)
+        ProtoAdapter.INT32.encodeWithTag(writer, 1, -7)
+        ProtoAdapter.INT64.encodeWithTag(writer, 2, 1L shl 40)
+        ProtoAdapter.FIXED32.encodeWithTag(writer, 3, 9)
+        ProtoAdapter.DOUBLE.encodeWithTag(writer, 4, 2.5)
+        ProtoAdapter.STRING.encodeWithTag(writer, 5, "日本 wire")
+        ProtoAdapter.BYTES.encodeWithTag(writer, 6, ByteString.of(1, 2, 3))
+        buffer.readByteArray()
+    }
+
+    /** The same bytes from a byte[], a slice of a larger one, and heap and direct buffers. */
+    private fun readers(bytes: ByteArray): List<WireReader> {
+        val padded = ByteArray(bytes.size + 4)
+        System.arraycopy(bytes, 0, padded, 2, bytes.size)
+        val direct = ByteBuffer.allocateDirect(bytes.size)
+        direct.put(bytes).flip()
+        return listOf(
+            WireReader.of(bytes),
+            WireReader.of(padded, 2, bytes.size),
+            WireReader.of(ByteBuffer.wrap(bytes)),
+            WireReader.of(direct)
+        )
+    }
+
+    @Test
+    fun readsWhatProtoWriterWrites() {
+        for (reader in readers(message)) {
+            val token = reader.beginMessage()
+            Assert.assertEquals(1, reader.nextTag())
+            Assert.assertEquals(FieldEncoding.VARINT, reader.peekFieldEncoding())
+            Assert.assertEquals(-7, reader.readVarint32())
+            Assert.assertEquals(2, reader.nextTag())
+            Assert.assertEquals(1L shl 40, reader.readVarint64())
+            Assert.assertEquals(3, reader.nextTag())
+            Assert.assertEquals(9, reader.readFixed32())
+            Assert.assertEquals(4, reader.nextTag())
+            Assert.assertEquals(2.5, java.lang.Double.longBitsToDouble(reader.readFixed64()), 0.0)
+            Assert.assertEquals(5, reader.nextTag())
+            Assert.assertEquals("日本 wire", reader.readString())
+            Assert.assertEquals(6, reader.nextTag())
+            Assert.assertEquals(ByteString.of(1, 2, 3), reader.readBytes())
+            Assert.assertEquals(-1, reader.nextTag())
+            reader.endMessage(token)
+            Assert.assertEquals(message.size, reader.position())
+        }
+    }
+
+    @Test
+    fun skipsEveryWireType() {
+        for (reader in readers(message)) {
+            val token = reader.beginMessage()
+            var tags = 0
+            while (reader.nextTag() != -1) {
+                reader.skip()
+                tags++
+            }
+            reader.endMessage(token)
+            Assert.assertEquals(6, tags)
+        }
+    }
+
+    @Test
+    fun readsWithWhicheverAdapterIsAtHand() {
+        val buffer = Buffer()
+        val map = ProtoAdapter.newMapAdapter(ProtoAdapter.STRING, ProtoAdapter.INT32)
+        map.encodeWithTag(ProtoWriter(buffer), 1, mapOf("a" to 1))
+        for (reader in readers(buffer.readByteArray())) {
+            val token = reader.beginMessage()
+            Assert.assertEquals(1, reader.nextTag())
+            Assert.assertEquals(mapOf("a" to 1), reader.read(map, FieldEncoding.LENGTH_DELIMITED))
+            Assert.assertEquals(-1, reader.nextTag())
+            reader.endMessage(token)
+        }
+    }
+
+    @Test
+    fun truncatedValueIsAnError() {
+        val truncated = message.copyOf(message.size - 1)
+        for (reader in readers(truncated)) {
+            try {
+                val token = reader.beginMessage()
+                while (reader.nextTag() != -1) {
+                    reader.skip()
+                }
+                reader.endMessage(token)
+                Assert.fail()
+            } catch (expected: EOFException) {
+            }
+        }
+    }
+
+    @Test
+    fun expectTagConsumesOnlyTheExpectedKey() {
+        for (reader in readers(message)) {
+            val token = reader.beginMessage()
+            // Field 2 is a varint, field 1 is not fixed32.
+            Assert.assertFalse(reader.expectTag((2 shl 3) or 0))
+            Assert.assertFalse(reader.expectTag((1 shl 3) or 5))
+            Assert.assertEquals(0, reader.position())
+            Assert.assertTrue(reader.expectTag((1 shl 3) or 0))
+            Assert.assertEquals(FieldEncoding.VARINT, reader.peekFieldEncoding())
+            Assert.assertEquals(-7, reader.readVarint32())
+            Assert.assertTrue(reader.expectTag((2 shl 3) or 0))
+            Assert.assertEquals(1L shl 40, reader.readVarint64())
+            // A miss falls back to nextTag(), which still sees the field.
+            Assert.assertFalse(reader.expectTag((4 shl 3) or 1))
+            Assert.assertEquals(3, reader.nextTag())
+            Assert.assertEquals(9, reader.readFixed32())
+            Assert.assertTrue(reader.expectTag((4 shl 3) or 1))
+            reader.skip()
+            Assert.assertTrue(reader.expectTag((5 shl 3) or 2))
+            reader.skip()
+            Assert.assertTrue(reader.expectTag((6 shl 3) or 2))
+            reader.skip()
+            // Nothing is left to match.
+            Assert.assertFalse(reader.expectTag((1 shl 3) or 0))
+            Assert.assertEquals(-1, reader.nextTag())
+            reader.endMessage(token)
+        }
+    }
+
+    @Test
+    fun expectTagMatchesMultiByteKeys() {
+        val tags = intArrayOf(15, 16, 2047, 2048, 1 shl 20)
+        val buffer = Buffer()
+        val writer = ProtoWriter(buffer)
+        tags.forEach { ProtoAdapter.INT32.encodeWithTag(writer, it, it) }
+        for (reader in readers(buffer.readByteArray())) {
+            val token = reader.beginMessage()
+            for (tag in tags) {
+                // Same low bits, one tag off.
+                Assert.assertFalse(reader.expectTag(((tag + 1) shl 3) or 0))
+                Assert.assertTrue(reader.expectTag((tag shl 3) or 0))
+                Assert.assertEquals(tag, reader.readVarint32())
+            }
+            reader.endMessage(token)
+        }
+    }
+
+    @Test
+    fun expectTagWaitsForTheCurrentValue() {
+        val reader = WireReader.of(message)
+        val token = reader.beginMessage()
+        Assert.assertEquals(1, reader.nextTag())
+        // The value of field 1 hasn't been read yet.
+        Assert.assertFalse(reader.expectTag((2 shl 3) or 0))
+        reader.skip()
+        Assert.assertTrue(reader.expectTag((2 shl 3) or 0))
+        reader.skip()
+        while (reader.nextTag() != -1) {
+            reader.skip()
+        }
+        reader.endMessage(token)
+    }
+}
@@ -0,0 +1,146 @@
+package run.mojo.wire.codec
+
+import com.squareup.wire.FieldEncoding
+import com.squareup.wire.ProtoAdapter
+import com.squareup.wire.ProtoWriter
+import okio.Buffer
+import okio.ByteString
+import org.junit.Assert
+import org.junit.Test
+import java.nio.BufferOverflowException
+import java.nio.ByteBuffer
+
+class WireWriterTest {
+    private val strings = listOf("", "wire", "é", "日本", "😀", "a\uD800b")
+
+    /** Writes the same fields to a [ProtoWriter] and a [WireWriter] through [write]. */
+    private fun assertSameBytes(write: (ProtoWriter?, WireWriter?) -> Unit) {
+        val buffer = Buffer()
+        write(ProtoWriter(buffer), null)
+        val expected = buffer.readByteArray()
+
+        val array = ByteArray(expected.size)
+        val writer = WireWriter.of(array)
+        write(null, writer)
+        Assert.assertEquals(expected.size, writer.position())
+        Assert.assertArrayEquals(expected, array)
+
+        for (direct in listOf(false, true)) {
+            val capacity = expected.size + 2
+            val bytes = if (direct) ByteBuffer.allocateDirect(capacity) else ByteBuffer.allocate(capacity)
+            bytes.position(2)
+            val bufferWriter = WireWriter.of(bytes)
+            write(null, bufferWriter)
+            Assert.assertEquals(expected.size, bufferWriter.position())
+            // The buffer's position is left for the caller to advance.
+            Assert.assertEquals(2, bytes.position())
+            val written = ByteArray(expected.size)
+            bytes.get(written)
+            Assert.assertArrayEquals(expected, written)
+        }
+    }
+
+    @Test
+    fun writesVarintsLikeProtoWriter() {
+        val ints = intArrayOf(0, 1, 127, 128, 16383, 16384, Int.MAX_VALUE, -1, Int.MIN_VALUE)
+        val longs = longArrayOf(0, 1, 1L shl 35, Long.MAX_VALUE, -1, Long.MIN_VALUE)
+        assertSameBytes { proto, wire ->
+            for (value in ints) {
+                proto?.let { ProtoAdapter.INT32.encodeWithTag(it, 1, value) }
+                wire?.let {
+                    it.writeTag(1, FieldEncoding.VARINT)
+                    it.writeInt32(value)
+                }
+            }
+            for (value in longs) {
+                proto?.let { ProtoAdapter.INT64.encodeWithTag(it, 2, value) }
+                wire?.let {
+                    it.writeTag(2, FieldEncoding.VARINT)
+                    it.writeVarint64(value)
+                }
+            }
+        }
+    }
+
+    @Test
+    fun writesFixedWidthLikeProtoWriter() {
+        assertSameBytes { proto, wire ->
+            proto?.let {
+                ProtoAdapter.FIXED32.encodeWithTag(it, 3, -5)
+                ProtoAdapter.FIXED64.encodeWithTag(it, 4, 1L shl 50)
+                ProtoAdapter.FLOAT.encodeWithTag(it, 5, 1.5f)
+                ProtoAdapter.DOUBLE.encodeWithTag(it, 6, -0.25)
+            }
+            wire?.let {
+                it.writeTag(3, FieldEncoding.FIXED32)
+                it.writeFixed32(-5)
+                it.writeTag(4, FieldEncoding.FIXED64)
+                it.writeFixed64(1L shl 50)
+                it.writeTag(5, FieldEncoding.FIXED32)
+                it.writeFixed32(java.lang.Float.floatToIntBits(1.5f))
+                it.writeTag(6, FieldEncoding.FIXED64)
+                it.writeFixed64(java.lang.Double.doubleToLongBits(-0.25))
+            }
+        }
+    }
+
+    @Test
+    fun writesStringsAndBytesLikeProtoWriter() {
+        val bytes = ByteString.of(0, -1, 64)
+        assertSameBytes { proto, wire ->
+            for (value in strings) {
+                proto?.let { ProtoAdapter.STRING.encodeWithTag(it, 7, value) }
+                wire?.let {
+                    it.writeTag(7, FieldEncoding.LENGTH_DELIMITED)
+                    it.writeString(value)
+                }
+            }
+            proto?.let { ProtoAdapter.BYTES.encodeWithTag(it, 8, bytes) }
+            wire?.let {
+                it.writeTag(8, FieldEncoding.LENGTH_DELIMITED)
+                it.writeBytes(bytes)
+            }
+        }
+    }
+
+    @Test
+    fun writesSegmentedByteStringsLikeProtoWriter() {
+        // Large enough to span several Okio segments, so the snapshot is segmented.
+        val source = Buffer()
+        for (i in 0 until 20_000) {
+            source.writeByte(i)
+        }
+        val bytes = source.snapshot()
+        assertSameBytes { proto, wire ->
+            proto?.let { ProtoAdapter.BYTES.encodeWithTag(it, 9, bytes) }
+            wire?.let {
+                it.writeTag(9, FieldEncoding.LENGTH_DELIMITED)
+                it.writeBytes(bytes)
+            }
+        }
+    }
+
+    @Test(expected = BufferOverflowException::class)
+    fun refusesByteStringsPastItsLimit() {
+        val writer = WireWriter.of(ByteArray(4))
+        writer.writeBytes(ByteString.of(1, 2, 3, 4))
+    }
+
+    @Test
+    fun utf8SizeMatchesTheWrittenLength() {
+        for (value in strings) {
+            Assert.assertEquals(value, Buffer().writeUtf8(value).size, Scalars.utf8Size(value).toLong())
+        }
+    }
+
+    @Test(expected = BufferOverflowException::class)
+    fun refusesToWritePastItsLimit() {
+        val writer = WireWriter.of(ByteArray(8), 2, 4)
+        writer.writeFixed64(1)
+    }
+
+    @Test(expected = IndexOutOfBoundsException::class)
+    fun rejectsARangeOutsideTheArray() {
+        WireWriter.of(ByteArray(4), 2, 3)
+    }
+}
@@ -0,0 +1,154 @@
+package run.mojo.wire.codec
+
+import com.squareup.wire.FieldEncoding
+import com.squareup.wire.ProtoAdapter
+import com.squareup.wire.ProtoReader
+import com.squareup.wire.ProtoWriter
+import okio.Buffer
+import okio.ByteString
+import org.junit.Assert
+import org.junit.Test
+import java.net.ProtocolException
+import java.time.ZoneId
+import java.time.ZoneOffset
+import java.time.ZonedDateTime
+
+class ZonedDateTimesTest {
+    private val paris = ZoneId.of("Europe/Paris")
+    private val values = listOf(
+        ZonedDateTime.of(2018, 10, 18, 12, 34, 56, 789_000_000, paris),
+        ZonedDateTime.of(1969, 12, 31, 23, 59, 59, 0, paris),
+        ZonedDateTime.of(2018, 10, 18, 12, 0, 0, 1, ZoneOffset.ofHours(-5)),
+        ZonedDateTime.of(1970, 1, 1, 1, 0, 0, 0, paris)
+    )
+
+    /** The ZonedTimestamp Wire writes for [value], with its zone [ref] or else its id. */
+    private fun expected(value: ZonedDateTime, ref: Int? = null): ByteArray {
+        val buffer = Buffer()
+        val writer = ProtoWriter(buffer)
+        if (value.toEpochSecond() != 0L) {
+            ProtoAdapter.INT64.encodeWithTag(writer, 1, value.toEpochSecond())
+        }
+        if (value.nano != 0) {
+            ProtoAdapter.INT32.encodeWithTag(writer, 2, value.nano)
+        }
+        if (ref == null) {
+            ProtoAdapter.STRING.encodeWithTag(writer, 3, value.zone.id)
+        } else {
+            ProtoAdapter.UINT32.encodeWithTag(writer, 4, ref)
+        }
+        return buffer.readByteArray()
+    }
+
+    /** [values] as repeated field 1, each zone's id written once and referred to after that. */
+    private fun expectedMessage(): ByteArray {
+        val buffer = Buffer()
+        val writer = ProtoWriter(buffer)
+        val refs = listOf(null, 0, null, 0)
+        values.zip(refs).forEach { (value, ref) ->
+            val field = expected(value, ref)
+            writer.writeTag(1, FieldEncoding.LENGTH_DELIMITED)
+            writer.writeVarint32(field.size)
+            writer.writeBytes(ByteString.of(*field))
+        }
+        return buffer.readByteArray()
+    }
+
+    @Test
+    fun adapterAlwaysWritesTheZoneId() {
+        for (value in values) {
+            val expected = expected(value)
+            Assert.assertEquals("$value", expected.size, ZonedDateTimes.ADAPTER.encodedSize(value))
+            Assert.assertArrayEquals("$value", expected, ZonedDateTimes.ADAPTER.encode(value))
+            Assert.assertEquals(value, ZonedDateTimes.ADAPTER.decode(expected))
+        }
+    }
+
+    @Test
+    fun adapterRejectsZoneRefs() {
+        try {
+            ZonedDateTimes.ADAPTER.decode(expected(values[0], 0))
+            Assert.fail()
+        } catch (expected: ProtocolException) {
+        }
+    }
+
+    @Test
+    fun missingZoneIsUtc() {
+        val buffer = Buffer()
+        ProtoAdapter.INT64.encodeWithTag(ProtoWriter(buffer), 1, 60L)
+        val value = ZonedDateTimes.ADAPTER.decode(buffer.readByteArray())
+        Assert.assertEquals(ZonedDateTime.of(1970, 1, 1, 0, 1, 0, 0, ZoneOffset.UTC), value)
+    }
+
+    @Test
+    fun messageWritesEachZoneIdOnce() {
+        val expected = expectedMessage()
+        val sizes = ZoneDictionary()
+        val size = values.sumBy { ZonedDateTimes.encodedSizeWithTag(1, it, sizes) }
+        Assert.assertEquals(expected.size, size)
+
+        val bytes = ByteArray(expected.size)
+        val writer = WireWriter.of(bytes)
+        val written = ZoneDictionary()
+        for (value in values) {
+            writer.writeTag(1, FieldEncoding.LENGTH_DELIMITED)
+            ZonedDateTimes.write(writer, value, written)
+        }
+        Assert.assertEquals(expected.size, writer.position())
+        Assert.assertArrayEquals(expected, bytes)
+
+        val buffer = Buffer()
+        val protoWriter = ProtoWriter(buffer)
+        val protoWritten = ZoneDictionary()
+        for (value in values) {
+            protoWriter.writeTag(1, FieldEncoding.LENGTH_DELIMITED)
+            ZonedDateTimes.write(protoWriter, value, protoWritten)
+        }
+        Assert.assertArrayEquals(expected, buffer.readByteArray())
+    }
+
+    @Test
+    fun messageReadsZoneRefs() {
+        val expected = expectedMessage()
+
+        val reader = WireReader.of(expected)
+        val read = ZoneDictionary()
+        val token = reader.beginMessage()
+        val decoded = ArrayList<ZonedDateTime>()
+        while (reader.nextTag() == 1) {
+            decoded.add(ZonedDateTimes.read(reader, read))
+        }
+        reader.endMessage(token)
+        Assert.assertEquals(values, decoded)
+
+        val protoReader = ProtoReader(Buffer().write(expected))
+        val protoRead = ZoneDictionary()
+        val protoToken = protoReader.beginMessage()
+        val protoDecoded = ArrayList<ZonedDateTime>()
+        while (protoReader.nextTag() == 1) {
+            protoDecoded.add(ZonedDateTimes.read(protoReader, protoRead))
+        }
+        protoReader.endMessage(protoToken)
+        Assert.assertEquals(values, protoDecoded)
+    }
+
+    @Test
+    fun undefinedZoneRefIsAnError() {
+        val field = expected(values[0], 1)
+        val buffer = Buffer()
+        val writer = ProtoWriter(buffer)
+        writer.writeTag(1, FieldEncoding.LENGTH_DELIMITED)
+        writer.writeVarint32(field.size)
+        writer.writeBytes(ByteString.of(*field))
+
+        val reader = WireReader.of(buffer.readByteArray())
+        reader.beginMessage()
+        Assert.assertEquals(1, reader.nextTag())
+        try {
+            ZonedDateTimes.read(reader, ZoneDictionary())
+            Assert.fail()
+        } catch (expected: ProtocolException) {
+        }
+    }
+}
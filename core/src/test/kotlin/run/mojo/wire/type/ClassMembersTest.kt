@@ -0,0 +1,152 @@
+package run.mojo.wire.type
+
+import org.junit.Assert
+import org.junit.Test
+import run.mojo.compiler.fixture.Accessors
+import run.mojo.compiler.fixture.Aliased
+import run.mojo.compiler.fixture.Blobs
+import run.mojo.compiler.fixture.Counts
+import run.mojo.compiler.fixture.Defaults
+import run.mojo.compiler.fixture.Ledger
+import run.mojo.compiler.fixture.Money
+import run.mojo.compiler.fixture.Outline
+import run.mojo.compiler.fixture.Packed
+import run.mojo.compiler.fixture.Partial
+import run.mojo.compiler.fixture.Point
+import run.mojo.compiler.fixture.Scalars
+import run.mojo.compiler.fixture.Schedule
+import run.mojo.compiler.fixture.Status
+import java.lang.reflect.Method
+import java.lang.reflect.Modifier
+import java.net.URLClassLoader
+import java.util.stream.Stream
+
+class ClassMembersTest {
+    private val fixtures = listOf(
+        Accessors::class.java, Aliased::class.java, Blobs::class.java, Counts::class.java,
+        Defaults::class.java, Ledger::class.java, Money::class.java, Outline::class.java,
+        Packed::class.java, Partial::class.java, Point::class.java, Scalars::class.java,
+        Schedule::class.java, Status::class.java
+    )
+
+    private fun schema() = ReflectionSchema.create(Stream.empty<Any>(), null, null, null, null)
+
+    /** Getter and setter of each field as extractProps matched them before the member tables. */
+    private fun declaredAccessors(cls: Class<*>): List<Pair<Method?, Method?>> {
+        val methods = LinkedHashMap<String, Method>()
+        cls.declaredMethods.forEach { methods[it.name] = it }
+        return cls.declaredFields.filter { !Modifier.isStatic(it.modifiers) }.map { field ->
+            val name = field.name
+            val capitalized = name.substring(0, 1).toUpperCase() + name.substring(1)
+            var getter = methods.remove("get$capitalized") ?: methods.remove("is$capitalized")
+            var setter: Method? = null
+            if (getter == null) {
+                getter = methods.remove(name)
+                if (getter != null && getter.parameterCount == 1) {
+                    setter = getter
+                    getter = cls.declaredMethods.firstOrNull { it.parameterCount == 0 && it.name == name }
+                }
+            }
+            getter to (setter ?: methods.remove("set$capitalized"))
+        }
+    }
+
+    private fun accessors(schema: ReflectionSchema, cls: Class<*>): List<Pair<Method?, Method?>> {
+        val desc = schema.registerType(cls) as MessageDesc
+        return desc.props.values.filter { it.containingClass == cls }.map { it.getter to it.setter }
+    }
+
+    /** Every descriptor of a schema and its fields, with nothing that differs between loaders. */
+    private fun describe(schema: ReflectionSchema): List<String> =
+        schema.descriptors.map { (name, desc) ->
+            val fields = (desc as? MessageDesc)?.props?.values?.joinToString {
+                listOf(
+                    it.name, it.tag, it.index, it.jsonName, it.dataClass.name,
+                    it.typeDescriptor?.compiled?.name, it.getter?.name, it.setter?.name, it.offset
+                ).joinToString(":")
+            }
+            val constants = (desc as? EnumDesc)?.values?.joinToString { it.name + "=" + it.tag }
+            "$name ${desc.javaClass.simpleName} ${fields ?: constants}"
+        }
+
+    /** Loads the fixtures anew, so none of their member tables have been read yet. */
+    private fun freshFixtures(): List<Class<*>> {
+        val location = Accessors::class.java.protectionDomain.codeSource.location
+        val loader = object : URLClassLoader(arrayOf(location), javaClass.classLoader) {
+            override fun loadClass(name: String, resolve: Boolean): Class<*> {
+                if (!name.startsWith(Accessors::class.java.`package`.name + ".")) {
+                    return super.loadClass(name, resolve)
+                }
+                synchronized(getClassLoadingLock(name)) {
+                    return findLoadedClass(name) ?: findClass(name)
+                }
+            }
+        }
+        return fixtures.map { loader.loadClass(it.name) }
+    }
+
+    @Test
+    fun tablesHoldTheDeclaredMembers() {
+        for (cls in fixtures) {
+            val members = ClassMembers.of(cls)
+            Assert.assertSame(members, ClassMembers.of(cls))
+            val fields = cls.declaredFields.filter { !Modifier.isStatic(it.modifiers) }
+            Assert.assertEquals(fields, members.fields.toList())
+            Assert.assertEquals(fields.map { it.genericType }, members.genericTypes.toList())
+            for (method in cls.declaredMethods) {
+                val last = cls.declaredMethods.last { it.name == method.name }
+                Assert.assertEquals(last, members.take(method.name, HashSet()))
+            }
+        }
+    }
+
+    @Test
+    fun beanAccessorsWinOverFluentOnes() {
+        val props = (schema().registerType(Accessors::class.java) as MessageDesc).props
+        Assert.assertEquals("getName", props["name"]!!.getter.name)
+        Assert.assertEquals("setName", props["name"]!!.setter.name)
+        Assert.assertEquals("isActive", props["active"]!!.getter.name)
+        Assert.assertEquals("setActive", props["active"]!!.setter.name)
+        Assert.assertEquals("label", props["label"]!!.getter.name)
+        Assert.assertNull(props["label"]!!.setter)
+        Assert.assertNull(props["size"]!!.getter)
+        Assert.assertEquals(1, props["size"]!!.setter.parameterCount)
+    }
+
+    @Test
+    fun eachMethodMatchesOneField() {
+        val props = (schema().registerType(Accessors::class.java) as MessageDesc).props
+        Assert.assertEquals("getValue", props["value"]!!.getter.name)
+        // Its fluent getter would be getValue(), which value took already.
+        Assert.assertNull(props["getValue"]!!.getter)
+        Assert.assertNull(props["getValue"]!!.setter)
+    }
+
+    @Test
+    fun accessorsMatchTheDeclaredMethodsAsBefore() {
+        val schema = schema()
+        for (cls in fixtures) {
+            Assert.assertEquals(cls.name, declaredAccessors(cls), accessors(schema, cls))
+        }
+    }
+
+    @Test
+    fun parallelBuildMatchesSerialRegistration() {
+        val parallelTypes = freshFixtures()
+        Assert.assertNotSame(Accessors::class.java, parallelTypes[0])
+        val parallel = ReflectionSchema.create(
+            parallelTypes.stream(),
+            { ReflectionSchema.TypeEntry.create(it) },
+            null,
+            null,
+            null
+        )
+
+        val serial = schema()
+        freshFixtures().forEach { serial.registerType(it) }
+
+        Assert.assertEquals(describe(serial), describe(parallel))
+        val loaded = schema().apply { fixtures.forEach { registerType(it) } }
+        Assert.assertEquals(describe(serial), describe(loaded))
+    }
+}
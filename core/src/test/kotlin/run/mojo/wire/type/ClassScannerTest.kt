@@ -0,0 +1,131 @@
+package run.mojo.wire.type
+
+import org.junit.Assert
+import org.junit.Test
+import run.mojo.Wire
+import run.mojo.compiler.fixture.Point
+import run.mojo.compiler.fixture.Scalars
+import java.io.File
+import java.net.URLClassLoader
+import java.nio.file.Files
+import java.util.jar.Attributes
+import java.util.jar.JarEntry
+import java.util.jar.JarOutputStream
+import java.util.jar.Manifest
+
+class ClassScannerTest {
+    interface Handler
+
+    @Wire
+    open class Message : Handler
+
+    private val scanner = ClassScanner.of(javaClass.classLoader)
+
+    private fun bytesOf(type: Class<*>): ByteArray =
+        type.getResourceAsStream(type.name.substringAfterLast('.') + ".class").use { it.readBytes() }
+
+    /** A jar holding [entries] by path, and a Class-Path naming [classPath] if any. */
+    private fun jar(
+        dir: File,
+        name: String,
+        entries: Map<String, ByteArray>,
+        classPath: String? = null
+    ): File {
+        val manifest = Manifest()
+        manifest.mainAttributes[Attributes.Name.MANIFEST_VERSION] = "1.0"
+        if (classPath != null) {
+            manifest.mainAttributes[Attributes.Name.CLASS_PATH] = classPath
+        }
+        val file = File(dir, name)
+        JarOutputStream(file.outputStream(), manifest).use { out ->
+            entries.forEach { (path, bytes) ->
+                out.putNextEntry(JarEntry(path))
+                out.write(bytes)
+                out.closeEntry()
+            }
+        }
+        return file
+    }
+
+    @Test
+    fun readsHeadersWithoutLoading() {
+        val headers = scanner.packages("run.mojo.compiler.fixture").scan { true }.associateBy { it.name }
+        Assert.assertTrue(headers.keys.all { it.startsWith("run.mojo.compiler.fixture.") })
+
+        val scalars = headers.getValue(Scalars::class.java.name)
+        Assert.assertEquals("java.lang.Object", scalars.superName)
+        Assert.assertEquals("run.mojo.compiler.fixture", scalars.packageName())
+        Assert.assertEquals("Scalars", scalars.simpleName())
+        Assert.assertTrue(scalars.isPublic)
+        Assert.assertFalse(scalars.isEnum)
+
+        val color = headers.getValue(Scalars.Color::class.java.name)
+        Assert.assertEquals("java.lang.Enum", color.superName)
+        Assert.assertEquals("Color", color.simpleName())
+        Assert.assertTrue(color.isEnum)
+        Assert.assertSame(Scalars.Color::class.java, color.load())
+    }
+
+    @Test
+    fun readsInterfacesAndAnnotations() {
+        val headers = scanner.packages("run.mojo.wire.type")
+            .scan { it.name.startsWith(ClassScannerTest::class.java.name + "$") }
+            .associateBy { it.simpleName() }
+
+        val handler = headers.getValue("Handler")
+        Assert.assertTrue(handler.isInterface)
+        Assert.assertTrue(handler.isAbstract)
+
+        val message = headers.getValue("Message")
+        Assert.assertFalse(message.isInterface)
+        Assert.assertEquals(listOf(Handler::class.java.name), message.interfaces)
+        Assert.assertTrue(message.isAnnotatedWith(Wire::class.java))
+        Assert.assertFalse(handler.isAnnotatedWith(Wire::class.java))
+    }
+
+    @Test
+    fun scansEveryPackageGiven() {
+        val names = scanner.packages("run.mojo.compiler.fixture", "run.mojo.wire.codec")
+            .scan { it.simpleName() == "Point" || it.simpleName() == "Scalars" }
+            .map { it.name }
+            .toSet()
+        val expected = setOf(Point::class.java, Scalars::class.java, run.mojo.wire.codec.Scalars::class.java)
+        Assert.assertEquals(expected.map { it.name }.toSet(), names)
+    }
+
+    @Test
+    fun followsJarClassPathsAndSkipsMalformedFiles() {
+        val dir = Files.createTempDirectory("scanner").toFile()
+        val point = "run/mojo/compiler/fixture/Point.class"
+        jar(dir, "point.jar", mapOf(point to bytesOf(Point::class.java)))
+        val main = jar(
+            dir,
+            "main.jar",
+            mapOf("run/mojo/compiler/fixture/Broken.class" to byteArrayOf(0xCA.toByte(), 0xFE.toByte())),
+            classPath = "point.jar"
+        )
+
+        URLClassLoader(arrayOf(main.toURI().toURL()), null).use { loader ->
+            val headers = ClassScanner.of(loader).scan { true }
+            Assert.assertEquals(listOf(Point::class.java.name), headers.map { it.name })
+            val loaded = headers[0].load()
+            Assert.assertEquals(Point::class.java.name, loaded.name)
+            Assert.assertSame(loader, loaded.classLoader)
+        }
+    }
+
+    @Test
+    fun fingerprintFollowsClassFiles() {
+        val dir = Files.createTempDirectory("scanner").toFile()
+        val file = File(dir, "run/mojo/compiler/fixture/Point.class")
+        file.parentFile.mkdirs()
+        file.writeBytes(bytesOf(Point::class.java))
+
+        URLClassLoader(arrayOf(dir.toURI().toURL()), null).use { loader ->
+            val before = ClassScanner.of(loader).fingerprint()
+            Assert.assertEquals(before, ClassScanner.of(loader).fingerprint())
+            file.appendBytes(byteArrayOf(0))
+            Assert.assertNotEquals(before, ClassScanner.of(loader).fingerprint())
+        }
+    }
+}
@@ -0,0 +1,59 @@
+package run.mojo.wire.type
+
+import org.junit.Assert
+import org.junit.Test
+import java.util.stream.Stream
+
+class FieldAccessorTest {
+    class Bean {
+        private var count: Int = 0
+        private var name: String? = null
+        private var score: Double = 0.0
+
+        // Bound accessors are called, so their side effects show.
+        fun getCount(): Int = count * 10
+
+        fun setCount(count: Int) {
+            this.count = count
+        }
+
+        fun getName(): String? = name
+
+        fun setName(name: String?) {
+            this.name = name?.toUpperCase()
+        }
+
+        fun score(): Double = score
+    }
+
+    private fun field(name: String): FieldDesc {
+        val schema = ReflectionSchema.create(Stream.empty<Any>(), null, null, null, null)
+        val desc = schema.registerType(Bean::class.java) as MessageDesc
+        return desc.props[name]!!
+    }
+
+    @Test
+    fun primitiveGoesThroughBoundAccessors() {
+        val access = field("count").accessor()
+        val bean = Bean()
+        access.setInt(bean, 3)
+        Assert.assertEquals(30, access.getInt(bean))
+    }
+
+    @Test
+    fun objectGoesThroughBoundAccessors() {
+        val access = field("name").accessor()
+        val bean = Bean()
+        access.setObject(bean, "wire")
+        Assert.assertEquals("WIRE", access.getObject(bean))
+    }
+
+    @Test
+    fun missingSetterWritesTheField() {
+        val access = field("score").accessor()
+        val bean = Bean()
+        access.setDouble(bean, 1.5)
+        Assert.assertEquals(1.5, access.getDouble(bean), 0.0)
+        Assert.assertEquals(1.5, bean.score(), 0.0)
+    }
+}
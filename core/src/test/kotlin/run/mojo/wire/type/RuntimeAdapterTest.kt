@@ -0,0 +1,214 @@
+package run.mojo.wire.type
+
+import com.squareup.wire.FieldEncoding
+import com.squareup.wire.ProtoAdapter
+import com.squareup.wire.ProtoWriter
+import okio.Buffer
+import org.junit.Assert
+import org.junit.Test
+import run.mojo.Wire
+import run.mojo.compiler.fixture.Counts
+import run.mojo.compiler.fixture.Money
+import run.mojo.compiler.fixture.Packed
+import run.mojo.compiler.fixture.Point
+import run.mojo.compiler.fixture.Scalars
+import java.util.stream.Stream
+
+class RuntimeAdapterTest {
+    class Sparse {
+        var near: String? = null
+
+        @field:Wire(tag = 1000)
+        var far: Int = 0
+    }
+
+    class Grid {
+        var cells: Array<Point>? = null
+    }
+
+    private fun <T> adapter(type: Class<T>): RuntimeAdapter<T> {
+        val schema = ReflectionSchema.create(Stream.empty<Any>(), null, null, null, null)
+        return RuntimeAdapter.of(schema.registerType(type) as MessageDesc)
+    }
+
+    /** Wire's encoding of what [write] writes. */
+    private fun wire(write: (ProtoWriter) -> Unit): ByteArray {
+        val buffer = Buffer()
+        write(ProtoWriter(buffer))
+        return buffer.readByteArray()
+    }
+
+    private fun ProtoWriter.writePoint(tag: Int, x: Int, y: Int) {
+        val point = wire {
+            ProtoAdapter.INT32.encodeWithTag(it, 1, x)
+            ProtoAdapter.INT32.encodeWithTag(it, 2, y)
+        }
+        writeTag(tag, FieldEncoding.LENGTH_DELIMITED)
+        writeVarint32(point.size)
+        writeBytes(okio.ByteString.of(*point))
+    }
+
+    private fun scalars(): Scalars {
+        val value = Scalars()
+        value.flag = true
+        value.letter = 'w'
+        value.count = -150
+        value.total = 1L shl 40
+        value.score = -2.25
+        value.boxedCount = 1 shl 20
+        value.name = "wire"
+        value.color = Scalars.Color.BLUE
+        value.origin = Point(1, -1)
+        value.tags = listOf("a", "", "b")
+        value.points = listOf(Point(2, 3), Point())
+        value.steps = listOf(4, -4)
+        return value
+    }
+
+    /** What Wire's own adapters write for [scalars], field by field. */
+    private fun expected() = wire {
+        ProtoAdapter.BOOL.encodeWithTag(it, 1, true)
+        ProtoAdapter.INT32.encodeWithTag(it, 2, 0)
+        ProtoAdapter.INT32.encodeWithTag(it, 3, 0)
+        ProtoAdapter.INT32.encodeWithTag(it, 4, 'w'.toInt())
+        ProtoAdapter.INT32.encodeWithTag(it, 5, -150)
+        ProtoAdapter.INT64.encodeWithTag(it, 6, 1L shl 40)
+        ProtoAdapter.FLOAT.encodeWithTag(it, 7, 0f)
+        ProtoAdapter.DOUBLE.encodeWithTag(it, 8, -2.25)
+        ProtoAdapter.INT32.encodeWithTag(it, 13, 1 shl 20)
+        ProtoAdapter.STRING.encodeWithTag(it, 17, "wire")
+        // Enum values are tagged from 1.
+        ProtoAdapter.INT32.encodeWithTag(it, 18, 3)
+        it.writePoint(19, 1, -1)
+        listOf("a", "", "b").forEach { tag -> ProtoAdapter.STRING.encodeWithTag(it, 20, tag) }
+        it.writePoint(22, 2, 3)
+        it.writePoint(22, 0, 0)
+        listOf(4, -4).forEach { step -> ProtoAdapter.INT32.encodeWithTag(it, 23, step) }
+    }
+
+    @Test
+    fun writesWhatWireWrites() {
+        val adapter = adapter(Scalars::class.java)
+        val expected = expected()
+        Assert.assertEquals(expected.size, adapter.encodedSize(scalars()))
+        Assert.assertArrayEquals(expected, adapter.encode(scalars()))
+        Assert.assertArrayEquals(expected, adapter.encodeToArray(scalars()))
+    }
+
+    @Test
+    fun readsWhatWireWrites() {
+        val adapter = adapter(Scalars::class.java)
+        val expected = scalars()
+        val bytes = expected()
+        for (value in listOf(adapter.decode(bytes), adapter.decode(bytes, 0, bytes.size))) {
+            Assert.assertEquals(expected.flag, value.flag)
+            Assert.assertEquals(expected.letter, value.letter)
+            Assert.assertEquals(expected.count, value.count)
+            Assert.assertEquals(expected.total, value.total)
+            Assert.assertEquals(expected.score, value.score, 0.0)
+            Assert.assertNull(value.boxedTiny)
+            Assert.assertEquals(expected.boxedCount, value.boxedCount)
+            Assert.assertEquals(expected.name, value.name)
+            Assert.assertEquals(expected.color, value.color)
+            Assert.assertEquals(expected.origin, value.origin)
+            Assert.assertEquals(expected.tags, value.tags)
+            Assert.assertNull(value.ids)
+            Assert.assertEquals(expected.points, value.points)
+            Assert.assertEquals(expected.steps, value.steps)
+        }
+    }
+
+    @Test
+    fun mapsAreWrittenByWiresMapAdapter() {
+        val adapter = adapter(Counts::class.java)
+        val value = Counts()
+        value.names = linkedMapOf(1 to "one", -300 to "")
+        value.totals = linkedMapOf(1L shl 35 to 7)
+        val names = ProtoAdapter.newMapAdapter(ProtoAdapter.INT32, ProtoAdapter.STRING)
+        val totals = ProtoAdapter.newMapAdapter(ProtoAdapter.INT64, ProtoAdapter.INT32)
+        val expected = wire {
+            names.encodeWithTag(it, 1, value.names)
+            totals.encodeWithTag(it, 2, value.totals)
+        }
+        Assert.assertArrayEquals(expected, adapter.encode(value))
+        Assert.assertArrayEquals(expected, adapter.encodeToArray(value))
+
+        val decoded = adapter.decode(expected)
+        Assert.assertEquals(value.names, decoded.names)
+        Assert.assertEquals(value.totals, decoded.totals)
+    }
+
+    @Test
+    fun primitiveArraysArePacked() {
+        val adapter = adapter(Packed::class.java)
+        val value = Packed()
+        value.counts = intArrayOf(1, -1, 300)
+        value.deltas = intArrayOf(-2, 2)
+        value.stamps = longArrayOf(1L shl 40, -1)
+        value.weights = floatArrayOf(0.5f)
+        value.scores = doubleArrayOf(-2.25, 0.0)
+        val expected = wire {
+            ProtoAdapter.INT32.asPacked().encodeWithTag(it, 1, value.counts!!.toList())
+            ProtoAdapter.SINT32.asPacked().encodeWithTag(it, 2, value.deltas!!.toList())
+            ProtoAdapter.FIXED64.asPacked().encodeWithTag(it, 3, value.stamps!!.toList())
+            ProtoAdapter.FLOAT.asPacked().encodeWithTag(it, 4, value.weights!!.toList())
+            ProtoAdapter.DOUBLE.asPacked().encodeWithTag(it, 5, value.scores!!.toList())
+        }
+        Assert.assertArrayEquals(expected, adapter.encode(value))
+        Assert.assertArrayEquals(expected, adapter.encodeToArray(value))
+
+        for (decoded in listOf(adapter.decode(expected), adapter.decode(expected, 0, expected.size))) {
+            Assert.assertArrayEquals(value.counts, decoded.counts)
+            Assert.assertArrayEquals(value.deltas, decoded.deltas)
+            Assert.assertArrayEquals(value.stamps, decoded.stamps)
+            Assert.assertArrayEquals(value.weights, decoded.weights, 0f)
+            Assert.assertArrayEquals(value.scores, decoded.scores, 0.0)
+        }
+    }
+
+    @Test
+    fun classWithoutNoArgConstructorIsAllocated() {
+        val adapter = adapter(Money::class.java)
+        val value = Money("EUR", 150)
+        val expected = wire {
+            ProtoAdapter.STRING.encodeWithTag(it, 1, "EUR")
+            ProtoAdapter.INT64.encodeWithTag(it, 2, 150L)
+        }
+        Assert.assertArrayEquals(expected, adapter.encode(value))
+        Assert.assertEquals(value, adapter.decode(expected))
+        Assert.assertEquals(value, adapter.decode(expected, 0, expected.size))
+    }
+
+    @Test
+    fun sparseTagsAreFoundAndUnknownTagsSkipped() {
+        val adapter = adapter(Sparse::class.java)
+        val value = Sparse()
+        value.near = "near"
+        value.far = 7
+        val expected = wire {
+            ProtoAdapter.STRING.encodeWithTag(it, 1, "near")
+            ProtoAdapter.INT32.encodeWithTag(it, 1000, 7)
+        }
+        Assert.assertArrayEquals(expected, adapter.encode(value))
+
+        val withUnknown = wire {
+            ProtoAdapter.STRING.encodeWithTag(it, 1, "near")
+            ProtoAdapter.STRING.encodeWithTag(it, 999, "skipped")
+            ProtoAdapter.INT32.encodeWithTag(it, 1000, 7)
+            ProtoAdapter.FIXED64.encodeWithTag(it, 2000, -1L)
+        }
+        for (decoded in listOf(adapter.decode(withUnknown), adapter.decode(withUnknown, 0, withUnknown.size))) {
+            Assert.assertEquals("near", decoded.near)
+            Assert.assertEquals(7, decoded.far)
+        }
+    }
+
+    @Test
+    fun fieldWithoutACodecFails() {
+        try {
+            adapter(Grid::class.java)
+            Assert.fail()
+        } catch (expected: IllegalArgumentException) {
+        }
+    }
+}
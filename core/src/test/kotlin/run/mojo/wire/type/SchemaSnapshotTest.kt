@@ -0,0 +1,104 @@
+package run.mojo.wire.type
+
+import org.junit.Assert
+import org.junit.Test
+import run.mojo.compiler.fixture.Money
+import run.mojo.compiler.fixture.Point
+import run.mojo.compiler.fixture.Scalars
+import java.io.File
+import java.net.URLClassLoader
+import java.nio.file.Files
+import java.nio.file.Path
+import java.util.stream.Stream
+
+class SchemaSnapshotTest {
+    private val loader = javaClass.classLoader
+    private val types = listOf(Scalars::class.java, Money::class.java)
+
+    private fun written(fingerprint: Long): Path {
+        val schema = ReflectionSchema.create(
+            Stream.of(*types.toTypedArray()),
+            { ReflectionSchema.TypeEntry.create(it) },
+            null,
+            null,
+            null
+        )
+        val file = Files.createTempDirectory("snapshot").resolve("schema.snapshot")
+        SchemaSnapshot.write(schema, fingerprint, file)
+        return file
+    }
+
+    @Test
+    fun registersEntriesAsTheyAreAskedFor() {
+        val snapshot = SchemaSnapshot.read(written(42), 42, loader)!!
+        val schema = snapshot.schema(null, null, null)
+        Assert.assertTrue(schema.descriptors.isEmpty())
+
+        val money = schema.type(Money::class.java.canonicalName)
+        Assert.assertSame(Money::class.java, money.compiled)
+        Assert.assertNull(schema.descriptors[Scalars::class.java.canonicalName])
+
+        // No entry declares a nested type, so asking for one registers whatever is left.
+        val color = schema.type(Scalars.Color::class.java.canonicalName)
+        Assert.assertSame(Scalars.Color::class.java, color.compiled)
+        Assert.assertNotNull(schema.descriptors[Scalars::class.java.canonicalName])
+        Assert.assertNotNull(schema.descriptors[Point::class.java.canonicalName])
+        Assert.assertEquals(types.reversed(), schema.entries.map { (it as ReflectionSchema.TypeEntry).cls })
+    }
+
+    @Test
+    fun unknownNameResolvesEverything() {
+        val schema = SchemaSnapshot.read(written(42), 42, loader)!!.schema(null, null, null)
+        Assert.assertNull(schema.type("run.mojo.compiler.fixture.Missing"))
+        Assert.assertNotNull(schema.descriptors[Scalars::class.java.canonicalName])
+        Assert.assertNotNull(schema.descriptors[Money::class.java.canonicalName])
+        Assert.assertNull(schema.snapshot)
+    }
+
+    @Test
+    fun rewrittenSchemaKeepsItsEntries() {
+        val schema = SchemaSnapshot.read(written(42), 42, loader)!!.schema(null, null, null)
+        val file = Files.createTempDirectory("snapshot").resolve("again.snapshot")
+        SchemaSnapshot.write(schema, 43, file)
+        val again = SchemaSnapshot.read(file, 43, loader)!!.schema(null, null, null).resolveAll()
+        Assert.assertEquals(types, again.entries.map { (it as ReflectionSchema.TypeEntry).cls })
+    }
+
+    @Test
+    fun anotherClasspathInvalidatesIt() {
+        val file = written(42)
+        Assert.assertNull(SchemaSnapshot.read(file, 41, loader))
+        Assert.assertNull(SchemaSnapshot.read(file.resolveSibling("missing"), 42, loader))
+    }
+
+    @Test
+    fun unreadableFileIsIgnored() {
+        val file = written(42)
+        val bytes = Files.readAllBytes(file)
+        Files.write(file, bytes.copyOf(bytes.size - 3))
+        Assert.assertNull(SchemaSnapshot.read(file, 42, loader))
+
+        bytes[0] = 0
+        Files.write(file, bytes)
+        Assert.assertNull(SchemaSnapshot.read(file, 42, loader))
+    }
+
+    @Test
+    fun changedClassFileChangesTheFingerprint() {
+        val dir = Files.createTempDirectory("classes").toFile()
+        val file = File(dir, "run/mojo/compiler/fixture/Point.class")
+        file.parentFile.mkdirs()
+        file.writeBytes(Point::class.java.getResourceAsStream("Point.class").use { it.readBytes() })
+
+        URLClassLoader(arrayOf(dir.toURI().toURL()), null).use { classes ->
+            val before = ClassScanner.of(classes).fingerprint()
+            val snapshot = written(before)
+            val unchanged = ClassScanner.of(classes).fingerprint()
+            Assert.assertNotNull(SchemaSnapshot.read(snapshot, unchanged, loader))
+
+            file.appendBytes(byteArrayOf(0))
+            val changed = ClassScanner.of(classes).fingerprint()
+            Assert.assertNull(SchemaSnapshot.read(snapshot, changed, loader))
+        }
+    }
+}
@@ -22,4 +22,6 @@ kotlin {
 dependencies {
     compile(project(":core"))
     compile(kotlin("stdlib"))
+
+    testImplementation("junit:junit:4.12")
 }
\ No newline at end of file
@@ -0,0 +1,150 @@
+package run.mojo.compiler
+
+import com.squareup.javapoet.ClassName
+import com.squareup.javapoet.JavaFile
+import com.squareup.javapoet.MethodSpec
+import com.squareup.javapoet.ParameterizedTypeName
+import com.squareup.javapoet.TypeSpec
+import com.squareup.javapoet.WildcardTypeName
+import com.squareup.wire.ProtoAdapter
+import run.mojo.wire.AdapterIndex
+import java.util.*
+import javax.annotation.processing.Filer
+import javax.lang.model.element.ElementKind
+import javax.lang.model.element.Modifier
+import javax.lang.model.element.TypeElement
+import javax.lang.model.util.Elements
+import javax.lang.model.util.Types
+import javax.tools.StandardLocation
+
+/**
+ * Writes the [AdapterIndex] of one compilation. An index holds each message and enum a round
+ * modeled that has a Wire_ class with a PROTO adapter, whether that class was generated in the
+ * round, came from source or from the classpath. Each index is written in the round that modeled
+ * its types, as a source created in the last round isn't compiled, and the service entry that
+ * lets ServiceLoader find them once processing is over.
+ */
+internal class AdapterIndexWriter(
+    private val elements: Elements,
+    private val types: Types,
+    private val filer: Filer
+) {
+    // Messages and enums by qualified name, so the index comes out the same every build.
+    private val candidates = TreeMap<String, TypeElement>()
+    // Wire_ classes generated in this compilation, which aren't elements until the next round.
+    private val generated = HashSet<String>()
+    private val written = ArrayList<ClassName>()
+
+    // Types already in a written index, which a later round may model again.
+    private val indexed = HashSet<String>()
+
+    fun add(element: TypeElement) {
+        val name = element.qualifiedName.toString()
+        if (name !in indexed) {
+            candidates[name] = element
+        }
+    }
+
+    /** Records the Wire_ classes in [file], which declare a PROTO adapter once compiled. */
+    fun generated(file: JavaFile) {
+        addGenerated(file.packageName + "." + file.typeSpec.name, file.typeSpec)
+    }
+
+    private fun addGenerated(name: String, type: TypeSpec) {
+        if (type.fieldSpecs.any { it.name == Assembler.PROTO_VAR_NAME }) {
+            generated += name
+        }
+        type.typeSpecs.forEach { addGenerated(name + "." + it.name, it) }
+    }
+
+    /**
+     * Writes the index of the candidates added since the last one, or nothing if none of them has
+     * a Wire_ class. Returns the index's name.
+     */
+    fun write(): ClassName? {
+        val entries = candidates.values
+            .mapNotNull { element -> wireOuter(element)?.let { element to it } }
+        candidates.clear()
+        if (entries.isEmpty()) {
+            return null
+        }
+        entries.forEach { indexed += it.first.qualifiedName.toString() }
+        val binaryNames = entries.map { elements.getBinaryName(it.first).toString() }
+        val name = ClassName.get(
+            elements.getPackageOf(entries[0].first).qualifiedName.toString(),
+            INDEX_PREFIX + Integer.toHexString(binaryNames.hashCode())
+        )
+
+        val any = WildcardTypeName.subtypeOf(Object::class.java)
+        val proto = MethodSpec.methodBuilder("proto")
+            .addAnnotation(Override::class.java)
+            .addModifiers(Modifier.PUBLIC)
+            .returns(ParameterizedTypeName.get(PROTO_ADAPTER, any))
+            .addParameter(ParameterizedTypeName.get(CLASS, any), "cls")
+            .beginControlFlow("switch (cls.getName())")
+        entries.forEachIndexed { i, (element, wire) ->
+            // Another loader may define a class of the same name.
+            proto.addCode("case \$S:\n\$>", binaryNames[i])
+            proto.addStatement(
+                "return cls == \$T.class ? \$T.\$L : null",
+                ClassName.get(element),
+                wire,
+                Assembler.PROTO_VAR_NAME
+            )
+            proto.addCode("\$<")
+        }
+        proto.addCode("default:\n\$>")
+            .addStatement("return null")
+            .addCode("\$<")
+            .endControlFlow()
+
+        val index = TypeSpec.classBuilder(name)
+            .addModifiers(Modifier.PUBLIC, Modifier.FINAL)
+            .addSuperinterface(AdapterIndex::class.java)
+            .addMethod(proto.build())
+        entries.forEach { index.addOriginatingElement(it.first) }
+        JavaFile.builder(name.packageName(), index.build())
+            .build()
+            .writeTo(filer)
+        written += name
+        return name
+    }
+
+    /** Lists every index written in the service file, once processing is over. */
+    fun writeServices() {
+        if (written.isEmpty()) {
+            return
+        }
+        filer
+            .createResource(StandardLocation.CLASS_OUTPUT, "", SERVICE_FILE)
+            .openWriter()
+            .use { writer -> written.forEach { writer.write(it.reflectionName() + "\n") } }
+    }
+
+    /** The Wire_ class of [element], if one was generated or exists with a PROTO adapter. */
+    private fun wireOuter(element: TypeElement): ClassName? {
+        val pkg = elements.getPackageOf(element).qualifiedName.toString()
+        val relative = element.qualifiedName.toString().removePrefix("$pkg.")
+        val wireName = (if (pkg.isEmpty()) "" else "$pkg.") + Assembler.WIRE_PREFIX + relative
+        if (wireName in generated) {
+            val simpleNames = (Assembler.WIRE_PREFIX + relative).split('.')
+            return ClassName.get(pkg, simpleNames[0], *simpleNames.drop(1).toTypedArray())
+        }
+        val wire = elements.getTypeElement(wireName) ?: return null
+        val protoAdapter = types.erasure(elements.getTypeElement(PROTO_ADAPTER.reflectionName()).asType())
+        val proto = wire.enclosedElements.firstOrNull {
+            it.kind == ElementKind.FIELD && it.simpleName.contentEquals(Assembler.PROTO_VAR_NAME)
+        } ?: return null
+        return if (proto.modifiers.containsAll(listOf(Modifier.PUBLIC, Modifier.STATIC))
+            && types.isAssignable(types.erasure(proto.asType()), protoAdapter)
+        ) ClassName.get(wire) else null
+    }
+
+    companion object {
+        internal val INDEX_PREFIX = "WireIndex_"
+        internal val SERVICE_FILE = "META-INF/services/" + AdapterIndex::class.java.name
+
+        private val PROTO_ADAPTER = ClassName.get(ProtoAdapter::class.java)
+        private val CLASS = ClassName.get(Class::class.java)
+    }
+}
@@ -2,8 +2,10 @@ package run.mojo.compiler
 
 import com.google.auto.value.AutoValue
 import run.mojo.wire.JavaKind
+import run.mojo.wire.WireEnumAdapter
 import run.mojo.Wire
 import run.mojo.model.*
+import java.io.IOException
 import javax.annotation.processing.*
 import javax.lang.model.SourceVersion
 import javax.lang.model.element.*
@@ -65,7 +67,18 @@ class ModelCompiler(
     internal val config: Config
 ) : ModelTransformer() {
 
+    private val index = AdapterIndexWriter(elements, types, filer)
+
+    // Wire_ classes generated in earlier rounds, which the Filer can't create again.
+    private val written = HashSet<String>()
+
     fun process(annotations: Set<TypeElement>, roundEnv: RoundEnvironment): Boolean {
+        if (roundEnv.processingOver()) {
+            // Only resources may be created in the last round without a warning.
+            writeServices()
+            return true
+        }
+
         messager.printMessage(Diagnostic.Kind.MANDATORY_WARNING, "Mojo WireMessage Processor")
         config.actionLinkers.forEach { messager.printMessage(Diagnostic.Kind.MANDATORY_WARNING, "ActionLinker: $it") }
 
@@ -77,6 +90,8 @@ class ModelCompiler(
         }
 //        processAnnotatedWith(annotations, ModelBuilder.LOMBOK_VALUE, roundEnv)
         processAnnotatedWith(annotations, Wire::class.java.canonicalName, roundEnv)
+        writeWire()
+        writeIndex()
 
         // Find schema schemas.
 //        roundEnv
@@ -204,6 +219,50 @@ class ModelCompiler(
         return true
     }
 
+    /**
+     * Writes the Wire_ classes of the types modeled so far that don't have one yet. A Wire_ class
+     * that already exists, written by hand or found on the classpath, is left alone.
+     */
+    private fun writeWire() {
+        val files = try {
+            Assembler.create(this).build()
+        } catch (e: Exception) {
+            e.printStackTrace()
+            messager.printMessage(Diagnostic.Kind.ERROR, "Failed to generate Wire_ classes: $e")
+            return
+        }
+        for (file in files) {
+            val name = file.packageName + "." + file.typeSpec.name
+            if (!written.add(name) || elements.getTypeElement(name) != null) {
+                continue
+            }
+            try {
+                file.writeTo(filer)
+                index.generated(file)
+            } catch (e: IOException) {
+                messager.printMessage(Diagnostic.Kind.ERROR, "Failed to write $name: $e")
+            }
+        }
+    }
+
+    private fun writeIndex() {
+        try {
+            index.write()?.let {
+                messager.printMessage(Diagnostic.Kind.NOTE, "Wrote adapter index $it")
+            }
+        } catch (e: Exception) {
+            messager.printMessage(Diagnostic.Kind.ERROR, "Failed to write adapter index: $e")
+        }
+    }
+
+    private fun writeServices() {
+        try {
+            index.writeServices()
+        } catch (e: Exception) {
+            messager.printMessage(Diagnostic.Kind.ERROR, "Failed to write adapter index service: $e")
+        }
+    }
+
     private fun processAnnotatedWith(
         annotations: Set<TypeElement>, name: String, roundEnv: RoundEnvironment
     ) {
@@ -319,6 +378,10 @@ class ModelCompiler(
         )
 
         add(message)
+        index.add(element)
+        if (message.enclosing == null && !impl) {
+            pkg.nested[message.name] = message
+        }
 
         // Are there inherited fields?
         message.superType?.let {
@@ -346,6 +409,19 @@ class ModelCompiler(
             .filter { v -> !v.modifiers.contains(Modifier.STATIC) && !v.modifiers.contains(Modifier.NATIVE) }
             .forEach { variable -> message.registerField(this, variable) }
 
+        // Bind the template's own fields to the type arguments, e.g. List<T> to List<Integer>.
+        if (impl) {
+            val resolver = TypeArgResolver(message.typeVars, this)
+
+            message.fields.values.toList().forEach { field ->
+                if (field.declared === message && field.model.isTemplate) {
+                    resolver.resolve(field.model)?.let {
+                        message.pushField(field.resolved(message, it))
+                    }
+                }
+            }
+        }
+
         // Model getters and setters.
         element
             .enclosedElements
@@ -431,6 +507,13 @@ class ModelCompiler(
                     JAVA_LANG_FLOAT -> ModelTransformer.FLOAT_BOXED
                     JAVA_LANG_DOUBLE -> ModelTransformer.DOUBLE_BOXED
                     JAVA_LANG_STRING -> ModelTransformer.STRING
+                    OKIO_BYTE_STRING -> ModelTransformer.BYTE_STRING
+                    JAVA_MATH_BIG_DECIMAL -> ModelTransformer.BIG_DECIMAL
+                    JAVA_TIME_DURATION -> ModelTransformer.DURATION
+                    JAVA_UTIL_DATE -> ModelTransformer.DATE
+                    JAVA_TIME_LOCAL_DATE -> ModelTransformer.LOCAL_DATE
+                    JAVA_TIME_LOCAL_DATE_TIME -> ModelTransformer.LOCAL_DATE_TIME
+                    JAVA_TIME_ZONED_DATE_TIME -> ModelTransformer.ZONED_DATE
                     else -> {
                         val element = type.asElement()
                         if (element is TypeElement) {
@@ -444,7 +527,10 @@ class ModelCompiler(
                                 mirrorToMap(type) ?: NOTHING
                             } else if (isDescendent(element, JAVA_UTIL_QUEUE_UNTYPED)) {
                                 mirrorToList(JavaKind.QUEUE, type) ?: NOTHING
-                            } else if (isDescendent(element, JAVA_LANG_ENUM)) {
+                            } else if (element.qualifiedName.contentEquals(RUN_MOJO_WIRE_LAZY)) {
+                                type.typeArguments.firstOrNull()
+                                    ?.let { LazyModel(mirrorToModel(it)) } ?: NOTHING
+                            } else if (isDescendent(element, JAVA_LANG_ENUM_UNTYPED)) {
                                 toEnumKind(element)
                             } else if (element.kind == ElementKind.CLASS) {
                                 toMessage(type, element) ?: NOTHING
@@ -488,8 +574,12 @@ class ModelCompiler(
     // TypeMirror to ArrayModel "List"
     ////////////////////////////////////////////////////////////////////////////////////////////////////
 
-    private fun mirrorToArray(mirror: TypeMirror): ListModel? {
+    private fun mirrorToArray(mirror: TypeMirror): WireModel? {
         val arrayType = mirror as ArrayType
+        // Bytes, not an array of byte scalars.
+        if (arrayType.componentType.kind == TypeKind.BYTE) {
+            return BYTE_ARRAY
+        }
         val kind = mirrorToModel(arrayType.componentType)
         return if (kind == NOTHING) null else ListModel(JavaKind.ARRAY, kind)
     }
@@ -590,7 +680,7 @@ class ModelCompiler(
 
                 val constant = EnumConstant(
                     ordinal = ordinal++,
-                    tag = enclosed.getAnnotation(Wire::class.java)?.let { it.tag } ?: lastTag+1,
+                    tag = WireEnumAdapter.tagOf(enclosed.getAnnotation(Wire::class.java), lastTag),
                     name = name,
                     relativeName = relativeNameBase + "_" + name
                 )
@@ -611,6 +701,10 @@ class ModelCompiler(
 
         // Register in schema.
         add(model)
+        index.add(element)
+        if (model.enclosing == null) {
+            pkg.nested[model.name] = model
+        }
 
         return model
     }
@@ -642,6 +736,10 @@ class ModelCompiler(
                 type = enclosingType
             )
             add(enclosingMirror)
+            // Holds the Wire_ classes of its nested types until the type itself is modeled.
+            if (enclosingMirror.enclosing == null) {
+                pkg.nested[enclosingMirror.name] = enclosingMirror
+            }
         }
 
         return enclosingMirror
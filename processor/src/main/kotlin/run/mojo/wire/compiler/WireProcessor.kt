@@ -552,7 +552,8 @@ class WireProcessor(
 
                 val constant = EnumConstant(
                     ordinal = ordinal++,
-                    tag = enclosed.getAnnotation(Wire::class.java)?.let { it.tag } ?: lastTag+1,
+                    tag = enclosed.getAnnotation(Wire::class.java)?.tag?.takeIf { it > 0 }
+                        ?: lastTag + 1,
                     name = name,
                     relativeName = relativeNameBase + "_" + name
                 )
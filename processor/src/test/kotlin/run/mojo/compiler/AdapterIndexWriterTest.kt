@@ -0,0 +1,134 @@
+package run.mojo.compiler
+
+import org.junit.Assert
+import org.junit.Test
+import run.mojo.wire.AdapterIndex
+import run.mojo.wire.AdapterRepo
+import java.io.File
+import java.net.URLClassLoader
+import java.nio.file.Files
+import java.util.ServiceLoader
+import javax.tools.ToolProvider
+
+class AdapterIndexWriterTest {
+    private val order = """
+        package demo;
+
+        import run.mojo.Wire;
+
+        @Wire
+        public class Order {
+          public String id;
+          public Status status;
+          public Line line;
+
+          public enum Status {
+            OPEN,
+            @Wire(tag = 5)
+            CLOSED
+          }
+
+          public static class Line {
+            public String sku;
+            public int count;
+          }
+        }
+        """.trimIndent()
+
+    /** Compiles [source] with the processor, returning the root of its sources and classes. */
+    private fun process(source: String): File {
+        val root = Files.createTempDirectory("wire-index").toFile()
+        val file = File(root, "src/demo/Order.java")
+        file.parentFile.mkdirs()
+        file.writeText(source)
+        File(root, "gen").mkdirs()
+        File(root, "classes").mkdirs()
+
+        val javac = ToolProvider.getSystemJavaCompiler()
+        Assert.assertNotNull("the tests need a JDK", javac)
+        val files = javac.getStandardFileManager(null, null, null)
+        val options = listOf(
+            "-nowarn",
+            "-encoding", "UTF-8",
+            "-cp", System.getProperty("java.class.path"),
+            "-s", File(root, "gen").path,
+            "-d", File(root, "classes").path
+        )
+        val task = javac.getTask(null, files, null, options, null, files.getJavaFileObjects(file))
+        task.setProcessors(listOf(GeneratorProcessor()))
+        Assert.assertTrue("processed sources don't compile", task.call())
+        return root
+    }
+
+    private fun proto(loader: ClassLoader, wire: String): Any =
+        loader.loadClass(wire).getField(Assembler.PROTO_VAR_NAME).get(null)
+
+    @Test
+    fun indexReturnsEachGeneratedAdapter() {
+        val root = process(order)
+        val indexes = File(root, "gen/demo")
+            .listFiles { file -> file.name.startsWith(AdapterIndexWriter.INDEX_PREFIX) }
+        Assert.assertEquals(1, indexes.size)
+        val index = indexes[0].readText()
+        Assert.assertTrue(index.contains("return cls == Order.class ? Wire_Order.PROTO : null;"))
+        Assert.assertTrue(index.contains("case \"demo.Order\$Line\":"))
+        Assert.assertTrue(index.contains("return cls == Order.Line.class ? Wire_Order.Line.PROTO : null;"))
+        Assert.assertTrue(index.contains("case \"demo.Order\$Status\":"))
+        Assert.assertTrue(index.contains("return cls == Order.Status.class ? Wire_Order.Status.PROTO : null;"))
+
+        val services = File(root, "classes/" + AdapterIndexWriter.SERVICE_FILE)
+        Assert.assertEquals("demo." + indexes[0].nameWithoutExtension + "\n", services.readText())
+    }
+
+    @Test
+    fun indexIsFoundByServiceLoaderAndMatchesOnlyItsOwnClasses() {
+        val classes = File(process(order), "classes").toURI().toURL()
+        val loader = URLClassLoader(arrayOf(classes), javaClass.classLoader)
+        val index = ServiceLoader.load(AdapterIndex::class.java, loader).single()
+
+        Assert.assertSame(proto(loader, "demo.Wire_Order"), index.proto(loader.loadClass("demo.Order")))
+        Assert.assertSame(
+            proto(loader, "demo.Wire_Order\$Status"),
+            index.proto(loader.loadClass("demo.Order\$Status"))
+        )
+        Assert.assertNull(index.proto(String::class.java))
+        // Same name, another loader.
+        val other = URLClassLoader(arrayOf(classes), javaClass.classLoader)
+        Assert.assertNull(index.proto(other.loadClass("demo.Order")))
+    }
+
+    @Test
+    fun adapterRepoResolvesThroughTheIndex() {
+        // The messages' own loader can't see their Wire_ classes, so probing for them by name fails
+        // and only the index, found through the context loader, can return them. AdapterRepo loads
+        // the indexes on its first lookup, which no other test makes.
+        val root = process(order)
+        val messages = File(root, "messages")
+        val generated = File(root, "generated")
+        File(root, "classes").walkTopDown().filter { it.isFile }.forEach {
+            val relative = it.relativeTo(File(root, "classes"))
+            val generatedFile = relative.name.startsWith(Assembler.WIRE_PREFIX)
+                || relative.name.startsWith(AdapterIndexWriter.INDEX_PREFIX)
+                || relative.path.startsWith("META-INF")
+            it.copyTo(File(if (generatedFile) generated else messages, relative.path))
+        }
+        val messageLoader = URLClassLoader(arrayOf(messages.toURI().toURL()), javaClass.classLoader)
+        val loader = URLClassLoader(arrayOf(generated.toURI().toURL()), messageLoader)
+
+        val thread = Thread.currentThread()
+        val context = thread.contextClassLoader
+        thread.contextClassLoader = loader
+        try {
+            Assert.assertSame(
+                proto(loader, "demo.Wire_Order\$Line"),
+                AdapterRepo.proto(messageLoader.loadClass("demo.Order\$Line"))
+            )
+            Assert.assertSame(
+                proto(loader, "demo.Wire_Order"),
+                AdapterRepo.proto(messageLoader.loadClass("demo.Order"))
+            )
+        } finally {
+            thread.contextClassLoader = context
+        }
+    }
+}
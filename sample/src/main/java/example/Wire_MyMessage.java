@@ -28,6 +28,10 @@ public class Wire_MyMessage {
         public Builder() {
         }
 
+        @Override
+        protected void clearFields() {
+        }
+
         @Override
         public MyMessage build() {
             return null;